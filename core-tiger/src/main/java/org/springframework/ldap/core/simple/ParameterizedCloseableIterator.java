@@ -0,0 +1,41 @@
+/*
+ * Copyright 2005-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.ldap.core.simple;
+
+import java.util.Iterator;
+
+import org.springframework.ldap.core.CloseableIterator;
+
+/**
+ * Java 5 counterpart of {@link CloseableIterator}, typed to the objects
+ * returned by the {@link ParameterizedContextMapper} used in the search. The
+ * iterator holds on to a <code>DirContext</code> which will be released when
+ * the iterator is exhausted or when {@link #close()} is called.
+ * 
+ * @param <T> the type of the mapped objects.
+ * @see SimpleLdapOperations#searchForIterator(String, String,
+ * ParameterizedContextMapper)
+ * @author agent
+ * @since 1.3.2
+ */
+public interface ParameterizedCloseableIterator<T> extends Iterator<T> {
+
+	/**
+	 * Release all resources held by this iterator. Calling this method on an
+	 * already closed iterator has no effect.
+	 */
+	void close();
+}
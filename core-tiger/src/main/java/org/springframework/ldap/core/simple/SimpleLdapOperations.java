@@ -114,6 +114,86 @@ public interface SimpleLdapOperations {
 	<T> List<T> search(Name base, String filter, SearchControls controls,
 			ParameterizedContextMapper<T> mapper, DirContextProcessor processor);
 
+	/**
+	 * Search for objects of type T using the supplied filter, lazily mapping
+	 * each found entry using the ParameterizedContextMapper as the returned
+	 * iterator is advanced. The iterator holds on to a <code>DirContext</code>
+	 * until it has been exhausted or closed, which means it <b>must</b> be
+	 * closed if iteration is abandoned before the end.
+	 * 
+	 * @param base Base DN relative to the base of the ContextSource - where to
+	 * start the search.
+	 * @param filter Search filter.
+	 * @param mapper the Mapper to supply all results to.
+	 * @return an iterator over all entries found, as mapped by the
+	 * ParameterizedContextMapper.
+	 * @throws NamingException if any error occurs.
+	 * @since 1.3.2
+	 */
+	<T> ParameterizedCloseableIterator<T> searchForIterator(String base, String filter,
+			ParameterizedContextMapper<T> mapper);
+
+	/**
+	 * Search for objects of type T using the supplied filter, lazily mapping
+	 * each found entry using the ParameterizedContextMapper as the returned
+	 * iterator is advanced. The iterator holds on to a <code>DirContext</code>
+	 * until it has been exhausted or closed, which means it <b>must</b> be
+	 * closed if iteration is abandoned before the end.
+	 * 
+	 * @param base Base DN relative to the base of the ContextSource - where to
+	 * start the search.
+	 * @param filter Search filter.
+	 * @param mapper the Mapper to supply all results to.
+	 * @return an iterator over all entries found, as mapped by the
+	 * ParameterizedContextMapper.
+	 * @throws NamingException if any error occurs.
+	 * @since 1.3.2
+	 */
+	<T> ParameterizedCloseableIterator<T> searchForIterator(Name base, String filter,
+			ParameterizedContextMapper<T> mapper);
+
+	/**
+	 * Search for objects of type T using the supplied filter, SearchControls,
+	 * DirContextProcessor and ParameterizedContextMapper, lazily mapping each
+	 * found entry as the returned iterator is advanced. The
+	 * DirContextProcessor will be post processed when the iterator is closed.
+	 * 
+	 * @param base Base DN relative to the base of the ContextSource - where to
+	 * start the search.
+	 * @param filter Search filter.
+	 * @param controls the SearchControls.
+	 * @param mapper the Mapper to supply all results to.
+	 * @param processor the DirContextProcessor to be used for applying pre/post
+	 * processing on the DirContext instance.
+	 * @return an iterator over all entries found, as mapped by the
+	 * ParameterizedContextMapper.
+	 * @throws NamingException if any error occurs.
+	 * @since 1.3.2
+	 */
+	<T> ParameterizedCloseableIterator<T> searchForIterator(String base, String filter, SearchControls controls,
+			ParameterizedContextMapper<T> mapper, DirContextProcessor processor);
+
+	/**
+	 * Search for objects of type T using the supplied filter, SearchControls,
+	 * DirContextProcessor and ParameterizedContextMapper, lazily mapping each
+	 * found entry as the returned iterator is advanced. The
+	 * DirContextProcessor will be post processed when the iterator is closed.
+	 * 
+	 * @param base Base DN relative to the base of the ContextSource - where to
+	 * start the search.
+	 * @param filter Search filter.
+	 * @param controls the SearchControls.
+	 * @param mapper the Mapper to supply all results to.
+	 * @param processor the DirContextProcessor to be used for applying pre/post
+	 * processing on the DirContext instance.
+	 * @return an iterator over all entries found, as mapped by the
+	 * ParameterizedContextMapper.
+	 * @throws NamingException if any error occurs.
+	 * @since 1.3.2
+	 */
+	<T> ParameterizedCloseableIterator<T> searchForIterator(Name base, String filter, SearchControls controls,
+			ParameterizedContextMapper<T> mapper, DirContextProcessor processor);
+
 	/**
 	 * Perform a lookup of the specified DN and map the result using the mapper.
 	 * 
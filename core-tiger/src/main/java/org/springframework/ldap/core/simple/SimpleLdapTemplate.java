@@ -21,6 +21,7 @@ import javax.naming.Name;
 import javax.naming.directory.Attributes;
 import javax.naming.directory.SearchControls;
 
+import org.springframework.ldap.core.CloseableIterator;
 import org.springframework.ldap.core.ContextSource;
 import org.springframework.ldap.core.DirContextOperations;
 import org.springframework.ldap.core.DirContextProcessor;
@@ -287,4 +288,93 @@ public class SimpleLdapTemplate implements SimpleLdapOperations {
 	public boolean authenticate(Name base, String filter, String password) {
 		return ldapOperations.authenticate(base, filter, password);
 	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * org.springframework.ldap.core.simple.SimpleLdapOperations#searchForIterator
+	 * (java.lang.String, java.lang.String,
+	 * org.springframework.ldap.core.simple.ParameterizedContextMapper)
+	 */
+	public <T> ParameterizedCloseableIterator<T> searchForIterator(String base, String filter,
+			ParameterizedContextMapper<T> mapper) {
+		return new ParameterizedCloseableIteratorAdapter<T>(ldapOperations.searchForIterator(base, filter, mapper));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * org.springframework.ldap.core.simple.SimpleLdapOperations#searchForIterator
+	 * (javax.naming.Name, java.lang.String,
+	 * org.springframework.ldap.core.simple.ParameterizedContextMapper)
+	 */
+	public <T> ParameterizedCloseableIterator<T> searchForIterator(Name base, String filter,
+			ParameterizedContextMapper<T> mapper) {
+		return new ParameterizedCloseableIteratorAdapter<T>(ldapOperations.searchForIterator(base, filter, mapper));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * org.springframework.ldap.core.simple.SimpleLdapOperations#searchForIterator
+	 * (java.lang.String, java.lang.String,
+	 * javax.naming.directory.SearchControls,
+	 * org.springframework.ldap.core.simple.ParameterizedContextMapper,
+	 * org.springframework.ldap.core.DirContextProcessor)
+	 */
+	public <T> ParameterizedCloseableIterator<T> searchForIterator(String base, String filter,
+			SearchControls controls, ParameterizedContextMapper<T> mapper, DirContextProcessor processor) {
+		return new ParameterizedCloseableIteratorAdapter<T>(ldapOperations.searchForIterator(base, filter, controls,
+				mapper, processor));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * org.springframework.ldap.core.simple.SimpleLdapOperations#searchForIterator
+	 * (javax.naming.Name, java.lang.String,
+	 * javax.naming.directory.SearchControls,
+	 * org.springframework.ldap.core.simple.ParameterizedContextMapper,
+	 * org.springframework.ldap.core.DirContextProcessor)
+	 */
+	public <T> ParameterizedCloseableIterator<T> searchForIterator(Name base, String filter,
+			SearchControls controls, ParameterizedContextMapper<T> mapper, DirContextProcessor processor) {
+		return new ParameterizedCloseableIteratorAdapter<T>(ldapOperations.searchForIterator(base, filter, controls,
+				mapper, processor));
+	}
+
+	/**
+	 * Exposes a raw {@link CloseableIterator} as a
+	 * {@link ParameterizedCloseableIterator}.
+	 */
+	private static final class ParameterizedCloseableIteratorAdapter<T> implements
+			ParameterizedCloseableIterator<T> {
+
+		private final CloseableIterator target;
+
+		public ParameterizedCloseableIteratorAdapter(CloseableIterator target) {
+			this.target = target;
+		}
+
+		public boolean hasNext() {
+			return target.hasNext();
+		}
+
+		@SuppressWarnings("unchecked")
+		public T next() {
+			return (T) target.next();
+		}
+
+		public void remove() {
+			target.remove();
+		}
+
+		public void close() {
+			target.close();
+		}
+	}
 }
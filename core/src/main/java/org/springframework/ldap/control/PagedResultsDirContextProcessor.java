@@ -108,6 +108,24 @@ public class PagedResultsDirContextProcessor extends AbstractFallbackRequestAndR
 		return resultSize;
 	}
 
+	/**
+	 * Check whether there are more results to retrieve. This is the case when
+	 * the server has returned a non-empty cookie in response to the last
+	 * search.
+	 * 
+	 * @return <code>true</code> if another search using this instance will
+	 * return more results, <code>false</code> otherwise.
+	 * @since 1.3.2
+	 */
+	public boolean hasMore() {
+		if (cookie == null) {
+			return false;
+		}
+
+		byte[] actualCookie = cookie.getCookie();
+		return actualCookie != null && actualCookie.length > 0;
+	}
+
 	/*
 	 * @see
 	 * org.springframework.ldap.control.AbstractRequestControlDirContextProcessor
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2005-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.ldap.control;
+
+/**
+ * Callback interface notified after each page has been retrieved in a paged
+ * search performed using
+ * {@link org.springframework.ldap.core.LdapTemplate#searchPaged(org.springframework.ldap.core.SearchExecutor, org.springframework.ldap.core.NameClassPairCallbackHandler, int, PagedResultsListener)}.
+ * Typically used for monitoring progress and performance of large exports.
+ * 
+ * @author agent
+ * @since 1.3.2
+ */
+public interface PagedResultsListener {
+
+	/**
+	 * Called when all entries in a page have been passed to the callback
+	 * handler.
+	 * 
+	 * @param statistics information about the page just processed.
+	 */
+	void pageProcessed(PagedResultsStatistics statistics);
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2005-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.ldap.control;
+
+import org.apache.commons.lang.builder.ToStringBuilder;
+
+/**
+ * Statistics for one page retrieved in a paged search performed using
+ * {@link org.springframework.ldap.core.LdapTemplate#searchPaged(org.springframework.ldap.core.SearchExecutor, org.springframework.ldap.core.NameClassPairCallbackHandler, int, PagedResultsListener)}.
+ * 
+ * @author agent
+ * @since 1.3.2
+ */
+public class PagedResultsStatistics {
+
+	private final int pageNumber;
+
+	private final int entryCount;
+
+	private final long elapsedTime;
+
+	private final int resultSize;
+
+	private final boolean lastPage;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param pageNumber the number of the page, starting with 1.
+	 * @param entryCount the number of entries received in the page.
+	 * @param elapsedTime the time in milliseconds it took to retrieve and
+	 * process the page.
+	 * @param resultSize the estimated total result size, as reported by the
+	 * server.
+	 * @param lastPage <code>true</code> if this was the last page.
+	 */
+	public PagedResultsStatistics(int pageNumber, int entryCount, long elapsedTime, int resultSize, boolean lastPage) {
+		this.pageNumber = pageNumber;
+		this.entryCount = entryCount;
+		this.elapsedTime = elapsedTime;
+		this.resultSize = resultSize;
+		this.lastPage = lastPage;
+	}
+
+	/**
+	 * Get the number of this page.
+	 * 
+	 * @return the page number, starting with 1 for the first page.
+	 */
+	public int getPageNumber() {
+		return pageNumber;
+	}
+
+	/**
+	 * Get the number of entries received in this page.
+	 * 
+	 * @return the number of entries passed to the callback handler for this
+	 * page.
+	 */
+	public int getEntryCount() {
+		return entryCount;
+	}
+
+	/**
+	 * Get the time it took to retrieve this page, including the time spent in
+	 * the callback handler.
+	 * 
+	 * @return the elapsed time in milliseconds.
+	 */
+	public long getElapsedTime() {
+		return elapsedTime;
+	}
+
+	/**
+	 * Get the total estimated number of entries matching the search, as
+	 * reported by the server along with this page. Note that this value is
+	 * optional for the LDAP server to return.
+	 * 
+	 * @return the estimated result size, or 0 if not reported by the server.
+	 */
+	public int getResultSize() {
+		return resultSize;
+	}
+
+	/**
+	 * Check whether this was the last page of the search.
+	 * 
+	 * @return <code>true</code> if no more pages will be retrieved.
+	 */
+	public boolean isLastPage() {
+		return lastPage;
+	}
+
+	/*
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString() {
+		return new ToStringBuilder(this).append("pageNumber", pageNumber).append("entryCount", entryCount).append(
+				"elapsedTime", elapsedTime).append("resultSize", resultSize).append("lastPage", lastPage).toString();
+	}
+}
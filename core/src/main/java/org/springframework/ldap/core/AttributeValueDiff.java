@@ -0,0 +1,315 @@
+/*
+ * Copyright 2005-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.ldap.core;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.naming.NamingException;
+import javax.naming.directory.Attribute;
+import javax.naming.directory.BasicAttribute;
+
+/**
+ * Computes the values added to and removed from a multi-value
+ * {@link Attribute} in time linear to the number of values, using hashing
+ * rather than the pairwise comparisons of {@link BasicAttribute}. Values are
+ * compared the same way as by {@link BasicAttribute}, i.e. using
+ * <code>equals</code>, with arrays (e.g. binary values) compared element by
+ * element.
+ * <p>
+ * The result is the same as when removing each value of the changed attribute
+ * from a copy of the original attribute: each changed value cancels out one
+ * occurrence of an equal original value; changed values with no remaining
+ * match are added, original values not cancelled out are removed. The
+ * resulting values keep their relative order.
+ * 
+ * @author agent
+ * @since 1.3.2
+ */
+final class AttributeValueDiff {
+
+	private final Attribute originalAttribute;
+
+	private final List addedValues = new ArrayList();
+
+	private final List removedValues = new ArrayList();
+
+	/**
+	 * Compute the difference between the supplied attributes.
+	 * 
+	 * @param originalAttribute the original attribute.
+	 * @param changedAttribute the changed attribute.
+	 * @throws NamingException if thrown when accessing the attribute values.
+	 */
+	public AttributeValueDiff(Attribute originalAttribute, Attribute changedAttribute) throws NamingException {
+		this.originalAttribute = originalAttribute;
+
+		int originalSize = originalAttribute.size();
+		Map remaining = new HashMap(originalSize * 4 / 3 + 1);
+		for (int i = 0; i < originalSize; i++) {
+			increment(remaining, new ValueKey(originalAttribute.get(i)));
+		}
+
+		Map matched = new HashMap();
+		for (int i = 0; i < changedAttribute.size(); i++) {
+			Object value = changedAttribute.get(i);
+			ValueKey key = new ValueKey(value);
+			if (decrement(remaining, key)) {
+				increment(matched, key);
+			}
+			else {
+				addedValues.add(value);
+			}
+		}
+
+		// The first occurrences of each original value are the ones that
+		// were matched
+		for (int i = 0; i < originalSize; i++) {
+			Object value = originalAttribute.get(i);
+			if (!decrement(matched, new ValueKey(value))) {
+				removedValues.add(value);
+			}
+		}
+	}
+
+	private static void increment(Map counts, ValueKey key) {
+		int[] count = (int[]) counts.get(key);
+		if (count == null) {
+			counts.put(key, new int[] { 1 });
+		}
+		else {
+			count[0]++;
+		}
+	}
+
+	private static boolean decrement(Map counts, ValueKey key) {
+		int[] count = (int[]) counts.get(key);
+		if (count == null || count[0] == 0) {
+			return false;
+		}
+		count[0]--;
+		return true;
+	}
+
+	/**
+	 * @return <code>true</code> if the attributes have equal values.
+	 */
+	public boolean isEmpty() {
+		return addedValues.isEmpty() && removedValues.isEmpty();
+	}
+
+	/**
+	 * @return the added values, in the order of the changed attribute.
+	 */
+	public List getAddedValues() {
+		return addedValues;
+	}
+
+	/**
+	 * @return the removed values, in the order of the original attribute.
+	 */
+	public List getRemovedValues() {
+		return removedValues;
+	}
+
+	/**
+	 * @return an unordered attribute with the added values, or
+	 * <code>null</code> if there are none.
+	 */
+	public Attribute getAddedAttribute() {
+		return createAttribute(addedValues, false);
+	}
+
+	/**
+	 * @return an attribute with the removed values, ordered if the original
+	 * attribute is, or <code>null</code> if there are none.
+	 */
+	public Attribute getRemovedAttribute() {
+		return createAttribute(removedValues, originalAttribute.isOrdered());
+	}
+
+	private Attribute createAttribute(List values, boolean ordered) {
+		if (values.isEmpty()) {
+			return null;
+		}
+
+		ValueListAttribute attribute = new ValueListAttribute(originalAttribute.getID(), ordered);
+		attribute.addAll(values);
+		return attribute;
+	}
+
+	/**
+	 * Determine whether two unordered attributes hold equal values. Equivalent
+	 * to {@link BasicAttribute#equals(Object)} for attributes without
+	 * duplicate values, but in linear time.
+	 * 
+	 * @param attribute the first attribute.
+	 * @param other the second attribute, may be <code>null</code>.
+	 * @return <code>true</code> if the attributes are equal.
+	 * @throws NamingException if thrown when accessing the attribute values.
+	 */
+	public static boolean equalValues(Attribute attribute, Attribute other) throws NamingException {
+		if (other == null || attribute.isOrdered() || other.isOrdered()
+				|| !attribute.getID().equals(other.getID()) || attribute.size() != other.size()) {
+			return attribute.equals(other);
+		}
+
+		return new AttributeValueDiff(other, attribute).isEmpty();
+	}
+
+	/**
+	 * Create an attribute holding the supplied values in linear time. If the
+	 * attribute is unordered duplicate values are dropped, like
+	 * {@link BasicAttribute#add(Object)} does.
+	 * 
+	 * @param id the attribute id.
+	 * @param values the values, may be <code>null</code>.
+	 * @param ordered whether the attribute is ordered.
+	 * @return a new attribute.
+	 */
+	public static BasicAttribute createAttribute(String id, Object[] values, boolean ordered) {
+		ValueListAttribute attribute = new ValueListAttribute(id, ordered);
+		if (values == null) {
+			return attribute;
+		}
+
+		List distinctValues = new ArrayList(values.length);
+		if (ordered) {
+			for (int i = 0; i < values.length; i++) {
+				distinctValues.add(values[i]);
+			}
+		}
+		else {
+			Set seen = new HashSet(values.length * 4 / 3 + 1);
+			for (int i = 0; i < values.length; i++) {
+				if (seen.add(new ValueKey(values[i]))) {
+					distinctValues.add(values[i]);
+				}
+			}
+		}
+		attribute.addAll(distinctValues);
+		return attribute;
+	}
+
+	/**
+	 * Wraps an attribute value, providing <code>equals</code> and
+	 * <code>hashCode</code> consistent with how {@link BasicAttribute}
+	 * compares values.
+	 */
+	private static final class ValueKey {
+		private final Object value;
+
+		private final int hashCode;
+
+		private ValueKey(Object value) {
+			this.value = value;
+			this.hashCode = hash(value);
+		}
+
+		private static int hash(Object value) {
+			if (value == null) {
+				return 0;
+			}
+
+			if (value instanceof byte[]) {
+				// Same as the generic array hash below, without boxing
+				byte[] bytes = (byte[]) value;
+				int result = 1;
+				for (int i = 0; i < bytes.length; i++) {
+					result = 31 * result + bytes[i];
+				}
+				return result;
+			}
+
+			if (value.getClass().isArray()) {
+				int result = 1;
+				int length = Array.getLength(value);
+				for (int i = 0; i < length; i++) {
+					Object element = Array.get(value, i);
+					result = 31 * result + (element == null ? 0 : element.hashCode());
+				}
+				return result;
+			}
+
+			return value.hashCode();
+		}
+
+		public int hashCode() {
+			return hashCode;
+		}
+
+		public boolean equals(Object obj) {
+			if (!(obj instanceof ValueKey)) {
+				return false;
+			}
+
+			Object other = ((ValueKey) obj).value;
+			if (value == other) {
+				return true;
+			}
+			if (value == null || other == null) {
+				return false;
+			}
+			if (value.getClass().isArray() && other.getClass().isArray()) {
+				return arrayEquals(value, other);
+			}
+			return value.equals(other);
+		}
+
+		private static boolean arrayEquals(Object array, Object other) {
+			int length = Array.getLength(array);
+			if (length != Array.getLength(other)) {
+				return false;
+			}
+			for (int i = 0; i < length; i++) {
+				Object element = Array.get(array, i);
+				Object otherElement = Array.get(other, i);
+				if (element == null || otherElement == null) {
+					if (element != otherElement) {
+						return false;
+					}
+				}
+				else if (!element.equals(otherElement)) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * A {@link BasicAttribute} that may be populated in bulk with values
+	 * already known to be distinct, avoiding the linear duplicate check of
+	 * {@link BasicAttribute#add(Object)} for each value.
+	 */
+	private static final class ValueListAttribute extends BasicAttribute {
+		private static final long serialVersionUID = -3718263398434451733L;
+
+		private ValueListAttribute(String id, boolean ordered) {
+			super(id, ordered);
+		}
+
+		private void addAll(List newValues) {
+			this.values.addAll(newValues);
+		}
+	}
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2005-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.ldap.core;
+
+import java.util.Iterator;
+
+/**
+ * An {@link Iterator} holding on to underlying resources (typically a
+ * <code>DirContext</code> and a <code>NamingEnumeration</code>) that need to
+ * be released when iteration is done. The resources will be released
+ * automatically once the iterator is exhausted or an exception is thrown, but
+ * if the client stops iterating before that {@link #close()} <b>must</b> be
+ * called, preferably in a <code>finally</code> block:
+ * 
+ * <pre>
+ * CloseableIterator it = ldapTemplate.searchForIterator(base, filter, mapper);
+ * try {
+ * 	while (it.hasNext()) {
+ * 		Person person = (Person) it.next();
+ * 		// Process person
+ * 	}
+ * }
+ * finally {
+ * 	it.close();
+ * }
+ * </pre>
+ * 
+ * @see LdapOperations#searchForIterator(SearchExecutor,
+ * CollectingNameClassPairCallbackHandler, DirContextProcessor)
+ * 
+ * @author agent
+ * @since 1.3.2
+ */
+public interface CloseableIterator extends Iterator {
+
+	/**
+	 * Release all resources held by this iterator. Calling this method on an
+	 * already closed iterator has no effect. After this method has been called
+	 * {@link #hasNext()} will return <code>false</code>.
+	 * 
+	 * @throws org.springframework.ldap.NamingException if the post processing
+	 * of the <code>DirContext</code> fails.
+	 */
+	void close();
+}
@@ -20,13 +20,31 @@ import java.io.StringReader;
 import org.springframework.ldap.core.DnParserImpl;
 
 /**
- * A factory for creating DnParser instances. The actual implementation of
- * DnParser is generated using javacc and should not be constructed directly.
+ * A factory for creating DnParser instances. The implementations of DnParser
+ * should not be constructed directly.
+ * <p>
+ * By default a hand-written single pass parser is used, which handles common
+ * DNs considerably faster than the parser generated using javacc and falls
+ * back to the generated parser for any input it does not recognize. The
+ * generated parser may be used exclusively by setting the
+ * {@link #USE_JAVACC_PARSER_PROPERTY} System property to <code>true</code>,
+ * or by calling {@link #setUseJavaCCParser(boolean)}.
  * 
  * @author Mattias Hellborg Arthursson
  * 
  */
 public class DefaultDnParserFactory {
+    /**
+     * System property that, if <code>true</code>, makes this factory create
+     * only parsers generated using javacc.
+     * 
+     * @since 1.3.2
+     */
+    public static final String USE_JAVACC_PARSER_PROPERTY = "org.springframework.ldap.core.useJavaCCDnParser";
+
+    private static volatile boolean useJavaCCParser = Boolean
+            .getBoolean(USE_JAVACC_PARSER_PROPERTY);
+
     /**
      * Create a new DnParser instance.
      * 
@@ -35,6 +53,30 @@ public class DefaultDnParserFactory {
      * @return a new DnParser instance for parsing the supplied DN string.
      */
     public static DnParser createDnParser(String string) {
-        return new DnParserImpl(new StringReader(string));
+        if (useJavaCCParser) {
+            return new DnParserImpl(new StringReader(string));
+        }
+        return new FastDnParser(string);
+    }
+
+    /**
+     * Specify whether the parser generated using javacc should be used
+     * instead of the hand-written parser. Default is <code>false</code>,
+     * unless the {@link #USE_JAVACC_PARSER_PROPERTY} System property is set.
+     * 
+     * @param useJavaCCParser
+     *            <code>true</code> to always use the javacc parser.
+     * @since 1.3.2
+     */
+    public static void setUseJavaCCParser(boolean useJavaCCParser) {
+        DefaultDnParserFactory.useJavaCCParser = useJavaCCParser;
+    }
+
+    /**
+     * @return <code>true</code> if the javacc parser is always used.
+     * @since 1.3.2
+     */
+    public static boolean isUseJavaCCParser() {
+        return useJavaCCParser;
     }
 }
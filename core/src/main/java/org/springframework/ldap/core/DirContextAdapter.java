@@ -17,9 +17,11 @@
 package org.springframework.ldap.core;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
 
@@ -37,7 +39,6 @@ import javax.naming.directory.DirContext;
 import javax.naming.directory.ModificationItem;
 import javax.naming.directory.SearchControls;
 
-import org.apache.commons.lang.ArrayUtils;
 import org.apache.commons.lang.builder.EqualsBuilder;
 import org.apache.commons.lang.builder.HashCodeBuilder;
 import org.apache.commons.logging.Log;
@@ -93,6 +94,12 @@ public class DirContextAdapter implements DirContextOperations {
 
 	private DistinguishedName dn;
 
+	/**
+	 * The DN as received from the directory, kept unparsed until the
+	 * {@link DistinguishedName} is actually needed.
+	 */
+	private String unparsedDn;
+
 	private DistinguishedName base;
 
 	private boolean updateMode = false;
@@ -170,7 +177,11 @@ public class DirContextAdapter implements DirContextOperations {
 		else {
 			this.dn = new DistinguishedName();
 		}
-		if (base != null) {
+		if (base instanceof DistinguishedName && ((DistinguishedName) base).isImmutable()) {
+			// Safe to share - it will never be modified
+			this.base = (DistinguishedName) base;
+		}
+		else if (base != null) {
 			this.base = new DistinguishedName(base);
 		}
 		else {
@@ -192,10 +203,40 @@ public class DirContextAdapter implements DirContextOperations {
 	protected DirContextAdapter(DirContextAdapter master) {
 		this.originalAttrs = (Attributes) master.originalAttrs.clone();
 		this.dn = master.dn;
-		this.updatedAttrs = (Attributes) master.updatedAttrs.clone();
+		this.unparsedDn = master.unparsedDn;
+		if (master.updatedAttrs != null) {
+			this.updatedAttrs = (Attributes) master.updatedAttrs.clone();
+		}
 		this.updateMode = master.updateMode;
 	}
 
+	/**
+	 * Create a new adapter from the supplied attributes and DN string, as
+	 * received in e.g. a search result. The DN string will not be parsed until
+	 * the DN of the adapter is actually requested, and the attributes are
+	 * used as-is, without copying. An adapter that is only read from will
+	 * thus never pay the cost of parsing its DN.
+	 * 
+	 * @param attrs the attributes.
+	 * @param dnString the DN string. Must be syntactically correct, or an
+	 * exception will be thrown when the DN is first requested.
+	 * @param base the base name. If this is an immutable
+	 * {@link DistinguishedName} it will be shared rather than copied.
+	 * @param referralUrl the referral url (if this instance results from a
+	 * referral).
+	 * @return a new adapter.
+	 * @since 1.3.2
+	 */
+	public static DirContextAdapter fromUnparsedDn(Attributes attrs, String dnString, Name base, String referralUrl) {
+		DirContextAdapter adapter = new DirContextAdapter(attrs, null, base, referralUrl);
+		if (StringUtils.hasLength(dnString)) {
+			adapter.dn = null;
+			adapter.unparsedDn = dnString;
+		}
+
+		return adapter;
+	}
+
 	/**
 	 * Sets the update mode. The update mode should be <code>false</code> for a
 	 * new entry and <code>true</code> for an existing entry that is being
@@ -206,8 +247,26 @@ public class DirContextAdapter implements DirContextOperations {
 	public void setUpdateMode(boolean mode) {
 		this.updateMode = mode;
 		if (updateMode) {
+			// Will be allocated on the first modification
+			updatedAttrs = null;
+		}
+	}
+
+	private Attributes getUpdatedAttrs() {
+		if (updatedAttrs == null) {
 			updatedAttrs = new BasicAttributes(true);
 		}
+
+		return updatedAttrs;
+	}
+
+	private DistinguishedName getDistinguishedName() {
+		if (dn == null) {
+			dn = new DistinguishedName(unparsedDn);
+			unparsedDn = null;
+		}
+
+		return dn;
 	}
 
 	/*
@@ -227,7 +286,7 @@ public class DirContextAdapter implements DirContextOperations {
 
 		NamingEnumeration attributesEnumeration;
 		if (isUpdateMode()) {
-			attributesEnumeration = updatedAttrs.getAll();
+			attributesEnumeration = getUpdatedAttrs().getAll();
 		}
 		else {
 			attributesEnumeration = originalAttrs.getAll();
@@ -273,7 +332,7 @@ public class DirContextAdapter implements DirContextOperations {
 		List tmpList = new LinkedList();
 		NamingEnumeration attributesEnumeration = null;
 		try {
-			attributesEnumeration = updatedAttrs.getAll();
+			attributesEnumeration = getUpdatedAttrs().getAll();
 
 			// find attributes that have been changed, removed or added
 			while (attributesEnumeration.hasMore()) {
@@ -315,7 +374,7 @@ public class DirContextAdapter implements DirContextOperations {
 			List modificationList) throws NamingException {
 		Attribute currentAttribute = originalAttrs.get(changedAttr.getID());
 
-		if (changedAttr.equals(currentAttribute)) {
+		if (AttributeValueDiff.equalValues(changedAttr, currentAttribute)) {
 			// No changes
 			return;
 		}
@@ -365,26 +424,19 @@ public class DirContextAdapter implements DirContextOperations {
 			Attribute changedAttr, List modificationList)
 			throws NamingException {
 
-		Attribute originalClone = (Attribute) originalAttr.clone();
-		Attribute addedValuesAttribute = new BasicAttribute(originalAttr
-				.getID());
-
-		for (int i = 0; i < changedAttr.size(); i++) {
-			Object attributeValue = changedAttr.get(i);
-			if (!originalClone.remove(attributeValue)) {
-				addedValuesAttribute.add(attributeValue);
-			}
-		}
+		// Values present in both attributes cancel out; the remaining values
+		// in the original must be the ones that were removed.
+		AttributeValueDiff diff = new AttributeValueDiff(originalAttr,
+				changedAttr);
 
-		// We have now traversed and removed all values from the original that
-		// were also present in the new values. The remaining values in the
-		// original must be the ones that were removed.
-		if (originalClone.size() > 0) {
+		Attribute removedValuesAttribute = diff.getRemovedAttribute();
+		if (removedValuesAttribute != null) {
 			modificationList.add(new ModificationItem(
-					DirContext.REMOVE_ATTRIBUTE, originalClone));
+					DirContext.REMOVE_ATTRIBUTE, removedValuesAttribute));
 		}
 
-		if (addedValuesAttribute.size() > 0) {
+		Attribute addedValuesAttribute = diff.getAddedAttribute();
+		if (addedValuesAttribute != null) {
 			modificationList.add(new ModificationItem(DirContext.ADD_ATTRIBUTE,
 					addedValuesAttribute));
 		}
@@ -424,7 +476,7 @@ public class DirContextAdapter implements DirContextOperations {
 	private boolean isChanged(String name, Object[] values, boolean orderMatters) {
 
 		Attribute orig = originalAttrs.get(name);
-		Attribute prev = updatedAttrs.get(name);
+		Attribute prev = updatedAttrs != null ? updatedAttrs.get(name) : null;
 
 		// values == null and values.length == 0 is treated the same way
 		boolean emptyNewValue = (values == null || values.length == 0);
@@ -461,6 +513,16 @@ public class DirContextAdapter implements DirContextOperations {
 
 		// Check contents of arrays
 
+		// Look up values in a set rather than scanning the array for each
+		// value when order does not matter
+		Set valueSet = null;
+		if (!orderMatters) {
+			valueSet = new HashSet(values.length * 4 / 3 + 1);
+			for (int i = 0; i < values.length; i++) {
+				valueSet.add(values[i]);
+			}
+		}
+
 		// Order DOES matter, e.g. first names
 		try {
 			for (int i = 0; i < orig.size(); i++) {
@@ -477,7 +539,7 @@ public class DirContextAdapter implements DirContextOperations {
 				}
 				else {
 					// check all strings
-					if (!ArrayUtils.contains(values, obj)) {
+					if (!valueSet.contains(obj)) {
 						return true;
 					}
 				}
@@ -507,7 +569,7 @@ public class DirContextAdapter implements DirContextOperations {
 					}
 					else {
 						// check all strings
-						if (!ArrayUtils.contains(values, obj)) {
+						if (!valueSet.contains(obj)) {
 							return true;
 						}
 					}
@@ -602,7 +664,7 @@ public class DirContextAdapter implements DirContextOperations {
 			if (value != null) {
 				attribute.add(value);
 			}
-			updatedAttrs.put(attribute);
+			getUpdatedAttrs().put(attribute);
 		}
 	}
 
@@ -629,12 +691,12 @@ public class DirContextAdapter implements DirContextOperations {
 			}
 		}
 		else if (updateMode) {
-			Attribute attr = updatedAttrs.get(name);
+			Attribute attr = getUpdatedAttrs().get(name);
 			if (attr == null) {
 				if (originalAttrs.get(name) == null) {
 					// No match in the original attributes -
 					// add a new Attribute to updatedAttrs
-					updatedAttrs.put(name, value);
+					getUpdatedAttrs().put(name, value);
 				}
 				else {
 					// The attribute exists in the original attributes - clone
@@ -643,7 +705,7 @@ public class DirContextAdapter implements DirContextOperations {
 					if (addIfDuplicateExists || !attr.contains(value)) {
 						attr.add(value);
 					}
-					updatedAttrs.put(attr);
+					getUpdatedAttrs().put(attr);
 				}
 			}
 			else {
@@ -670,12 +732,12 @@ public class DirContextAdapter implements DirContextOperations {
 			}
 		}
 		else if (updateMode) {
-			Attribute attr = updatedAttrs.get(name);
+			Attribute attr = getUpdatedAttrs().get(name);
 			if (attr == null) {
 				if (originalAttrs.get(name) != null) {
 					attr = (Attribute) originalAttrs.get(name).clone();
 					attr.remove(value);
-					updatedAttrs.put(attr);
+					getUpdatedAttrs().put(attr);
 				}
 			}
 			else {
@@ -700,11 +762,8 @@ public class DirContextAdapter implements DirContextOperations {
 	 */
 	public void setAttributeValues(String name, Object[] values,
 			boolean orderMatters) {
-		Attribute a = new BasicAttribute(name, orderMatters);
-
-		for (int i = 0; values != null && i < values.length; i++) {
-			a.add(values[i]);
-		}
+		Attribute a = AttributeValueDiff.createAttribute(name, values,
+				orderMatters);
 
 		// only change the original attribute if not in update mode
 		if (!updateMode && values != null && values.length > 0) {
@@ -714,7 +773,7 @@ public class DirContextAdapter implements DirContextOperations {
 
 		// possible to set an already existing attribute to an empty array
 		if (updateMode && isChanged(name, values, orderMatters)) {
-			updatedAttrs.put(a);
+			getUpdatedAttrs().put(a);
 		}
 	}
 
@@ -725,7 +784,7 @@ public class DirContextAdapter implements DirContextOperations {
 		NamingEnumeration attributesEnumeration = null;
 
 		try {
-			attributesEnumeration = updatedAttrs.getAll();
+			attributesEnumeration = getUpdatedAttrs().getAll();
 
 			// find what to update
 			while (attributesEnumeration.hasMore()) {
@@ -749,7 +808,7 @@ public class DirContextAdapter implements DirContextOperations {
 		}
 
 		// Reset the attributes to be updated
-		updatedAttrs = new BasicAttributes(true);
+		updatedAttrs = null;
 	}
 
 	/*
@@ -817,7 +876,7 @@ public class DirContextAdapter implements DirContextOperations {
 			originalAttrs.put(attribute);
 		}
 		else {
-			updatedAttrs.put(attribute);
+			getUpdatedAttrs().put(attribute);
 		}
 	}
 
@@ -1262,7 +1321,7 @@ public class DirContextAdapter implements DirContextOperations {
 	 * @see javax.naming.Context#getNameInNamespace()
 	 */
 	public String getNameInNamespace() {
-		DistinguishedName result = new DistinguishedName(dn);
+		DistinguishedName result = new DistinguishedName(getDistinguishedName());
 		result.prepend(base);
 		return result.toString();
 	}
@@ -1273,7 +1332,7 @@ public class DirContextAdapter implements DirContextOperations {
 	 * @see org.springframework.ldap.support.DirContextOperations#getDn()
 	 */
 	public Name getDn() {
-		return new DistinguishedName(dn);
+		return new DistinguishedName(getDistinguishedName());
 	}
 
 	/*
@@ -1286,6 +1345,7 @@ public class DirContextAdapter implements DirContextOperations {
 	public final void setDn(Name dn) {
 		if (!updateMode) {
 			this.dn = new DistinguishedName(dn.toString());
+			this.unparsedDn = null;
 		}
 		else {
 			throw new IllegalStateException(
@@ -1303,6 +1363,8 @@ public class DirContextAdapter implements DirContextOperations {
 		if (obj == null || obj.getClass() != this.getClass()) {
 			return false;
 		}
+		materializeState();
+		((DirContextAdapter) obj).materializeState();
 		return EqualsBuilder.reflectionEquals(this, obj);
 	}
 
@@ -1310,9 +1372,22 @@ public class DirContextAdapter implements DirContextOperations {
 	 * @see Object#hashCode()
 	 */
 	public int hashCode() {
+		materializeState();
 		return HashCodeBuilder.reflectionHashCode(this);
 	}
 
+	/**
+	 * Bring lazily initialized state into its canonical form, so that
+	 * reflective comparison does not depend on which parts of an instance
+	 * happen to have been accessed.
+	 */
+	private void materializeState() {
+		getDistinguishedName();
+		if (updateMode) {
+			getUpdatedAttrs();
+		}
+	}
+
 	/**
 	 * @see java.lang.Object#toString()
 	 */
@@ -1320,8 +1395,8 @@ public class DirContextAdapter implements DirContextOperations {
 		StringBuffer buf = new StringBuffer();
 		buf.append(getClass().getName());
 		buf.append(":");
-		if (dn != null) {
-			buf.append(" dn=" + dn);
+		if (dn != null || unparsedDn != null) {
+			buf.append(" dn=" + getDistinguishedName());
 		}
 		buf.append(" {");
 
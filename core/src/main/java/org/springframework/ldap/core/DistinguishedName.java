@@ -20,9 +20,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.ListIterator;
 
 import javax.naming.CompositeName;
 import javax.naming.InvalidNameException;
@@ -154,11 +152,21 @@ public class DistinguishedName implements Name {
 
 	private List names;
 
+	/**
+	 * Set on instances created by {@link #immutableDistinguishedName()}, for
+	 * which the hash code and compact string are cached.
+	 */
+	private transient boolean immutable = false;
+
+	private transient int cachedHashCode = 0;
+
+	private transient String cachedCompactString;
+
 	/**
 	 * Construct a new DistinguishedName with no components.
 	 */
 	public DistinguishedName() {
-		names = new LinkedList();
+		names = new ArrayList();
 	}
 
 	/**
@@ -168,7 +176,7 @@ public class DistinguishedName implements Name {
 	 */
 	public DistinguishedName(String path) {
 		if (StringUtils.isBlank(path)) {
-			names = new LinkedList();
+			names = new ArrayList();
 		}
 		else {
 			parse(path);
@@ -199,7 +207,12 @@ public class DistinguishedName implements Name {
 			parse(LdapUtils.convertCompositeNameToString((CompositeName) name));
 			return;
 		}
-		names = new LinkedList();
+		if (name instanceof DistinguishedName) {
+			// No need to encode and re-parse each rdn
+			names = copyOf(((DistinguishedName) name).names);
+			return;
+		}
+		names = new ArrayList();
 		for (int i = 0; i < name.size(); i++) {
 			names.add(new LdapRdn(name.get(i)));
 		}
@@ -212,6 +225,25 @@ public class DistinguishedName implements Name {
 	 * @param path the LDAP path to parse.
 	 */
 	protected void parse(String path) {
+		if (DistinguishedNameCache.isParseThroughCache() && !StringUtils.isBlank(path)) {
+			this.names = copyOf(DistinguishedNameCache.getSharedInstance().getDistinguishedName(path).names);
+			return;
+		}
+		this.names = doParse(path);
+	}
+
+	/**
+	 * Parse the supplied String into an immutable instance, bypassing any
+	 * cache.
+	 * 
+	 * @param path the LDAP path to parse.
+	 * @return an immutable DistinguishedName.
+	 */
+	static DistinguishedName parseImmutable(String path) {
+		return new DistinguishedName(doParse(path)).immutableDistinguishedName();
+	}
+
+	private static List doParse(String path) {
 		DnParser parser = DefaultDnParserFactory.createDnParser(unmangleCompositeName(path));
 		DistinguishedName dn;
 		try {
@@ -223,7 +255,24 @@ public class DistinguishedName implements Name {
 		catch (TokenMgrError e) {
 			throw new BadLdapGrammarException("Failed to parse DN", e);
 		}
-		this.names = dn.names;
+		return dn.names;
+	}
+
+	/**
+	 * Create a mutable deep copy of a list of {@link LdapRdn}s.
+	 */
+	private static List copyOf(List rdns) {
+		List result = new ArrayList(rdns.size());
+		for (Iterator iterator = rdns.iterator(); iterator.hasNext();) {
+			LdapRdn rdn = (LdapRdn) iterator.next();
+			LdapRdn copy = new LdapRdn();
+			for (Iterator componentIterator = rdn.getComponents().iterator(); componentIterator.hasNext();) {
+				LdapRdnComponent component = (LdapRdnComponent) componentIterator.next();
+				copy.addComponent(new LdapRdnComponent(component.getKey(), component.getValue()));
+			}
+			result.add(copy);
+		}
+		return result;
 	}
 
 	/**
@@ -235,7 +284,7 @@ public class DistinguishedName implements Name {
 	 * @param path Path to check and possibly strip.
 	 * @return A String with the possibly stripped path.
 	 */
-	private String unmangleCompositeName(String path) {
+	private static String unmangleCompositeName(String path) {
 		String tempPath;
 		// Check if CompositeName has mangled the name with quotes
 		if (path.startsWith("\"") && path.endsWith("\"")) {
@@ -314,7 +363,7 @@ public class DistinguishedName implements Name {
 	public String toString() {
 		String spacedFormatting = System.getProperty(SPACED_DN_FORMAT_PROPERTY);
 		if (StringUtils.isBlank(spacedFormatting)) {
-			return format(COMPACT);
+			return toCompactString();
 		}
 		else {
 			return format(NON_COMPACT);
@@ -330,6 +379,14 @@ public class DistinguishedName implements Name {
 	 * of the <code>DistinguishedName</code>.
 	 */
 	public String toCompactString() {
+		if (immutable) {
+			String result = cachedCompactString;
+			if (result == null) {
+				result = format(COMPACT);
+				cachedCompactString = result;
+			}
+			return result;
+		}
 		return format(COMPACT);
 	}
 
@@ -349,21 +406,19 @@ public class DistinguishedName implements Name {
 		if (names.size() == 0)
 			return "";
 
-		StringBuffer buffer = new StringBuffer(256);
+		StringBuffer buffer = new StringBuffer(names.size() * 16);
 
-		ListIterator i = names.listIterator(names.size());
-		while (i.hasPrevious()) {
-			LdapRdn rdn = (LdapRdn) i.previous();
+		for (int i = names.size() - 1; i >= 0; i--) {
+			LdapRdn rdn = (LdapRdn) names.get(i);
 			buffer.append(rdn.getLdapEncoded());
 
 			// add comma, except in last iteration
-			if (i.hasPrevious()) {
+			if (i > 0) {
 				if (compact) {
-					buffer.append(",");
+					buffer.append(',');
 				}
 				else {
 					buffer.append(", ");
-
 				}
 			}
 		}
@@ -486,10 +541,7 @@ public class DistinguishedName implements Name {
 	 * @param path the path to prepend.
 	 */
 	public void prepend(DistinguishedName path) {
-		ListIterator i = path.getNames().listIterator(path.getNames().size());
-		while (i.hasPrevious()) {
-			names.add(0, i.previous());
-		}
+		names.addAll(0, path.getNames());
 	}
 
 	/**
@@ -522,7 +574,10 @@ public class DistinguishedName implements Name {
 	public Object clone() {
 		try {
 			DistinguishedName result = (DistinguishedName) super.clone();
-			result.names = new LinkedList(names);
+			result.names = new ArrayList(names);
+			result.immutable = false;
+			result.cachedHashCode = 0;
+			result.cachedCompactString = null;
 			return result;
 		}
 		catch (CloneNotSupportedException e) {
@@ -543,6 +598,10 @@ public class DistinguishedName implements Name {
 
 		DistinguishedName name = (DistinguishedName) obj;
 
+		if (this.immutable && name.immutable && this.hashCode() != name.hashCode()) {
+			return false;
+		}
+
 		// compare the lists
 		return getNames().equals(name.getNames());
 	}
@@ -551,6 +610,14 @@ public class DistinguishedName implements Name {
 	 * @see java.lang.Object#hashCode()
 	 */
 	public int hashCode() {
+		if (immutable) {
+			int result = cachedHashCode;
+			if (result == 0) {
+				result = this.getClass().hashCode() ^ getNames().hashCode();
+				cachedHashCode = result;
+			}
+			return result;
+		}
 		return this.getClass().hashCode() ^ getNames().hashCode();
 	}
 
@@ -581,7 +648,7 @@ public class DistinguishedName implements Name {
 	 * @see javax.naming.Name#getAll()
 	 */
 	public Enumeration getAll() {
-		LinkedList strings = new LinkedList();
+		List strings = new ArrayList(names.size());
 		for (Iterator iter = names.iterator(); iter.hasNext();) {
 			LdapRdn rdn = (LdapRdn) iter.next();
 			strings.add(rdn.getLdapEncoded());
@@ -606,12 +673,7 @@ public class DistinguishedName implements Name {
 	 * @see javax.naming.Name#getPrefix(int)
 	 */
 	public Name getPrefix(int index) {
-		LinkedList newNames = new LinkedList();
-		for (int i = 0; i < index; i++) {
-			newNames.add(names.get(i));
-		}
-
-		return new DistinguishedName(newNames);
+		return new DistinguishedName(new ArrayList(names.subList(0, index)));
 	}
 
 	/*
@@ -624,12 +686,7 @@ public class DistinguishedName implements Name {
 			throw new ArrayIndexOutOfBoundsException();
 		}
 
-		LinkedList newNames = new LinkedList();
-		for (int i = index; i < names.size(); i++) {
-			newNames.add(names.get(i));
-		}
-
-		return new DistinguishedName(newNames);
+		return new DistinguishedName(new ArrayList(names.subList(index, names.size())));
 	}
 
 	/*
@@ -654,19 +711,14 @@ public class DistinguishedName implements Name {
 			return false;
 		}
 
-		Iterator longiter = names.iterator();
-		Iterator shortiter = start.getNames().iterator();
-
-		while (shortiter.hasNext()) {
-			Object longname = longiter.next();
-			Object shortname = shortiter.next();
-
-			if (!longname.equals(shortname)) {
+		List shortlist = start.getNames();
+		for (int i = 0; i < shortlist.size(); i++) {
+			if (!names.get(i).equals(shortlist.get(i))) {
 				return false;
 			}
 		}
 
-		// All names in shortiter matched.
+		// All names in shortlist matched.
 		return true;
 	}
 
@@ -699,14 +751,9 @@ public class DistinguishedName implements Name {
 		if (shortlist.size() == 0)
 			return false;
 
-		ListIterator longiter = getNames().listIterator(getNames().size());
-		ListIterator shortiter = shortlist.listIterator(shortlist.size());
-
-		while (shortiter.hasPrevious()) {
-			LdapRdn longname = (LdapRdn) longiter.previous();
-			LdapRdn shortname = (LdapRdn) shortiter.previous();
-
-			if (!longname.equals(shortname))
+		int offset = names.size() - shortlist.size();
+		for (int i = shortlist.size() - 1; i >= 0; i--) {
+			if (!names.get(offset + i).equals(shortlist.get(i)))
 				return false;
 		}
 
@@ -829,11 +876,27 @@ public class DistinguishedName implements Name {
 			listWithImmutableRdns.add(rdn.immutableLdapRdn());
 		}
 
-		return new DistinguishedName(Collections.unmodifiableList(listWithImmutableRdns));
+		DistinguishedName result = new DistinguishedName(Collections.unmodifiableList(listWithImmutableRdns));
+		result.immutable = true;
+		return result;
+	}
+
+	/**
+	 * Check whether this instance is immutable, i.e. created by
+	 * {@link #immutableDistinguishedName()}.
+	 * 
+	 * @return <code>true</code> if this instance cannot be modified.
+	 * @since 1.3.2
+	 */
+	boolean isImmutable() {
+		return immutable;
 	}
 
 	/**
 	 * Create an immutable DistinguishedName instance, suitable as a constant.
+	 * As of 1.3.2 the instance is retrieved from the shared
+	 * {@link DistinguishedNameCache}, so the same instance may be returned for
+	 * equal DN strings.
 	 * 
 	 * @param dnString the DN string to parse.
 	 * @return an immutable DistinguishedName corresponding to the supplied DN
@@ -841,6 +904,6 @@ public class DistinguishedName implements Name {
 	 * @since 1.3
 	 */
 	public static final DistinguishedName immutableDistinguishedName(String dnString) {
-		return new DistinguishedName(dnString).immutableDistinguishedName();
+		return DistinguishedNameCache.getSharedInstance().getDistinguishedName(dnString);
 	}
 }
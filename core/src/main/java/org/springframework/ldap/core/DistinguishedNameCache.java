@@ -0,0 +1,280 @@
+/*
+ * Copyright 2005-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.ldap.core;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.Validate;
+
+/**
+ * Bounded cache of parsed, immutable {@link DistinguishedName} instances keyed
+ * by DN string. Useful for DNs that are parsed over and over again, such as
+ * the base path of a <code>ContextSource</code> or the name in namespace of
+ * search results, as it saves both the parsing and the resulting
+ * {@link LdapRdn} and {@link LdapRdnComponent} object graphs.
+ * <p>
+ * The cache is divided into a number of separately locked segments, each
+ * evicting its least recently used entries when full, so concurrent lookups
+ * seldom contend. Hit and miss counts are kept for monitoring the efficiency
+ * of the cache.
+ * <p>
+ * A shared instance is used by
+ * {@link DistinguishedName#immutableDistinguishedName(String)}; its size may
+ * be set using the {@link #CACHE_SIZE_PROPERTY} System property. If
+ * {@link #setParseThroughCache(boolean)} is enabled, all DN strings parsed by
+ * {@link DistinguishedName} will go through the shared cache, with each
+ * <code>DistinguishedName</code> getting a mutable copy of the cached
+ * instance.
+ * 
+ * @author agent
+ * @since 1.3.2
+ */
+public class DistinguishedNameCache {
+
+	/**
+	 * System property specifying the maximum number of entries in the shared
+	 * cache. A size of zero disables the cache.
+	 */
+	public static final String CACHE_SIZE_PROPERTY = "org.springframework.ldap.core.dnCacheSize";
+
+	/**
+	 * System property that, if <code>true</code>, makes all DN strings parsed
+	 * by {@link DistinguishedName} go through the shared cache.
+	 */
+	public static final String PARSE_THROUGH_CACHE_PROPERTY = "org.springframework.ldap.core.parseDnThroughCache";
+
+	/**
+	 * The default maximum size of the shared cache.
+	 */
+	public static final int DEFAULT_MAX_SIZE = 1000;
+
+	private static final int NUMBER_OF_SEGMENTS = 16;
+
+	private static final DistinguishedNameCache sharedInstance = new DistinguishedNameCache(Integer.getInteger(
+			CACHE_SIZE_PROPERTY, DEFAULT_MAX_SIZE).intValue());
+
+	private static volatile boolean parseThroughCache = Boolean.getBoolean(PARSE_THROUGH_CACHE_PROPERTY);
+
+	private final int maxSize;
+
+	private final Segment[] segments;
+
+	/**
+	 * Create a new cache holding at most the specified number of entries.
+	 * 
+	 * @param maxSize the maximum number of cached DNs; zero disables caching.
+	 */
+	public DistinguishedNameCache(int maxSize) {
+		Validate.isTrue(maxSize >= 0, "maxSize must not be negative");
+		this.maxSize = maxSize;
+
+		int numberOfSegments = Math.max(Math.min(NUMBER_OF_SEGMENTS, maxSize), 1);
+		this.segments = new Segment[numberOfSegments];
+		for (int i = 0; i < numberOfSegments; i++) {
+			// Distribute the size so that the total is maxSize
+			int segmentSize = maxSize / numberOfSegments + (i < maxSize % numberOfSegments ? 1 : 0);
+			segments[i] = new Segment(segmentSize);
+		}
+	}
+
+	/**
+	 * Get the shared instance.
+	 * 
+	 * @return the cache used by {@link DistinguishedName}.
+	 */
+	public static DistinguishedNameCache getSharedInstance() {
+		return sharedInstance;
+	}
+
+	/**
+	 * Specify whether all DN strings parsed by {@link DistinguishedName}
+	 * should go through the shared cache. Default is <code>false</code>,
+	 * unless the {@link #PARSE_THROUGH_CACHE_PROPERTY} System property is set.
+	 * This is most efficient when a limited set of DNs is parsed repeatedly;
+	 * when most parsed DNs are unique, the cache will just add overhead.
+	 * 
+	 * @param parseThroughCache <code>true</code> to parse DNs through the
+	 * shared cache.
+	 */
+	public static void setParseThroughCache(boolean parseThroughCache) {
+		DistinguishedNameCache.parseThroughCache = parseThroughCache;
+	}
+
+	/**
+	 * @return <code>true</code> if DNs are parsed through the shared cache.
+	 */
+	public static boolean isParseThroughCache() {
+		return parseThroughCache;
+	}
+
+	/**
+	 * Get the immutable <code>DistinguishedName</code> corresponding to the
+	 * supplied DN string, parsing it if not already cached.
+	 * 
+	 * @param dnString the DN string.
+	 * @return an immutable <code>DistinguishedName</code>, possibly shared.
+	 * @throws org.springframework.ldap.BadLdapGrammarException if the string
+	 * is not a valid DN.
+	 */
+	public DistinguishedName getDistinguishedName(String dnString) {
+		if (StringUtils.isBlank(dnString)) {
+			return DistinguishedName.EMPTY_PATH;
+		}
+
+		if (maxSize == 0) {
+			return DistinguishedName.parseImmutable(dnString);
+		}
+
+		// Parsed keys depend on the case fold setting in effect
+		String keyCaseFold = System.getProperty(DistinguishedName.KEY_CASE_FOLD_PROPERTY);
+
+		Segment segment = segmentFor(dnString);
+		Entry entry;
+		synchronized (segment) {
+			entry = (Entry) segment.map.get(dnString);
+			if (entry != null && StringUtils.equals(entry.keyCaseFold, keyCaseFold)) {
+				segment.hits++;
+				return entry.dn;
+			}
+			segment.misses++;
+		}
+
+		// Parse outside of the lock; concurrent misses for the same string
+		// will produce equal instances, one of which will end up cached.
+		entry = new Entry(DistinguishedName.parseImmutable(dnString), keyCaseFold);
+		synchronized (segment) {
+			segment.map.put(dnString, entry);
+		}
+
+		return entry.dn;
+	}
+
+	private Segment segmentFor(String dnString) {
+		int hash = dnString.hashCode();
+		hash ^= (hash >>> 16);
+		return segments[(hash & 0x7fffffff) % segments.length];
+	}
+
+	/**
+	 * @return the maximum number of entries in this cache.
+	 */
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * @return the current number of entries in this cache.
+	 */
+	public int getSize() {
+		int size = 0;
+		for (int i = 0; i < segments.length; i++) {
+			synchronized (segments[i]) {
+				size += segments[i].map.size();
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * @return the number of lookups that were found in the cache.
+	 */
+	public long getHitCount() {
+		long hits = 0;
+		for (int i = 0; i < segments.length; i++) {
+			synchronized (segments[i]) {
+				hits += segments[i].hits;
+			}
+		}
+		return hits;
+	}
+
+	/**
+	 * @return the number of lookups that required the DN to be parsed.
+	 */
+	public long getMissCount() {
+		long misses = 0;
+		for (int i = 0; i < segments.length; i++) {
+			synchronized (segments[i]) {
+				misses += segments[i].misses;
+			}
+		}
+		return misses;
+	}
+
+	/**
+	 * @return the ratio of lookups found in the cache, or zero if there have
+	 * been no lookups.
+	 */
+	public double getHitRatio() {
+		long hits = getHitCount();
+		long total = hits + getMissCount();
+		return total == 0 ? 0 : (double) hits / total;
+	}
+
+	/**
+	 * Remove all entries from the cache and reset the statistics.
+	 */
+	public void clear() {
+		for (int i = 0; i < segments.length; i++) {
+			synchronized (segments[i]) {
+				segments[i].map.clear();
+				segments[i].hits = 0;
+				segments[i].misses = 0;
+			}
+		}
+	}
+
+	public String toString() {
+		return "DistinguishedNameCache[size=" + getSize() + ", maxSize=" + maxSize + ", hits=" + getHitCount()
+				+ ", misses=" + getMissCount() + "]";
+	}
+
+	private static final class Entry {
+		private final DistinguishedName dn;
+
+		private final String keyCaseFold;
+
+		private Entry(DistinguishedName dn, String keyCaseFold) {
+			this.dn = dn;
+			this.keyCaseFold = keyCaseFold;
+		}
+	}
+
+	/**
+	 * One separately locked part of the cache. All fields are guarded by the
+	 * segment itself.
+	 */
+	private static final class Segment {
+		private final Map map;
+
+		private long hits;
+
+		private long misses;
+
+		private Segment(final int segmentMaxSize) {
+			this.map = new LinkedHashMap(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				protected boolean removeEldestEntry(Map.Entry eldest) {
+					return size() > segmentMaxSize;
+				}
+			};
+		}
+	}
+}
@@ -0,0 +1,364 @@
+/*
+ * Copyright 2005-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.ldap.core;
+
+import java.io.StringReader;
+import java.util.Collections;
+
+/**
+ * Hand-written single pass {@link DnParser}, working directly on the
+ * characters of the DN string rather than going through the token manager and
+ * character stream buffers of the generated {@link DnParserImpl}.
+ * <p>
+ * The accepted grammar is the same as that of {@link DnParserImpl}, i.e. RFC
+ * 2253 with escaped characters, hex pairs, quoted and <code>#</code> hex
+ * string values, and multi-valued RDNs. Values are decoded the same way as by
+ * {@link LdapEncoder#nameDecode(String)}. Anything this parser does not
+ * positively recognize - syntax errors, trailing content, exotic escapes - is
+ * handed over to a {@link DnParserImpl} for the remaining input, so results
+ * and error reporting are identical to those of the JavaCC parser.
+ * <p>
+ * Instances are not thread safe and are intended for parsing one string only.
+ * 
+ * @author agent
+ * @see DefaultDnParserFactory
+ * @since 1.3.2
+ */
+class FastDnParser implements DnParser {
+
+	private final String input;
+
+	private final int length;
+
+	private int pos = 0;
+
+	private final StringBuffer valueBuffer = new StringBuffer();
+
+	/**
+	 * Construct a parser for the specified string.
+	 * 
+	 * @param input the DN string to parse.
+	 */
+	public FastDnParser(String input) {
+		this.input = input;
+		this.length = input.length();
+	}
+
+	public DistinguishedName dn() throws ParseException {
+		int start = pos;
+		DistinguishedName dn = new DistinguishedName();
+		while (true) {
+			LdapRdn rdn = parseRdn();
+			if (rdn == null) {
+				return fallback(start).dn();
+			}
+			dn.add(rdn);
+
+			if (pos == length) {
+				// Rdns are stored with the least significant first
+				Collections.reverse(dn.getNames());
+				return dn;
+			}
+
+			// parseRdn only stops at end of input or at a separator
+			char c = input.charAt(pos);
+			if (c != ',' && c != ';') {
+				return fallback(start).dn();
+			}
+			pos++;
+		}
+	}
+
+	public LdapRdn rdn() throws ParseException {
+		int start = pos;
+		LdapRdn rdn = parseRdn();
+		if (rdn == null || pos != length) {
+			return fallback(start).rdn();
+		}
+		return rdn;
+	}
+
+	private DnParser fallback(int start) {
+		pos = length;
+		return new DnParserImpl(new StringReader(input.substring(start)));
+	}
+
+	/**
+	 * Parse one rdn, leaving the position at the end of input or at a
+	 * following ',' or ';'.
+	 * 
+	 * @return the parsed rdn, or <code>null</code> if the input is not
+	 * recognized.
+	 */
+	private LdapRdn parseRdn() {
+		LdapRdn rdn = new LdapRdn();
+		while (true) {
+			LdapRdnComponent component = parseAttributeTypeAndValue();
+			if (component == null) {
+				return null;
+			}
+			rdn.addComponent(component);
+
+			if (pos < length && input.charAt(pos) == '+') {
+				pos++;
+			}
+			else if (pos == length || input.charAt(pos) == ',' || input.charAt(pos) == ';') {
+				return rdn;
+			}
+			else {
+				return null;
+			}
+		}
+	}
+
+	private LdapRdnComponent parseAttributeTypeAndValue() {
+		skipSpaces();
+
+		String type = parseAttributeType();
+		if (type == null) {
+			return null;
+		}
+
+		skipSpaces();
+		if (pos == length || input.charAt(pos) != '=') {
+			return null;
+		}
+		pos++;
+		skipSpaces();
+
+		if (!parseAttributeValue()) {
+			return null;
+		}
+		skipSpaces();
+
+		return new LdapRdnComponent(type, valueBuffer.toString(), LdapRdnComponent.DONT_DECODE_VALUE);
+	}
+
+	private void skipSpaces() {
+		while (pos < length && input.charAt(pos) == ' ') {
+			pos++;
+		}
+	}
+
+	/**
+	 * Parse an attribute type: either a descriptor or a numeric OID.
+	 */
+	private String parseAttributeType() {
+		int start = pos;
+		if (pos == length) {
+			return null;
+		}
+
+		char c = input.charAt(pos);
+		if (isAlpha(c)) {
+			pos++;
+			while (pos < length && (isAlpha(input.charAt(pos)) || isDigit(input.charAt(pos)) || input.charAt(pos) == '-')) {
+				pos++;
+			}
+		}
+		else if (isDigit(c)) {
+			while (true) {
+				if (pos == length || !isDigit(input.charAt(pos))) {
+					return null;
+				}
+				while (pos < length && isDigit(input.charAt(pos))) {
+					pos++;
+				}
+				if (pos < length - 1 && input.charAt(pos) == '.' && isDigit(input.charAt(pos + 1))) {
+					pos++;
+				}
+				else {
+					break;
+				}
+			}
+		}
+		else {
+			return null;
+		}
+
+		return input.substring(start, pos);
+	}
+
+	/**
+	 * Parse an attribute value into the value buffer, decoding escapes.
+	 * 
+	 * @return <code>true</code> if a value was recognized.
+	 */
+	private boolean parseAttributeValue() {
+		valueBuffer.setLength(0);
+		if (pos == length) {
+			return false;
+		}
+
+		char c = input.charAt(pos);
+		if (c == '"') {
+			return parseQuotedValue();
+		}
+		else if (c == '#') {
+			return parseHexStringValue();
+		}
+		else {
+			return parseStringValue();
+		}
+	}
+
+	/**
+	 * Quoted values keep their quotes; escapes within them are decoded.
+	 */
+	private boolean parseQuotedValue() {
+		valueBuffer.append('"');
+		pos++;
+		int contentStart = pos;
+		while (pos < length) {
+			char c = input.charAt(pos);
+			if (c == '"') {
+				if (pos == contentStart) {
+					return false;
+				}
+				valueBuffer.append(c);
+				pos++;
+				return true;
+			}
+			else if (c == '\\') {
+				if (!appendPair()) {
+					return false;
+				}
+			}
+			else {
+				valueBuffer.append(c);
+				pos++;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Hex string values (<code>#</code> followed by hex pairs) are kept as
+	 * they are.
+	 */
+	private boolean parseHexStringValue() {
+		int start = pos;
+		pos++;
+		while (pos < length - 1 && isHex(input.charAt(pos)) && isHex(input.charAt(pos + 1))) {
+			pos += 2;
+		}
+		if (pos == start + 1) {
+			return false;
+		}
+		valueBuffer.append(input.substring(start, pos));
+		return true;
+	}
+
+	/**
+	 * Unquoted values may not end with an unescaped space. An escaped space is
+	 * only allowed first or last in the value.
+	 */
+	private boolean parseStringValue() {
+		int start = pos;
+		int validEndPos = -1;
+		int validEndLength = 0;
+		while (pos < length) {
+			char c = input.charAt(pos);
+			if (c == '\\') {
+				if (pos < length - 1 && input.charAt(pos + 1) == ' ') {
+					valueBuffer.append(' ');
+					pos += 2;
+					validEndPos = pos;
+					validEndLength = valueBuffer.length();
+					if (pos != start + 2) {
+						break;
+					}
+				}
+				else if (appendPair()) {
+					validEndPos = pos;
+					validEndLength = valueBuffer.length();
+				}
+				else {
+					return false;
+				}
+			}
+			else if (isStringChar(c)) {
+				valueBuffer.append(c);
+				pos++;
+				if (c != ' ') {
+					validEndPos = pos;
+					validEndLength = valueBuffer.length();
+				}
+			}
+			else {
+				break;
+			}
+		}
+
+		if (validEndPos < 0) {
+			return false;
+		}
+
+		// Trailing unescaped spaces are not part of the value
+		pos = validEndPos;
+		valueBuffer.setLength(validEndLength);
+		return true;
+	}
+
+	/**
+	 * Decode a backslash escape at the current position into the value
+	 * buffer. Only escapes that {@link LdapEncoder#nameDecode(String)} handles
+	 * are recognized.
+	 */
+	private boolean appendPair() {
+		if (pos >= length - 1) {
+			return false;
+		}
+
+		char next = input.charAt(pos + 1);
+		if (isEscapable(next)) {
+			valueBuffer.append(next);
+			pos += 2;
+			return true;
+		}
+
+		if (pos < length - 2 && isHex(next) && isHex(input.charAt(pos + 2))) {
+			valueBuffer.append((char) (Character.digit(next, 16) * 16 + Character.digit(input.charAt(pos + 2), 16)));
+			pos += 3;
+			return true;
+		}
+
+		return false;
+	}
+
+	private static boolean isEscapable(char c) {
+		return c == ',' || c == '=' || c == '+' || c == '<' || c == '>' || c == '#' || c == ';' || c == '\\'
+				|| c == '"';
+	}
+
+	private static boolean isStringChar(char c) {
+		return c != ',' && c != '=' && c != '+' && c != '<' && c != '>' && c != '#' && c != ';' && c != '\\'
+				&& c != '"';
+	}
+
+	private static boolean isAlpha(char c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+	}
+
+	private static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+
+	private static boolean isHex(char c) {
+		return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+	}
+}
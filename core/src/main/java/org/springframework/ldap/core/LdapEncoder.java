@@ -51,12 +51,7 @@ public class LdapEncoder {
 
         // Filter encoding table -------------------------------------
 
-        // fill with char itself
-        for (char c = 0; c < filterEscapeTable.length; c++) {
-            filterEscapeTable[c] = String.valueOf(c);
-        }
-
-        // escapes (RFC2254)
+        // escapes (RFC2254) - all other characters are used as they are
         filterEscapeTable['*'] = "\\2a";
         filterEscapeTable['('] = "\\28";
         filterEscapeTable[')'] = "\\29";
@@ -89,28 +84,67 @@ public class LdapEncoder {
      * @return a properly escaped representation of the supplied value.
      */
     public static String filterEncode(String value) {
+        return filterEncode(value, false);
+    }
+
+    /**
+     * Escape a value for use in a filter, optionally leaving any '*' wildcard
+     * characters in place.
+     * <p>
+     * The value is only copied if it actually contains characters that need
+     * to be escaped, in which case the escaped characters are written straight
+     * into a character array of the exact size needed.
+     * 
+     * @param value
+     *            the value to escape.
+     * @param keepWildcards
+     *            <code>true</code> if '*' characters should be kept as
+     *            wildcards rather than escaped.
+     * @return a properly escaped representation of the supplied value.
+     * @since 1.3.2
+     */
+    public static String filterEncode(String value, boolean keepWildcards) {
 
         if (value == null)
             return null;
 
-        // make buffer roomy
-        StringBuffer encodedValue = new StringBuffer(value.length() * 2);
-
         int length = value.length();
 
+        // Find out how much longer the value will get - usually not at all
+        int escapedCount = 0;
+        for (int i = 0; i < length; i++) {
+            if (isFilterEscaped(value.charAt(i), keepWildcards)) {
+                escapedCount++;
+            }
+        }
+
+        if (escapedCount == 0) {
+            return value;
+        }
+
+        // Each escaped character is replaced by three: a backslash and two hex digits
+        char[] encodedValue = new char[length + escapedCount * 2];
+        int position = 0;
+
         for (int i = 0; i < length; i++) {
 
             char c = value.charAt(i);
 
-            if (c < filterEscapeTable.length) {
-                encodedValue.append(filterEscapeTable[c]);
+            if (isFilterEscaped(c, keepWildcards)) {
+                String escaped = filterEscapeTable[c];
+                escaped.getChars(0, escaped.length(), encodedValue, position);
+                position += escaped.length();
             } else {
                 // default: add the char
-                encodedValue.append(c);
+                encodedValue[position++] = c;
             }
         }
 
-        return encodedValue.toString();
+        return new String(encodedValue);
+    }
+
+    private static boolean isFilterEscaped(char c, boolean keepWildcards) {
+        return (c == '*' && !keepWildcards) || c == '(' || c == ')' || c == '\\' || c == 0;
     }
 
     /**
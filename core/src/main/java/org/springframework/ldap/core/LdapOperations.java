@@ -28,6 +28,7 @@ import javax.naming.directory.SearchControls;
 import org.springframework.dao.IncorrectResultSizeDataAccessException;
 import org.springframework.ldap.ContextNotEmptyException;
 import org.springframework.ldap.NamingException;
+import org.springframework.ldap.control.PagedResultsListener;
 import org.springframework.ldap.core.support.AbstractContextSource;
 import org.springframework.ldap.support.LdapUtils;
 
@@ -1518,4 +1519,343 @@ public interface LdapOperations {
 	 * @since 1.3
 	 */
 	Object searchForObject(String base, String filter, ContextMapper mapper);
+
+	/**
+	 * Perform a search operation, returning an iterator that lazily maps each
+	 * found entry as it is requested rather than collecting all results in a
+	 * List. The <code>DirContext</code> used for the search is held by the
+	 * returned iterator and will not be released until the iterator has been
+	 * exhausted or {@link CloseableIterator#close()} has been called. This
+	 * makes it possible to process very large result sets using constant
+	 * memory.
+	 * 
+	 * @param se the SearchExecutor to use for performing the actual search.
+	 * @param mapper the handler used to transform each found entry. Only
+	 * {@link CollectingNameClassPairCallbackHandler#getObjectFromNameClassPair(javax.naming.NameClassPair)}
+	 * will be called.
+	 * @param processor DirContextProcessor for custom pre- and post-processing.
+	 * The post processing will be performed when the iterator is closed.
+	 * @return an iterator over all entries found, as mapped by the supplied
+	 * handler. The iterator <b>must</b> be closed unless it has been exhausted.
+	 * @throws NamingException if any error occurs.
+	 * @since 1.3.2
+	 */
+	CloseableIterator searchForIterator(SearchExecutor se, CollectingNameClassPairCallbackHandler mapper,
+			DirContextProcessor processor) throws NamingException;
+
+	/**
+	 * Search for all objects matching the supplied filter, returning an
+	 * iterator that lazily maps each entry using the supplied ContextMapper.
+	 * See {@link #searchForIterator(SearchExecutor, CollectingNameClassPairCallbackHandler, DirContextProcessor)}
+	 * for details.
+	 * 
+	 * @param base The base DN where the search should begin.
+	 * @param filter The filter to use in the search.
+	 * @param controls The search controls to use in the search. If the
+	 * returnObjFlag is not set in the <code>SearchControls</code>, this method
+	 * will set it automatically, as this is required for the
+	 * <code>ContextMapper</code> to work.
+	 * @param mapper The mapper to use for mapping each entry.
+	 * @param processor The <code>DirContextProcessor</code> to use before and
+	 * after the search.
+	 * @return an iterator over the mapped entries. The iterator <b>must</b> be
+	 * closed unless it has been exhausted.
+	 * @throws NamingException if any error occurs.
+	 * @since 1.3.2
+	 */
+	CloseableIterator searchForIterator(Name base, String filter, SearchControls controls, ContextMapper mapper,
+			DirContextProcessor processor) throws NamingException;
+
+	/**
+	 * Search for all objects matching the supplied filter, returning an
+	 * iterator that lazily maps each entry using the supplied ContextMapper.
+	 * See {@link #searchForIterator(SearchExecutor, CollectingNameClassPairCallbackHandler, DirContextProcessor)}
+	 * for details.
+	 * 
+	 * @param base The base DN where the search should begin.
+	 * @param filter The filter to use in the search.
+	 * @param controls The search controls to use in the search. If the
+	 * returnObjFlag is not set in the <code>SearchControls</code>, this method
+	 * will set it automatically, as this is required for the
+	 * <code>ContextMapper</code> to work.
+	 * @param mapper The mapper to use for mapping each entry.
+	 * @param processor The <code>DirContextProcessor</code> to use before and
+	 * after the search.
+	 * @return an iterator over the mapped entries. The iterator <b>must</b> be
+	 * closed unless it has been exhausted.
+	 * @throws NamingException if any error occurs.
+	 * @since 1.3.2
+	 */
+	CloseableIterator searchForIterator(String base, String filter, SearchControls controls, ContextMapper mapper,
+			DirContextProcessor processor) throws NamingException;
+
+	/**
+	 * Search for all objects matching the supplied filter, returning an
+	 * iterator that lazily maps each entry using the supplied ContextMapper.
+	 * 
+	 * @param base The base DN where the search should begin.
+	 * @param filter The filter to use in the search.
+	 * @param controls The search controls to use in the search. If the
+	 * returnObjFlag is not set in the <code>SearchControls</code>, this method
+	 * will set it automatically, as this is required for the
+	 * <code>ContextMapper</code> to work.
+	 * @param mapper The mapper to use for mapping each entry.
+	 * @return an iterator over the mapped entries. The iterator <b>must</b> be
+	 * closed unless it has been exhausted.
+	 * @throws NamingException if any error occurs.
+	 * @since 1.3.2
+	 */
+	CloseableIterator searchForIterator(Name base, String filter, SearchControls controls, ContextMapper mapper)
+			throws NamingException;
+
+	/**
+	 * Search for all objects matching the supplied filter, returning an
+	 * iterator that lazily maps each entry using the supplied ContextMapper.
+	 * 
+	 * @param base The base DN where the search should begin.
+	 * @param filter The filter to use in the search.
+	 * @param controls The search controls to use in the search. If the
+	 * returnObjFlag is not set in the <code>SearchControls</code>, this method
+	 * will set it automatically, as this is required for the
+	 * <code>ContextMapper</code> to work.
+	 * @param mapper The mapper to use for mapping each entry.
+	 * @return an iterator over the mapped entries. The iterator <b>must</b> be
+	 * closed unless it has been exhausted.
+	 * @throws NamingException if any error occurs.
+	 * @since 1.3.2
+	 */
+	CloseableIterator searchForIterator(String base, String filter, SearchControls controls, ContextMapper mapper)
+			throws NamingException;
+
+	/**
+	 * Search the entire subtree below the base for all objects matching the
+	 * supplied filter, returning an iterator that lazily maps each entry using
+	 * the supplied ContextMapper.
+	 * 
+	 * @param base The base DN where the search should begin.
+	 * @param filter The filter to use in the search.
+	 * @param mapper The mapper to use for mapping each entry.
+	 * @return an iterator over the mapped entries. The iterator <b>must</b> be
+	 * closed unless it has been exhausted.
+	 * @throws NamingException if any error occurs.
+	 * @since 1.3.2
+	 */
+	CloseableIterator searchForIterator(Name base, String filter, ContextMapper mapper) throws NamingException;
+
+	/**
+	 * Search the entire subtree below the base for all objects matching the
+	 * supplied filter, returning an iterator that lazily maps each entry using
+	 * the supplied ContextMapper.
+	 * 
+	 * @param base The base DN where the search should begin.
+	 * @param filter The filter to use in the search.
+	 * @param mapper The mapper to use for mapping each entry.
+	 * @return an iterator over the mapped entries. The iterator <b>must</b> be
+	 * closed unless it has been exhausted.
+	 * @throws NamingException if any error occurs.
+	 * @since 1.3.2
+	 */
+	CloseableIterator searchForIterator(String base, String filter, ContextMapper mapper) throws NamingException;
+
+	/**
+	 * Search for all objects matching the supplied filter, returning an
+	 * iterator that lazily maps the Attributes of each entry using the
+	 * supplied AttributesMapper.
+	 * 
+	 * @param base The base DN where the search should begin.
+	 * @param filter The filter to use in the search.
+	 * @param controls The search controls to use in the search.
+	 * @param mapper The mapper to use for mapping the Attributes of each entry.
+	 * @return an iterator over the mapped entries. The iterator <b>must</b> be
+	 * closed unless it has been exhausted.
+	 * @throws NamingException if any error occurs.
+	 * @since 1.3.2
+	 */
+	CloseableIterator searchForIterator(Name base, String filter, SearchControls controls, AttributesMapper mapper)
+			throws NamingException;
+
+	/**
+	 * Search for all objects matching the supplied filter, returning an
+	 * iterator that lazily maps the Attributes of each entry using the
+	 * supplied AttributesMapper.
+	 * 
+	 * @param base The base DN where the search should begin.
+	 * @param filter The filter to use in the search.
+	 * @param controls The search controls to use in the search.
+	 * @param mapper The mapper to use for mapping the Attributes of each entry.
+	 * @return an iterator over the mapped entries. The iterator <b>must</b> be
+	 * closed unless it has been exhausted.
+	 * @throws NamingException if any error occurs.
+	 * @since 1.3.2
+	 */
+	CloseableIterator searchForIterator(String base, String filter, SearchControls controls, AttributesMapper mapper)
+			throws NamingException;
+
+	/**
+	 * Perform a paged search operation, automatically retrieving all pages
+	 * using the paged results control. A single readonly context is used for
+	 * the entire operation and released as soon as the last page has been
+	 * retrieved. Each entry is passed to the callback handler as it is
+	 * received, making it possible to process result sets exceeding the
+	 * server size limit while keeping client memory bounded.
+	 * 
+	 * @param se the SearchExecutor to use for performing the actual search.
+	 * Will be invoked once for each page.
+	 * @param handler the NameClassPairCallbackHandler to which each found entry
+	 * will be passed.
+	 * @param pageSize the number of entries to request for each page.
+	 * @param listener notified with statistics after each page has been
+	 * processed; may be <code>null</code>.
+	 * @throws NamingException if any error occurs.
+	 * @since 1.3.2
+	 */
+	void searchPaged(SearchExecutor se, NameClassPairCallbackHandler handler, int pageSize,
+			PagedResultsListener listener) throws NamingException;
+
+	/**
+	 * Perform a paged search operation using the supplied base, filter and
+	 * SearchControls, automatically retrieving all pages. See
+	 * {@link #searchPaged(SearchExecutor, NameClassPairCallbackHandler, int, PagedResultsListener)}
+	 * for details.
+	 * 
+	 * @param base The base DN where the search should begin.
+	 * @param filter The filter to use in the search.
+	 * @param controls The search controls to use in the search.
+	 * @param pageSize the number of entries to request for each page.
+	 * @param handler the NameClassPairCallbackHandler to which each found entry
+	 * will be passed.
+	 * @param listener notified with statistics after each page has been
+	 * processed; may be <code>null</code>.
+	 * @throws NamingException if any error occurs.
+	 * @since 1.3.2
+	 */
+	void searchPaged(Name base, String filter, SearchControls controls, int pageSize,
+			NameClassPairCallbackHandler handler, PagedResultsListener listener) throws NamingException;
+
+	/**
+	 * Perform a paged search operation using the supplied base, filter and
+	 * SearchControls, automatically retrieving all pages. See
+	 * {@link #searchPaged(SearchExecutor, NameClassPairCallbackHandler, int, PagedResultsListener)}
+	 * for details.
+	 * 
+	 * @param base The base DN where the search should begin.
+	 * @param filter The filter to use in the search.
+	 * @param controls The search controls to use in the search.
+	 * @param pageSize the number of entries to request for each page.
+	 * @param handler the NameClassPairCallbackHandler to which each found entry
+	 * will be passed.
+	 * @param listener notified with statistics after each page has been
+	 * processed; may be <code>null</code>.
+	 * @throws NamingException if any error occurs.
+	 * @since 1.3.2
+	 */
+	void searchPaged(String base, String filter, SearchControls controls, int pageSize,
+			NameClassPairCallbackHandler handler, PagedResultsListener listener) throws NamingException;
+
+	/**
+	 * Perform a number of search operations concurrently, merging the results
+	 * into the supplied handler. The partitions are executed in the
+	 * <code>TaskExecutor</code> of the implementation, and calls to the handler
+	 * are serialized so that the handler need not be thread safe. If any
+	 * partition fails, no further partitions will be started and the first
+	 * encountered exception will be thrown once all running partitions have
+	 * finished.
+	 * 
+	 * @param partitions the search partitions to execute.
+	 * @param handler the NameClassPairCallbackHandler to which each found entry
+	 * will be passed.
+	 * @param ordered <code>true</code> if the results should be passed to the
+	 * handler partition by partition, in the order the partitions were
+	 * specified, <code>false</code> if they should be passed on as they arrive.
+	 * @throws NamingException if any error occurs.
+	 * @since 1.3.2
+	 */
+	void searchInParallel(SearchExecutor[] partitions, NameClassPairCallbackHandler handler, boolean ordered)
+			throws NamingException;
+
+	/**
+	 * Perform a search concurrently in a number of partitions, each one
+	 * restricting the supplied filter with one of the supplied partition
+	 * filters (e.g. <code>(sn=a*)</code>, <code>(sn=b*)</code>, ...). The
+	 * partition filters should be disjoint for each entry to be found only
+	 * once. See
+	 * {@link #searchInParallel(SearchExecutor[], NameClassPairCallbackHandler, boolean)}
+	 * for details.
+	 * 
+	 * @param base the base DN of the search.
+	 * @param filter the search filter.
+	 * @param controls the search controls to use in each partition.
+	 * @param partitionFilters the filters used to partition the search.
+	 * @param handler the NameClassPairCallbackHandler to which each found entry
+	 * will be passed.
+	 * @param ordered <code>true</code> if the results should be passed to the
+	 * handler partition by partition, <code>false</code> otherwise.
+	 * @throws NamingException if any error occurs.
+	 * @since 1.3.2
+	 */
+	void searchInParallel(Name base, String filter, SearchControls controls, String[] partitionFilters,
+			NameClassPairCallbackHandler handler, boolean ordered) throws NamingException;
+
+	/**
+	 * Perform a search concurrently in a number of partitions, each one
+	 * restricting the supplied filter with one of the supplied partition
+	 * filters. See
+	 * {@link #searchInParallel(Name, String, SearchControls, String[], NameClassPairCallbackHandler, boolean)}
+	 * for details.
+	 * 
+	 * @param base the base DN of the search.
+	 * @param filter the search filter.
+	 * @param controls the search controls to use in each partition.
+	 * @param partitionFilters the filters used to partition the search.
+	 * @param handler the NameClassPairCallbackHandler to which each found entry
+	 * will be passed.
+	 * @param ordered <code>true</code> if the results should be passed to the
+	 * handler partition by partition, <code>false</code> otherwise.
+	 * @throws NamingException if any error occurs.
+	 * @since 1.3.2
+	 */
+	void searchInParallel(String base, String filter, SearchControls controls, String[] partitionFilters,
+			NameClassPairCallbackHandler handler, boolean ordered) throws NamingException;
+
+	/**
+	 * Perform a subtree search concurrently, using one partition for each
+	 * immediate child of the base DN (and one for the base entry itself). The
+	 * children are found using an initial one level search returning no
+	 * attributes. If the scope of the supplied <code>SearchControls</code> is
+	 * not <code>SUBTREE_SCOPE</code>, a normal, non-partitioned search will be
+	 * performed. See
+	 * {@link #searchInParallel(SearchExecutor[], NameClassPairCallbackHandler, boolean)}
+	 * for details.
+	 * 
+	 * @param base the base DN of the search.
+	 * @param filter the search filter.
+	 * @param controls the search controls to use.
+	 * @param handler the NameClassPairCallbackHandler to which each found entry
+	 * will be passed.
+	 * @param ordered <code>true</code> if the results should be passed to the
+	 * handler partition by partition, <code>false</code> otherwise.
+	 * @throws NamingException if any error occurs.
+	 * @since 1.3.2
+	 */
+	void searchInParallel(Name base, String filter, SearchControls controls, NameClassPairCallbackHandler handler,
+			boolean ordered) throws NamingException;
+
+	/**
+	 * Perform a subtree search concurrently, using one partition for each
+	 * immediate child of the base DN. See
+	 * {@link #searchInParallel(Name, String, SearchControls, NameClassPairCallbackHandler, boolean)}
+	 * for details.
+	 * 
+	 * @param base the base DN of the search.
+	 * @param filter the search filter.
+	 * @param controls the search controls to use.
+	 * @param handler the NameClassPairCallbackHandler to which each found entry
+	 * will be passed.
+	 * @param ordered <code>true</code> if the results should be passed to the
+	 * handler partition by partition, <code>false</code> otherwise.
+	 * @throws NamingException if any error occurs.
+	 * @since 1.3.2
+	 */
+	void searchInParallel(String base, String filter, SearchControls controls, NameClassPairCallbackHandler handler,
+			boolean ordered) throws NamingException;
 }
@@ -21,7 +21,6 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 
 import org.apache.commons.lang.StringUtils;
@@ -39,7 +38,13 @@ import org.springframework.ldap.support.ListComparator;
 public class LdapRdn implements Serializable, Comparable {
 	private static final long serialVersionUID = 5681397547245228750L;
 
-	private List components = new LinkedList();
+	private List components = new ArrayList(1);
+
+	/**
+	 * Set on instances created by {@link #immutableLdapRdn()}, for which the
+	 * encoded form is cached.
+	 */
+	private transient String cachedLdapEncoded;
 
 	/**
 	 * Default constructor. Create an empty, uninitialized LdapRdn.
@@ -123,13 +128,19 @@ public class LdapRdn implements Serializable, Comparable {
 	 * @throws IndexOutOfBoundsException if there are no components in this Rdn.
 	 */
 	public String getLdapEncoded() {
+		if (cachedLdapEncoded != null) {
+			return cachedLdapEncoded;
+		}
 		if (components.size() == 0) {
 			throw new IndexOutOfBoundsException("No components in Rdn.");
 		}
+		if (components.size() == 1) {
+			return getComponent().getLdapEncoded();
+		}
 		StringBuffer sb = new StringBuffer(100);
 		for (Iterator iter = components.iterator(); iter.hasNext();) {
 			LdapRdnComponent component = (LdapRdnComponent) iter.next();
-			sb.append(component.encodeLdap());
+			sb.append(component.getLdapEncoded());
 			if (iter.hasNext()) {
 				sb.append("+");
 			}
@@ -263,6 +274,9 @@ public class LdapRdn implements Serializable, Comparable {
 		List unmodifiableListOfImmutableRdns = Collections.unmodifiableList(listWithImmutableRdns);
 		LdapRdn immutableRdn = new LdapRdn();
 		immutableRdn.components = unmodifiableListOfImmutableRdns;
+		if (!unmodifiableListOfImmutableRdns.isEmpty()) {
+			immutableRdn.cachedLdapEncoded = immutableRdn.getLdapEncoded();
+		}
 		return immutableRdn;
 	}
 }
\ No newline at end of file
@@ -43,6 +43,10 @@ public class LdapRdnComponent implements Comparable, Serializable {
 
 	private String value;
 
+	private transient String cachedLdapEncoded;
+
+	private transient int cachedHashCode = 0;
+
 	/**
 	 * Constructs an LdapRdnComponent without decoding the value.
 	 * 
@@ -112,6 +116,7 @@ public class LdapRdnComponent implements Comparable, Serializable {
 	 */
 	public void setKey(String key) {
 		this.key = key;
+		clearCachedValues();
 	}
 
 	/**
@@ -132,6 +137,12 @@ public class LdapRdnComponent implements Comparable, Serializable {
 	 */
 	public void setValue(String value) {
 		this.value = value;
+		clearCachedValues();
+	}
+
+	private void clearCachedValues() {
+		this.cachedLdapEncoded = null;
+		this.cachedHashCode = 0;
 	}
 
 	/**
@@ -162,7 +173,12 @@ public class LdapRdnComponent implements Comparable, Serializable {
 	 * @return The LdapRdn as a string where the value is LDAP-encoded.
 	 */
 	public String getLdapEncoded() {
-		return encodeLdap();
+		String result = cachedLdapEncoded;
+		if (result == null) {
+			result = encodeLdap();
+			cachedLdapEncoded = result;
+		}
+		return result;
 	}
 
 	/**
@@ -188,7 +204,12 @@ public class LdapRdnComponent implements Comparable, Serializable {
 	 * @see java.lang.Object#hashCode()
 	 */
 	public int hashCode() {
-		return key.toUpperCase().hashCode() ^ value.toUpperCase().hashCode();
+		int result = cachedHashCode;
+		if (result == 0) {
+			result = key.toUpperCase().hashCode() ^ value.toUpperCase().hashCode();
+			cachedHashCode = result;
+		}
+		return result;
 	}
 
 	/*
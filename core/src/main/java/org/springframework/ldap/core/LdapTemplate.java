@@ -15,7 +15,10 @@
  */
 package org.springframework.ldap.core;
 
+import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.NoSuchElementException;
 
 import javax.naming.Binding;
 import javax.naming.Name;
@@ -27,14 +30,24 @@ import javax.naming.directory.Attributes;
 import javax.naming.directory.DirContext;
 import javax.naming.directory.ModificationItem;
 import javax.naming.directory.SearchControls;
+import javax.naming.ldap.Control;
+import javax.naming.ldap.LdapContext;
 
 import org.apache.commons.lang.Validate;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.springframework.beans.factory.InitializingBean;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.dao.IncorrectResultSizeDataAccessException;
 import org.springframework.ldap.NamingException;
+import org.springframework.ldap.control.PagedResultsCookie;
+import org.springframework.ldap.control.PagedResultsDirContextProcessor;
+import org.springframework.ldap.control.PagedResultsListener;
+import org.springframework.ldap.control.PagedResultsStatistics;
+import org.springframework.ldap.filter.AndFilter;
+import org.springframework.ldap.filter.HardcodedFilter;
 import org.springframework.ldap.support.LdapUtils;
 
 /**
@@ -70,12 +83,20 @@ public class LdapTemplate implements LdapOperations, InitializingBean {
 
 	private static final String[] ALL_ATTRIBUTES = null;
 
+	private static final String[] NO_ATTRIBUTES = new String[] { "1.1" };
+
+	private static final int DEFAULT_MAX_CONCURRENT_PARTITIONS = 4;
+
 	private ContextSource contextSource;
 
 	private boolean ignorePartialResultException = false;
 
 	private boolean ignoreNameNotFoundException = false;
 
+	private TaskExecutor taskExecutor = new SimpleAsyncTaskExecutor(LdapTemplate.class.getName());
+
+	private int maxConcurrentPartitions = DEFAULT_MAX_CONCURRENT_PARTITIONS;
+
 	/**
 	 * Constructor for bean usage.
 	 */
@@ -149,6 +170,36 @@ public class LdapTemplate implements LdapOperations, InitializingBean {
 		this.ignorePartialResultException = ignore;
 	}
 
+	/**
+	 * Set the TaskExecutor to use for executing the partitions of a parallel
+	 * search. Default is a {@link SimpleAsyncTaskExecutor}. Note that each
+	 * partition will use a separate <code>DirContext</code> from the
+	 * <code>ContextSource</code>, so for the partitions to execute on separate
+	 * connections, a pooling <code>ContextSource</code> should be used.
+	 * 
+	 * @param taskExecutor the TaskExecutor to use.
+	 * @see #searchInParallel(SearchExecutor[], NameClassPairCallbackHandler,
+	 * boolean)
+	 * @since 1.3.2
+	 */
+	public void setTaskExecutor(TaskExecutor taskExecutor) {
+		this.taskExecutor = taskExecutor;
+	}
+
+	/**
+	 * Set the maximum number of partitions of a parallel search that may be in
+	 * flight at any one time. Default is 4.
+	 * 
+	 * @param maxConcurrentPartitions the maximum number of concurrently
+	 * executing partitions.
+	 * @see #searchInParallel(SearchExecutor[], NameClassPairCallbackHandler,
+	 * boolean)
+	 * @since 1.3.2
+	 */
+	public void setMaxConcurrentPartitions(int maxConcurrentPartitions) {
+		this.maxConcurrentPartitions = maxConcurrentPartitions;
+	}
+
 	/*
 	 * @see
 	 * org.springframework.ldap.core.LdapOperations#search(javax.naming.Name,
@@ -285,9 +336,261 @@ public class LdapTemplate implements LdapOperations, InitializingBean {
 	 */
 	public void search(SearchExecutor se, NameClassPairCallbackHandler handler, DirContextProcessor processor) {
 		DirContext ctx = contextSource.getReadOnlyContext();
+		try {
+			doSearch(ctx, se, handler, processor);
+		}
+		finally {
+			closeContext(ctx);
+		}
+	}
+
+	/**
+	 * Perform a paged search operation, automatically retrieving all pages.
+	 * The same readonly context is used for the entire operation, as required
+	 * by the paged results control; the search is repeated using a
+	 * {@link PagedResultsDirContextProcessor} until the server returns an
+	 * empty cookie, at which point the context is released. Each found entry
+	 * is passed to the supplied handler as it is received, so that only one
+	 * page at a time needs to be held in memory.
+	 * <p>
+	 * Any request controls present on the context before the search will be
+	 * restored once all pages have been retrieved.
+	 * 
+	 * @param se the SearchExecutor to use for performing the actual search.
+	 * Will be invoked once for each page.
+	 * @param handler the NameClassPairCallbackHandler to which each found entry
+	 * will be passed.
+	 * @param pageSize the number of entries to request for each page.
+	 * @param listener notified after each page has been processed; may be
+	 * <code>null</code>.
+	 * @throws NamingException if any error occurs.
+	 * @since 1.3.2
+	 */
+	public void searchPaged(SearchExecutor se, NameClassPairCallbackHandler handler, int pageSize,
+			PagedResultsListener listener) {
+		Validate.isTrue(pageSize > 0, "pageSize must be greater than zero");
+
+		DirContext ctx = contextSource.getReadOnlyContext();
+		Control[] originalControls = null;
+		try {
+			if (ctx instanceof LdapContext) {
+				originalControls = ((LdapContext) ctx).getRequestControls();
+			}
+
+			PagedResultsDirContextProcessor processor = new PagedResultsDirContextProcessor(pageSize);
+			int pageNumber = 0;
+			boolean lastPage;
+			do {
+				PagedResultsCookie cookie = processor.getCookie();
+
+				long start = System.currentTimeMillis();
+				int entryCount = doSearch(ctx, se, handler, processor);
+				long elapsedTime = System.currentTimeMillis() - start;
+				pageNumber++;
+
+				lastPage = !processor.hasMore();
+				if (!lastPage && processor.getCookie() == cookie) {
+					// No new response control; retrying would give the same page
+					log.warn("No paged results response control received for page " + pageNumber
+							+ " - aborting paged search");
+					lastPage = true;
+				}
+
+				if (listener != null) {
+					listener.pageProcessed(new PagedResultsStatistics(pageNumber, entryCount, elapsedTime, processor
+							.getResultSize(), lastPage));
+				}
+			} while (!lastPage);
+		}
+		catch (javax.naming.NamingException e) {
+			throw LdapUtils.convertLdapException(e);
+		}
+		finally {
+			restoreRequestControls(ctx, originalControls);
+			closeContext(ctx);
+		}
+	}
+
+	/*
+	 * @see
+	 * org.springframework.ldap.core.LdapOperations#searchPaged(javax.naming.
+	 * Name, java.lang.String, javax.naming.directory.SearchControls, int,
+	 * org.springframework.ldap.core.NameClassPairCallbackHandler,
+	 * org.springframework.ldap.control.PagedResultsListener)
+	 */
+	public void searchPaged(final Name base, final String filter, final SearchControls controls, int pageSize,
+			NameClassPairCallbackHandler handler, PagedResultsListener listener) {
+		SearchExecutor se = new SearchExecutor() {
+			public NamingEnumeration executeSearch(DirContext ctx) throws javax.naming.NamingException {
+				return ctx.search(base, filter, controls);
+			}
+		};
+		if (handler instanceof ContextMapperCallbackHandler) {
+			assureReturnObjFlagSet(controls);
+		}
+		searchPaged(se, handler, pageSize, listener);
+	}
 
+	/*
+	 * @see
+	 * org.springframework.ldap.core.LdapOperations#searchPaged(java.lang.String,
+	 * java.lang.String, javax.naming.directory.SearchControls, int,
+	 * org.springframework.ldap.core.NameClassPairCallbackHandler,
+	 * org.springframework.ldap.control.PagedResultsListener)
+	 */
+	public void searchPaged(final String base, final String filter, final SearchControls controls, int pageSize,
+			NameClassPairCallbackHandler handler, PagedResultsListener listener) {
+		SearchExecutor se = new SearchExecutor() {
+			public NamingEnumeration executeSearch(DirContext ctx) throws javax.naming.NamingException {
+				return ctx.search(base, filter, controls);
+			}
+		};
+		if (handler instanceof ContextMapperCallbackHandler) {
+			assureReturnObjFlagSet(controls);
+		}
+		searchPaged(se, handler, pageSize, listener);
+	}
+
+	/**
+	 * Perform a number of search operations concurrently, merging the results
+	 * into one single handler. Each partition is executed as a separate
+	 * {@link #search(SearchExecutor, NameClassPairCallbackHandler)} operation
+	 * in the configured {@link TaskExecutor}, at most
+	 * <code>maxConcurrentPartitions</code> at a time. Calls to the supplied
+	 * handler are serialized, so the handler need not be thread safe.
+	 * <p>
+	 * If any partition fails, no further partitions will be started, and once
+	 * all running partitions have finished the first encountered exception is
+	 * thrown.
+	 * 
+	 * @param partitions the search partitions to execute.
+	 * @param handler the NameClassPairCallbackHandler to which each found entry
+	 * will be passed.
+	 * @param ordered <code>true</code> if all results from one partition should
+	 * be passed to the handler before any results from the next one,
+	 * <code>false</code> if results should be passed on as they arrive. Note
+	 * that ordering requires results of partitions that are not yet first in
+	 * line to be buffered.
+	 * @throws NamingException if any error occurs.
+	 * @see #setTaskExecutor(TaskExecutor)
+	 * @see #setMaxConcurrentPartitions(int)
+	 * @since 1.3.2
+	 */
+	public void searchInParallel(SearchExecutor[] partitions, NameClassPairCallbackHandler handler, boolean ordered) {
+		new ParallelSearchCoordinator(this, taskExecutor, maxConcurrentPartitions, ordered).execute(partitions,
+				handler);
+	}
+
+	/*
+	 * @see
+	 * org.springframework.ldap.core.LdapOperations#searchInParallel(javax.naming
+	 * .Name, java.lang.String, javax.naming.directory.SearchControls,
+	 * java.lang.String[],
+	 * org.springframework.ldap.core.NameClassPairCallbackHandler, boolean)
+	 */
+	public void searchInParallel(Name base, String filter, SearchControls controls, String[] partitionFilters,
+			NameClassPairCallbackHandler handler, boolean ordered) {
+		Validate.notEmpty(partitionFilters, "At least one partition filter must be specified");
+		if (handler instanceof ContextMapperCallbackHandler) {
+			assureReturnObjFlagSet(controls);
+		}
+
+		SearchExecutor[] partitions = new SearchExecutor[partitionFilters.length];
+		for (int i = 0; i < partitionFilters.length; i++) {
+			partitions[i] = new NameSearchExecutor(base, partitionFilter(filter, partitionFilters[i]), controls);
+		}
+
+		searchInParallel(partitions, handler, ordered);
+	}
+
+	/*
+	 * @see
+	 * org.springframework.ldap.core.LdapOperations#searchInParallel(java.lang
+	 * .String, java.lang.String, javax.naming.directory.SearchControls,
+	 * java.lang.String[],
+	 * org.springframework.ldap.core.NameClassPairCallbackHandler, boolean)
+	 */
+	public void searchInParallel(String base, String filter, SearchControls controls, String[] partitionFilters,
+			NameClassPairCallbackHandler handler, boolean ordered) {
+		searchInParallel(new DistinguishedName(base), filter, controls, partitionFilters, handler, ordered);
+	}
+
+	/*
+	 * @see
+	 * org.springframework.ldap.core.LdapOperations#searchInParallel(javax.naming
+	 * .Name, java.lang.String, javax.naming.directory.SearchControls,
+	 * org.springframework.ldap.core.NameClassPairCallbackHandler, boolean)
+	 */
+	public void searchInParallel(Name base, String filter, SearchControls controls,
+			NameClassPairCallbackHandler handler, boolean ordered) {
+		if (handler instanceof ContextMapperCallbackHandler) {
+			assureReturnObjFlagSet(controls);
+		}
+
+		if (controls.getSearchScope() != SearchControls.SUBTREE_SCOPE) {
+			log.debug("Search scope is not subtree - nothing to partition");
+			search(new NameSearchExecutor(base, filter, controls), handler);
+			return;
+		}
+
+		DistinguishedName baseDn = new DistinguishedName(base);
+
+		// Find the immediate children of the base
+		final List children = new LinkedList();
+		search(baseDn, "(objectclass=*)", getDefaultSearchControls(SearchControls.ONELEVEL_SCOPE,
+				DONT_RETURN_OBJ_FLAG, NO_ATTRIBUTES), new NameClassPairCallbackHandler() {
+			public void handleNameClassPair(NameClassPair nameClassPair) {
+				children.add(nameClassPair.getName());
+			}
+		});
+
+		SearchExecutor[] partitions = new SearchExecutor[children.size() + 1];
+		// The base entry itself is not included in any child subtree
+		partitions[0] = new NameSearchExecutor(baseDn, filter, copySearchControls(controls, SearchControls.OBJECT_SCOPE));
+		int i = 1;
+		for (Iterator iterator = children.iterator(); iterator.hasNext(); i++) {
+			DistinguishedName childDn = (DistinguishedName) baseDn.clone();
+			childDn.append(new DistinguishedName((String) iterator.next()));
+			partitions[i] = new NameSearchExecutor(childDn, filter, controls);
+		}
+
+		searchInParallel(partitions, handler, ordered);
+	}
+
+	/*
+	 * @see
+	 * org.springframework.ldap.core.LdapOperations#searchInParallel(java.lang
+	 * .String, java.lang.String, javax.naming.directory.SearchControls,
+	 * org.springframework.ldap.core.NameClassPairCallbackHandler, boolean)
+	 */
+	public void searchInParallel(String base, String filter, SearchControls controls,
+			NameClassPairCallbackHandler handler, boolean ordered) {
+		searchInParallel(new DistinguishedName(base), filter, controls, handler, ordered);
+	}
+
+	private String partitionFilter(String filter, String partitionFilter) {
+		AndFilter andFilter = new AndFilter();
+		andFilter.and(new HardcodedFilter(filter));
+		andFilter.and(new HardcodedFilter(partitionFilter));
+		return andFilter.encode();
+	}
+
+	private SearchControls copySearchControls(SearchControls controls, int searchScope) {
+		return new SearchControls(searchScope, controls.getCountLimit(), controls.getTimeLimit(), controls
+				.getReturningAttributes(), controls.getReturningObjFlag(), controls.getDerefLinkFlag());
+	}
+
+	/**
+	 * Perform the actual search on the supplied context, which will not be
+	 * closed.
+	 * 
+	 * @return the number of entries passed to the handler.
+	 */
+	private int doSearch(DirContext ctx, SearchExecutor se, NameClassPairCallbackHandler handler,
+			DirContextProcessor processor) {
 		NamingEnumeration results = null;
 		RuntimeException ex = null;
+		int count = 0;
 		try {
 			processor.preProcess(ctx);
 			results = se.executeSearch(ctx);
@@ -295,6 +598,7 @@ public class LdapTemplate implements LdapOperations, InitializingBean {
 			while (results.hasMore()) {
 				NameClassPair result = (NameClassPair) results.next();
 				handler.handleNameClassPair(result);
+				count++;
 			}
 		}
 		catch (NameNotFoundException e) {
@@ -332,12 +636,14 @@ public class LdapTemplate implements LdapOperations, InitializingBean {
 					log.debug("Ignoring Exception from postProcess, " + "main exception thrown instead", e);
 				}
 			}
-			closeContextAndNamingEnumeration(ctx, results);
+			closeNamingEnumeration(results);
 			// If we got an exception it should be thrown.
 			if (ex != null) {
 				throw ex;
 			}
 		}
+
+		return count;
 	}
 
 	/**
@@ -626,6 +932,173 @@ public class LdapTemplate implements LdapOperations, InitializingBean {
 		return handler.getList();
 	}
 
+	/**
+	 * Perform a search operation, returning a {@link CloseableIterator} that
+	 * lazily transforms each found entry as it is requested. A readonly
+	 * context is acquired and the {@link DirContextProcessor} is pre processed
+	 * before the search is executed; the context is not released until the
+	 * returned iterator has been exhausted or closed. This enables very large
+	 * result sets to be processed without holding all of them in memory.
+	 * <p>
+	 * The supplied {@link CollectingNameClassPairCallbackHandler} is only used
+	 * for its
+	 * {@link CollectingNameClassPairCallbackHandler#getObjectFromNameClassPair(NameClassPair)}
+	 * method; no objects will be collected in it.
+	 * 
+	 * @param se the SearchExecutor to use for performing the actual search.
+	 * @param mapper the handler used to transform each found entry.
+	 * @param processor DirContextProcessor for custom pre- and post-processing.
+	 * @return an iterator over the mapped results. <b>Note:</b> the iterator
+	 * <b>must</b> be closed unless it has been exhausted.
+	 * @throws NamingException if any error occurs.
+	 * @since 1.3.2
+	 */
+	public CloseableIterator searchForIterator(SearchExecutor se, CollectingNameClassPairCallbackHandler mapper,
+			DirContextProcessor processor) {
+		DirContext ctx = contextSource.getReadOnlyContext();
+
+		NamingEnumeration results = null;
+		try {
+			processor.preProcess(ctx);
+			results = se.executeSearch(ctx);
+		}
+		catch (NameNotFoundException e) {
+			closeContextAndPostProcess(ctx, processor);
+			// It is possible to ignore errors caused by base not found
+			if (ignoreNameNotFoundException) {
+				log.warn("Base context not found, ignoring: " + e.getMessage());
+				return new EmptyCloseableIterator();
+			}
+			throw LdapUtils.convertLdapException(e);
+		}
+		catch (javax.naming.NamingException e) {
+			closeContextAndPostProcess(ctx, processor);
+			throw LdapUtils.convertLdapException(e);
+		}
+		catch (RuntimeException e) {
+			closeContextAndPostProcess(ctx, processor);
+			throw e;
+		}
+
+		NamingEnumerationIterator iterator = new NamingEnumerationIterator(ctx, results, mapper, processor);
+		iterator.setIgnorePartialResultException(ignorePartialResultException);
+		return iterator;
+	}
+
+	/*
+	 * @see
+	 * org.springframework.ldap.core.LdapOperations#searchForIterator(javax.naming
+	 * .Name, java.lang.String, javax.naming.directory.SearchControls,
+	 * org.springframework.ldap.core.ContextMapper,
+	 * org.springframework.ldap.core.DirContextProcessor)
+	 */
+	public CloseableIterator searchForIterator(final Name base, final String filter, final SearchControls controls,
+			ContextMapper mapper, DirContextProcessor processor) {
+		assureReturnObjFlagSet(controls);
+		SearchExecutor se = new SearchExecutor() {
+			public NamingEnumeration executeSearch(DirContext ctx) throws javax.naming.NamingException {
+				return ctx.search(base, filter, controls);
+			}
+		};
+
+		return searchForIterator(se, new ContextMapperCallbackHandler(mapper), processor);
+	}
+
+	/*
+	 * @see
+	 * org.springframework.ldap.core.LdapOperations#searchForIterator(java.lang
+	 * .String, java.lang.String, javax.naming.directory.SearchControls,
+	 * org.springframework.ldap.core.ContextMapper,
+	 * org.springframework.ldap.core.DirContextProcessor)
+	 */
+	public CloseableIterator searchForIterator(final String base, final String filter, final SearchControls controls,
+			ContextMapper mapper, DirContextProcessor processor) {
+		assureReturnObjFlagSet(controls);
+		SearchExecutor se = new SearchExecutor() {
+			public NamingEnumeration executeSearch(DirContext ctx) throws javax.naming.NamingException {
+				return ctx.search(base, filter, controls);
+			}
+		};
+
+		return searchForIterator(se, new ContextMapperCallbackHandler(mapper), processor);
+	}
+
+	/*
+	 * @see
+	 * org.springframework.ldap.core.LdapOperations#searchForIterator(javax.naming
+	 * .Name, java.lang.String, javax.naming.directory.SearchControls,
+	 * org.springframework.ldap.core.ContextMapper)
+	 */
+	public CloseableIterator searchForIterator(Name base, String filter, SearchControls controls,
+			ContextMapper mapper) {
+		return searchForIterator(base, filter, controls, mapper, new NullDirContextProcessor());
+	}
+
+	/*
+	 * @see
+	 * org.springframework.ldap.core.LdapOperations#searchForIterator(java.lang
+	 * .String, java.lang.String, javax.naming.directory.SearchControls,
+	 * org.springframework.ldap.core.ContextMapper)
+	 */
+	public CloseableIterator searchForIterator(String base, String filter, SearchControls controls,
+			ContextMapper mapper) {
+		return searchForIterator(base, filter, controls, mapper, new NullDirContextProcessor());
+	}
+
+	/*
+	 * @see
+	 * org.springframework.ldap.core.LdapOperations#searchForIterator(javax.naming
+	 * .Name, java.lang.String, org.springframework.ldap.core.ContextMapper)
+	 */
+	public CloseableIterator searchForIterator(Name base, String filter, ContextMapper mapper) {
+		return searchForIterator(base, filter, getDefaultSearchControls(DEFAULT_SEARCH_SCOPE, RETURN_OBJ_FLAG,
+				ALL_ATTRIBUTES), mapper);
+	}
+
+	/*
+	 * @see
+	 * org.springframework.ldap.core.LdapOperations#searchForIterator(java.lang
+	 * .String, java.lang.String, org.springframework.ldap.core.ContextMapper)
+	 */
+	public CloseableIterator searchForIterator(String base, String filter, ContextMapper mapper) {
+		return searchForIterator(base, filter, getDefaultSearchControls(DEFAULT_SEARCH_SCOPE, RETURN_OBJ_FLAG,
+				ALL_ATTRIBUTES), mapper);
+	}
+
+	/*
+	 * @see
+	 * org.springframework.ldap.core.LdapOperations#searchForIterator(javax.naming
+	 * .Name, java.lang.String, javax.naming.directory.SearchControls,
+	 * org.springframework.ldap.core.AttributesMapper)
+	 */
+	public CloseableIterator searchForIterator(final Name base, final String filter, final SearchControls controls,
+			AttributesMapper mapper) {
+		SearchExecutor se = new SearchExecutor() {
+			public NamingEnumeration executeSearch(DirContext ctx) throws javax.naming.NamingException {
+				return ctx.search(base, filter, controls);
+			}
+		};
+
+		return searchForIterator(se, new AttributesMapperCallbackHandler(mapper), new NullDirContextProcessor());
+	}
+
+	/*
+	 * @see
+	 * org.springframework.ldap.core.LdapOperations#searchForIterator(java.lang
+	 * .String, java.lang.String, javax.naming.directory.SearchControls,
+	 * org.springframework.ldap.core.AttributesMapper)
+	 */
+	public CloseableIterator searchForIterator(final String base, final String filter, final SearchControls controls,
+			AttributesMapper mapper) {
+		SearchExecutor se = new SearchExecutor() {
+			public NamingEnumeration executeSearch(DirContext ctx) throws javax.naming.NamingException {
+				return ctx.search(base, filter, controls);
+			}
+		};
+
+		return searchForIterator(se, new AttributesMapperCallbackHandler(mapper), new NullDirContextProcessor());
+	}
+
 	/*
 	 * @see org.springframework.ldap.core.LdapOperations#list(java.lang.String,
 	 * org.springframework.ldap.core.NameClassPairCallbackHandler)
@@ -1201,12 +1674,6 @@ public class LdapTemplate implements LdapOperations, InitializingBean {
 		}
 	}
 
-	private void closeContextAndNamingEnumeration(DirContext ctx, NamingEnumeration results) {
-
-		closeNamingEnumeration(results);
-		closeContext(ctx);
-	}
-
 	/**
 	 * Close the supplied DirContext if it is not null. Swallow any exceptions,
 	 * as this is only for cleanup.
@@ -1241,6 +1708,27 @@ public class LdapTemplate implements LdapOperations, InitializingBean {
 		}
 	}
 
+	private void restoreRequestControls(DirContext ctx, Control[] originalControls) {
+		if (ctx instanceof LdapContext) {
+			try {
+				((LdapContext) ctx).setRequestControls(originalControls);
+			}
+			catch (Exception e) {
+				log.warn("Failed to restore request controls after paged search", e);
+			}
+		}
+	}
+
+	private void closeContextAndPostProcess(DirContext ctx, DirContextProcessor processor) {
+		try {
+			processor.postProcess(ctx);
+		}
+		catch (Exception e) {
+			log.debug("Ignoring Exception from postProcess, main exception thrown instead", e);
+		}
+		closeContext(ctx);
+	}
+
 	private SearchControls getDefaultSearchControls(int searchScope, boolean returningObjFlag, String[] attrs) {
 
 		SearchControls controls = new SearchControls();
@@ -1538,6 +2026,45 @@ public class LdapTemplate implements LdapOperations, InitializingBean {
 		return searchForObject(new DistinguishedName(base), filter, mapper);
 	}
 
+	/**
+	 * Performs a search with a fixed base, filter and SearchControls.
+	 */
+	private static final class NameSearchExecutor implements SearchExecutor {
+		private final Name base;
+
+		private final String filter;
+
+		private final SearchControls controls;
+
+		public NameSearchExecutor(Name base, String filter, SearchControls controls) {
+			this.base = base;
+			this.filter = filter;
+			this.controls = controls;
+		}
+
+		public NamingEnumeration executeSearch(DirContext ctx) throws javax.naming.NamingException {
+			return ctx.search(base, filter, controls);
+		}
+	}
+
+	private static final class EmptyCloseableIterator implements CloseableIterator {
+		public boolean hasNext() {
+			return false;
+		}
+
+		public Object next() {
+			throw new NoSuchElementException("No more search results");
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException("Search results cannot be removed");
+		}
+
+		public void close() {
+			// Nothing to release
+		}
+	}
+
 	private static final class NullAuthenticatedLdapEntryContextCallback
 			implements AuthenticatedLdapEntryContextCallback {
 		public void executeWithContext(DirContext ctx,
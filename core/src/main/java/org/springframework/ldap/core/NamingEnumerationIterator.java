@@ -0,0 +1,215 @@
+/*
+ * Copyright 2005-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.ldap.core;
+
+import java.util.NoSuchElementException;
+
+import javax.naming.NameClassPair;
+import javax.naming.NamingEnumeration;
+import javax.naming.PartialResultException;
+import javax.naming.directory.DirContext;
+
+import org.apache.commons.lang.Validate;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.ldap.support.LdapUtils;
+
+/**
+ * {@link CloseableIterator} implementation lazily walking through a
+ * <code>NamingEnumeration</code>, transforming each found
+ * {@link NameClassPair} using the supplied
+ * {@link CollectingNameClassPairCallbackHandler} as it is requested. The
+ * supplied <code>DirContext</code> will be post processed using the
+ * {@link DirContextProcessor} and closed when the enumeration has been
+ * exhausted, when an exception is encountered or when {@link #close()} is
+ * called, whichever happens first.
+ * <p>
+ * Note that instances of this class are not thread safe.
+ * 
+ * @author agent
+ * @since 1.3.2
+ */
+public class NamingEnumerationIterator implements CloseableIterator {
+
+	private static final Log log = LogFactory.getLog(NamingEnumerationIterator.class);
+
+	private final DirContext ctx;
+
+	private final NamingEnumeration results;
+
+	private final CollectingNameClassPairCallbackHandler mapper;
+
+	private final DirContextProcessor processor;
+
+	private boolean ignorePartialResultException = false;
+
+	private NameClassPair next;
+
+	private boolean closed = false;
+
+	/**
+	 * Create a new instance.
+	 * 
+	 * @param ctx the <code>DirContext</code> the search was performed on. Will
+	 * be closed when the iteration is done.
+	 * @param results the results of the search.
+	 * @param mapper used to transform each found <code>NameClassPair</code>.
+	 * Note that only
+	 * {@link CollectingNameClassPairCallbackHandler#getObjectFromNameClassPair(NameClassPair)}
+	 * will be used, i.e. nothing will be collected in the handler.
+	 * @param processor the processor to call
+	 * {@link DirContextProcessor#postProcess(DirContext)} on once iteration is
+	 * done.
+	 */
+	public NamingEnumerationIterator(DirContext ctx, NamingEnumeration results,
+			CollectingNameClassPairCallbackHandler mapper, DirContextProcessor processor) {
+		Validate.notNull(ctx, "DirContext must not be null");
+		Validate.notNull(results, "NamingEnumeration must not be null");
+		Validate.notNull(mapper, "Mapper must not be null");
+		Validate.notNull(processor, "DirContextProcessor must not be null");
+
+		this.ctx = ctx;
+		this.results = results;
+		this.mapper = mapper;
+		this.processor = processor;
+	}
+
+	/**
+	 * Specify whether <code>PartialResultException</code> should be
+	 * interpreted as the end of the results rather than as an error.
+	 * 
+	 * @param ignore <code>true</code> if <code>PartialResultException</code>
+	 * should be ignored. Default is <code>false</code>.
+	 * @see LdapTemplate#setIgnorePartialResultException(boolean)
+	 */
+	public void setIgnorePartialResultException(boolean ignore) {
+		this.ignorePartialResultException = ignore;
+	}
+
+	public boolean hasNext() {
+		if (next != null) {
+			return true;
+		}
+
+		if (closed) {
+			return false;
+		}
+
+		try {
+			if (results.hasMore()) {
+				next = (NameClassPair) results.next();
+				return true;
+			}
+		}
+		catch (PartialResultException e) {
+			// Workaround for AD servers not handling referrals correctly.
+			if (ignorePartialResultException) {
+				log.debug("PartialResultException encountered and ignored", e);
+			}
+			else {
+				closeAfterException();
+				throw LdapUtils.convertLdapException(e);
+			}
+		}
+		catch (javax.naming.NamingException e) {
+			closeAfterException();
+			throw LdapUtils.convertLdapException(e);
+		}
+
+		close();
+		return false;
+	}
+
+	public Object next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException("No more search results");
+		}
+
+		NameClassPair current = next;
+		next = null;
+
+		try {
+			return mapper.getObjectFromNameClassPair(current);
+		}
+		catch (RuntimeException e) {
+			closeAfterException();
+			throw e;
+		}
+	}
+
+	/**
+	 * Not supported.
+	 * 
+	 * @throws UnsupportedOperationException always.
+	 */
+	public void remove() {
+		throw new UnsupportedOperationException("Search results cannot be removed");
+	}
+
+	public void close() {
+		if (closed) {
+			return;
+		}
+
+		closed = true;
+		next = null;
+		try {
+			processor.postProcess(ctx);
+		}
+		catch (javax.naming.NamingException e) {
+			throw LdapUtils.convertLdapException(e);
+		}
+		finally {
+			closeResources();
+		}
+	}
+
+	/**
+	 * Check whether this iterator has been closed.
+	 * 
+	 * @return <code>true</code> if the resources held by this iterator have
+	 * been released, <code>false</code> otherwise.
+	 */
+	public boolean isClosed() {
+		return closed;
+	}
+
+	private void closeAfterException() {
+		try {
+			close();
+		}
+		catch (RuntimeException e) {
+			// We already have an exception and should ignore this one.
+			log.debug("Ignoring Exception from postProcess, main exception thrown instead", e);
+		}
+	}
+
+	private void closeResources() {
+		try {
+			results.close();
+		}
+		catch (Exception e) {
+			// Never mind this.
+		}
+
+		try {
+			ctx.close();
+		}
+		catch (Exception e) {
+			// Never mind this.
+		}
+	}
+}
@@ -0,0 +1,250 @@
+/*
+ * Copyright 2005-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.ldap.core;
+
+import java.util.LinkedList;
+import java.util.List;
+
+import javax.naming.NameClassPair;
+
+import org.apache.commons.lang.Validate;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.ldap.UncategorizedLdapException;
+
+/**
+ * Executes a number of search partitions concurrently using a
+ * {@link TaskExecutor}, each partition being performed as a separate
+ * {@link LdapTemplate#search(SearchExecutor, NameClassPairCallbackHandler)}
+ * operation and thus on a separate <code>DirContext</code>. The results of all
+ * partitions are merged into one single {@link NameClassPairCallbackHandler};
+ * calls to the target handler are serialized, so the handler does not need to
+ * be thread safe.
+ * <p>
+ * If ordering is requested, all results from one partition will be passed to
+ * the target handler before any result from the next one. Results from the
+ * partition currently first in line are passed on immediately, while results
+ * from partitions further down the line are buffered until it is their turn.
+ * <p>
+ * Instances of this class are intended for one single operation only.
+ * 
+ * @author agent
+ * @since 1.3.2
+ */
+class ParallelSearchCoordinator {
+
+	private static final Log log = LogFactory.getLog(ParallelSearchCoordinator.class);
+
+	private final LdapTemplate ldapTemplate;
+
+	private final TaskExecutor taskExecutor;
+
+	private final int maxConcurrentPartitions;
+
+	private final boolean ordered;
+
+	private final Object monitor = new Object();
+
+	private NameClassPairCallbackHandler targetHandler;
+
+	private List[] buffers;
+
+	private boolean[] completed;
+
+	private int nextToDeliver;
+
+	private int running;
+
+	private RuntimeException failure;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param ldapTemplate the template to use for performing each partition.
+	 * @param taskExecutor the executor in which to execute the partitions.
+	 * @param maxConcurrentPartitions the maximum number of partitions to have
+	 * in flight at any one time.
+	 * @param ordered <code>true</code> if results should be passed to the
+	 * target handler in partition order.
+	 */
+	public ParallelSearchCoordinator(LdapTemplate ldapTemplate, TaskExecutor taskExecutor,
+			int maxConcurrentPartitions, boolean ordered) {
+		Validate.notNull(ldapTemplate, "LdapTemplate must not be null");
+		Validate.notNull(taskExecutor, "TaskExecutor must not be null");
+		Validate.isTrue(maxConcurrentPartitions > 0, "maxConcurrentPartitions must be greater than zero");
+
+		this.ldapTemplate = ldapTemplate;
+		this.taskExecutor = taskExecutor;
+		this.maxConcurrentPartitions = maxConcurrentPartitions;
+		this.ordered = ordered;
+	}
+
+	/**
+	 * Execute all partitions, passing the results to the supplied handler.
+	 * This method will not return until all started partitions have finished.
+	 * If any partition fails no further partitions will be started and the
+	 * first encountered exception will be thrown.
+	 * 
+	 * @param partitions the search partitions to execute.
+	 * @param handler the handler to receive the merged results.
+	 */
+	public void execute(SearchExecutor[] partitions, NameClassPairCallbackHandler handler) {
+		Validate.notNull(partitions, "Partitions must not be null");
+		Validate.notNull(handler, "Handler must not be null");
+
+		this.targetHandler = handler;
+		this.buffers = new List[partitions.length];
+		this.completed = new boolean[partitions.length];
+		this.nextToDeliver = 0;
+
+		try {
+			for (int i = 0; i < partitions.length; i++) {
+				synchronized (monitor) {
+					while (running >= maxConcurrentPartitions && failure == null) {
+						monitor.wait();
+					}
+
+					if (failure != null) {
+						log.debug("Partition failed - not starting remaining partitions");
+						break;
+					}
+
+					running++;
+				}
+
+				try {
+					taskExecutor.execute(new PartitionTask(i, partitions[i]));
+				}
+				catch (RuntimeException e) {
+					partitionFinished(i, e);
+				}
+			}
+
+			synchronized (monitor) {
+				while (running > 0) {
+					monitor.wait();
+				}
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new UncategorizedLdapException("Interrupted while waiting for search partitions", e);
+		}
+
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	private void handleResult(int partition, NameClassPair result) {
+		synchronized (monitor) {
+			if (failure != null) {
+				// The operation will fail anyway - no need to pass on results
+				return;
+			}
+
+			if (!ordered || partition == nextToDeliver) {
+				targetHandler.handleNameClassPair(result);
+			}
+			else {
+				if (buffers[partition] == null) {
+					buffers[partition] = new LinkedList();
+				}
+				buffers[partition].add(result);
+			}
+		}
+	}
+
+	private void partitionFinished(int partition, RuntimeException e) {
+		synchronized (monitor) {
+			try {
+				completed[partition] = true;
+				if (e != null) {
+					if (failure == null) {
+						failure = e;
+					}
+					else {
+						log.debug("Ignoring exception from partition " + partition + ", main exception thrown instead", e);
+					}
+				}
+				else if (ordered && failure == null) {
+					deliverCompletedPartitions();
+				}
+			}
+			catch (RuntimeException handlerException) {
+				if (failure == null) {
+					failure = handlerException;
+				}
+			}
+			finally {
+				running--;
+				monitor.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Advance the delivery pointer past all completed partitions, flushing
+	 * their buffered results. Called while holding the monitor.
+	 */
+	private void deliverCompletedPartitions() {
+		while (nextToDeliver < completed.length && completed[nextToDeliver]) {
+			nextToDeliver++;
+			if (nextToDeliver < buffers.length) {
+				flush(nextToDeliver);
+			}
+		}
+	}
+
+	private void flush(int partition) {
+		List buffer = buffers[partition];
+		if (buffer != null) {
+			buffers[partition] = null;
+			while (!buffer.isEmpty()) {
+				targetHandler.handleNameClassPair((NameClassPair) buffer.remove(0));
+			}
+		}
+	}
+
+	private final class PartitionTask implements Runnable {
+		private final int partition;
+
+		private final SearchExecutor searchExecutor;
+
+		public PartitionTask(int partition, SearchExecutor searchExecutor) {
+			this.partition = partition;
+			this.searchExecutor = searchExecutor;
+		}
+
+		public void run() {
+			RuntimeException exception = null;
+			try {
+				ldapTemplate.search(searchExecutor, new NameClassPairCallbackHandler() {
+					public void handleNameClassPair(NameClassPair nameClassPair) {
+						handleResult(partition, nameClassPair);
+					}
+				});
+			}
+			catch (RuntimeException e) {
+				exception = e;
+			}
+			finally {
+				partitionFinished(partition, exception);
+			}
+		}
+	}
+}
@@ -171,8 +171,11 @@ public class DefaultDirObjectFactory implements DirObjectFactory {
 			}
 		}
 
-		DirContextAdapter dirContextAdapter = new DirContextAdapter(attrs, new DistinguishedName(nameString),
-				new DistinguishedName(nameInNamespace), referralUrl);
+		// The name in namespace is typically the same for all results, so the
+		// parsed instance is cached. The name itself is not parsed until
+		// requested, since many results are only read from.
+		DirContextAdapter dirContextAdapter = DirContextAdapter.fromUnparsedDn(attrs, nameString,
+				DistinguishedName.immutableDistinguishedName(nameInNamespace), referralUrl);
 		dirContextAdapter.setUpdateMode(true);
 
 		return dirContextAdapter;
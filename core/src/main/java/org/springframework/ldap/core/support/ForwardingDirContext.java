@@ -0,0 +1,583 @@
+/*
+ * Copyright 2005-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.ldap.core.support;
+
+import java.util.Hashtable;
+
+import javax.naming.Context;
+import javax.naming.Name;
+import javax.naming.NameParser;
+import javax.naming.NamingEnumeration;
+import javax.naming.NamingException;
+import javax.naming.directory.Attributes;
+import javax.naming.directory.DirContext;
+import javax.naming.directory.ModificationItem;
+import javax.naming.directory.SearchControls;
+import javax.naming.ldap.LdapContext;
+
+import org.springframework.ldap.core.DirContextProxy;
+import org.springframework.util.Assert;
+
+/**
+ * A <code>DirContext</code> forwarding all calls directly to a target
+ * <code>DirContext</code>, except for <code>close</code> and the modifying
+ * operations, which are first passed to an {@link Interceptor}. Used in place
+ * of dynamic proxies for decorating contexts, so that read operations are
+ * invoked without any reflection.
+ * <p>
+ * Use {@link #forTarget(DirContext, Interceptor)} to get an instance which is
+ * an <code>LdapContext</code> if the target is.
+ * <p>
+ * Instances are only equal to themselves.
+ * 
+ * @author agent
+ * @since 1.3.2
+ * @see ForwardingLdapContext
+ */
+public class ForwardingDirContext implements DirContext, DirContextProxy {
+
+    /**
+     * Decides what happens when a {@link ForwardingDirContext} is closed or
+     * asked to perform a modifying operation.
+     */
+    public interface Interceptor {
+        /**
+         * Called when the <code>ForwardingDirContext</code> is closed.
+         * 
+         * @param target
+         *            the target <code>DirContext</code>.
+         * @throws NamingException
+         *             if thrown when closing the target.
+         */
+        void close(DirContext target) throws NamingException;
+
+        /**
+         * Called before a modifying operation, i.e. <code>bind</code>,
+         * <code>rebind</code>, <code>rename</code>, <code>unbind</code> or
+         * <code>modifyAttributes</code>, is forwarded to the target.
+         * 
+         * @param target
+         *            the target <code>DirContext</code>.
+         * @param operation
+         *            the name of the <code>DirContext</code> method called.
+         * @param args
+         *            the arguments of the call.
+         * @return <code>true</code> if the operation has been taken care of
+         *         by the interceptor, <code>false</code> if it should be
+         *         forwarded to the target.
+         * @throws NamingException
+         *             if thrown when performing the operation.
+         */
+        boolean performWriteOperation(DirContext target, String operation,
+                Object[] args) throws NamingException;
+    }
+
+    private static final String BIND = "bind";
+
+    private static final String REBIND = "rebind";
+
+    private static final String RENAME = "rename";
+
+    private static final String UNBIND = "unbind";
+
+    private static final String MODIFY_ATTRIBUTES = "modifyAttributes";
+
+    private final DirContext target;
+
+    private final Interceptor interceptor;
+
+    /**
+     * Constructor.
+     * 
+     * @param target
+     *            the <code>DirContext</code> to forward calls to.
+     * @param interceptor
+     *            the {@link Interceptor} deciding how to close the context and
+     *            perform modifying operations.
+     */
+    public ForwardingDirContext(DirContext target, Interceptor interceptor) {
+        Assert.notNull(target, "target must not be null");
+        Assert.notNull(interceptor, "interceptor must not be null");
+        this.target = target;
+        this.interceptor = interceptor;
+    }
+
+    /**
+     * Get a forwarding context for the supplied target, being a
+     * {@link ForwardingLdapContext} if the target is an
+     * <code>LdapContext</code>.
+     * 
+     * @param target
+     *            the <code>DirContext</code> to forward calls to.
+     * @param interceptor
+     *            the {@link Interceptor} to use.
+     * @return a forwarding context.
+     */
+    public static DirContext forTarget(DirContext target,
+            Interceptor interceptor) {
+        if (target instanceof LdapContext) {
+            return new ForwardingLdapContext((LdapContext) target, interceptor);
+        }
+        return new ForwardingDirContext(target, interceptor);
+    }
+
+    /*
+     * @see org.springframework.ldap.core.DirContextProxy#getTargetContext()
+     */
+    public DirContext getTargetContext() {
+        return target;
+    }
+
+    /*
+     * @see javax.naming.Context#close()
+     */
+    public void close() throws NamingException {
+        interceptor.close(target);
+    }
+
+    /*
+     * @see java.lang.Object#toString()
+     */
+    public String toString() {
+        return target.toString();
+    }
+
+    /*
+     * @see javax.naming.Context#addToEnvironment(java.lang.String, java.lang.Object)
+     */
+    public Object addToEnvironment(String propName, Object propVal) throws NamingException {
+        return target.addToEnvironment(propName, propVal);
+    }
+
+    /*
+     * @see javax.naming.Context#bind(javax.naming.Name, java.lang.Object)
+     */
+    public void bind(Name name, Object obj) throws NamingException {
+        if (!interceptor.performWriteOperation(target,
+                BIND, new Object[] { name, obj })) {
+            target.bind(name, obj);
+        }
+    }
+
+    /*
+     * @see javax.naming.Context#bind(java.lang.String, java.lang.Object)
+     */
+    public void bind(String name, Object obj) throws NamingException {
+        if (!interceptor.performWriteOperation(target,
+                BIND, new Object[] { name, obj })) {
+            target.bind(name, obj);
+        }
+    }
+
+    /*
+     * @see javax.naming.Context#composeName(javax.naming.Name, javax.naming.Name)
+     */
+    public Name composeName(Name name, Name prefix) throws NamingException {
+        return target.composeName(name, prefix);
+    }
+
+    /*
+     * @see javax.naming.Context#composeName(java.lang.String, java.lang.String)
+     */
+    public String composeName(String name, String prefix) throws NamingException {
+        return target.composeName(name, prefix);
+    }
+
+    /*
+     * @see javax.naming.Context#createSubcontext(javax.naming.Name)
+     */
+    public Context createSubcontext(Name name) throws NamingException {
+        return target.createSubcontext(name);
+    }
+
+    /*
+     * @see javax.naming.Context#createSubcontext(java.lang.String)
+     */
+    public Context createSubcontext(String name) throws NamingException {
+        return target.createSubcontext(name);
+    }
+
+    /*
+     * @see javax.naming.Context#destroySubcontext(javax.naming.Name)
+     */
+    public void destroySubcontext(Name name) throws NamingException {
+        target.destroySubcontext(name);
+    }
+
+    /*
+     * @see javax.naming.Context#destroySubcontext(java.lang.String)
+     */
+    public void destroySubcontext(String name) throws NamingException {
+        target.destroySubcontext(name);
+    }
+
+    /*
+     * @see javax.naming.Context#getEnvironment()
+     */
+    public Hashtable getEnvironment() throws NamingException {
+        return target.getEnvironment();
+    }
+
+    /*
+     * @see javax.naming.Context#getNameInNamespace()
+     */
+    public String getNameInNamespace() throws NamingException {
+        return target.getNameInNamespace();
+    }
+
+    /*
+     * @see javax.naming.Context#getNameParser(javax.naming.Name)
+     */
+    public NameParser getNameParser(Name name) throws NamingException {
+        return target.getNameParser(name);
+    }
+
+    /*
+     * @see javax.naming.Context#getNameParser(java.lang.String)
+     */
+    public NameParser getNameParser(String name) throws NamingException {
+        return target.getNameParser(name);
+    }
+
+    /*
+     * @see javax.naming.Context#list(javax.naming.Name)
+     */
+    public NamingEnumeration list(Name name) throws NamingException {
+        return target.list(name);
+    }
+
+    /*
+     * @see javax.naming.Context#list(java.lang.String)
+     */
+    public NamingEnumeration list(String name) throws NamingException {
+        return target.list(name);
+    }
+
+    /*
+     * @see javax.naming.Context#listBindings(javax.naming.Name)
+     */
+    public NamingEnumeration listBindings(Name name) throws NamingException {
+        return target.listBindings(name);
+    }
+
+    /*
+     * @see javax.naming.Context#listBindings(java.lang.String)
+     */
+    public NamingEnumeration listBindings(String name) throws NamingException {
+        return target.listBindings(name);
+    }
+
+    /*
+     * @see javax.naming.Context#lookup(javax.naming.Name)
+     */
+    public Object lookup(Name name) throws NamingException {
+        return target.lookup(name);
+    }
+
+    /*
+     * @see javax.naming.Context#lookup(java.lang.String)
+     */
+    public Object lookup(String name) throws NamingException {
+        return target.lookup(name);
+    }
+
+    /*
+     * @see javax.naming.Context#lookupLink(javax.naming.Name)
+     */
+    public Object lookupLink(Name name) throws NamingException {
+        return target.lookupLink(name);
+    }
+
+    /*
+     * @see javax.naming.Context#lookupLink(java.lang.String)
+     */
+    public Object lookupLink(String name) throws NamingException {
+        return target.lookupLink(name);
+    }
+
+    /*
+     * @see javax.naming.Context#rebind(javax.naming.Name, java.lang.Object)
+     */
+    public void rebind(Name name, Object obj) throws NamingException {
+        if (!interceptor.performWriteOperation(target,
+                REBIND, new Object[] { name, obj })) {
+            target.rebind(name, obj);
+        }
+    }
+
+    /*
+     * @see javax.naming.Context#rebind(java.lang.String, java.lang.Object)
+     */
+    public void rebind(String name, Object obj) throws NamingException {
+        if (!interceptor.performWriteOperation(target,
+                REBIND, new Object[] { name, obj })) {
+            target.rebind(name, obj);
+        }
+    }
+
+    /*
+     * @see javax.naming.Context#removeFromEnvironment(java.lang.String)
+     */
+    public Object removeFromEnvironment(String propName) throws NamingException {
+        return target.removeFromEnvironment(propName);
+    }
+
+    /*
+     * @see javax.naming.Context#rename(javax.naming.Name, javax.naming.Name)
+     */
+    public void rename(Name oldName, Name newName) throws NamingException {
+        if (!interceptor.performWriteOperation(target,
+                RENAME, new Object[] { oldName, newName })) {
+            target.rename(oldName, newName);
+        }
+    }
+
+    /*
+     * @see javax.naming.Context#rename(java.lang.String, java.lang.String)
+     */
+    public void rename(String oldName, String newName) throws NamingException {
+        if (!interceptor.performWriteOperation(target,
+                RENAME, new Object[] { oldName, newName })) {
+            target.rename(oldName, newName);
+        }
+    }
+
+    /*
+     * @see javax.naming.Context#unbind(javax.naming.Name)
+     */
+    public void unbind(Name name) throws NamingException {
+        if (!interceptor.performWriteOperation(target,
+                UNBIND, new Object[] { name })) {
+            target.unbind(name);
+        }
+    }
+
+    /*
+     * @see javax.naming.Context#unbind(java.lang.String)
+     */
+    public void unbind(String name) throws NamingException {
+        if (!interceptor.performWriteOperation(target,
+                UNBIND, new Object[] { name })) {
+            target.unbind(name);
+        }
+    }
+
+    /*
+     * @see javax.naming.directory.DirContext#bind(javax.naming.Name, java.lang.Object, javax.naming.directory.Attributes)
+     */
+    public void bind(Name name, Object obj, Attributes attrs) throws NamingException {
+        if (!interceptor.performWriteOperation(target,
+                BIND, new Object[] { name, obj, attrs })) {
+            target.bind(name, obj, attrs);
+        }
+    }
+
+    /*
+     * @see javax.naming.directory.DirContext#bind(java.lang.String, java.lang.Object, javax.naming.directory.Attributes)
+     */
+    public void bind(String name, Object obj, Attributes attrs) throws NamingException {
+        if (!interceptor.performWriteOperation(target,
+                BIND, new Object[] { name, obj, attrs })) {
+            target.bind(name, obj, attrs);
+        }
+    }
+
+    /*
+     * @see javax.naming.directory.DirContext#createSubcontext(javax.naming.Name, javax.naming.directory.Attributes)
+     */
+    public DirContext createSubcontext(Name name, Attributes attrs) throws NamingException {
+        return target.createSubcontext(name, attrs);
+    }
+
+    /*
+     * @see javax.naming.directory.DirContext#createSubcontext(java.lang.String, javax.naming.directory.Attributes)
+     */
+    public DirContext createSubcontext(String name, Attributes attrs) throws NamingException {
+        return target.createSubcontext(name, attrs);
+    }
+
+    /*
+     * @see javax.naming.directory.DirContext#getAttributes(javax.naming.Name)
+     */
+    public Attributes getAttributes(Name name) throws NamingException {
+        return target.getAttributes(name);
+    }
+
+    /*
+     * @see javax.naming.directory.DirContext#getAttributes(java.lang.String)
+     */
+    public Attributes getAttributes(String name) throws NamingException {
+        return target.getAttributes(name);
+    }
+
+    /*
+     * @see javax.naming.directory.DirContext#getAttributes(javax.naming.Name, java.lang.String[])
+     */
+    public Attributes getAttributes(Name name, String[] attrIds) throws NamingException {
+        return target.getAttributes(name, attrIds);
+    }
+
+    /*
+     * @see javax.naming.directory.DirContext#getAttributes(java.lang.String, java.lang.String[])
+     */
+    public Attributes getAttributes(String name, String[] attrIds) throws NamingException {
+        return target.getAttributes(name, attrIds);
+    }
+
+    /*
+     * @see javax.naming.directory.DirContext#getSchema(javax.naming.Name)
+     */
+    public DirContext getSchema(Name name) throws NamingException {
+        return target.getSchema(name);
+    }
+
+    /*
+     * @see javax.naming.directory.DirContext#getSchema(java.lang.String)
+     */
+    public DirContext getSchema(String name) throws NamingException {
+        return target.getSchema(name);
+    }
+
+    /*
+     * @see javax.naming.directory.DirContext#getSchemaClassDefinition(javax.naming.Name)
+     */
+    public DirContext getSchemaClassDefinition(Name name) throws NamingException {
+        return target.getSchemaClassDefinition(name);
+    }
+
+    /*
+     * @see javax.naming.directory.DirContext#getSchemaClassDefinition(java.lang.String)
+     */
+    public DirContext getSchemaClassDefinition(String name) throws NamingException {
+        return target.getSchemaClassDefinition(name);
+    }
+
+    /*
+     * @see javax.naming.directory.DirContext#modifyAttributes(javax.naming.Name, int, javax.naming.directory.Attributes)
+     */
+    public void modifyAttributes(Name name, int modOp, Attributes attrs) throws NamingException {
+        if (!interceptor.performWriteOperation(target,
+                MODIFY_ATTRIBUTES, new Object[] { name, new Integer(modOp), attrs })) {
+            target.modifyAttributes(name, modOp, attrs);
+        }
+    }
+
+    /*
+     * @see javax.naming.directory.DirContext#modifyAttributes(java.lang.String, int, javax.naming.directory.Attributes)
+     */
+    public void modifyAttributes(String name, int modOp, Attributes attrs) throws NamingException {
+        if (!interceptor.performWriteOperation(target,
+                MODIFY_ATTRIBUTES, new Object[] { name, new Integer(modOp), attrs })) {
+            target.modifyAttributes(name, modOp, attrs);
+        }
+    }
+
+    /*
+     * @see javax.naming.directory.DirContext#modifyAttributes(javax.naming.Name, javax.naming.directory.ModificationItem[])
+     */
+    public void modifyAttributes(Name name, ModificationItem[] mods) throws NamingException {
+        if (!interceptor.performWriteOperation(target,
+                MODIFY_ATTRIBUTES, new Object[] { name, mods })) {
+            target.modifyAttributes(name, mods);
+        }
+    }
+
+    /*
+     * @see javax.naming.directory.DirContext#modifyAttributes(java.lang.String, javax.naming.directory.ModificationItem[])
+     */
+    public void modifyAttributes(String name, ModificationItem[] mods) throws NamingException {
+        if (!interceptor.performWriteOperation(target,
+                MODIFY_ATTRIBUTES, new Object[] { name, mods })) {
+            target.modifyAttributes(name, mods);
+        }
+    }
+
+    /*
+     * @see javax.naming.directory.DirContext#rebind(javax.naming.Name, java.lang.Object, javax.naming.directory.Attributes)
+     */
+    public void rebind(Name name, Object obj, Attributes attrs) throws NamingException {
+        if (!interceptor.performWriteOperation(target,
+                REBIND, new Object[] { name, obj, attrs })) {
+            target.rebind(name, obj, attrs);
+        }
+    }
+
+    /*
+     * @see javax.naming.directory.DirContext#rebind(java.lang.String, java.lang.Object, javax.naming.directory.Attributes)
+     */
+    public void rebind(String name, Object obj, Attributes attrs) throws NamingException {
+        if (!interceptor.performWriteOperation(target,
+                REBIND, new Object[] { name, obj, attrs })) {
+            target.rebind(name, obj, attrs);
+        }
+    }
+
+    /*
+     * @see javax.naming.directory.DirContext#search(javax.naming.Name, javax.naming.directory.Attributes)
+     */
+    public NamingEnumeration search(Name name, Attributes matchingAttributes) throws NamingException {
+        return target.search(name, matchingAttributes);
+    }
+
+    /*
+     * @see javax.naming.directory.DirContext#search(java.lang.String, javax.naming.directory.Attributes)
+     */
+    public NamingEnumeration search(String name, Attributes matchingAttributes) throws NamingException {
+        return target.search(name, matchingAttributes);
+    }
+
+    /*
+     * @see javax.naming.directory.DirContext#search(javax.naming.Name, javax.naming.directory.Attributes, java.lang.String[])
+     */
+    public NamingEnumeration search(Name name, Attributes matchingAttributes, String[] attributesToReturn) throws NamingException {
+        return target.search(name, matchingAttributes, attributesToReturn);
+    }
+
+    /*
+     * @see javax.naming.directory.DirContext#search(java.lang.String, javax.naming.directory.Attributes, java.lang.String[])
+     */
+    public NamingEnumeration search(String name, Attributes matchingAttributes, String[] attributesToReturn) throws NamingException {
+        return target.search(name, matchingAttributes, attributesToReturn);
+    }
+
+    /*
+     * @see javax.naming.directory.DirContext#search(javax.naming.Name, java.lang.String, javax.naming.directory.SearchControls)
+     */
+    public NamingEnumeration search(Name name, String filter, SearchControls cons) throws NamingException {
+        return target.search(name, filter, cons);
+    }
+
+    /*
+     * @see javax.naming.directory.DirContext#search(java.lang.String, java.lang.String, javax.naming.directory.SearchControls)
+     */
+    public NamingEnumeration search(String name, String filter, SearchControls cons) throws NamingException {
+        return target.search(name, filter, cons);
+    }
+
+    /*
+     * @see javax.naming.directory.DirContext#search(javax.naming.Name, java.lang.String, java.lang.Object[], javax.naming.directory.SearchControls)
+     */
+    public NamingEnumeration search(Name name, String filterExpr, Object[] filterArgs, SearchControls cons) throws NamingException {
+        return target.search(name, filterExpr, filterArgs, cons);
+    }
+
+    /*
+     * @see javax.naming.directory.DirContext#search(java.lang.String, java.lang.String, java.lang.Object[], javax.naming.directory.SearchControls)
+     */
+    public NamingEnumeration search(String name, String filterExpr, Object[] filterArgs, SearchControls cons) throws NamingException {
+        return target.search(name, filterExpr, filterArgs, cons);
+    }
+}
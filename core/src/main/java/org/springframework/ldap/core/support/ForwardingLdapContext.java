@@ -0,0 +1,102 @@
+/*
+ * Copyright 2005-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.ldap.core.support;
+
+import javax.naming.NamingException;
+import javax.naming.ldap.Control;
+import javax.naming.ldap.ExtendedRequest;
+import javax.naming.ldap.ExtendedResponse;
+import javax.naming.ldap.LdapContext;
+
+/**
+ * A {@link ForwardingDirContext} for an <code>LdapContext</code> target,
+ * forwarding the <code>LdapContext</code> specific methods directly to the
+ * target.
+ * 
+ * @author agent
+ * @since 1.3.2
+ */
+public class ForwardingLdapContext extends ForwardingDirContext implements
+        LdapContext {
+
+    private final LdapContext target;
+
+    /**
+     * Constructor.
+     * 
+     * @param target
+     *            the <code>LdapContext</code> to forward calls to.
+     * @param interceptor
+     *            the {@link ForwardingDirContext.Interceptor} deciding how to
+     *            close the context and perform modifying operations.
+     */
+    public ForwardingLdapContext(LdapContext target, Interceptor interceptor) {
+        super(target, interceptor);
+        this.target = target;
+    }
+
+    /*
+     * @see javax.naming.ldap.LdapContext#extendedOperation(javax.naming.ldap.ExtendedRequest)
+     */
+    public ExtendedResponse extendedOperation(ExtendedRequest request)
+            throws NamingException {
+        return target.extendedOperation(request);
+    }
+
+    /*
+     * @see javax.naming.ldap.LdapContext#getConnectControls()
+     */
+    public Control[] getConnectControls() throws NamingException {
+        return target.getConnectControls();
+    }
+
+    /*
+     * @see javax.naming.ldap.LdapContext#getRequestControls()
+     */
+    public Control[] getRequestControls() throws NamingException {
+        return target.getRequestControls();
+    }
+
+    /*
+     * @see javax.naming.ldap.LdapContext#getResponseControls()
+     */
+    public Control[] getResponseControls() throws NamingException {
+        return target.getResponseControls();
+    }
+
+    /*
+     * @see javax.naming.ldap.LdapContext#newInstance(javax.naming.ldap.Control[])
+     */
+    public LdapContext newInstance(Control[] requestControls)
+            throws NamingException {
+        return target.newInstance(requestControls);
+    }
+
+    /*
+     * @see javax.naming.ldap.LdapContext#reconnect(javax.naming.ldap.Control[])
+     */
+    public void reconnect(Control[] connCtls) throws NamingException {
+        target.reconnect(connCtls);
+    }
+
+    /*
+     * @see javax.naming.ldap.LdapContext#setRequestControls(javax.naming.ldap.Control[])
+     */
+    public void setRequestControls(Control[] requestControls)
+            throws NamingException {
+        target.setRequestControls(requestControls);
+    }
+}
@@ -18,7 +18,6 @@ package org.springframework.ldap.core.support;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.lang.reflect.Proxy;
 
 import javax.naming.directory.DirContext;
 
@@ -26,8 +25,6 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.springframework.ldap.NamingException;
 import org.springframework.ldap.core.ContextSource;
-import org.springframework.ldap.core.DirContextProxy;
-import org.springframework.ldap.support.LdapUtils;
 import org.springframework.beans.factory.DisposableBean;
 
 /**
@@ -41,6 +38,18 @@ public class SingleContextSource implements ContextSource, DisposableBean {
 
     private static final Log log = LogFactory.getLog(SingleContextSource.class);
 
+    private static final ForwardingDirContext.Interceptor NON_CLOSING_INTERCEPTOR = new ForwardingDirContext.Interceptor() {
+        public void close(DirContext target) {
+            // Never close the target context, as this class will only be
+            // used for operations concerning the compensating transactions.
+        }
+
+        public boolean performWriteOperation(DirContext target,
+                String operation, Object[] args) {
+            return false;
+        }
+    };
+
     private final DirContext ctx;
 
     /**
@@ -67,13 +76,7 @@ public class SingleContextSource implements ContextSource, DisposableBean {
     }
 
     private DirContext getNonClosingDirContextProxy(DirContext context) {
-        return (DirContext) Proxy.newProxyInstance(DirContextProxy.class
-                .getClassLoader(), new Class[]{
-                LdapUtils.getActualTargetClass(context),
-                DirContextProxy.class},
-                new SingleContextSource.NonClosingDirContextInvocationHandler(
-                        context));
-
+        return ForwardingDirContext.forTarget(context, NON_CLOSING_INTERCEPTOR);
     }
 
     public DirContext getContext(String principal, String credentials)
@@ -100,6 +103,9 @@ public class SingleContextSource implements ContextSource, DisposableBean {
      * but making sure that no <code>close</code> operations will be performed.
      *
      * @author Mattias Hellborg Arthursson
+     * @deprecated no longer used by {@link SingleContextSource}, which now
+     * returns {@link ForwardingDirContext} instances rather than dynamic
+     * proxies.
      */
     public static class NonClosingDirContextInvocationHandler implements
             InvocationHandler {
@@ -24,10 +24,41 @@ package org.springframework.ldap.filter;
  */
 public abstract class AbstractFilter implements Filter {
 
+	/**
+	 * Length assumed for encoded filters which cannot tell.
+	 */
+	private static final int DEFAULT_ENCODED_LENGTH = 64;
+
 	protected AbstractFilter() {
 		super();
 	}
 
+	/**
+	 * Get the (possibly approximate) length of the encoded form of this
+	 * filter, used to size the buffer in {@link #encode()} so that it need
+	 * not be grown while encoding. Override to give a better estimate than the
+	 * default.
+	 * 
+	 * @return the expected length of the encoded filter.
+	 * @since 1.3.2
+	 */
+	protected int getEncodedLength() {
+		return DEFAULT_ENCODED_LENGTH;
+	}
+
+	/**
+	 * Get the expected length of the encoded form of any filter.
+	 * 
+	 * @param filter the filter.
+	 * @return the expected length of the encoded filter.
+	 */
+	static int getEncodedLength(Filter filter) {
+		if (filter instanceof AbstractFilter) {
+			return ((AbstractFilter) filter).getEncodedLength();
+		}
+		return DEFAULT_ENCODED_LENGTH;
+	}
+
 	/*
 	 * @see org.springframework.ldap.filter.Filter#encode(java.lang.StringBuffer)
 	 */
@@ -37,7 +68,7 @@ public abstract class AbstractFilter implements Filter {
 	 * @see org.springframework.ldap.filter.Filter#encode()
 	 */
 	public String encode() {
-		StringBuffer buf = new StringBuffer(256);
+		StringBuffer buf = new StringBuffer(getEncodedLength());
 		buf = encode(buf);
 		return buf.toString();
 	}
@@ -53,7 +53,7 @@ public abstract class BinaryLogicalFilter extends AbstractFilter {
 
 		}
 		else {
-			buff.append("(" + getLogicalOperator());
+			buff.append('(').append(getLogicalOperator());
 
 			for (Iterator i = queryList.iterator(); i.hasNext();) {
 				Filter query = (Filter) i.next();
@@ -66,6 +66,23 @@ public abstract class BinaryLogicalFilter extends AbstractFilter {
 		}
 	}
 
+	/*
+	 * @see org.springframework.ldap.filter.AbstractFilter#getEncodedLength()
+	 */
+	protected int getEncodedLength() {
+		if (queryList.size() == 1) {
+			return getEncodedLength((Filter) queryList.get(0));
+		}
+
+		int length = 0;
+		for (Iterator i = queryList.iterator(); i.hasNext();) {
+			length += getEncodedLength((Filter) i.next());
+		}
+
+		// Parentheses and operator
+		return length > 0 ? length + 3 : 0;
+	}
+
 	/**
 	 * Implement this in subclass to return the logical operator, for example
 	 * &qout;&amp;&qout;.
@@ -33,6 +33,12 @@ public abstract class CompareFilter extends AbstractFilter {
 
 	private final String encodedValue;
 
+	/**
+	 * The complete encoded filter, built on first use. As the filter is
+	 * immutable this never needs to be rebuilt.
+	 */
+	private transient String encodedFilter;
+
 	public CompareFilter(String attribute, String value) {
 		this.attribute = attribute;
 		this.value = value;
@@ -74,13 +80,35 @@ public abstract class CompareFilter extends AbstractFilter {
 	 * @see org.springframework.ldap.filter.AbstractFilter#encode(java.lang.StringBuffer)
 	 */
 	public StringBuffer encode(StringBuffer buff) {
-		buff.append('(');
-		buff.append(attribute).append(getCompareString()).append(encodedValue);
-		buff.append(')');
+		buff.append(getEncodedFilter());
 
 		return buff;
 	}
 
+	/*
+	 * @see org.springframework.ldap.filter.AbstractFilter#getEncodedLength()
+	 */
+	protected int getEncodedLength() {
+		return getEncodedFilter().length();
+	}
+
+	private String getEncodedFilter() {
+		String result = encodedFilter;
+		if (result == null) {
+			String compareString = getCompareString();
+			StringBuffer buff = new StringBuffer(String.valueOf(attribute).length() + compareString.length()
+					+ String.valueOf(encodedValue).length() + 2);
+			buff.append('(');
+			buff.append(attribute).append(compareString).append(encodedValue);
+			buff.append(')');
+
+			// Benign race - all threads will build the same string
+			result = buff.toString();
+			encodedFilter = result;
+		}
+		return result;
+	}
+
 	/**
 	 * Compares key and value before encoding.
 	 * 
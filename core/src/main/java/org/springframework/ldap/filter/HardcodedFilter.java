@@ -73,6 +73,13 @@ public class HardcodedFilter extends AbstractFilter {
 		return buff;
 	}
 
+	/*
+	 * @see org.springframework.ldap.filter.AbstractFilter#getEncodedLength()
+	 */
+	protected int getEncodedLength() {
+		return filter != null ? filter.length() : 0;
+	}
+
 	/*
 	 * @see java.lang.Object#equals(java.lang.Object)
 	 */
@@ -51,25 +51,7 @@ public class LikeFilter extends EqualsFilter {
 			return "";
 		}
 
-		String[] substrings = value.split("\\*", -2);
-
-		if (substrings.length == 1) {
-			return LdapEncoder.filterEncode(substrings[0]);
-		}
-
-		StringBuffer buff = new StringBuffer();
-		for (int i = 0; i < substrings.length; i++) {
-			buff.append(LdapEncoder.filterEncode(substrings[i]));
-			if (i < substrings.length - 1) {
-				buff.append("*");
-			}
-			else {
-				if (substrings[i].equals("")) {
-					continue;
-				}
-			}
-		}
-
-		return buff.toString();
+		// Escape everything but the wildcards
+		return LdapEncoder.filterEncode(value, true);
 	}
 }
@@ -63,6 +63,13 @@ public class NotFilter extends AbstractFilter {
 		return buff;
 	}
 
+	/*
+	 * @see org.springframework.ldap.filter.AbstractFilter#getEncodedLength()
+	 */
+	protected int getEncodedLength() {
+		return getEncodedLength(filter) + 3;
+	}
+
 	/*
 	 * @see java.lang.Object#equals(java.lang.Object)
 	 */
@@ -59,6 +59,13 @@ public class NotPresentFilter extends AbstractFilter {
 		return buff;
 	}
 
+	/*
+	 * @see org.springframework.ldap.filter.AbstractFilter#getEncodedLength()
+	 */
+	protected int getEncodedLength() {
+		return (attribute != null ? attribute.length() : 4) + 6;
+	}
+
 	/*
 	 * @see java.lang.Object#equals(java.lang.Object)
 	 */
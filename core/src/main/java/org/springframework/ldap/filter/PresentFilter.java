@@ -58,6 +58,13 @@ public class PresentFilter extends AbstractFilter {
 		return buff;
 	}
 
+	/*
+	 * @see org.springframework.ldap.filter.AbstractFilter#getEncodedLength()
+	 */
+	protected int getEncodedLength() {
+		return (attribute != null ? attribute.length() : 4) + 4;
+	}
+
 	/*
 	 * @see java.lang.Object#equals(java.lang.Object)
 	 */
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2005-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.ldap.pool;
+
+import javax.naming.directory.DirContext;
+
+/**
+ * Callback interface for being notified of events in a pooling
+ * <code>ContextSource</code>, e.g. for collecting statistics. All times are in
+ * milliseconds. Implementations will be called from many threads concurrently
+ * and should return quickly, as most notifications are made on the borrowing
+ * or returning thread.
+ * 
+ * @author agent
+ * @see org.springframework.ldap.pool.factory.PoolingContextSource#setPoolListener(PoolListener)
+ * @see org.springframework.ldap.pool.factory.PoolStatistics
+ * @since 1.3.2
+ */
+public interface PoolListener {
+	/**
+	 * A {@link DirContext} was borrowed from the pool.
+	 * 
+	 * @param dirContextType the type of the context.
+	 * @param borrowMillis the time spent getting the context from the pool,
+	 * including any waiting, creation and validation.
+	 */
+	void contextBorrowed(DirContextType dirContextType, long borrowMillis);
+
+	/**
+	 * A {@link DirContext} was returned to the pool.
+	 * 
+	 * @param dirContextType the type of the context.
+	 * @param inUseMillis the time since the context was borrowed.
+	 */
+	void contextReturned(DirContextType dirContextType, long inUseMillis);
+
+	/**
+	 * A new {@link DirContext} was created for the pool.
+	 * 
+	 * @param dirContextType the type of the context.
+	 * @param creationMillis the time it took to create the context.
+	 */
+	void contextCreated(DirContextType dirContextType, long creationMillis);
+
+	/**
+	 * A {@link DirContext} was validated.
+	 * 
+	 * @param dirContextType the type of the context.
+	 * @param validationMillis the time the validation took.
+	 * @param valid the result of the validation.
+	 */
+	void contextValidated(DirContextType dirContextType, long validationMillis, boolean valid);
+
+	/**
+	 * A {@link DirContext} was removed from the pool and closed.
+	 * 
+	 * @param dirContextType the type of the context.
+	 */
+	void contextDestroyed(DirContextType dirContextType);
+
+	/**
+	 * A {@link DirContext} has been borrowed for longer than the configured
+	 * leak detection threshold without having been returned. Each borrow will
+	 * be reported at most once.
+	 * 
+	 * @param dirContextType the type of the context.
+	 * @param heldMillis the time since the context was borrowed.
+	 * @param borrowLocation an exception created when the context was
+	 * borrowed, its stack trace showing where the context was borrowed from.
+	 */
+	void contextLeakSuspected(DirContextType dirContextType, long heldMillis, Throwable borrowLocation);
+}
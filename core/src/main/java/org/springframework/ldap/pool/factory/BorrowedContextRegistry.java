@@ -0,0 +1,143 @@
+/*
+ * Copyright 2005-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.ldap.pool.factory;
+
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.ldap.pool.DirContextType;
+
+/**
+ * Keeps track of the contexts currently borrowed from a pool, for measuring
+ * the time each context is held and for detecting contexts that are never
+ * returned. The entries are spread over a number of separately locked stripes
+ * based on the identity of the context, so that concurrent borrowers seldom
+ * contend.
+ * 
+ * @author agent
+ * @since 1.3.2
+ */
+class BorrowedContextRegistry {
+
+	private static final int NUMBER_OF_STRIPES = 16;
+
+	private final Map[] stripes = new Map[NUMBER_OF_STRIPES];
+
+	public BorrowedContextRegistry() {
+		for (int i = 0; i < stripes.length; i++) {
+			stripes[i] = new IdentityHashMap();
+		}
+	}
+
+	private Map stripeFor(Object context) {
+		int hash = System.identityHashCode(context);
+		hash ^= (hash >>> 16);
+		return stripes[hash & (NUMBER_OF_STRIPES - 1)];
+	}
+
+	/**
+	 * Register a context as borrowed.
+	 * 
+	 * @param context the (undecorated) context borrowed from the pool.
+	 * @param dirContextType the type of the context.
+	 * @param borrowLocation an exception recording the borrowing stack trace,
+	 * or <code>null</code> if not tracked.
+	 */
+	public void borrowed(Object context, DirContextType dirContextType, Throwable borrowLocation) {
+		Borrow borrow = new Borrow(dirContextType, System.currentTimeMillis(), borrowLocation);
+		Map stripe = stripeFor(context);
+		synchronized (stripe) {
+			stripe.put(context, borrow);
+		}
+	}
+
+	/**
+	 * Remove a context that has been returned or invalidated.
+	 * 
+	 * @param context the (undecorated) context.
+	 * @return the borrow information, or <code>null</code> if the context was
+	 * not registered.
+	 */
+	public Borrow returned(Object context) {
+		Map stripe = stripeFor(context);
+		synchronized (stripe) {
+			return (Borrow) stripe.remove(context);
+		}
+	}
+
+	/**
+	 * Find borrows that have been held longer than the specified threshold and
+	 * not previously reported. The found borrows are marked as reported.
+	 * 
+	 * @param thresholdMillis the leak detection threshold.
+	 * @return the suspected leaks.
+	 */
+	public List findSuspectedLeaks(long thresholdMillis) {
+		long limit = System.currentTimeMillis() - thresholdMillis;
+		List result = new LinkedList();
+		for (int i = 0; i < stripes.length; i++) {
+			Map stripe = stripes[i];
+			synchronized (stripe) {
+				for (Iterator iterator = stripe.values().iterator(); iterator.hasNext();) {
+					Borrow borrow = (Borrow) iterator.next();
+					if (!borrow.reported && borrow.borrowTime < limit) {
+						borrow.reported = true;
+						result.add(borrow);
+					}
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Information on one borrowed context.
+	 */
+	static final class Borrow {
+		private final DirContextType dirContextType;
+
+		private final long borrowTime;
+
+		private final Throwable borrowLocation;
+
+		/**
+		 * Guarded by the stripe holding the borrow.
+		 */
+		private boolean reported = false;
+
+		private Borrow(DirContextType dirContextType, long borrowTime, Throwable borrowLocation) {
+			this.dirContextType = dirContextType;
+			this.borrowTime = borrowTime;
+			this.borrowLocation = borrowLocation;
+		}
+
+		public DirContextType getDirContextType() {
+			return dirContextType;
+		}
+
+		public long getBorrowTime() {
+			return borrowTime;
+		}
+
+		public Throwable getBorrowLocation() {
+			return borrowLocation;
+		}
+	}
+}
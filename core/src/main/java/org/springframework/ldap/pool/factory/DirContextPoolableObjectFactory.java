@@ -24,6 +24,7 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.commons.pool.BaseKeyedPoolableObjectFactory;
 import org.springframework.ldap.core.ContextSource;
 import org.springframework.ldap.pool.DirContextType;
+import org.springframework.ldap.pool.PoolListener;
 import org.springframework.ldap.pool.validation.DirContextValidator;
 
 /**
@@ -71,6 +72,8 @@ class DirContextPoolableObjectFactory extends BaseKeyedPoolableObjectFactory {
 
     private DirContextValidator dirContextValidator;
 
+    private volatile PoolListener poolListener;
+
     /**
      * @return the contextSource
      */
@@ -110,6 +113,24 @@ class DirContextPoolableObjectFactory extends BaseKeyedPoolableObjectFactory {
         this.dirContextValidator = dirContextValidator;
     }
 
+    /**
+     * @return the poolListener
+     * @since 1.3.2
+     */
+    public PoolListener getPoolListener() {
+        return this.poolListener;
+    }
+
+    /**
+     * @param poolListener
+     *            the listener to notify of created, validated and destroyed
+     *            contexts, may be <code>null</code>
+     * @since 1.3.2
+     */
+    public void setPoolListener(PoolListener poolListener) {
+        this.poolListener = poolListener;
+    }
+
     /**
      * @see org.apache.commons.pool.BaseKeyedPoolableObjectFactory#makeObject(java.lang.Object)
      */
@@ -118,7 +139,20 @@ class DirContextPoolableObjectFactory extends BaseKeyedPoolableObjectFactory {
         Validate.isTrue(key instanceof DirContextType,
                 "key must be a DirContextType");
 
-        final DirContextType contextType = (DirContextType) key;
+        final PoolListener listener = this.poolListener;
+        if (listener == null) {
+            return createContext((DirContextType) key);
+        }
+
+        final long start = System.currentTimeMillis();
+        final Object dirContext = createContext((DirContextType) key);
+        listener.contextCreated((DirContextType) key, System
+                .currentTimeMillis()
+                - start);
+        return dirContext;
+    }
+
+    private Object createContext(DirContextType contextType) {
         if (this.logger.isDebugEnabled()) {
             this.logger.debug("Creating a new " + contextType + " DirContext");
         }
@@ -163,16 +197,24 @@ class DirContextPoolableObjectFactory extends BaseKeyedPoolableObjectFactory {
                 "The Object to validate must be of type '" + DirContext.class
                         + "'");
 
+        final DirContextType contextType = (DirContextType) key;
+        final PoolListener listener = this.poolListener;
+        final long start = listener != null ? System.currentTimeMillis() : 0;
+        boolean valid = false;
         try {
-            final DirContextType contextType = (DirContextType) key;
             final DirContext dirContext = (DirContext) obj;
-            return this.dirContextValidator.validateDirContext(contextType,
+            valid = this.dirContextValidator.validateDirContext(contextType,
                     dirContext);
         } catch (Exception e) {
             this.logger.warn("Failed to validate '" + obj
                     + "' due to an unexpected exception.", e);
-            return false;
         }
+
+        if (listener != null) {
+            listener.contextValidated(contextType, System.currentTimeMillis()
+                    - start, valid);
+        }
+        return valid;
     }
     
 
@@ -200,5 +242,10 @@ class DirContextPoolableObjectFactory extends BaseKeyedPoolableObjectFactory {
             this.logger.warn(
                     "An exception occured while closing '" + obj + "'", e);
         }
+
+        final PoolListener listener = this.poolListener;
+        if (listener != null && key instanceof DirContextType) {
+            listener.contextDestroyed((DirContextType) key);
+        }
     }
 }
@@ -0,0 +1,224 @@
+/*
+ * Copyright 2005-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.ldap.pool.factory;
+
+import org.springframework.ldap.pool.DirContextType;
+
+/**
+ * Statistics for one {@link DirContextType} of a pool, collected by
+ * {@link PoolStatistics}.
+ * 
+ * @author agent
+ * @since 1.3.2
+ */
+public class DirContextTypeStatistics implements DirContextTypeStatisticsMBean {
+
+	private final DirContextType dirContextType;
+
+	private final PoolStatistics poolStatistics;
+
+	private final LatencyHistogram borrowTimes = new LatencyHistogram();
+
+	private final LatencyHistogram inUseTimes = new LatencyHistogram();
+
+	private final LatencyHistogram creationTimes = new LatencyHistogram();
+
+	private final LatencyHistogram validationTimes = new LatencyHistogram();
+
+	private long validationFailureCount = 0;
+
+	private long destroyedCount = 0;
+
+	private long suspectedLeakCount = 0;
+
+	DirContextTypeStatistics(DirContextType dirContextType, PoolStatistics poolStatistics) {
+		this.dirContextType = dirContextType;
+		this.poolStatistics = poolStatistics;
+	}
+
+	void borrowed(long borrowMillis) {
+		borrowTimes.record(borrowMillis);
+	}
+
+	void returned(long inUseMillis) {
+		inUseTimes.record(inUseMillis);
+	}
+
+	void created(long creationMillis) {
+		creationTimes.record(creationMillis);
+	}
+
+	void validated(long validationMillis, boolean valid) {
+		validationTimes.record(validationMillis);
+		if (!valid) {
+			synchronized (this) {
+				validationFailureCount++;
+			}
+		}
+	}
+
+	synchronized void destroyed() {
+		destroyedCount++;
+	}
+
+	synchronized void leakSuspected() {
+		suspectedLeakCount++;
+	}
+
+	public String getType() {
+		return dirContextType.toString();
+	}
+
+	public int getNumActive() {
+		StripedKeyedObjectPool pool = poolStatistics.getPool();
+		return pool != null ? pool.getNumActive(dirContextType) : 0;
+	}
+
+	public int getNumIdle() {
+		StripedKeyedObjectPool pool = poolStatistics.getPool();
+		return pool != null ? pool.getNumIdle(dirContextType) : 0;
+	}
+
+	public int getNumWaiters() {
+		StripedKeyedObjectPool pool = poolStatistics.getPool();
+		return pool != null ? pool.getNumWaiters(dirContextType) : 0;
+	}
+
+	public long getNumEvicted() {
+		StripedKeyedObjectPool pool = poolStatistics.getPool();
+		return pool != null ? pool.getNumEvicted(dirContextType) : 0;
+	}
+
+	public long getBorrowCount() {
+		return borrowTimes.getCount();
+	}
+
+	public double getAverageBorrowMillis() {
+		return borrowTimes.getAverage();
+	}
+
+	public long getMaxBorrowMillis() {
+		return borrowTimes.getMax();
+	}
+
+	public long getBorrowMillis99thPercentile() {
+		return borrowTimes.getPercentile(0.99);
+	}
+
+	public String getBorrowHistogram() {
+		return borrowTimes.toString();
+	}
+
+	/**
+	 * Get the number of borrows in each bucket of the borrow time histogram.
+	 * 
+	 * @return the bucket counts.
+	 * @see #getHistogramBucketLimits()
+	 */
+	public long[] getBorrowHistogramBuckets() {
+		return borrowTimes.getBuckets();
+	}
+
+	public double getAverageInUseMillis() {
+		return inUseTimes.getAverage();
+	}
+
+	public long getMaxInUseMillis() {
+		return inUseTimes.getMax();
+	}
+
+	public String getInUseHistogram() {
+		return inUseTimes.toString();
+	}
+
+	/**
+	 * Get the number of borrows in each bucket of the in-use time histogram.
+	 * 
+	 * @return the bucket counts.
+	 * @see #getHistogramBucketLimits()
+	 */
+	public long[] getInUseHistogramBuckets() {
+		return inUseTimes.getBuckets();
+	}
+
+	/**
+	 * Get the upper (inclusive) limits in milliseconds of the histogram
+	 * buckets. The last bucket in each histogram holds all values above the
+	 * last limit.
+	 * 
+	 * @return the bucket limits.
+	 */
+	public long[] getHistogramBucketLimits() {
+		return (long[]) LatencyHistogram.BUCKET_LIMITS.clone();
+	}
+
+	public long getCreatedCount() {
+		return creationTimes.getCount();
+	}
+
+	public double getAverageCreationMillis() {
+		return creationTimes.getAverage();
+	}
+
+	public long getMaxCreationMillis() {
+		return creationTimes.getMax();
+	}
+
+	public long getValidationCount() {
+		return validationTimes.getCount();
+	}
+
+	public synchronized long getValidationFailureCount() {
+		return validationFailureCount;
+	}
+
+	public double getAverageValidationMillis() {
+		return validationTimes.getAverage();
+	}
+
+	public long getMaxValidationMillis() {
+		return validationTimes.getMax();
+	}
+
+	public synchronized long getDestroyedCount() {
+		return destroyedCount;
+	}
+
+	public synchronized long getSuspectedLeakCount() {
+		return suspectedLeakCount;
+	}
+
+	public void reset() {
+		borrowTimes.reset();
+		inUseTimes.reset();
+		creationTimes.reset();
+		validationTimes.reset();
+		synchronized (this) {
+			validationFailureCount = 0;
+			destroyedCount = 0;
+			suspectedLeakCount = 0;
+		}
+	}
+
+	public String toString() {
+		return dirContextType + ": active=" + getNumActive() + ", idle=" + getNumIdle() + ", waiters="
+				+ getNumWaiters() + ", borrows=" + getBorrowCount() + ", avgBorrowMillis=" + getAverageBorrowMillis()
+				+ ", maxBorrowMillis=" + getMaxBorrowMillis() + ", created=" + getCreatedCount() + ", destroyed="
+				+ getDestroyedCount() + ", evicted=" + getNumEvicted() + ", suspectedLeaks="
+				+ getSuspectedLeakCount();
+	}
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2005-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.ldap.pool.factory;
+
+/**
+ * Management interface of {@link DirContextTypeStatistics}, for exposing the
+ * statistics of one <code>DirContextType</code> of a pool as a JMX Standard
+ * MBean. All times are in milliseconds.
+ * 
+ * @author agent
+ * @since 1.3.2
+ */
+public interface DirContextTypeStatisticsMBean {
+	/**
+	 * @return the name of the <code>DirContextType</code>.
+	 */
+	String getType();
+
+	/**
+	 * @return the number of contexts currently borrowed from the pool.
+	 */
+	int getNumActive();
+
+	/**
+	 * @return the number of idle contexts in the pool.
+	 */
+	int getNumIdle();
+
+	/**
+	 * @return the number of threads currently waiting for a context.
+	 */
+	int getNumWaiters();
+
+	/**
+	 * @return the number of contexts destroyed by the idle object evictor.
+	 */
+	long getNumEvicted();
+
+	long getBorrowCount();
+
+	double getAverageBorrowMillis();
+
+	long getMaxBorrowMillis();
+
+	/**
+	 * @return the approximate 99th percentile of the borrow times, or -1 if
+	 * above the largest histogram bucket.
+	 */
+	long getBorrowMillis99thPercentile();
+
+	/**
+	 * @return a readable histogram of the borrow times.
+	 */
+	String getBorrowHistogram();
+
+	double getAverageInUseMillis();
+
+	long getMaxInUseMillis();
+
+	/**
+	 * @return a readable histogram of the time contexts were held by the
+	 * borrower.
+	 */
+	String getInUseHistogram();
+
+	long getCreatedCount();
+
+	double getAverageCreationMillis();
+
+	long getMaxCreationMillis();
+
+	long getValidationCount();
+
+	long getValidationFailureCount();
+
+	double getAverageValidationMillis();
+
+	long getMaxValidationMillis();
+
+	long getDestroyedCount();
+
+	/**
+	 * @return the number of borrows held longer than the leak detection
+	 * threshold.
+	 */
+	long getSuspectedLeakCount();
+
+	/**
+	 * Reset all collected statistics.
+	 */
+	void reset();
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2005-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.ldap.pool.factory;
+
+/**
+ * A histogram of durations in milliseconds, with fixed bucket limits. In order
+ * not to make all recording threads contend on one lock, the counters are
+ * spread over a number of cells, each one with its own lock, and summed up
+ * when read.
+ * 
+ * @author agent
+ * @since 1.3.2
+ */
+class LatencyHistogram {
+
+	/**
+	 * Upper (inclusive) limits of the buckets. The last bucket holds all
+	 * values above the last limit.
+	 */
+	static final long[] BUCKET_LIMITS = new long[] { 1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000 };
+
+	private static final int NUMBER_OF_CELLS = 16;
+
+	private final Cell[] cells = new Cell[NUMBER_OF_CELLS];
+
+	public LatencyHistogram() {
+		for (int i = 0; i < cells.length; i++) {
+			cells[i] = new Cell();
+		}
+	}
+
+	/**
+	 * Record one value.
+	 * 
+	 * @param millis the value to record.
+	 */
+	public void record(long millis) {
+		int bucket = 0;
+		while (bucket < BUCKET_LIMITS.length && millis > BUCKET_LIMITS[bucket]) {
+			bucket++;
+		}
+
+		int hash = System.identityHashCode(Thread.currentThread());
+		hash ^= (hash >>> 16);
+		Cell cell = cells[hash & (NUMBER_OF_CELLS - 1)];
+		synchronized (cell) {
+			cell.buckets[bucket]++;
+			cell.count++;
+			cell.sum += millis;
+			if (millis > cell.max) {
+				cell.max = millis;
+			}
+		}
+	}
+
+	public long getCount() {
+		long result = 0;
+		for (int i = 0; i < cells.length; i++) {
+			synchronized (cells[i]) {
+				result += cells[i].count;
+			}
+		}
+		return result;
+	}
+
+	public long getMax() {
+		long result = 0;
+		for (int i = 0; i < cells.length; i++) {
+			synchronized (cells[i]) {
+				result = Math.max(result, cells[i].max);
+			}
+		}
+		return result;
+	}
+
+	public double getAverage() {
+		long count = 0;
+		long sum = 0;
+		for (int i = 0; i < cells.length; i++) {
+			synchronized (cells[i]) {
+				count += cells[i].count;
+				sum += cells[i].sum;
+			}
+		}
+		return count > 0 ? (double) sum / count : 0;
+	}
+
+	/**
+	 * Get the number of values in each bucket. The value at index
+	 * <code>i</code> is the number of recorded values greater than
+	 * <code>BUCKET_LIMITS[i - 1]</code> and less than or equal to
+	 * <code>BUCKET_LIMITS[i]</code>; the last value is the number of values
+	 * greater than the last limit.
+	 * 
+	 * @return the bucket counts.
+	 */
+	public long[] getBuckets() {
+		long[] result = new long[BUCKET_LIMITS.length + 1];
+		for (int i = 0; i < cells.length; i++) {
+			synchronized (cells[i]) {
+				for (int j = 0; j < result.length; j++) {
+					result[j] += cells[i].buckets[j];
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Get the value below which the specified fraction of the recorded values
+	 * fall, approximated by the upper limit of the bucket it falls in.
+	 * 
+	 * @param fraction the fraction, e.g. 0.99 for the 99th percentile.
+	 * @return the approximate percentile value, or -1 if it is above the last
+	 * bucket limit.
+	 */
+	public long getPercentile(double fraction) {
+		long[] buckets = getBuckets();
+		long total = 0;
+		for (int i = 0; i < buckets.length; i++) {
+			total += buckets[i];
+		}
+		if (total == 0) {
+			return 0;
+		}
+
+		long threshold = (long) Math.ceil(total * fraction);
+		long accumulated = 0;
+		for (int i = 0; i < BUCKET_LIMITS.length; i++) {
+			accumulated += buckets[i];
+			if (accumulated >= threshold) {
+				return BUCKET_LIMITS[i];
+			}
+		}
+		return -1;
+	}
+
+	public void reset() {
+		for (int i = 0; i < cells.length; i++) {
+			Cell cell = cells[i];
+			synchronized (cell) {
+				for (int j = 0; j < cell.buckets.length; j++) {
+					cell.buckets[j] = 0;
+				}
+				cell.count = 0;
+				cell.sum = 0;
+				cell.max = 0;
+			}
+		}
+	}
+
+	/**
+	 * Get a readable representation of the histogram, e.g.
+	 * <code>&lt;=1ms: 10, &lt;=2ms: 3, ..., &gt;10000ms: 0</code>.
+	 */
+	public String toString() {
+		long[] buckets = getBuckets();
+		StringBuffer sb = new StringBuffer();
+		for (int i = 0; i < BUCKET_LIMITS.length; i++) {
+			sb.append("<=").append(BUCKET_LIMITS[i]).append("ms: ").append(buckets[i]).append(", ");
+		}
+		sb.append(">").append(BUCKET_LIMITS[BUCKET_LIMITS.length - 1]).append("ms: ").append(
+				buckets[BUCKET_LIMITS.length]);
+		return sb.toString();
+	}
+
+	private static final class Cell {
+		private final long[] buckets = new long[BUCKET_LIMITS.length + 1];
+
+		private long count = 0;
+
+		private long sum = 0;
+
+		private long max = 0;
+	}
+}
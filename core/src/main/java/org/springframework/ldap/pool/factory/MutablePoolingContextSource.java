@@ -19,7 +19,7 @@ package org.springframework.ldap.pool.factory;
 import javax.naming.directory.DirContext;
 import javax.naming.ldap.LdapContext;
 
-import org.springframework.dao.DataAccessResourceFailureException;
+import org.apache.commons.pool.KeyedObjectPool;
 import org.springframework.ldap.pool.DelegatingDirContext;
 import org.springframework.ldap.pool.DirContextType;
 import org.springframework.ldap.pool.MutableDelegatingLdapContext;
@@ -32,18 +32,13 @@ import org.springframework.ldap.pool.MutableDelegatingLdapContext;
  */
 public class MutablePoolingContextSource extends PoolingContextSource {
 	protected DirContext getContext(DirContextType dirContextType) {
-		final DirContext dirContext;
-		try {
-			dirContext = (DirContext) this.keyedObjectPool.borrowObject(dirContextType);
-		}
-		catch (Exception e) {
-			throw new DataAccessResourceFailureException("Failed to borrow DirContext from pool.", e);
-		}
+		final KeyedObjectPool contextPool = getContextPool();
+		final DirContext dirContext = borrowDirContext(contextPool, dirContextType);
 
 		if (dirContext instanceof LdapContext) {
-			return new MutableDelegatingLdapContext(this.keyedObjectPool, (LdapContext) dirContext, dirContextType);
+			return new MutableDelegatingLdapContext(contextPool, (LdapContext) dirContext, dirContextType);
 		}
 
-		return new DelegatingDirContext(this.keyedObjectPool, dirContext, dirContextType);
+		return new DelegatingDirContext(contextPool, dirContext, dirContextType);
 	}
 }
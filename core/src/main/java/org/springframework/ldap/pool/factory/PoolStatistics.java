@@ -0,0 +1,139 @@
+/*
+ * Copyright 2005-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.ldap.pool.factory;
+
+import org.apache.commons.lang.Validate;
+import org.springframework.ldap.pool.DirContextType;
+import org.springframework.ldap.pool.PoolListener;
+
+/**
+ * A {@link PoolListener} collecting statistics for a
+ * {@link PoolingContextSource}: histograms of the time spent borrowing
+ * contexts and of the time contexts are held by borrowers, creation and
+ * validation timings, and counts of destroyed, evicted and suspected leaked
+ * contexts. The statistics are kept separately for each {@link DirContextType}
+ * in {@link DirContextTypeStatistics} instances, which are JMX Standard MBeans
+ * and can be exported e.g. using Spring's <code>MBeanExporter</code>:
+ * 
+ * <pre>
+ * &lt;bean id=&quot;poolStatistics&quot; class=&quot;org.springframework.ldap.pool.factory.PoolStatistics&quot;&gt;
+ *    &lt;property name=&quot;poolingContextSource&quot; ref=&quot;contextSource&quot; /&gt;
+ * &lt;/bean&gt;
+ * 
+ * &lt;bean class=&quot;org.springframework.jmx.export.MBeanExporter&quot;&gt;
+ *    &lt;property name=&quot;beans&quot;&gt;
+ *       &lt;map&gt;
+ *          &lt;entry key=&quot;spring-ldap:type=pool,name=readOnly&quot;
+ *             value-ref=&quot;poolStatistics.readOnlyStatistics&quot; /&gt;
+ *          &lt;entry key=&quot;spring-ldap:type=pool,name=readWrite&quot;
+ *             value-ref=&quot;poolStatistics.readWriteStatistics&quot; /&gt;
+ *       &lt;/map&gt;
+ *    &lt;/property&gt;
+ * &lt;/bean&gt;
+ * 
+ * &lt;util:property-path id=&quot;poolStatistics.readOnlyStatistics&quot; /&gt;
+ * &lt;util:property-path id=&quot;poolStatistics.readWriteStatistics&quot; /&gt;
+ * </pre>
+ * 
+ * Setting the <code>poolingContextSource</code> property registers the
+ * statistics as listener of the pool. Statistics collection is designed to
+ * add as little contention as possible to the borrowing threads.
+ * 
+ * @author agent
+ * @since 1.3.2
+ */
+public class PoolStatistics implements PoolListener {
+
+	private final DirContextTypeStatistics readOnlyStatistics = new DirContextTypeStatistics(
+			DirContextType.READ_ONLY, this);
+
+	private final DirContextTypeStatistics readWriteStatistics = new DirContextTypeStatistics(
+			DirContextType.READ_WRITE, this);
+
+	private volatile PoolingContextSource poolingContextSource;
+
+	/**
+	 * Set the pool to collect statistics for. This will register this
+	 * instance as the {@link PoolListener} of the pool.
+	 * 
+	 * @param poolingContextSource the pool to monitor.
+	 */
+	public void setPoolingContextSource(PoolingContextSource poolingContextSource) {
+		Validate.notNull(poolingContextSource, "poolingContextSource may not be null");
+		this.poolingContextSource = poolingContextSource;
+		poolingContextSource.setPoolListener(this);
+	}
+
+	StripedKeyedObjectPool getPool() {
+		PoolingContextSource source = this.poolingContextSource;
+		return source != null ? source.getStripedKeyedObjectPool() : null;
+	}
+
+	public DirContextTypeStatistics getReadOnlyStatistics() {
+		return readOnlyStatistics;
+	}
+
+	public DirContextTypeStatistics getReadWriteStatistics() {
+		return readWriteStatistics;
+	}
+
+	/**
+	 * Get the statistics of the specified {@link DirContextType}.
+	 * 
+	 * @param dirContextType the type to get statistics for.
+	 * @return the statistics.
+	 */
+	public DirContextTypeStatistics getStatistics(DirContextType dirContextType) {
+		return dirContextType == DirContextType.READ_WRITE ? readWriteStatistics : readOnlyStatistics;
+	}
+
+	/**
+	 * Reset all collected statistics.
+	 */
+	public void reset() {
+		readOnlyStatistics.reset();
+		readWriteStatistics.reset();
+	}
+
+	public void contextBorrowed(DirContextType dirContextType, long borrowMillis) {
+		getStatistics(dirContextType).borrowed(borrowMillis);
+	}
+
+	public void contextReturned(DirContextType dirContextType, long inUseMillis) {
+		getStatistics(dirContextType).returned(inUseMillis);
+	}
+
+	public void contextCreated(DirContextType dirContextType, long creationMillis) {
+		getStatistics(dirContextType).created(creationMillis);
+	}
+
+	public void contextValidated(DirContextType dirContextType, long validationMillis, boolean valid) {
+		getStatistics(dirContextType).validated(validationMillis, valid);
+	}
+
+	public void contextDestroyed(DirContextType dirContextType) {
+		getStatistics(dirContextType).destroyed();
+	}
+
+	public void contextLeakSuspected(DirContextType dirContextType, long heldMillis, Throwable borrowLocation) {
+		getStatistics(dirContextType).leakSuspected();
+	}
+
+	public String toString() {
+		return readOnlyStatistics + "; " + readWriteStatistics;
+	}
+}
@@ -16,25 +16,41 @@
 
 package org.springframework.ldap.pool.factory;
 
+import java.util.Iterator;
+import java.util.List;
+import java.util.Timer;
+import java.util.TimerTask;
+
 import javax.naming.directory.DirContext;
 import javax.naming.ldap.LdapContext;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.apache.commons.pool.impl.GenericKeyedObjectPool;
+import org.apache.commons.pool.BaseKeyedObjectPool;
+import org.apache.commons.pool.KeyedObjectPool;
 import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.dao.DataAccessResourceFailureException;
 import org.springframework.ldap.NamingException;
 import org.springframework.ldap.core.ContextSource;
 import org.springframework.ldap.pool.DelegatingDirContext;
 import org.springframework.ldap.pool.DelegatingLdapContext;
 import org.springframework.ldap.pool.DirContextType;
+import org.springframework.ldap.pool.PoolListener;
 import org.springframework.ldap.pool.validation.DirContextValidator;
 
 /**
  * A {@link ContextSource} implementation that wraps an object pool and another
  * {@link ContextSource}. {@link DirContext}s are retrieved from the pool which
  * maintains them.
+ * <p>
+ * The pool is a {@link StripedKeyedObjectPool}, which keeps the idle contexts
+ * of each {@link DirContextType} in a number of separately locked stripes, so
+ * that concurrent borrowers do not contend on one single pool-wide lock. The
+ * configuration properties and their semantics are the same as for the
+ * commons-pool <code>GenericKeyedObjectPool</code> previously used.
  * 
  * 
  * <br>
@@ -63,287 +79,554 @@ import org.springframework.ldap.pool.validation.DirContextValidator;
  * </tr>
  * <tr>
  * <td valign="top">minIdle</td>
- * <td valign="top">{@link GenericKeyedObjectPool#setMinIdle(int)}</td>
+ * <td valign="top">{@link StripedKeyedObjectPool#setMinIdle(int)}</td>
  * <td valign="top">No</td>
  * <td valign="top">0</td>
  * </tr>
  * <tr>
  * <td valign="top">maxIdle</td>
- * <td valign="top">{@link GenericKeyedObjectPool#setMaxIdle(int)}</td>
+ * <td valign="top">{@link StripedKeyedObjectPool#setMaxIdle(int)}</td>
  * <td valign="top">No</td>
  * <td valign="top">8</td>
  * </tr>
  * <tr>
  * <td valign="top">maxActive</td>
- * <td valign="top">{@link GenericKeyedObjectPool#setMaxActive(int)}</td>
+ * <td valign="top">{@link StripedKeyedObjectPool#setMaxActive(int)}</td>
  * <td valign="top">No</td>
  * <td valign="top">8</td>
  * </tr>
  * <tr>
  * <td valign="top">maxTotal</td>
- * <td valign="top">{@link GenericKeyedObjectPool#setMaxTotal(int)}</td>
+ * <td valign="top">{@link StripedKeyedObjectPool#setMaxTotal(int)}</td>
  * <td valign="top">No</td>
  * <td valign="top">-1</td>
  * </tr>
  * <tr>
  * <td valign="top">maxWait</td>
- * <td valign="top">{@link GenericKeyedObjectPool#setMaxWait(long)}</td>
+ * <td valign="top">{@link StripedKeyedObjectPool#setMaxWait(long)}</td>
  * <td valign="top">No</td>
  * <td valign="top">-1L</td>
  * </tr>
  * <tr>
  * <td valign="top">whenExhaustedAction</td>
- * <td valign="top">{@link GenericKeyedObjectPool#setWhenExhaustedAction(byte)}</td>
+ * <td valign="top">{@link StripedKeyedObjectPool#setWhenExhaustedAction(byte)}</td>
  * <td valign="top">No</td>
- * <td valign="top">{@link GenericKeyedObjectPool#WHEN_EXHAUSTED_BLOCK}</td>
+ * <td valign="top">{@link StripedKeyedObjectPool#WHEN_EXHAUSTED_BLOCK}</td>
  * </tr>
  * <tr>
  * <td valign="top">testOnBorrow</td>
- * <td valign="top">{@link GenericKeyedObjectPool#setTestOnBorrow(boolean)}</td>
+ * <td valign="top">{@link StripedKeyedObjectPool#setTestOnBorrow(boolean)}</td>
  * <td valign="top">No</td>
  * <td valign="top">false</td>
  * </tr>
  * <tr>
  * <td valign="top">testOnReturn</td>
- * <td valign="top">{@link GenericKeyedObjectPool#setTestOnReturn(boolean)}</td>
+ * <td valign="top">{@link StripedKeyedObjectPool#setTestOnReturn(boolean)}</td>
  * <td valign="top">No</td>
  * <td valign="top">false</td>
  * </tr>
  * <tr>
  * <td valign="top">testWhileIdle</td>
- * <td valign="top">{@link GenericKeyedObjectPool#setTestWhileIdle(boolean)}</td>
+ * <td valign="top">{@link StripedKeyedObjectPool#setTestWhileIdle(boolean)}</td>
  * <td valign="top">No</td>
  * <td valign="top">false</td>
  * </tr>
  * <tr>
  * <td valign="top">timeBetweenEvictionRunsMillis</td>
  * <td valign="top">
- * {@link GenericKeyedObjectPool#setTimeBetweenEvictionRunsMillis(long)}</td>
+ * {@link StripedKeyedObjectPool#setTimeBetweenEvictionRunsMillis(long)}</td>
  * <td valign="top">No</td>
  * <td valign="top">-1L</td>
  * </tr>
  * <tr>
  * <td valign="top">minEvictableIdleTimeMillis</td>
  * <td valign="top">
- * {@link GenericKeyedObjectPool#setMinEvictableIdleTimeMillis(long)}</td>
+ * {@link StripedKeyedObjectPool#setMinEvictableIdleTimeMillis(long)}</td>
  * <td valign="top">No</td>
  * <td valign="top">1000L * 60L * 30L</td>
  * </tr>
  * <tr>
  * <td valign="top">numTestsPerEvictionRun</td>
  * <td valign="top">
- * {@link GenericKeyedObjectPool#setNumTestsPerEvictionRun(int)}</td>
+ * {@link StripedKeyedObjectPool#setNumTestsPerEvictionRun(int)}</td>
  * <td valign="top">No</td>
  * <td valign="top">3</td>
  * </tr>
+ * <tr>
+ * <td valign="top">validationFreshnessMillis</td>
+ * <td valign="top">
+ * {@link StripedKeyedObjectPool#setValidationFreshnessMillis(long)}</td>
+ * <td valign="top">No</td>
+ * <td valign="top">-1L</td>
+ * </tr>
+ * <tr>
+ * <td valign="top">timeBetweenValidationRunsMillis</td>
+ * <td valign="top">
+ * {@link StripedKeyedObjectPool#setTimeBetweenValidationRunsMillis(long)}</td>
+ * <td valign="top">No</td>
+ * <td valign="top">-1L</td>
+ * </tr>
+ * <tr>
+ * <td valign="top">initialReadOnlyContexts</td>
+ * <td valign="top">
+ * Number of {@link DirContextType#READ_ONLY} contexts to create on
+ * {@link #warmUp()}, which is called on {@link #afterPropertiesSet()}.</td>
+ * <td valign="top">No</td>
+ * <td valign="top">0</td>
+ * </tr>
+ * <tr>
+ * <td valign="top">initialReadWriteContexts</td>
+ * <td valign="top">
+ * Number of {@link DirContextType#READ_WRITE} contexts to create on
+ * {@link #warmUp()}, which is called on {@link #afterPropertiesSet()}.</td>
+ * <td valign="top">No</td>
+ * <td valign="top">0</td>
+ * </tr>
+ * <tr>
+ * <td valign="top">warmUpTaskExecutor</td>
+ * <td valign="top">
+ * The {@link TaskExecutor} used for creating the initial contexts in
+ * parallel.</td>
+ * <td valign="top">No</td>
+ * <td valign="top">{@link SimpleAsyncTaskExecutor}</td>
+ * </tr>
+ * <tr>
+ * <td valign="top">poolListener</td>
+ * <td valign="top">
+ * A {@link PoolListener} to be notified of borrowed, returned, created,
+ * validated and destroyed contexts, e.g. a {@link PoolStatistics} instance.</td>
+ * <td valign="top">No</td>
+ * <td valign="top">null</td>
+ * </tr>
+ * <tr>
+ * <td valign="top">leakDetectionThresholdMillis</td>
+ * <td valign="top">
+ * If positive, contexts held by a borrower for longer than this will be
+ * reported as suspected leaks, logging the stack trace of the borrowing code.</td>
+ * <td valign="top">No</td>
+ * <td valign="top">-1L</td>
+ * </tr>
  * </table>
+ * <p>
+ * To avoid the cost of validating contexts on borrow while keeping the safety
+ * of validated contexts, enable <code>testOnBorrow</code> and background
+ * validation, with <code>timeBetweenValidationRunsMillis</code> somewhat
+ * shorter than <code>validationFreshnessMillis</code>. Idle contexts will then
+ * be validated by a dedicated background thread and handed out without
+ * further validation, while contexts failing validation are replaced ahead of
+ * demand.
  * 
  * @author Eric Dalquist
  */
-public class PoolingContextSource implements ContextSource, DisposableBean {
+public class PoolingContextSource implements ContextSource, InitializingBean, DisposableBean {
 	/**
 	 * The logger for this class and sub-classes
 	 */
 	protected final Log logger = LogFactory.getLog(this.getClass());
 
-	protected final GenericKeyedObjectPool keyedObjectPool;
+	private final StripedKeyedObjectPool keyedObjectPool;
 
 	private final DirContextPoolableObjectFactory dirContextPoolableObjectFactory;
 
+	private int initialReadOnlyContexts = 0;
+
+	private int initialReadWriteContexts = 0;
+
+	private TaskExecutor warmUpTaskExecutor = new SimpleAsyncTaskExecutor(PoolingContextSource.class.getName());
+
+	private volatile PoolListener poolListener;
+
+	private volatile long leakDetectionThresholdMillis = -1;
+
+	private Timer leakDetectionTimer;
+
+	private final BorrowedContextRegistry borrowedContexts = new BorrowedContextRegistry();
+
+	private final KeyedObjectPool monitoringPool = new MonitoringKeyedObjectPool();
+
 	/**
 	 * Creates a new pooling context source, setting up the DirContext object
-	 * factory and generic keyed object pool.
+	 * factory and striped keyed object pool.
 	 */
 	public PoolingContextSource() {
 		this.dirContextPoolableObjectFactory = new DirContextPoolableObjectFactory();
-		this.keyedObjectPool = new GenericKeyedObjectPool();
+		this.keyedObjectPool = new StripedKeyedObjectPool();
 		this.keyedObjectPool.setFactory(this.dirContextPoolableObjectFactory);
 	}
 
+	/**
+	 * Get the pool holding the contexts of this instance.
+	 * 
+	 * @return the keyed object pool, keyed by {@link DirContextType}.
+	 * @since 1.3.2
+	 */
+	protected KeyedObjectPool getKeyedObjectPool() {
+		return this.keyedObjectPool;
+	}
+
+	StripedKeyedObjectPool getStripedKeyedObjectPool() {
+		return this.keyedObjectPool;
+	}
+
 	// ***** Pool Property Configuration *****//
 
 	/**
-	 * @see org.apache.commons.pool.impl.GenericKeyedObjectPool#getMaxActive()
+	 * @see StripedKeyedObjectPool#getMaxActive()
 	 */
 	public int getMaxActive() {
 		return this.keyedObjectPool.getMaxActive();
 	}
 
 	/**
-	 * @see org.apache.commons.pool.impl.GenericKeyedObjectPool#getMaxIdle()
+	 * @see StripedKeyedObjectPool#getMaxIdle()
 	 */
 	public int getMaxIdle() {
 		return this.keyedObjectPool.getMaxIdle();
 	}
 
 	/**
-	 * @see org.apache.commons.pool.impl.GenericKeyedObjectPool#getMaxTotal()
+	 * @see StripedKeyedObjectPool#getMaxTotal()
 	 */
 	public int getMaxTotal() {
 		return this.keyedObjectPool.getMaxTotal();
 	}
 
 	/**
-	 * @see org.apache.commons.pool.impl.GenericKeyedObjectPool#getMaxWait()
+	 * @see StripedKeyedObjectPool#getMaxWait()
 	 */
 	public long getMaxWait() {
 		return this.keyedObjectPool.getMaxWait();
 	}
 
 	/**
-	 * @see org.apache.commons.pool.impl.GenericKeyedObjectPool#getMinEvictableIdleTimeMillis()
+	 * @see StripedKeyedObjectPool#getMinEvictableIdleTimeMillis()
 	 */
 	public long getMinEvictableIdleTimeMillis() {
 		return this.keyedObjectPool.getMinEvictableIdleTimeMillis();
 	}
 
 	/**
-	 * @see org.apache.commons.pool.impl.GenericKeyedObjectPool#getMinIdle()
+	 * @see StripedKeyedObjectPool#getMinIdle()
 	 */
 	public int getMinIdle() {
 		return this.keyedObjectPool.getMinIdle();
 	}
 
 	/**
-	 * @see org.apache.commons.pool.impl.GenericKeyedObjectPool#getNumActive()
+	 * @see StripedKeyedObjectPool#getNumActive()
 	 */
 	public int getNumActive() {
 		return this.keyedObjectPool.getNumActive();
 	}
 
 	/**
-	 * @see org.apache.commons.pool.impl.GenericKeyedObjectPool#getNumIdle()
+	 * @see StripedKeyedObjectPool#getNumIdle()
 	 */
 	public int getNumIdle() {
 		return this.keyedObjectPool.getNumIdle();
 	}
 
 	/**
-	 * @see org.apache.commons.pool.impl.GenericKeyedObjectPool#getNumTestsPerEvictionRun()
+	 * @see StripedKeyedObjectPool#getNumTestsPerEvictionRun()
 	 */
 	public int getNumTestsPerEvictionRun() {
 		return this.keyedObjectPool.getNumTestsPerEvictionRun();
 	}
 
 	/**
-	 * @see org.apache.commons.pool.impl.GenericKeyedObjectPool#getTestOnBorrow()
+	 * @see StripedKeyedObjectPool#getTestOnBorrow()
 	 */
 	public boolean getTestOnBorrow() {
 		return this.keyedObjectPool.getTestOnBorrow();
 	}
 
 	/**
-	 * @see org.apache.commons.pool.impl.GenericKeyedObjectPool#getTestOnReturn()
+	 * @see StripedKeyedObjectPool#getTestOnReturn()
 	 */
 	public boolean getTestOnReturn() {
 		return this.keyedObjectPool.getTestOnReturn();
 	}
 
 	/**
-	 * @see org.apache.commons.pool.impl.GenericKeyedObjectPool#getTestWhileIdle()
+	 * @see StripedKeyedObjectPool#getTestWhileIdle()
 	 */
 	public boolean getTestWhileIdle() {
 		return this.keyedObjectPool.getTestWhileIdle();
 	}
 
 	/**
-	 * @see org.apache.commons.pool.impl.GenericKeyedObjectPool#getTimeBetweenEvictionRunsMillis()
+	 * @see StripedKeyedObjectPool#getTimeBetweenEvictionRunsMillis()
 	 */
 	public long getTimeBetweenEvictionRunsMillis() {
 		return this.keyedObjectPool.getTimeBetweenEvictionRunsMillis();
 	}
 
 	/**
-	 * @see org.apache.commons.pool.impl.GenericKeyedObjectPool#getWhenExhaustedAction()
+	 * @see StripedKeyedObjectPool#getWhenExhaustedAction()
 	 */
 	public byte getWhenExhaustedAction() {
 		return this.keyedObjectPool.getWhenExhaustedAction();
 	}
 
 	/**
-	 * @see org.apache.commons.pool.impl.GenericKeyedObjectPool#setMaxActive(int)
+	 * @see StripedKeyedObjectPool#getValidationFreshnessMillis()
+	 * @since 1.3.2
+	 */
+	public long getValidationFreshnessMillis() {
+		return this.keyedObjectPool.getValidationFreshnessMillis();
+	}
+
+	/**
+	 * @see StripedKeyedObjectPool#getTimeBetweenValidationRunsMillis()
+	 * @since 1.3.2
+	 */
+	public long getTimeBetweenValidationRunsMillis() {
+		return this.keyedObjectPool.getTimeBetweenValidationRunsMillis();
+	}
+
+	/**
+	 * @see StripedKeyedObjectPool#setMaxActive(int)
 	 */
 	public void setMaxActive(int maxActive) {
 		this.keyedObjectPool.setMaxActive(maxActive);
 	}
 
 	/**
-	 * @see org.apache.commons.pool.impl.GenericKeyedObjectPool#setMaxIdle(int)
+	 * @see StripedKeyedObjectPool#setMaxIdle(int)
 	 */
 	public void setMaxIdle(int maxIdle) {
 		this.keyedObjectPool.setMaxIdle(maxIdle);
 	}
 
 	/**
-	 * @see org.apache.commons.pool.impl.GenericKeyedObjectPool#setMaxTotal(int)
+	 * @see StripedKeyedObjectPool#setMaxTotal(int)
 	 */
 	public void setMaxTotal(int maxTotal) {
 		this.keyedObjectPool.setMaxTotal(maxTotal);
 	}
 
 	/**
-	 * @see org.apache.commons.pool.impl.GenericKeyedObjectPool#setMaxWait(long)
+	 * @see StripedKeyedObjectPool#setMaxWait(long)
 	 */
 	public void setMaxWait(long maxWait) {
 		this.keyedObjectPool.setMaxWait(maxWait);
 	}
 
 	/**
-	 * @see org.apache.commons.pool.impl.GenericKeyedObjectPool#setMinEvictableIdleTimeMillis(long)
+	 * @see StripedKeyedObjectPool#setMinEvictableIdleTimeMillis(long)
 	 */
 	public void setMinEvictableIdleTimeMillis(long minEvictableIdleTimeMillis) {
 		this.keyedObjectPool.setMinEvictableIdleTimeMillis(minEvictableIdleTimeMillis);
 	}
 
 	/**
-	 * @see org.apache.commons.pool.impl.GenericKeyedObjectPool#setMinIdle(int)
+	 * @see StripedKeyedObjectPool#setMinIdle(int)
 	 */
 	public void setMinIdle(int poolSize) {
 		this.keyedObjectPool.setMinIdle(poolSize);
 	}
 
 	/**
-	 * @see org.apache.commons.pool.impl.GenericKeyedObjectPool#setNumTestsPerEvictionRun(int)
+	 * @see StripedKeyedObjectPool#setNumTestsPerEvictionRun(int)
 	 */
 	public void setNumTestsPerEvictionRun(int numTestsPerEvictionRun) {
 		this.keyedObjectPool.setNumTestsPerEvictionRun(numTestsPerEvictionRun);
 	}
 
 	/**
-	 * @see org.apache.commons.pool.impl.GenericKeyedObjectPool#setTestOnBorrow(boolean)
+	 * @see StripedKeyedObjectPool#setTestOnBorrow(boolean)
 	 */
 	public void setTestOnBorrow(boolean testOnBorrow) {
 		this.keyedObjectPool.setTestOnBorrow(testOnBorrow);
 	}
 
 	/**
-	 * @see org.apache.commons.pool.impl.GenericKeyedObjectPool#setTestOnReturn(boolean)
+	 * @see StripedKeyedObjectPool#setTestOnReturn(boolean)
 	 */
 	public void setTestOnReturn(boolean testOnReturn) {
 		this.keyedObjectPool.setTestOnReturn(testOnReturn);
 	}
 
 	/**
-	 * @see org.apache.commons.pool.impl.GenericKeyedObjectPool#setTestWhileIdle(boolean)
+	 * @see StripedKeyedObjectPool#setTestWhileIdle(boolean)
 	 */
 	public void setTestWhileIdle(boolean testWhileIdle) {
 		this.keyedObjectPool.setTestWhileIdle(testWhileIdle);
 	}
 
 	/**
-	 * @see org.apache.commons.pool.impl.GenericKeyedObjectPool#setTimeBetweenEvictionRunsMillis(long)
+	 * @see StripedKeyedObjectPool#setTimeBetweenEvictionRunsMillis(long)
 	 */
 	public void setTimeBetweenEvictionRunsMillis(long timeBetweenEvictionRunsMillis) {
 		this.keyedObjectPool.setTimeBetweenEvictionRunsMillis(timeBetweenEvictionRunsMillis);
 	}
 
 	/**
-	 * @see org.apache.commons.pool.impl.GenericKeyedObjectPool#setWhenExhaustedAction(byte)
+	 * @see StripedKeyedObjectPool#setWhenExhaustedAction(byte)
 	 */
 	public void setWhenExhaustedAction(byte whenExhaustedAction) {
 		this.keyedObjectPool.setWhenExhaustedAction(whenExhaustedAction);
 	}
 
+	/**
+	 * @see StripedKeyedObjectPool#setValidationFreshnessMillis(long)
+	 * @since 1.3.2
+	 */
+	public void setValidationFreshnessMillis(long validationFreshnessMillis) {
+		this.keyedObjectPool.setValidationFreshnessMillis(validationFreshnessMillis);
+	}
+
+	/**
+	 * @see StripedKeyedObjectPool#setTimeBetweenValidationRunsMillis(long)
+	 * @since 1.3.2
+	 */
+	public void setTimeBetweenValidationRunsMillis(long timeBetweenValidationRunsMillis) {
+		this.keyedObjectPool.setTimeBetweenValidationRunsMillis(timeBetweenValidationRunsMillis);
+	}
+
+	// ***** Warm-up Configuration *****//
+
+	/**
+	 * @return the number of read-only contexts created on warm-up
+	 * @since 1.3.2
+	 */
+	public int getInitialReadOnlyContexts() {
+		return this.initialReadOnlyContexts;
+	}
+
+	/**
+	 * @param initialReadOnlyContexts the number of read-only contexts to
+	 * create on warm-up
+	 * @since 1.3.2
+	 */
+	public void setInitialReadOnlyContexts(int initialReadOnlyContexts) {
+		this.initialReadOnlyContexts = initialReadOnlyContexts;
+	}
+
+	/**
+	 * @return the number of read-write contexts created on warm-up
+	 * @since 1.3.2
+	 */
+	public int getInitialReadWriteContexts() {
+		return this.initialReadWriteContexts;
+	}
+
+	/**
+	 * @param initialReadWriteContexts the number of read-write contexts to
+	 * create on warm-up
+	 * @since 1.3.2
+	 */
+	public void setInitialReadWriteContexts(int initialReadWriteContexts) {
+		this.initialReadWriteContexts = initialReadWriteContexts;
+	}
+
+	/**
+	 * @param warmUpTaskExecutor the TaskExecutor used for creating the initial
+	 * contexts in parallel
+	 * @since 1.3.2
+	 */
+	public void setWarmUpTaskExecutor(TaskExecutor warmUpTaskExecutor) {
+		this.warmUpTaskExecutor = warmUpTaskExecutor;
+	}
+
+	// ***** Monitoring Configuration *****//
+
+	/**
+	 * @return the listener notified of pool events
+	 * @since 1.3.2
+	 */
+	public PoolListener getPoolListener() {
+		return this.poolListener;
+	}
+
+	/**
+	 * @param poolListener the listener to notify of pool events, may be
+	 * <code>null</code>
+	 * @since 1.3.2
+	 */
+	public void setPoolListener(PoolListener poolListener) {
+		this.poolListener = poolListener;
+		this.dirContextPoolableObjectFactory.setPoolListener(poolListener);
+	}
+
+	/**
+	 * @return the leak detection threshold
+	 * @since 1.3.2
+	 */
+	public long getLeakDetectionThresholdMillis() {
+		return this.leakDetectionThresholdMillis;
+	}
+
+	/**
+	 * Set the time a context may be held by a borrower before it is reported
+	 * as a suspected leak. If positive, the stack trace of each borrow will be
+	 * recorded and a background thread will look for overdue contexts,
+	 * logging a warning and notifying the {@link PoolListener} for each one
+	 * found. Recording the stack traces carries a cost, so this is primarily
+	 * intended for tracking down leaks.
+	 * 
+	 * @param leakDetectionThresholdMillis the threshold, or a non-positive
+	 * value to disable leak detection.
+	 * @since 1.3.2
+	 */
+	public synchronized void setLeakDetectionThresholdMillis(long leakDetectionThresholdMillis) {
+		this.leakDetectionThresholdMillis = leakDetectionThresholdMillis;
+
+		if (this.leakDetectionTimer != null) {
+			this.leakDetectionTimer.cancel();
+			this.leakDetectionTimer = null;
+		}
+
+		if (leakDetectionThresholdMillis > 0) {
+			long period = Math.max(leakDetectionThresholdMillis / 2, 10);
+			this.leakDetectionTimer = new Timer(true);
+			this.leakDetectionTimer.schedule(new TimerTask() {
+				public void run() {
+					try {
+						detectLeaks();
+					}
+					catch (RuntimeException e) {
+						logger.warn("Exception in leak detection", e);
+					}
+				}
+			}, period, period);
+		}
+	}
+
+	/**
+	 * Report all contexts held longer than the leak detection threshold and
+	 * not previously reported. Called periodically by the leak detection
+	 * thread.
+	 * 
+	 * @return the number of newly found suspected leaks.
+	 * @since 1.3.2
+	 */
+	public int detectLeaks() {
+		long threshold = this.leakDetectionThresholdMillis;
+		if (threshold <= 0) {
+			return 0;
+		}
+
+		List leaks = this.borrowedContexts.findSuspectedLeaks(threshold);
+		long now = System.currentTimeMillis();
+		PoolListener listener = this.poolListener;
+		for (Iterator iterator = leaks.iterator(); iterator.hasNext();) {
+			BorrowedContextRegistry.Borrow borrow = (BorrowedContextRegistry.Borrow) iterator.next();
+			long heldMillis = now - borrow.getBorrowTime();
+			this.logger.warn("Suspected leak: " + borrow.getDirContextType() + " DirContext borrowed " + heldMillis
+					+ " ms ago has not been returned to the pool", borrow.getBorrowLocation());
+			if (listener != null) {
+				listener.contextLeakSuspected(borrow.getDirContextType(), heldMillis, borrow.getBorrowLocation());
+			}
+		}
+
+		return leaks.size();
+	}
+
+	private boolean isMonitoring() {
+		return this.poolListener != null || this.leakDetectionThresholdMillis > 0;
+	}
+
 	// ***** Object Factory Property Configuration *****//
 
 	/**
@@ -376,6 +659,107 @@ public class PoolingContextSource implements ContextSource, DisposableBean {
 		this.dirContextPoolableObjectFactory.setDirContextValidator(dirContextValidator);
 	}
 
+	// ***** InitializingBean interface methods *****//
+
+	/**
+	 * Warm up the pool if any initial contexts have been configured.
+	 * 
+	 * @see #warmUp()
+	 * @since 1.3.2
+	 */
+	public void afterPropertiesSet() throws Exception {
+		if (this.initialReadOnlyContexts > 0 || this.initialReadWriteContexts > 0) {
+			warmUp();
+		}
+	}
+
+	/**
+	 * Fill the pool with <code>initialReadOnlyContexts</code> read-only and
+	 * <code>initialReadWriteContexts</code> read-write idle contexts, created
+	 * in parallel using the <code>warmUpTaskExecutor</code>, so that the
+	 * first requests after startup will not need to wait for connections to
+	 * be established. The number of contexts of each type is limited by
+	 * <code>maxActive</code> and <code>maxIdle</code>. Failures to create
+	 * contexts are logged but will not cause this method to fail.
+	 * 
+	 * @return the number of contexts actually created.
+	 * @since 1.3.2
+	 */
+	public int warmUp() {
+		final int[] outstanding = new int[] { 0 };
+		final int[] created = new int[] { 0 };
+
+		int readOnly = limitWarmUp(this.initialReadOnlyContexts
+				- this.keyedObjectPool.getNumIdle(DirContextType.READ_ONLY));
+		int readWrite = limitWarmUp(this.initialReadWriteContexts
+				- this.keyedObjectPool.getNumIdle(DirContextType.READ_WRITE));
+		if (this.logger.isDebugEnabled()) {
+			this.logger.debug("Warming up pool with " + readOnly + " " + DirContextType.READ_ONLY + " and "
+					+ readWrite + " " + DirContextType.READ_WRITE + " contexts");
+		}
+
+		for (int i = 0; i < readOnly + readWrite; i++) {
+			final DirContextType dirContextType = i < readOnly ? DirContextType.READ_ONLY : DirContextType.READ_WRITE;
+			synchronized (outstanding) {
+				outstanding[0]++;
+			}
+			Runnable task = new Runnable() {
+				public void run() {
+					boolean success = false;
+					try {
+						keyedObjectPool.addObject(dirContextType);
+						success = true;
+					}
+					catch (Exception e) {
+						logger.warn("Failed to create " + dirContextType + " DirContext during warm-up", e);
+					}
+					finally {
+						synchronized (outstanding) {
+							outstanding[0]--;
+							if (success) {
+								created[0]++;
+							}
+							outstanding.notifyAll();
+						}
+					}
+				}
+			};
+
+			try {
+				this.warmUpTaskExecutor.execute(task);
+			}
+			catch (RuntimeException e) {
+				this.logger.warn("Failed to schedule warm-up task - creating DirContext in calling thread", e);
+				task.run();
+			}
+		}
+
+		synchronized (outstanding) {
+			while (outstanding[0] > 0) {
+				try {
+					outstanding.wait();
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					this.logger.warn("Interrupted while waiting for warm-up to complete");
+					break;
+				}
+			}
+			return created[0];
+		}
+	}
+
+	private int limitWarmUp(int requested) {
+		int result = requested;
+		if (this.keyedObjectPool.getMaxActive() >= 0) {
+			result = Math.min(result, this.keyedObjectPool.getMaxActive());
+		}
+		if (this.keyedObjectPool.getMaxIdle() >= 0) {
+			result = Math.min(result, this.keyedObjectPool.getMaxIdle());
+		}
+		return Math.max(result, 0);
+	}
+
 	// ***** DisposableBean interface methods *****//
 
 	/*
@@ -384,6 +768,7 @@ public class PoolingContextSource implements ContextSource, DisposableBean {
 	 * @see org.springframework.beans.factory.DisposableBean#destroy()
 	 */
 	public void destroy() throws Exception {
+		setLeakDetectionThresholdMillis(-1);
 		try {
 			this.keyedObjectPool.close();
 		}
@@ -417,22 +802,110 @@ public class PoolingContextSource implements ContextSource, DisposableBean {
 	 * the pool throws an exception
 	 */
 	protected DirContext getContext(DirContextType dirContextType) {
-		final DirContext dirContext;
+		final KeyedObjectPool contextPool = getContextPool();
+		final DirContext dirContext = borrowDirContext(contextPool, dirContextType);
+
+		if (dirContext instanceof LdapContext) {
+			return new DelegatingLdapContext(contextPool, (LdapContext) dirContext, dirContextType);
+		}
+
+		return new DelegatingDirContext(contextPool, dirContext, dirContextType);
+	}
+
+	/**
+	 * Get the pool to borrow a DirContext from and to have its wrapper return
+	 * it to. When monitoring is enabled this is a decorator of the actual
+	 * pool, notifying the {@link PoolListener} and registering borrowed
+	 * contexts for leak detection. Monitoring may be switched on or off at any
+	 * time, so the same instance must be used for the borrow and the return of
+	 * each context.
+	 * 
+	 * @return the pool to borrow from and pass to the DirContext wrappers.
+	 * @since 1.3.2
+	 */
+	protected KeyedObjectPool getContextPool() {
+		return isMonitoring() ? this.monitoringPool : this.keyedObjectPool;
+	}
+
+	/**
+	 * Borrow a raw DirContext of the specified type from a pool obtained
+	 * from {@link #getContextPool()}.
+	 * 
+	 * @param contextPool The pool to borrow from.
+	 * @param dirContextType The type of context to borrow.
+	 * @return The pooled DirContext.
+	 * @throws DataAccessResourceFailureException If retrieving the object from
+	 * the pool throws an exception
+	 * @since 1.3.2
+	 */
+	protected DirContext borrowDirContext(KeyedObjectPool contextPool, DirContextType dirContextType) {
 		try {
-			dirContext = (DirContext) this.keyedObjectPool.borrowObject(dirContextType);
+			return (DirContext) contextPool.borrowObject(dirContextType);
 		}
 		catch (Exception e) {
 			throw new DataAccessResourceFailureException("Failed to borrow DirContext from pool.", e);
 		}
-
-		if (dirContext instanceof LdapContext) {
-			return new DelegatingLdapContext(this.keyedObjectPool, (LdapContext) dirContext, dirContextType);
-		}
-
-		return new DelegatingDirContext(this.keyedObjectPool, dirContext, dirContextType);
 	}
 
 	public DirContext getContext(String principal, String credentials) throws NamingException {
 		throw new UnsupportedOperationException("Not supported for this implementation");
 	}
+
+	/**
+	 * Decorator of the pool, recording the return of monitored contexts.
+	 */
+	private final class MonitoringKeyedObjectPool extends BaseKeyedObjectPool {
+		public Object borrowObject(Object key) throws Exception {
+			final long start = System.currentTimeMillis();
+			Object obj = keyedObjectPool.borrowObject(key);
+
+			Throwable borrowLocation = null;
+			if (leakDetectionThresholdMillis > 0) {
+				borrowLocation = new Throwable("DirContext borrowed here");
+			}
+			borrowedContexts.borrowed(obj, (DirContextType) key, borrowLocation);
+
+			PoolListener listener = poolListener;
+			if (listener != null) {
+				listener.contextBorrowed((DirContextType) key, System.currentTimeMillis() - start);
+			}
+
+			return obj;
+		}
+
+		public void returnObject(Object key, Object obj) throws Exception {
+			contextReturned(obj);
+			keyedObjectPool.returnObject(key, obj);
+		}
+
+		public void invalidateObject(Object key, Object obj) throws Exception {
+			contextReturned(obj);
+			keyedObjectPool.invalidateObject(key, obj);
+		}
+
+		public int getNumActive(Object key) {
+			return keyedObjectPool.getNumActive(key);
+		}
+
+		public int getNumIdle(Object key) {
+			return keyedObjectPool.getNumIdle(key);
+		}
+
+		public int getNumActive() {
+			return keyedObjectPool.getNumActive();
+		}
+
+		public int getNumIdle() {
+			return keyedObjectPool.getNumIdle();
+		}
+
+		private void contextReturned(Object obj) {
+			BorrowedContextRegistry.Borrow borrow = borrowedContexts.returned(obj);
+			PoolListener listener = poolListener;
+			if (borrow != null && listener != null) {
+				listener.contextReturned(borrow.getDirContextType(), System.currentTimeMillis()
+						- borrow.getBorrowTime());
+			}
+		}
+	}
 }
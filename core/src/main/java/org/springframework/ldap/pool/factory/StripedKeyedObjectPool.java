@@ -0,0 +1,1370 @@
+/*
+ * Copyright 2005-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.ldap.pool.factory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Timer;
+import java.util.TimerTask;
+
+import org.apache.commons.lang.Validate;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.commons.pool.BaseKeyedObjectPool;
+import org.apache.commons.pool.KeyedPoolableObjectFactory;
+
+/**
+ * A {@link org.apache.commons.pool.KeyedObjectPool} designed for low
+ * contention under a high number of concurrent borrowers. It supports the same
+ * configuration properties and semantics as the commons-pool
+ * <code>GenericKeyedObjectPool</code>, but unlike that implementation it does
+ * not synchronize on the entire pool when borrowing or returning objects:
+ * <ul>
+ * <li>Each key has its own sub-pool, so borrowers of different keys (e.g.
+ * read-only and read-write contexts) never contend with each other.</li>
+ * <li>Within a key, idle objects are kept in a number of stripes, each guarded
+ * by its own lock. A thread always uses the same home stripe, so in the common
+ * case borrowing an idle object or returning one only acquires one single,
+ * briefly held, stripe lock. Since each stripe is used LIFO, a thread will
+ * typically get back the very object it last returned.</li>
+ * <li>Factory calls (creation, validation, activation, passivation and
+ * destruction of objects) are never performed while holding a lock.</li>
+ * </ul>
+ * Locks on the per-key sub-pool are only acquired when a new object needs to
+ * be created or when a borrower needs to wait for an object to be returned.
+ * <p>
+ * Note that <code>maxIdle</code> is enforced on a best-effort basis under
+ * concurrent returns; the idle object evictor will trim any excess.
+ *
+ * @author agent
+ * @since 1.3.2
+ */
+public class StripedKeyedObjectPool extends BaseKeyedObjectPool {
+
+	/**
+	 * Throw a <code>NoSuchElementException</code> when the pool is exhausted.
+	 * Same value as the corresponding constant in
+	 * <code>GenericKeyedObjectPool</code>.
+	 */
+	public static final byte WHEN_EXHAUSTED_FAIL = 0;
+
+	/**
+	 * Block until an object is available, or <code>maxWait</code> has passed,
+	 * when the pool is exhausted. Same value as the corresponding constant in
+	 * <code>GenericKeyedObjectPool</code>.
+	 */
+	public static final byte WHEN_EXHAUSTED_BLOCK = 1;
+
+	/**
+	 * Create a new object even though the pool is exhausted. Same value as the
+	 * corresponding constant in <code>GenericKeyedObjectPool</code>.
+	 */
+	public static final byte WHEN_EXHAUSTED_GROW = 2;
+
+	public static final int DEFAULT_MAX_IDLE = 8;
+
+	public static final int DEFAULT_MAX_ACTIVE = 8;
+
+	public static final int DEFAULT_MAX_TOTAL = -1;
+
+	public static final int DEFAULT_MIN_IDLE = 0;
+
+	public static final long DEFAULT_MAX_WAIT = -1L;
+
+	public static final byte DEFAULT_WHEN_EXHAUSTED_ACTION = WHEN_EXHAUSTED_BLOCK;
+
+	public static final long DEFAULT_TIME_BETWEEN_EVICTION_RUNS_MILLIS = -1L;
+
+	public static final long DEFAULT_MIN_EVICTABLE_IDLE_TIME_MILLIS = 1000L * 60L * 30L;
+
+	public static final int DEFAULT_NUM_TESTS_PER_EVICTION_RUN = 3;
+
+	public static final long DEFAULT_VALIDATION_FRESHNESS_MILLIS = -1L;
+
+	public static final long DEFAULT_TIME_BETWEEN_VALIDATION_RUNS_MILLIS = -1L;
+
+	private static final Log log = LogFactory.getLog(StripedKeyedObjectPool.class);
+
+	private volatile int maxIdle = DEFAULT_MAX_IDLE;
+
+	private volatile int maxActive = DEFAULT_MAX_ACTIVE;
+
+	private volatile int maxTotal = DEFAULT_MAX_TOTAL;
+
+	private volatile int minIdle = DEFAULT_MIN_IDLE;
+
+	private volatile long maxWait = DEFAULT_MAX_WAIT;
+
+	private volatile byte whenExhaustedAction = DEFAULT_WHEN_EXHAUSTED_ACTION;
+
+	private volatile boolean testOnBorrow = false;
+
+	private volatile boolean testOnReturn = false;
+
+	private volatile boolean testWhileIdle = false;
+
+	private volatile long timeBetweenEvictionRunsMillis = DEFAULT_TIME_BETWEEN_EVICTION_RUNS_MILLIS;
+
+	private volatile long minEvictableIdleTimeMillis = DEFAULT_MIN_EVICTABLE_IDLE_TIME_MILLIS;
+
+	private volatile int numTestsPerEvictionRun = DEFAULT_NUM_TESTS_PER_EVICTION_RUN;
+
+	private volatile KeyedPoolableObjectFactory factory;
+
+	private final int stripeMask;
+
+	/**
+	 * Copy-on-write map from key to {@link KeyPool}; read without locking.
+	 */
+	private volatile Map keyPools = Collections.EMPTY_MAP;
+
+	private final Object keyPoolsLock = new Object();
+
+	/**
+	 * Total number of objects managed by the pool, including objects being
+	 * created. Guarded by <code>totalLock</code>.
+	 */
+	private int totalInstances = 0;
+
+	private final Object totalLock = new Object();
+
+	private Timer evictionTimer;
+
+	private volatile long validationFreshnessMillis = DEFAULT_VALIDATION_FRESHNESS_MILLIS;
+
+	private volatile long timeBetweenValidationRunsMillis = DEFAULT_TIME_BETWEEN_VALIDATION_RUNS_MILLIS;
+
+	private Timer validationTimer;
+
+	private Timer replenishTimer;
+
+	private final Object minIdleLock = new Object();
+
+	/**
+	 * Written while holding the lock on this; read without it to keep the
+	 * borrow path free from pool wide locking.
+	 */
+	private volatile boolean replenishScheduled = false;
+
+	/**
+	 * Create a new pool with the number of stripes per key based on the number
+	 * of available processors. The factory needs to be set before use.
+	 */
+	public StripedKeyedObjectPool() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Create a new pool with the specified number of stripes per key. The
+	 * number will be rounded up to the nearest power of two. The factory needs
+	 * to be set before use.
+	 *
+	 * @param concurrencyLevel the desired number of stripes per key.
+	 */
+	public StripedKeyedObjectPool(int concurrencyLevel) {
+		Validate.isTrue(concurrencyLevel > 0, "concurrencyLevel must be greater than zero");
+
+		int stripes = 1;
+		while (stripes < concurrencyLevel) {
+			stripes <<= 1;
+		}
+		this.stripeMask = stripes - 1;
+	}
+
+	// ***** Configuration *****//
+
+	public int getMaxIdle() {
+		return maxIdle;
+	}
+
+	public void setMaxIdle(int maxIdle) {
+		this.maxIdle = maxIdle;
+	}
+
+	public int getMaxActive() {
+		return maxActive;
+	}
+
+	/**
+	 * Set the maximum number of objects, borrowed or idle, managed per key. A
+	 * negative value means no limit.
+	 *
+	 * @param maxActive the maximum number of objects per key.
+	 */
+	public void setMaxActive(int maxActive) {
+		this.maxActive = maxActive;
+		signalAllWaiters();
+	}
+
+	public int getMaxTotal() {
+		return maxTotal;
+	}
+
+	/**
+	 * Set the maximum number of objects managed by the pool in total. A
+	 * negative value means no limit. When the limit is reached and an object
+	 * is needed for one key, idle objects of other keys will be destroyed to
+	 * make room.
+	 *
+	 * @param maxTotal the maximum total number of objects.
+	 */
+	public void setMaxTotal(int maxTotal) {
+		this.maxTotal = maxTotal;
+		signalAllWaiters();
+	}
+
+	public int getMinIdle() {
+		return minIdle;
+	}
+
+	/**
+	 * Set the minimum number of idle objects to keep per key. Whenever a
+	 * borrow brings the number of idle objects of a key below this number, a
+	 * background thread will create new idle objects, so that borrowers do not
+	 * need to wait for objects to be created. The idle object evictor will
+	 * also top up the idle objects on each run.
+	 *
+	 * @param minIdle the minimum number of idle objects per key.
+	 */
+	public void setMinIdle(int minIdle) {
+		this.minIdle = minIdle;
+		if (minIdle > 0) {
+			requestReplenish();
+		}
+	}
+
+	public long getMaxWait() {
+		return maxWait;
+	}
+
+	public void setMaxWait(long maxWait) {
+		this.maxWait = maxWait;
+		signalAllWaiters();
+	}
+
+	public byte getWhenExhaustedAction() {
+		return whenExhaustedAction;
+	}
+
+	public void setWhenExhaustedAction(byte whenExhaustedAction) {
+		Validate.isTrue(whenExhaustedAction == WHEN_EXHAUSTED_FAIL || whenExhaustedAction == WHEN_EXHAUSTED_BLOCK
+				|| whenExhaustedAction == WHEN_EXHAUSTED_GROW, "Unrecognized whenExhaustedAction: "
+				+ whenExhaustedAction);
+		this.whenExhaustedAction = whenExhaustedAction;
+		signalAllWaiters();
+	}
+
+	public boolean getTestOnBorrow() {
+		return testOnBorrow;
+	}
+
+	public void setTestOnBorrow(boolean testOnBorrow) {
+		this.testOnBorrow = testOnBorrow;
+	}
+
+	public boolean getTestOnReturn() {
+		return testOnReturn;
+	}
+
+	public void setTestOnReturn(boolean testOnReturn) {
+		this.testOnReturn = testOnReturn;
+	}
+
+	public boolean getTestWhileIdle() {
+		return testWhileIdle;
+	}
+
+	public void setTestWhileIdle(boolean testWhileIdle) {
+		this.testWhileIdle = testWhileIdle;
+	}
+
+	public long getTimeBetweenEvictionRunsMillis() {
+		return timeBetweenEvictionRunsMillis;
+	}
+
+	/**
+	 * Set the number of milliseconds to sleep between runs of the idle object
+	 * evictor. A non-positive value means that no evictor will be run.
+	 *
+	 * @param timeBetweenEvictionRunsMillis the time between eviction runs.
+	 */
+	public synchronized void setTimeBetweenEvictionRunsMillis(long timeBetweenEvictionRunsMillis) {
+		this.timeBetweenEvictionRunsMillis = timeBetweenEvictionRunsMillis;
+		startEvictor(timeBetweenEvictionRunsMillis);
+	}
+
+	public long getMinEvictableIdleTimeMillis() {
+		return minEvictableIdleTimeMillis;
+	}
+
+	public void setMinEvictableIdleTimeMillis(long minEvictableIdleTimeMillis) {
+		this.minEvictableIdleTimeMillis = minEvictableIdleTimeMillis;
+	}
+
+	public int getNumTestsPerEvictionRun() {
+		return numTestsPerEvictionRun;
+	}
+
+	/**
+	 * Set the number of idle objects to examine per key in each run of the
+	 * idle object evictor. A negative value <code>-n</code> means that about
+	 * one n:th of the idle objects will be examined.
+	 *
+	 * @param numTestsPerEvictionRun the number of objects to examine per run.
+	 */
+	public void setNumTestsPerEvictionRun(int numTestsPerEvictionRun) {
+		this.numTestsPerEvictionRun = numTestsPerEvictionRun;
+	}
+
+	public long getValidationFreshnessMillis() {
+		return validationFreshnessMillis;
+	}
+
+	/**
+	 * Set the freshness window for <code>testOnBorrow</code>. An idle object
+	 * that has been validated, or returned to the pool, within this number of
+	 * milliseconds will be handed out without being validated again. Combined
+	 * with background validation (see
+	 * {@link #setTimeBetweenValidationRunsMillis(long)}) using a shorter
+	 * interval than this window, borrowers will normally not need to wait for
+	 * a validation at all. A non-positive value means that idle objects are
+	 * always validated on borrow when <code>testOnBorrow</code> is set.
+	 *
+	 * @param validationFreshnessMillis the freshness window in milliseconds.
+	 */
+	public void setValidationFreshnessMillis(long validationFreshnessMillis) {
+		this.validationFreshnessMillis = validationFreshnessMillis;
+	}
+
+	public long getTimeBetweenValidationRunsMillis() {
+		return timeBetweenValidationRunsMillis;
+	}
+
+	/**
+	 * Set the number of milliseconds to sleep between runs of the background
+	 * validator. The background validator runs in a dedicated thread,
+	 * validating all idle objects that have not been validated or used within
+	 * this interval. Objects that fail validation are destroyed and replaced
+	 * by new ones, so that the number of idle objects is kept up ahead of
+	 * demand. A non-positive value means that no background validation will
+	 * be performed.
+	 *
+	 * @param timeBetweenValidationRunsMillis the time between validation runs.
+	 */
+	public synchronized void setTimeBetweenValidationRunsMillis(long timeBetweenValidationRunsMillis) {
+		this.timeBetweenValidationRunsMillis = timeBetweenValidationRunsMillis;
+		startValidator(timeBetweenValidationRunsMillis);
+	}
+
+	/*
+	 * @see
+	 * org.apache.commons.pool.KeyedObjectPool#setFactory(org.apache.commons
+	 * .pool.KeyedPoolableObjectFactory)
+	 */
+	public void setFactory(KeyedPoolableObjectFactory factory) {
+		assertOpen();
+		if (getNumActive() > 0) {
+			throw new IllegalStateException("Objects are already active");
+		}
+
+		clear();
+		this.factory = factory;
+	}
+
+	// ***** KeyedObjectPool interface methods *****//
+
+	/*
+	 * @see org.apache.commons.pool.KeyedObjectPool#borrowObject(java.lang.Object)
+	 */
+	public Object borrowObject(Object key) throws Exception {
+		assertOpen();
+		KeyPool keyPool = getKeyPool(key);
+		long startTime = System.currentTimeMillis();
+		boolean mayWait = false;
+
+		while (true) {
+			IdleEntry entry = keyPool.pollIdle();
+			if (minIdle > 0 && keyPool.approximateIdle() < minIdle) {
+				requestReplenish();
+			}
+
+			if (entry != null) {
+				try {
+					factory.activateObject(key, entry.object);
+					if (testOnBorrow && !entry.isFresh(validationFreshnessMillis)
+							&& !factory.validateObject(key, entry.object)) {
+						throw new Exception("ValidateObject failed");
+					}
+					return entry.object;
+				}
+				catch (Exception e) {
+					log.debug("Failed to activate or validate idle object - destroying it", e);
+					keyPool.activeDecrement();
+					destroy(keyPool, entry.object);
+					continue;
+				}
+			}
+
+			int reservation = keyPool.reserve(startTime, mayWait);
+			if (reservation == KeyPool.RETRY) {
+				continue;
+			}
+			else if (reservation == KeyPool.TOTAL_EXHAUSTED) {
+				// Try to make room by getting rid of an idle object of
+				// another key; if there are none, wait.
+				mayWait = !destroyIdleOfOtherKey(keyPool);
+				continue;
+			}
+
+			return createForBorrow(keyPool, key);
+		}
+	}
+
+	private Object createForBorrow(KeyPool keyPool, Object key) throws Exception {
+		final Object obj;
+		try {
+			obj = factory.makeObject(key);
+		}
+		catch (Exception e) {
+			keyPool.creationFailed();
+			throw e;
+		}
+		catch (Error e) {
+			keyPool.creationFailed();
+			throw e;
+		}
+
+		keyPool.creationSucceeded();
+		try {
+			factory.activateObject(key, obj);
+			if (testOnBorrow && !factory.validateObject(key, obj)) {
+				throw new Exception("ValidateObject failed");
+			}
+		}
+		catch (Exception e) {
+			keyPool.activeDecrement();
+			destroy(keyPool, obj);
+			throw new NoSuchElementException("Could not create a validated object, cause: " + e.getMessage());
+		}
+		return obj;
+	}
+
+	/*
+	 * @see org.apache.commons.pool.KeyedObjectPool#returnObject(java.lang.Object,
+	 * java.lang.Object)
+	 */
+	public void returnObject(Object key, Object obj) throws Exception {
+		KeyPool keyPool = getKeyPool(key);
+
+		boolean keep = !isClosed();
+		if (keep && testOnReturn && !factory.validateObject(key, obj)) {
+			keep = false;
+		}
+		if (keep) {
+			try {
+				factory.passivateObject(key, obj);
+			}
+			catch (Exception e) {
+				log.debug("Failed to passivate returned object - destroying it", e);
+				keep = false;
+			}
+		}
+		if (keep && maxIdle >= 0 && keyPool.approximateIdle() >= maxIdle) {
+			keep = false;
+		}
+
+		if (keep) {
+			keyPool.returnIdle(obj);
+		}
+		else {
+			keyPool.activeDecrement();
+			destroy(keyPool, obj);
+		}
+	}
+
+	/*
+	 * @see
+	 * org.apache.commons.pool.KeyedObjectPool#invalidateObject(java.lang.Object
+	 * , java.lang.Object)
+	 */
+	public void invalidateObject(Object key, Object obj) throws Exception {
+		KeyPool keyPool = getKeyPool(key);
+		keyPool.activeDecrement();
+		destroy(keyPool, obj);
+	}
+
+	/**
+	 * Create an object using the factory, passivate it and place it in the
+	 * idle pool of the specified key. The <code>maxActive</code> and
+	 * <code>maxTotal</code> limits are not checked, but the object will be
+	 * destroyed if there are already <code>maxIdle</code> idle objects.
+	 *
+	 * @param key the key to add an object for.
+	 * @throws Exception if the object could not be created.
+	 */
+	public void addObject(Object key) throws Exception {
+		assertOpen();
+		KeyPool keyPool = getKeyPool(key);
+		keyPool.forceReservation();
+
+		final Object obj;
+		try {
+			obj = factory.makeObject(key);
+		}
+		catch (Exception e) {
+			keyPool.creationFailed();
+			throw e;
+		}
+
+		keyPool.creationSucceeded();
+		try {
+			factory.passivateObject(key, obj);
+		}
+		catch (Exception e) {
+			keyPool.activeDecrement();
+			destroy(keyPool, obj);
+			throw e;
+		}
+
+		if (maxIdle >= 0 && keyPool.approximateIdle() >= maxIdle) {
+			keyPool.activeDecrement();
+			destroy(keyPool, obj);
+		}
+		else {
+			keyPool.returnIdle(obj);
+		}
+	}
+
+	/*
+	 * @see org.apache.commons.pool.KeyedObjectPool#getNumIdle(java.lang.Object)
+	 */
+	public int getNumIdle(Object key) {
+		KeyPool keyPool = (KeyPool) keyPools.get(key);
+		return keyPool != null ? keyPool.countIdle() : 0;
+	}
+
+	/*
+	 * @see org.apache.commons.pool.KeyedObjectPool#getNumActive(java.lang.Object)
+	 */
+	public int getNumActive(Object key) {
+		KeyPool keyPool = (KeyPool) keyPools.get(key);
+		return keyPool != null ? keyPool.countActive() : 0;
+	}
+
+	/**
+	 * Get the number of threads currently waiting for an object of the
+	 * specified key.
+	 *
+	 * @param key the key.
+	 * @return the number of waiting threads.
+	 */
+	public int getNumWaiters(Object key) {
+		KeyPool keyPool = (KeyPool) keyPools.get(key);
+		return keyPool != null ? keyPool.waiters : 0;
+	}
+
+	/**
+	 * Get the number of objects of the specified key that have been destroyed
+	 * by the idle object evictor, either because they had been idle too long
+	 * or because they failed validation.
+	 *
+	 * @param key the key.
+	 * @return the number of evicted objects.
+	 */
+	public long getNumEvicted(Object key) {
+		KeyPool keyPool = (KeyPool) keyPools.get(key);
+		return keyPool != null ? keyPool.getEvicted() : 0;
+	}
+
+	/*
+	 * @see org.apache.commons.pool.KeyedObjectPool#getNumIdle()
+	 */
+	public int getNumIdle() {
+		int result = 0;
+		for (Iterator iterator = keyPools.values().iterator(); iterator.hasNext();) {
+			result += ((KeyPool) iterator.next()).countIdle();
+		}
+		return result;
+	}
+
+	/*
+	 * @see org.apache.commons.pool.KeyedObjectPool#getNumActive()
+	 */
+	public int getNumActive() {
+		int result = 0;
+		for (Iterator iterator = keyPools.values().iterator(); iterator.hasNext();) {
+			result += ((KeyPool) iterator.next()).countActive();
+		}
+		return result;
+	}
+
+	/*
+	 * @see org.apache.commons.pool.KeyedObjectPool#clear()
+	 */
+	public void clear() {
+		for (Iterator iterator = keyPools.values().iterator(); iterator.hasNext();) {
+			clear((KeyPool) iterator.next());
+		}
+	}
+
+	/*
+	 * @see org.apache.commons.pool.KeyedObjectPool#clear(java.lang.Object)
+	 */
+	public void clear(Object key) {
+		KeyPool keyPool = (KeyPool) keyPools.get(key);
+		if (keyPool != null) {
+			clear(keyPool);
+		}
+	}
+
+	private void clear(KeyPool keyPool) {
+		List removed = keyPool.drainIdle();
+		for (Iterator iterator = removed.iterator(); iterator.hasNext();) {
+			destroy(keyPool, ((IdleEntry) iterator.next()).object);
+		}
+	}
+
+	/*
+	 * @see org.apache.commons.pool.KeyedObjectPool#close()
+	 */
+	public void close() throws Exception {
+		super.close();
+		synchronized (this) {
+			startEvictor(-1L);
+			startValidator(-1L);
+			if (replenishTimer != null) {
+				replenishTimer.cancel();
+				replenishTimer = null;
+			}
+		}
+		clear();
+		signalAllWaiters();
+	}
+
+	// ***** Internals *****//
+
+	private KeyPool getKeyPool(Object key) {
+		KeyPool keyPool = (KeyPool) keyPools.get(key);
+		if (keyPool != null) {
+			return keyPool;
+		}
+
+		synchronized (keyPoolsLock) {
+			keyPool = (KeyPool) keyPools.get(key);
+			if (keyPool == null) {
+				keyPool = new KeyPool(key, stripeMask + 1);
+				Map newKeyPools = new HashMap(keyPools);
+				newKeyPools.put(key, keyPool);
+				keyPools = newKeyPools;
+			}
+			return keyPool;
+		}
+	}
+
+	private boolean reserveTotal(boolean force) {
+		synchronized (totalLock) {
+			if (force || maxTotal < 0 || totalInstances < maxTotal) {
+				totalInstances++;
+				return true;
+			}
+			return false;
+		}
+	}
+
+	private void releaseTotal() {
+		synchronized (totalLock) {
+			totalInstances--;
+		}
+		if (maxTotal >= 0) {
+			signalAllWaiters();
+		}
+	}
+
+	/**
+	 * Destroy an object that is no longer counted as either idle or active.
+	 */
+	private void destroy(KeyPool keyPool, Object obj) {
+		try {
+			factory.destroyObject(keyPool.key, obj);
+		}
+		catch (Exception e) {
+			log.debug("Failed to destroy object", e);
+		}
+		finally {
+			keyPool.instanceDestroyed();
+			releaseTotal();
+		}
+	}
+
+	private boolean destroyIdleOfOtherKey(KeyPool requester) {
+		IdleEntry oldest = null;
+		KeyPool oldestOwner = null;
+		for (Iterator iterator = keyPools.values().iterator(); iterator.hasNext();) {
+			KeyPool candidate = (KeyPool) iterator.next();
+			if (candidate != requester) {
+				IdleEntry entry = candidate.pollOldestIdle();
+				if (entry != null) {
+					oldest = entry;
+					oldestOwner = candidate;
+					break;
+				}
+			}
+		}
+
+		if (oldest == null) {
+			return false;
+		}
+
+		oldestOwner.activeDecrement();
+		destroy(oldestOwner, oldest.object);
+		return true;
+	}
+
+	private void idleObjectAvailable(KeyPool keyPool) {
+		if (maxTotal >= 0) {
+			// Borrowers of other keys waiting for room within maxTotal may
+			// now destroy this object
+			signalAllWaiters();
+		}
+		else {
+			keyPool.signalWaiters();
+		}
+	}
+
+	private void signalAllWaiters() {
+		for (Iterator iterator = keyPools.values().iterator(); iterator.hasNext();) {
+			((KeyPool) iterator.next()).signalWaiters();
+		}
+	}
+
+	private void startEvictor(long delay) {
+		if (evictionTimer != null) {
+			evictionTimer.cancel();
+			evictionTimer = null;
+		}
+
+		if (delay > 0) {
+			evictionTimer = new Timer(true);
+			evictionTimer.schedule(new TimerTask() {
+				public void run() {
+					try {
+						evict();
+						ensureMinIdle();
+					}
+					catch (Exception e) {
+						log.warn("Exception in idle object evictor", e);
+					}
+				}
+			}, delay, delay);
+		}
+	}
+
+	/**
+	 * Examine the oldest idle objects of each key, destroying the ones that
+	 * have been idle too long or, if <code>testWhileIdle</code> is set, fail
+	 * validation. Called by the idle object evictor.
+	 */
+	public void evict() {
+		if (isClosed()) {
+			return;
+		}
+
+		long now = System.currentTimeMillis();
+		for (Iterator iterator = keyPools.values().iterator(); iterator.hasNext();) {
+			KeyPool keyPool = (KeyPool) iterator.next();
+			int numTests = getNumTests(keyPool.countIdle());
+			List examined = keyPool.pollOldestIdle(numTests);
+
+			for (Iterator entries = examined.iterator(); entries.hasNext();) {
+				IdleEntry entry = (IdleEntry) entries.next();
+				boolean keep = minEvictableIdleTimeMillis <= 0
+						|| now - entry.timestamp <= minEvictableIdleTimeMillis;
+
+				if (keep && testWhileIdle) {
+					keep = validateIdle(keyPool, entry);
+				}
+
+				if (keep && !isClosed()) {
+					keyPool.restoreIdle(entry);
+				}
+				else {
+					keyPool.activeDecrement();
+					keyPool.evicted();
+					destroy(keyPool, entry.object);
+				}
+			}
+		}
+	}
+
+	private boolean validateIdle(KeyPool keyPool, IdleEntry entry) {
+		try {
+			factory.activateObject(keyPool.key, entry.object);
+			if (factory.validateObject(keyPool.key, entry.object)) {
+				factory.passivateObject(keyPool.key, entry.object);
+				entry.lastValidated = System.currentTimeMillis();
+				return true;
+			}
+		}
+		catch (Exception e) {
+			log.debug("Failed to validate idle object", e);
+		}
+		return false;
+	}
+
+	private void startValidator(long delay) {
+		if (validationTimer != null) {
+			validationTimer.cancel();
+			validationTimer = null;
+		}
+
+		if (delay > 0) {
+			validationTimer = new Timer(true);
+			validationTimer.schedule(new TimerTask() {
+				public void run() {
+					try {
+						validateIdleObjects();
+					}
+					catch (Exception e) {
+						log.warn("Exception in background validator", e);
+					}
+				}
+			}, delay, delay);
+		}
+	}
+
+	/**
+	 * Validate all idle objects that have not been validated or used within
+	 * <code>timeBetweenValidationRunsMillis</code>, destroying the ones that
+	 * fail and creating new idle objects in their place. Called by the
+	 * background validator.
+	 */
+	public void validateIdleObjects() {
+		long cutoff = System.currentTimeMillis() - Math.max(timeBetweenValidationRunsMillis, 0);
+		for (Iterator iterator = keyPools.values().iterator(); iterator.hasNext();) {
+			KeyPool keyPool = (KeyPool) iterator.next();
+			int failed = 0;
+
+			// Validate one object at a time, so that the others remain
+			// available for borrowing meanwhile
+			IdleEntry entry;
+			while (!isClosed() && (entry = keyPool.pollStaleIdle(cutoff)) != null) {
+				if (validateIdle(keyPool, entry) && !isClosed()) {
+					keyPool.restoreIdle(entry);
+				}
+				else {
+					failed++;
+					keyPool.activeDecrement();
+					destroy(keyPool, entry.object);
+				}
+			}
+
+			for (int i = 0; i < failed && !isClosed(); i++) {
+				if (maxActive >= 0 && keyPool.countInstances() >= maxActive) {
+					break;
+				}
+				try {
+					addObject(keyPool.key);
+				}
+				catch (Exception e) {
+					log.warn("Failed to replace an invalid idle object for key '" + keyPool.key + "'", e);
+					break;
+				}
+			}
+		}
+	}
+
+	private int getNumTests(int numIdle) {
+		if (numTestsPerEvictionRun >= 0) {
+			return Math.min(numTestsPerEvictionRun, numIdle);
+		}
+		return (int) Math.ceil((double) numIdle / Math.abs((double) numTestsPerEvictionRun));
+	}
+
+	/**
+	 * Create idle objects for each key until there are at least
+	 * <code>minIdle</code> of them, within the <code>maxActive</code> limit.
+	 * Called by the idle object evictor.
+	 *
+	 * @throws Exception if an object could not be created.
+	 */
+	public void ensureMinIdle() throws Exception {
+		if (minIdle <= 0) {
+			return;
+		}
+
+		// Serialize concurrent runs (evictor, replenisher, explicit calls) so
+		// that they do not overshoot
+		synchronized (minIdleLock) {
+			for (Iterator iterator = keyPools.values().iterator(); iterator.hasNext();) {
+				KeyPool keyPool = (KeyPool) iterator.next();
+				int missing = minIdle - keyPool.countIdle();
+				for (int i = 0; i < missing && !isClosed(); i++) {
+					if (maxActive >= 0 && keyPool.countInstances() >= maxActive) {
+						break;
+					}
+					addObject(keyPool.key);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Schedule an asynchronous {@link #ensureMinIdle()}, unless one is already
+	 * pending.
+	 */
+	private void requestReplenish() {
+		if (!replenishScheduled) {
+			scheduleReplenish();
+		}
+	}
+
+	private synchronized void scheduleReplenish() {
+		if (replenishScheduled || isClosed() || factory == null) {
+			return;
+		}
+
+		if (replenishTimer == null) {
+			replenishTimer = new Timer(true);
+		}
+		replenishScheduled = true;
+		replenishTimer.schedule(new TimerTask() {
+			public void run() {
+				synchronized (StripedKeyedObjectPool.this) {
+					replenishScheduled = false;
+				}
+				try {
+					ensureMinIdle();
+				}
+				catch (Exception e) {
+					log.warn("Failed to create idle objects to reach minIdle", e);
+				}
+			}
+		}, 0);
+	}
+
+	/**
+	 * An idle object together with the time it was last returned.
+	 */
+	private static final class IdleEntry {
+		private final Object object;
+
+		private final long timestamp;
+
+		/**
+		 * Time of the last successful validation while idle; only accessed
+		 * by the thread having taken the entry out of its stripe.
+		 */
+		private long lastValidated = 0;
+
+		/**
+		 * The stripe the entry was taken from by the evictor or validator.
+		 */
+		private int stripeIndex = 0;
+
+		public IdleEntry(Object object) {
+			this.object = object;
+			this.timestamp = System.currentTimeMillis();
+		}
+
+		/**
+		 * Check whether this object has been validated or returned within
+		 * the specified number of milliseconds.
+		 */
+		public boolean isFresh(long maxAge) {
+			return maxAge > 0 && System.currentTimeMillis() - lastActivity() < maxAge;
+		}
+
+		public long lastActivity() {
+			return Math.max(timestamp, lastValidated);
+		}
+	}
+
+	/**
+	 * One lock stripe of idle objects. The stripe lock is a leaf lock: no
+	 * other lock is ever acquired while holding it.
+	 */
+	private static final class Stripe {
+		private final LinkedList idle = new LinkedList();
+
+		/**
+		 * Written under the stripe lock, read without it for best-effort
+		 * maxIdle checks.
+		 */
+		private volatile int idleCount = 0;
+
+		/**
+		 * Number of objects borrowed by threads having this stripe as home
+		 * stripe, minus the number returned by them. May be negative for an
+		 * individual stripe; the sum over all stripes is the active count.
+		 */
+		private int active = 0;
+	}
+
+	/**
+	 * The sub-pool of one key.
+	 */
+	private final class KeyPool {
+		private static final int RESERVED = 0;
+
+		private static final int RETRY = 1;
+
+		private static final int TOTAL_EXHAUSTED = 2;
+
+		private final Object key;
+
+		private final Stripe[] stripes;
+
+		/**
+		 * Number of objects currently being created. Guarded by this.
+		 */
+		private int creating = 0;
+
+		/**
+		 * Number of threads waiting for an object. Incremented and
+		 * decremented while holding the lock on this, read without it.
+		 */
+		private volatile int waiters = 0;
+
+		/**
+		 * Number of objects destroyed by the evictor. Guarded by this.
+		 */
+		private long evicted = 0;
+
+		public KeyPool(Object key, int numStripes) {
+			this.key = key;
+			this.stripes = new Stripe[numStripes];
+			for (int i = 0; i < numStripes; i++) {
+				stripes[i] = new Stripe();
+			}
+		}
+
+		private int homeIndex() {
+			int hash = System.identityHashCode(Thread.currentThread());
+			// Spread the bits somewhat, identity hash codes are often aligned
+			hash ^= (hash >>> 16);
+			hash ^= (hash >>> 7);
+			return hash & stripeMask;
+		}
+
+		/**
+		 * Take the most recently returned idle object, looking in the home
+		 * stripe of the calling thread first. The returned object is counted
+		 * as active.
+		 */
+		public IdleEntry pollIdle() {
+			int home = homeIndex();
+			Stripe homeStripe = stripes[home];
+			synchronized (homeStripe) {
+				if (!homeStripe.idle.isEmpty()) {
+					homeStripe.idleCount--;
+					homeStripe.active++;
+					return (IdleEntry) homeStripe.idle.removeFirst();
+				}
+			}
+
+			for (int i = 1; i < stripes.length; i++) {
+				Stripe stripe = stripes[(home + i) & stripeMask];
+				IdleEntry entry = null;
+				synchronized (stripe) {
+					if (!stripe.idle.isEmpty()) {
+						stripe.idleCount--;
+						stripe.active++;
+						entry = (IdleEntry) stripe.idle.removeFirst();
+					}
+				}
+				if (entry != null) {
+					return entry;
+				}
+			}
+
+			return null;
+		}
+
+		/**
+		 * Take the least recently returned idle object of any stripe. The
+		 * returned object is counted as active.
+		 */
+		public IdleEntry pollOldestIdle() {
+			List entries = pollOldestIdle(1);
+			return entries.isEmpty() ? null : (IdleEntry) entries.get(0);
+		}
+
+		/**
+		 * Take up to <code>count</code> of the least recently returned idle
+		 * objects, spread over the stripes. The returned objects are counted
+		 * as active until returned using {@link #restoreIdle(IdleEntry)}.
+		 */
+		public List pollOldestIdle(int count) {
+			List result = new ArrayList(Math.max(count, 0));
+			boolean found = true;
+			while (result.size() < count && found) {
+				found = false;
+				for (int i = 0; i < stripes.length && result.size() < count; i++) {
+					Stripe stripe = stripes[i];
+					synchronized (stripe) {
+						if (!stripe.idle.isEmpty()) {
+							stripe.idleCount--;
+							stripe.active++;
+							IdleEntry entry = (IdleEntry) stripe.idle.removeLast();
+							entry.stripeIndex = i;
+							result.add(entry);
+							found = true;
+						}
+					}
+				}
+			}
+			return result;
+		}
+
+		/**
+		 * Take an idle object that has not been validated or returned since
+		 * the specified point in time. The returned object is counted as
+		 * active until returned using {@link #restoreIdle(IdleEntry)}.
+		 */
+		public IdleEntry pollStaleIdle(long cutoff) {
+			for (int i = 0; i < stripes.length; i++) {
+				Stripe stripe = stripes[i];
+				synchronized (stripe) {
+					for (Iterator iterator = stripe.idle.iterator(); iterator.hasNext();) {
+						IdleEntry entry = (IdleEntry) iterator.next();
+						if (entry.lastActivity() < cutoff) {
+							iterator.remove();
+							stripe.idleCount--;
+							stripe.active++;
+							entry.stripeIndex = i;
+							return entry;
+						}
+					}
+				}
+			}
+			return null;
+		}
+
+		/**
+		 * Put an entry previously taken by the evictor or validator back at
+		 * the old end of the stripe it was taken from, keeping its timestamp.
+		 */
+		public void restoreIdle(IdleEntry entry) {
+			Stripe stripe = stripes[entry.stripeIndex];
+			synchronized (stripe) {
+				stripe.active--;
+				stripe.idle.addLast(entry);
+				stripe.idleCount++;
+			}
+			idleObjectAvailable(this);
+		}
+
+		public void returnIdle(Object obj) {
+			Stripe stripe = stripes[homeIndex()];
+			synchronized (stripe) {
+				stripe.active--;
+				stripe.idle.addFirst(new IdleEntry(obj));
+				stripe.idleCount++;
+			}
+			idleObjectAvailable(this);
+		}
+
+		public void activeDecrement() {
+			Stripe stripe = stripes[homeIndex()];
+			synchronized (stripe) {
+				stripe.active--;
+			}
+		}
+
+		public List drainIdle() {
+			List result = new LinkedList();
+			for (int i = 0; i < stripes.length; i++) {
+				Stripe stripe = stripes[i];
+				synchronized (stripe) {
+					result.addAll(stripe.idle);
+					stripe.idle.clear();
+					stripe.idleCount = 0;
+				}
+			}
+			return result;
+		}
+
+		public int approximateIdle() {
+			int result = 0;
+			for (int i = 0; i < stripes.length; i++) {
+				result += stripes[i].idleCount;
+			}
+			return result;
+		}
+
+		public int countIdle() {
+			int result = 0;
+			for (int i = 0; i < stripes.length; i++) {
+				Stripe stripe = stripes[i];
+				synchronized (stripe) {
+					result += stripe.idle.size();
+				}
+			}
+			return result;
+		}
+
+		public int countActive() {
+			int result = 0;
+			for (int i = 0; i < stripes.length; i++) {
+				Stripe stripe = stripes[i];
+				synchronized (stripe) {
+					result += stripe.active;
+				}
+			}
+			return result;
+		}
+
+		private boolean hasIdle() {
+			for (int i = 0; i < stripes.length; i++) {
+				Stripe stripe = stripes[i];
+				synchronized (stripe) {
+					if (!stripe.idle.isEmpty()) {
+						return true;
+					}
+				}
+			}
+			return false;
+		}
+
+		/**
+		 * Number of objects of this key in existence, including the ones
+		 * being created.
+		 */
+		public synchronized int countInstances() {
+			int result = creating;
+			for (int i = 0; i < stripes.length; i++) {
+				Stripe stripe = stripes[i];
+				synchronized (stripe) {
+					result += stripe.active + stripe.idle.size();
+				}
+			}
+			return result;
+		}
+
+		/**
+		 * Reserve room for creating a new object, applying the
+		 * <code>whenExhaustedAction</code> if the per key limit has been
+		 * reached.
+		 *
+		 * @param startTime the time the borrow operation started.
+		 * @param mayWait <code>true</code> if the caller has already tried
+		 * and failed to make room within the <code>maxTotal</code> limit.
+		 * @return {@link #RESERVED} if an object may be created,
+		 * {@link #RETRY} if an idle object has become available, or
+		 * {@link #TOTAL_EXHAUSTED} if the <code>maxTotal</code> limit has been
+		 * reached.
+		 */
+		public synchronized int reserve(long startTime, boolean mayWait) throws InterruptedException {
+			waiters++;
+			try {
+				while (true) {
+					assertOpen();
+					if (hasIdle()) {
+						return RETRY;
+					}
+
+					boolean exhausted = maxActive >= 0 && countInstances() >= maxActive;
+					if (!exhausted) {
+						if (reserveTotal(false)) {
+							creating++;
+							return RESERVED;
+						}
+						if (!mayWait) {
+							return TOTAL_EXHAUSTED;
+						}
+					}
+
+					switch (whenExhaustedAction) {
+					case WHEN_EXHAUSTED_GROW:
+						reserveTotal(true);
+						creating++;
+						return RESERVED;
+					case WHEN_EXHAUSTED_FAIL:
+						throw new NoSuchElementException("Pool exhausted");
+					default:
+						long currentMaxWait = maxWait;
+						if (currentMaxWait <= 0) {
+							wait();
+						}
+						else {
+							long remaining = currentMaxWait - (System.currentTimeMillis() - startTime);
+							if (remaining <= 0) {
+								throw new NoSuchElementException("Timeout waiting for idle object");
+							}
+							wait(remaining);
+						}
+						// Re-evaluate the total limit after waking up
+						mayWait = false;
+					}
+				}
+			}
+			finally {
+				waiters--;
+			}
+		}
+
+		public synchronized void evicted() {
+			evicted++;
+		}
+
+		public synchronized long getEvicted() {
+			return evicted;
+		}
+
+		public synchronized void forceReservation() {
+			reserveTotal(true);
+			creating++;
+		}
+
+		/**
+		 * Count a newly created object as active rather than being created.
+		 */
+		public synchronized void creationSucceeded() {
+			creating--;
+			Stripe stripe = stripes[homeIndex()];
+			synchronized (stripe) {
+				stripe.active++;
+			}
+		}
+
+		public void creationFailed() {
+			synchronized (this) {
+				creating--;
+			}
+			releaseTotal();
+			signalWaiters();
+		}
+
+		public void instanceDestroyed() {
+			signalWaiters();
+		}
+
+		public void signalWaiters() {
+			if (waiters > 0) {
+				synchronized (this) {
+					notifyAll();
+				}
+			}
+		}
+	}
+}
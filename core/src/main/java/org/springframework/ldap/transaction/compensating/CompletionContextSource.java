@@ -0,0 +1,81 @@
+/*
+ * Copyright 2005-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.ldap.transaction.compensating;
+
+import javax.naming.directory.DirContext;
+
+import org.springframework.ldap.NamingException;
+import org.springframework.ldap.core.ContextSource;
+import org.springframework.ldap.core.support.SingleContextSource;
+
+/**
+ * The {@link ContextSource} of the {@link org.springframework.ldap.core.LdapOperations}
+ * instances used by the recorders and executors created by
+ * {@link LdapCompensatingTransactionOperationFactory}. Normally supplies the
+ * <code>DirContext</code> of the transaction, but a thread committing or
+ * rolling back executors concurrently with other threads, as done by
+ * {@link ParallelCompletionStrategy}, may redirect it to a
+ * <code>DirContext</code> of its own, since a <code>DirContext</code> may not
+ * be used by several threads at once.
+ * 
+ * @author agent
+ * @since 1.3.2
+ */
+class CompletionContextSource implements ContextSource {
+
+    private static final ThreadLocal redirectedContextSource = new ThreadLocal();
+
+    private final ContextSource transactionContextSource;
+
+    CompletionContextSource(DirContext transactionContext) {
+        this.transactionContextSource = new SingleContextSource(
+                transactionContext);
+    }
+
+    /**
+     * Make all instances use the supplied <code>DirContext</code> in the
+     * current thread, until {@link #clearThreadContext()} is called.
+     * 
+     * @param ctx
+     *            the <code>DirContext</code> to use in the current thread.
+     */
+    static void setThreadContext(DirContext ctx) {
+        redirectedContextSource.set(new SingleContextSource(ctx));
+    }
+
+    static void clearThreadContext() {
+        redirectedContextSource.set(null);
+    }
+
+    private ContextSource getTarget() {
+        ContextSource redirected = (ContextSource) redirectedContextSource
+                .get();
+        return redirected != null ? redirected : transactionContextSource;
+    }
+
+    public DirContext getReadOnlyContext() throws NamingException {
+        return getTarget().getReadOnlyContext();
+    }
+
+    public DirContext getReadWriteContext() throws NamingException {
+        return getTarget().getReadWriteContext();
+    }
+
+    public DirContext getContext(String principal, String credentials)
+            throws NamingException {
+        return getTarget().getContext(principal, credentials);
+    }
+}
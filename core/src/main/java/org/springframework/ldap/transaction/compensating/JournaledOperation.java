@@ -0,0 +1,263 @@
+/*
+ * Copyright 2005-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.ldap.transaction.compensating;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import javax.naming.Name;
+import javax.naming.directory.ModificationItem;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.ldap.NameNotFoundException;
+import org.springframework.ldap.core.DistinguishedName;
+import org.springframework.ldap.core.LdapOperations;
+import org.springframework.transaction.compensating.CompensatingTransactionOperationExecutor;
+
+/**
+ * The information a {@link TransactionJournal} needs to complete or undo an
+ * LDAP operation of a transaction after a crash, without the
+ * {@link CompensatingTransactionOperationExecutor} that recorded it.
+ * <p>
+ * As an operation is journaled before it is performed, and the outcome may
+ * not have been journaled at all, the recovery steps must be safe whether
+ * or not the operation actually took place. Operations that move the original
+ * entry to a temporary DN are only undone if the temporary entry exists;
+ * modifications are undone by replacing the original values, which is
+ * harmless if they were never changed; a bind or rename is only undone if it
+ * is known to have been performed.
+ * 
+ * @author agent
+ * @since 1.3.2
+ */
+final class JournaledOperation {
+
+    private static Log log = LogFactory.getLog(JournaledOperation.class);
+
+    static final byte BIND = 1;
+
+    static final byte REBIND = 2;
+
+    static final byte RENAME = 3;
+
+    static final byte UNBIND = 4;
+
+    static final byte MODIFY_ATTRIBUTES = 5;
+
+    private final byte type;
+
+    private final Name dn;
+
+    private final Name otherDn;
+
+    private final ModificationItem[] compensatingModifications;
+
+    JournaledOperation(byte type, Name dn, Name otherDn,
+            ModificationItem[] compensatingModifications) {
+        this.type = type;
+        this.dn = dn;
+        this.otherDn = otherDn;
+        this.compensatingModifications = compensatingModifications;
+    }
+
+    /**
+     * Get the information to journal for an executor.
+     * 
+     * @param executor
+     *            the executor of the operation.
+     * @return the journaled operation, or <code>null</code> if the operation
+     *         does not change the directory or the executor is unknown.
+     */
+    static JournaledOperation forExecutor(
+            CompensatingTransactionOperationExecutor executor) {
+        if (executor instanceof BindOperationExecutor) {
+            return new JournaledOperation(BIND,
+                    ((BindOperationExecutor) executor).getDn(), null, null);
+        } else if (executor instanceof RebindOperationExecutor) {
+            RebindOperationExecutor rebindExecutor = (RebindOperationExecutor) executor;
+            return new JournaledOperation(REBIND, rebindExecutor
+                    .getOriginalDn(), rebindExecutor.getTemporaryDn(), null);
+        } else if (executor instanceof RenameOperationExecutor) {
+            RenameOperationExecutor renameExecutor = (RenameOperationExecutor) executor;
+            return new JournaledOperation(RENAME, renameExecutor
+                    .getOriginalDn(), renameExecutor.getNewDn(), null);
+        } else if (executor instanceof UnbindOperationExecutor) {
+            UnbindOperationExecutor unbindExecutor = (UnbindOperationExecutor) executor;
+            return new JournaledOperation(UNBIND, unbindExecutor
+                    .getOriginalDn(), unbindExecutor.getTemporaryDn(), null);
+        } else if (executor instanceof ModifyAttributesOperationExecutor) {
+            ModifyAttributesOperationExecutor modifyExecutor = (ModifyAttributesOperationExecutor) executor;
+            return new JournaledOperation(MODIFY_ATTRIBUTES, modifyExecutor
+                    .getDn(), null, modifyExecutor
+                    .getCompensatingModifications());
+        }
+        return null;
+    }
+
+    byte getType() {
+        return type;
+    }
+
+    /**
+     * Whether {@link #rollback(LdapOperations, boolean)} depends on knowing
+     * that the operation has been performed. The rollback of the other
+     * operations is safe either way.
+     */
+    boolean isUndoneOnlyIfPerformed() {
+        return type == BIND || type == RENAME;
+    }
+
+    Name getDn() {
+        return dn;
+    }
+
+    Name getOtherDn() {
+        return otherDn;
+    }
+
+    ModificationItem[] getCompensatingModifications() {
+        return compensatingModifications;
+    }
+
+    void writeTo(DataOutputStream out) throws IOException {
+        out.writeByte(type);
+        out.writeUTF(dn.toString());
+        out.writeBoolean(otherDn != null);
+        if (otherDn != null) {
+            out.writeUTF(otherDn.toString());
+        }
+        out.writeBoolean(compensatingModifications != null);
+        if (compensatingModifications != null) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ObjectOutputStream objectOut = new ObjectOutputStream(bytes);
+            objectOut.writeObject(compensatingModifications);
+            objectOut.close();
+            out.writeInt(bytes.size());
+            bytes.writeTo(out);
+        }
+    }
+
+    static JournaledOperation readFrom(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        Name dn = new DistinguishedName(in.readUTF());
+        Name otherDn = null;
+        if (in.readBoolean()) {
+            otherDn = new DistinguishedName(in.readUTF());
+        }
+        ModificationItem[] compensatingModifications = null;
+        if (in.readBoolean()) {
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            ObjectInputStream objectIn = new ObjectInputStream(
+                    new ByteArrayInputStream(bytes));
+            try {
+                compensatingModifications = (ModificationItem[]) objectIn
+                        .readObject();
+            } catch (ClassNotFoundException e) {
+                IOException ioException = new IOException(
+                        "Unable to read modifications");
+                ioException.initCause(e);
+                throw ioException;
+            }
+        }
+        return new JournaledOperation(type, dn, otherDn,
+                compensatingModifications);
+    }
+
+    /**
+     * Undo the operation.
+     * 
+     * @param ldapOperations
+     *            the {@link LdapOperations} to use.
+     * @param performed
+     *            whether the operation is known to have been performed.
+     */
+    void rollback(LdapOperations ldapOperations, boolean performed) {
+        switch (type) {
+        case BIND:
+            if (performed) {
+                unbindIfExists(ldapOperations, dn);
+            }
+            break;
+        case RENAME:
+            if (performed && exists(ldapOperations, otherDn)) {
+                ldapOperations.rename(otherDn, dn);
+            }
+            break;
+        case REBIND:
+            if (exists(ldapOperations, otherDn)) {
+                unbindIfExists(ldapOperations, dn);
+                ldapOperations.rename(otherDn, dn);
+            }
+            break;
+        case UNBIND:
+            if (exists(ldapOperations, otherDn)) {
+                ldapOperations.rename(otherDn, dn);
+            }
+            break;
+        case MODIFY_ATTRIBUTES:
+            try {
+                ldapOperations.modifyAttributes(dn, compensatingModifications);
+            } catch (NameNotFoundException e) {
+                log.debug("Entry " + dn + " no longer exists");
+            }
+            break;
+        default:
+            throw new IllegalStateException("Unknown operation type: " + type);
+        }
+    }
+
+    /**
+     * Complete the commit of the operation, removing any temporary entry.
+     * 
+     * @param ldapOperations
+     *            the {@link LdapOperations} to use.
+     */
+    void commit(LdapOperations ldapOperations) {
+        if (type == REBIND || type == UNBIND) {
+            unbindIfExists(ldapOperations, otherDn);
+        }
+    }
+
+    private static boolean exists(LdapOperations ldapOperations, Name name) {
+        try {
+            ldapOperations.lookup(name);
+            return true;
+        } catch (NameNotFoundException e) {
+            return false;
+        }
+    }
+
+    private static void unbindIfExists(LdapOperations ldapOperations,
+            Name name) {
+        try {
+            ldapOperations.unbind(name);
+        } catch (NameNotFoundException e) {
+            log.debug("Entry " + name + " no longer exists");
+        }
+    }
+
+    public String toString() {
+        return "JournaledOperation[type=" + type + ", dn=" + dn
+                + ", otherDn=" + otherDn + "]";
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2005-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.ldap.transaction.compensating;
+
+import org.springframework.transaction.compensating.CompensatingTransactionOperationExecutor;
+
+/**
+ * Writes an operation to a {@link TransactionJournal} before it is performed,
+ * and marks it as performed once it has succeeded. Commit and rollback are
+ * passed straight on to the target executor.
+ * 
+ * @author agent
+ * @since 1.3.2
+ */
+class JournalingOperationExecutor implements
+        CompensatingTransactionOperationExecutor {
+
+    private final CompensatingTransactionOperationExecutor target;
+
+    private final TransactionJournal.Transaction transaction;
+
+    private final JournaledOperation operation;
+
+    JournalingOperationExecutor(
+            CompensatingTransactionOperationExecutor target,
+            TransactionJournal.Transaction transaction,
+            JournaledOperation operation) {
+        this.target = target;
+        this.transaction = transaction;
+        this.operation = operation;
+    }
+
+    /*
+     * @see org.springframework.transaction.compensating.CompensatingTransactionOperationExecutor#performOperation()
+     */
+    public void performOperation() {
+        int sequence = transaction.operationStarted(operation);
+        target.performOperation();
+        transaction.operationPerformed(operation, sequence);
+    }
+
+    /*
+     * @see org.springframework.transaction.compensating.CompensatingTransactionOperationExecutor#rollback()
+     */
+    public void rollback() {
+        target.rollback();
+    }
+
+    /*
+     * @see org.springframework.transaction.compensating.CompensatingTransactionOperationExecutor#commit()
+     */
+    public void commit() {
+        target.commit();
+    }
+
+    CompensatingTransactionOperationExecutor getTarget() {
+        return target;
+    }
+}
@@ -23,7 +23,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.springframework.ldap.core.LdapOperations;
 import org.springframework.ldap.core.LdapTemplate;
-import org.springframework.ldap.core.support.SingleContextSource;
+import org.springframework.transaction.compensating.CompensatingTransactionOperationExecutor;
 import org.springframework.transaction.compensating.CompensatingTransactionOperationFactory;
 import org.springframework.transaction.compensating.CompensatingTransactionOperationRecorder;
 
@@ -39,6 +39,10 @@ public class LdapCompensatingTransactionOperationFactory implements Compensating
 
 	private TempEntryRenamingStrategy renamingStrategy;
 
+	private PreImageCache preImageCache;
+
+	private TransactionJournal.Transaction journalTransaction;
+
 	/**
 	 * Constructor.
 	 * 
@@ -49,29 +53,79 @@ public class LdapCompensatingTransactionOperationFactory implements Compensating
 		this.renamingStrategy = renamingStrategy;
 	}
 
+	/**
+	 * Constructor.
+	 * 
+	 * @param renamingStrategy the {@link TempEntryRenamingStrategy} to supply
+	 * to relevant operations.
+	 * @param preImageCache the {@link PreImageCache} of the transaction this
+	 * factory records operations for. If <code>null</code>, the original
+	 * values of modified attributes are looked up for every modifyAttributes
+	 * operation.
+	 * @since 1.3.2
+	 */
+	public LdapCompensatingTransactionOperationFactory(TempEntryRenamingStrategy renamingStrategy,
+			PreImageCache preImageCache) {
+		this.renamingStrategy = renamingStrategy;
+		this.preImageCache = preImageCache;
+	}
+
+	/**
+	 * Get the {@link PreImageCache} of the transaction.
+	 * 
+	 * @return the {@link PreImageCache}, or <code>null</code> if none is used.
+	 * @since 1.3.2
+	 */
+	public PreImageCache getPreImageCache() {
+		return preImageCache;
+	}
+
+	/**
+	 * Set the {@link TransactionJournal} transaction to write the operations
+	 * to before they are performed.
+	 * 
+	 * @param journalTransaction the journal transaction, or <code>null</code>
+	 * if operations should not be journaled.
+	 * @since 1.3.2
+	 */
+	public void setJournalTransaction(TransactionJournal.Transaction journalTransaction) {
+		this.journalTransaction = journalTransaction;
+	}
+
 	/*
 	 * @see org.springframework.transaction.compensating.
 	 * CompensatingTransactionOperationFactory
 	 * #createRecordingOperation(java.lang.Object, java.lang.String)
 	 */
 	public CompensatingTransactionOperationRecorder createRecordingOperation(Object resource, String operation) {
+		CompensatingTransactionOperationRecorder recorder = createRecorder(resource, operation);
+		if (journalTransaction == null) {
+			return recorder;
+		}
+		return new JournalingOperationRecorder(recorder, journalTransaction);
+	}
+
+	private CompensatingTransactionOperationRecorder createRecorder(Object resource, String operation) {
 		if (StringUtils.equals(operation, LdapTransactionUtils.BIND_METHOD_NAME)) {
 			log.debug("Bind operation recorded");
-			return new BindOperationRecorder(createLdapOperationsInstance((DirContext) resource));
+			return invalidating(new BindOperationRecorder(createLdapOperationsInstance((DirContext) resource)), false);
 		}
 		else if (StringUtils.equals(operation, LdapTransactionUtils.REBIND_METHOD_NAME)) {
 			log.debug("Rebind operation recorded");
-			return new RebindOperationRecorder(createLdapOperationsInstance((DirContext) resource), renamingStrategy);
+			return invalidating(new RebindOperationRecorder(createLdapOperationsInstance((DirContext) resource),
+					renamingStrategy), false);
 		}
 		else if (StringUtils.equals(operation, LdapTransactionUtils.RENAME_METHOD_NAME)) {
 			log.debug("Rename operation recorded");
-			return new RenameOperationRecorder(createLdapOperationsInstance((DirContext) resource));
+			return invalidating(new RenameOperationRecorder(createLdapOperationsInstance((DirContext) resource)), true);
 		}
 		else if (StringUtils.equals(operation, LdapTransactionUtils.MODIFY_ATTRIBUTES_METHOD_NAME)) {
-			return new ModifyAttributesOperationRecorder(createLdapOperationsInstance((DirContext) resource));
+			return new ModifyAttributesOperationRecorder(createLdapOperationsInstance((DirContext) resource),
+					preImageCache);
 		}
 		else if (StringUtils.equals(operation, LdapTransactionUtils.UNBIND_METHOD_NAME)) {
-			return new UnbindOperationRecorder(createLdapOperationsInstance((DirContext) resource), renamingStrategy);
+			return invalidating(new UnbindOperationRecorder(createLdapOperationsInstance((DirContext) resource),
+					renamingStrategy), false);
 		}
 
 		log.warn("No suitable CompensatingTransactionOperationRecorder found for method " + operation
@@ -80,6 +134,69 @@ public class LdapCompensatingTransactionOperationFactory implements Compensating
 	}
 
 	LdapOperations createLdapOperationsInstance(DirContext ctx) {
-		return new LdapTemplate(new SingleContextSource(ctx));
+		return new LdapTemplate(new CompletionContextSource(ctx));
+	}
+
+	/**
+	 * Make sure that any cached pre-image of the entries affected by an
+	 * operation which replaces, moves or removes entries is dropped.
+	 */
+	private CompensatingTransactionOperationRecorder invalidating(CompensatingTransactionOperationRecorder recorder,
+			boolean rename) {
+		if (preImageCache == null) {
+			return recorder;
+		}
+		return new PreImageInvalidatingOperationRecorder(recorder, preImageCache, rename);
+	}
+
+	private static final class PreImageInvalidatingOperationRecorder implements
+			CompensatingTransactionOperationRecorder {
+		private final CompensatingTransactionOperationRecorder target;
+
+		private final PreImageCache preImageCache;
+
+		private final boolean rename;
+
+		PreImageInvalidatingOperationRecorder(CompensatingTransactionOperationRecorder target,
+				PreImageCache preImageCache, boolean rename) {
+			this.target = target;
+			this.preImageCache = preImageCache;
+			this.rename = rename;
+		}
+
+		public CompensatingTransactionOperationExecutor recordOperation(Object[] args) {
+			if (rename) {
+				// Renaming moves the whole subtree
+				preImageCache.invalidateSubtree(LdapTransactionUtils.getFirstArgumentAsName(args));
+				if (args.length > 1) {
+					preImageCache.invalidateSubtree(LdapTransactionUtils.getArgumentAsName(args[1]));
+				}
+			}
+			else {
+				preImageCache.invalidate(LdapTransactionUtils.getFirstArgumentAsName(args));
+			}
+			return target.recordOperation(args);
+		}
+	}
+
+	private static final class JournalingOperationRecorder implements CompensatingTransactionOperationRecorder {
+		private final CompensatingTransactionOperationRecorder target;
+
+		private final TransactionJournal.Transaction journalTransaction;
+
+		JournalingOperationRecorder(CompensatingTransactionOperationRecorder target,
+				TransactionJournal.Transaction journalTransaction) {
+			this.target = target;
+			this.journalTransaction = journalTransaction;
+		}
+
+		public CompensatingTransactionOperationExecutor recordOperation(Object[] args) {
+			CompensatingTransactionOperationExecutor executor = target.recordOperation(args);
+			JournaledOperation operation = JournaledOperation.forExecutor(executor);
+			if (operation == null) {
+				return executor;
+			}
+			return new JournalingOperationExecutor(executor, journalTransaction, operation);
+		}
 	}
 }
@@ -46,6 +46,8 @@ public class ModifyAttributesOperationExecutor implements
 
     private ModificationItem[] actualModifications;
 
+    private PreImageCache preImageCache;
+
     /**
      * Constructor.
      * 
@@ -69,6 +71,32 @@ public class ModifyAttributesOperationExecutor implements
         this.compensatingModifications = (ModificationItem[]) compensatingModifications.clone();
     }
 
+    /**
+     * Constructor.
+     * 
+     * @param ldapOperations
+     *            The {@link LdapOperations} to use to perform the rollback
+     *            operation.
+     * @param dn
+     *            the DN of the target entry.
+     * @param actualModifications
+     *            the actual modificationItems that were sent to the
+     *            modifyAttributes operation.
+     * @param compensatingModifications
+     *            the ModificationItems to undo the recorded operation.
+     * @param preImageCache
+     *            the {@link PreImageCache} to update once the operation has
+     *            been performed, or <code>null</code>.
+     * @since 1.3.2
+     */
+    public ModifyAttributesOperationExecutor(LdapOperations ldapOperations,
+            Name dn, ModificationItem[] actualModifications,
+            ModificationItem[] compensatingModifications,
+            PreImageCache preImageCache) {
+        this(ldapOperations, dn, actualModifications, compensatingModifications);
+        this.preImageCache = preImageCache;
+    }
+
     /*
      * @see org.springframework.ldap.support.transaction.CompensatingTransactionOperationExecutor#rollback()
      */
@@ -96,6 +124,9 @@ public class ModifyAttributesOperationExecutor implements
     public void performOperation() {
         log.debug("Performing modifyAttributes operation");
         ldapOperations.modifyAttributes(dn, actualModifications);
+        if (preImageCache != null) {
+            preImageCache.modificationPerformed(dn, actualModifications);
+        }
     }
 
     Name getDn() {
@@ -113,4 +144,8 @@ public class ModifyAttributesOperationExecutor implements
     ModificationItem[] getCompensatingModifications() {
         return compensatingModifications;
     }
+
+    PreImageCache getPreImageCache() {
+        return preImageCache;
+    }
 }
@@ -45,10 +45,30 @@ public class ModifyAttributesOperationRecorder implements
 
     private LdapOperations ldapOperations;
 
+    private PreImageCache preImageCache;
+
     public ModifyAttributesOperationRecorder(LdapOperations ldapOperations) {
         this.ldapOperations = ldapOperations;
     }
 
+    /**
+     * Constructor.
+     * 
+     * @param ldapOperations
+     *            the {@link LdapOperations} to use.
+     * @param preImageCache
+     *            the {@link PreImageCache} of the current transaction, to get
+     *            the current values of the modified attributes from. If
+     *            <code>null</code>, the values are looked up for every
+     *            operation.
+     * @since 1.3.2
+     */
+    public ModifyAttributesOperationRecorder(LdapOperations ldapOperations,
+            PreImageCache preImageCache) {
+        this.ldapOperations = ldapOperations;
+        this.preImageCache = preImageCache;
+    }
+
     /*
      * @see org.springframework.ldap.support.transaction.CompensatingTransactionOperationRecorder#recordOperation(java.lang.Object[])
      */
@@ -71,8 +91,14 @@ public class ModifyAttributesOperationRecorder implements
         // Get the current values of all referred Attributes.
         String[] attributeNameArray = (String[]) set.toArray(new String[set
                 .size()]);
-        Attributes currentAttributes = (Attributes) ldapOperations.lookup(dn,
-                attributeNameArray, getAttributesMapper());
+        Attributes currentAttributes;
+        if (preImageCache != null) {
+            currentAttributes = preImageCache.getAttributes(ldapOperations,
+                    dn, attributeNameArray);
+        } else {
+            currentAttributes = (Attributes) ldapOperations.lookup(dn,
+                    attributeNameArray, getAttributesMapper());
+        }
 
         // Get a compensating ModificationItem for each of the incoming
         // modification.
@@ -83,7 +109,7 @@ public class ModifyAttributesOperationRecorder implements
         }
 
         return new ModifyAttributesOperationExecutor(ldapOperations, dn,
-                incomingModifications, rollbackItems);
+                incomingModifications, rollbackItems, preImageCache);
     }
 
     /**
@@ -162,4 +188,8 @@ public class ModifyAttributesOperationRecorder implements
     LdapOperations getLdapOperations() {
         return ldapOperations;
     }
+
+    PreImageCache getPreImageCache() {
+        return preImageCache;
+    }
 }
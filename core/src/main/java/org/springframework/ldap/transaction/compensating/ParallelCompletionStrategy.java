@@ -0,0 +1,427 @@
+/*
+ * Copyright 2005-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.ldap.transaction.compensating;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.naming.Name;
+import javax.naming.directory.DirContext;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.ldap.core.ContextSource;
+import org.springframework.ldap.core.DistinguishedName;
+import org.springframework.ldap.support.LdapUtils;
+import org.springframework.transaction.compensating.CompensatingTransactionCompletionStrategy;
+import org.springframework.transaction.compensating.CompensatingTransactionOperationExecutor;
+import org.springframework.transaction.compensating.support.CompensatingTransactionFailureException;
+import org.springframework.util.Assert;
+
+/**
+ * A {@link CompensatingTransactionCompletionStrategy} committing and rolling
+ * back the operations of an LDAP compensating transaction concurrently where
+ * possible.
+ * <p>
+ * The operations are split into groups based on the DNs they affect: two
+ * operations end up in the same group if an entry affected by one of them is
+ * the same as, or an ancestor of, an entry affected by the other, directly or
+ * through other operations of the group. The operations of a group are
+ * processed one at a time, committed in the order they were performed and
+ * rolled back in the reverse order, while different groups, which by
+ * definition concern disjoint subtrees, are processed concurrently. If the
+ * transaction contains an operation that this class does not know the affected
+ * DNs of, all operations are processed one at a time.
+ * <p>
+ * Each concurrently running thread uses a <code>DirContext</code> of its own,
+ * obtained from the supplied {@link ContextSource}, which should therefore
+ * normally be pooling. The calling thread takes part in the work using the
+ * <code>DirContext</code> of the transaction.
+ * <p>
+ * Unlike the default behaviour of
+ * {@link org.springframework.transaction.compensating.support.DefaultCompensatingTransactionOperationManager},
+ * a failure does not abort the processing of the remaining operations. All
+ * failures are reported together in a
+ * {@link CompensatingTransactionFailureException} once all operations have
+ * been processed.
+ * <p>
+ * Instances of this class hold no transaction state and may be shared.
+ * 
+ * @author agent
+ * @since 1.3.2
+ * @see org.springframework.ldap.transaction.compensating.manager.ContextSourceTransactionManager#setCompletionStrategy(CompensatingTransactionCompletionStrategy)
+ */
+public class ParallelCompletionStrategy implements
+        CompensatingTransactionCompletionStrategy {
+
+    private static final Log log = LogFactory
+            .getLog(ParallelCompletionStrategy.class);
+
+    private static final Comparator DEPTH_COMPARATOR = new Comparator() {
+        public int compare(Object o1, Object o2) {
+            return ((AffectedName) o1).dn.size()
+                    - ((AffectedName) o2).dn.size();
+        }
+    };
+
+    private static final Comparator SIZE_COMPARATOR = new Comparator() {
+        public int compare(Object o1, Object o2) {
+            return ((List) o2).size() - ((List) o1).size();
+        }
+    };
+
+    private final ContextSource contextSource;
+
+    private final TaskExecutor taskExecutor;
+
+    private int concurrency = 4;
+
+    /**
+     * Constructor.
+     * 
+     * @param contextSource
+     *            the {@link ContextSource} to get a <code>DirContext</code>
+     *            for each additional thread from. This should be the target
+     *            ContextSource of the transaction manager, not the
+     *            transaction aware proxy.
+     * @param taskExecutor
+     *            the {@link TaskExecutor} to run the additional threads in.
+     */
+    public ParallelCompletionStrategy(ContextSource contextSource,
+            TaskExecutor taskExecutor) {
+        Assert.notNull(contextSource, "ContextSource must not be null");
+        Assert.notNull(taskExecutor, "TaskExecutor must not be null");
+        this.contextSource = contextSource;
+        this.taskExecutor = taskExecutor;
+    }
+
+    /**
+     * Set the maximum number of threads, including the calling thread, to
+     * process the operations of one transaction with. Default is 4.
+     * 
+     * @param concurrency
+     *            the maximum number of threads per transaction.
+     */
+    public void setConcurrency(int concurrency) {
+        Assert.isTrue(concurrency > 0, "concurrency must be greater than zero");
+        this.concurrency = concurrency;
+    }
+
+    /*
+     * @see org.springframework.transaction.compensating.CompensatingTransactionCompletionStrategy#rollback(java.util.List)
+     */
+    public void rollback(List operationExecutors) {
+        new Completion(groupByAncestry(operationExecutors), true).execute();
+    }
+
+    /*
+     * @see org.springframework.transaction.compensating.CompensatingTransactionCompletionStrategy#commit(java.util.List)
+     */
+    public void commit(List operationExecutors) {
+        new Completion(groupByAncestry(operationExecutors), false).execute();
+    }
+
+    /**
+     * Split the supplied executors into groups that may be processed
+     * independently of each other, largest group first. The executors of
+     * each group are kept in their original order.
+     * 
+     * @param operationExecutors
+     *            the executors in the order their operations were performed.
+     * @return a List of Lists of executors.
+     */
+    List groupByAncestry(List operationExecutors) {
+        int size = operationExecutors.size();
+        int[] groupOf = new int[size];
+        List affectedNames = new ArrayList();
+        for (int i = 0; i < size; i++) {
+            groupOf[i] = i;
+            Name[] names = getAffectedNames((CompensatingTransactionOperationExecutor) operationExecutors
+                    .get(i));
+            if (names == null) {
+                log.debug("Unknown operation executor - processing all operations in sequence");
+                return Collections.singletonList(operationExecutors);
+            }
+            for (int j = 0; j < names.length; j++) {
+                affectedNames.add(new AffectedName(names[j], i));
+            }
+        }
+
+        // With ancestors sorted before their descendants, any ancestor of an
+        // entry has already been registered when the entry is reached.
+        Collections.sort(affectedNames, DEPTH_COMPARATOR);
+        Map owners = new HashMap();
+        for (Iterator iter = affectedNames.iterator(); iter.hasNext();) {
+            AffectedName affectedName = (AffectedName) iter.next();
+            StringBuffer key = new StringBuffer();
+            for (int i = 0; i < affectedName.dn.size(); i++) {
+                key.append(affectedName.dn.getLdapRdn(i).getLdapEncoded()
+                        .toLowerCase(Locale.ENGLISH));
+                key.append(',');
+                Integer owner = (Integer) owners.get(key.toString());
+                if (owner != null) {
+                    join(groupOf, affectedName.executorIndex, owner.intValue());
+                }
+            }
+            if (!owners.containsKey(key.toString())) {
+                owners.put(key.toString(), new Integer(
+                        affectedName.executorIndex));
+            }
+        }
+
+        Map groups = new LinkedHashMap();
+        for (int i = 0; i < size; i++) {
+            Integer root = new Integer(findRoot(groupOf, i));
+            List group = (List) groups.get(root);
+            if (group == null) {
+                group = new ArrayList();
+                groups.put(root, group);
+            }
+            group.add(operationExecutors.get(i));
+        }
+
+        List result = new ArrayList(groups.values());
+        Collections.sort(result, SIZE_COMPARATOR);
+        return result;
+    }
+
+    /**
+     * Get the DNs affected by an executor.
+     * 
+     * @return the affected DNs, or <code>null</code> if the type of the
+     *         executor is unknown.
+     */
+    private Name[] getAffectedNames(
+            CompensatingTransactionOperationExecutor executor) {
+        if (executor instanceof BindOperationExecutor) {
+            return new Name[] { ((BindOperationExecutor) executor).getDn() };
+        } else if (executor instanceof ModifyAttributesOperationExecutor) {
+            return new Name[] { ((ModifyAttributesOperationExecutor) executor)
+                    .getDn() };
+        } else if (executor instanceof RebindOperationExecutor) {
+            RebindOperationExecutor rebindExecutor = (RebindOperationExecutor) executor;
+            return new Name[] { rebindExecutor.getOriginalDn(),
+                    rebindExecutor.getTemporaryDn() };
+        } else if (executor instanceof RenameOperationExecutor) {
+            RenameOperationExecutor renameExecutor = (RenameOperationExecutor) executor;
+            return new Name[] { renameExecutor.getOriginalDn(),
+                    renameExecutor.getNewDn() };
+        } else if (executor instanceof UnbindOperationExecutor) {
+            UnbindOperationExecutor unbindExecutor = (UnbindOperationExecutor) executor;
+            return new Name[] { unbindExecutor.getOriginalDn(),
+                    unbindExecutor.getTemporaryDn() };
+        } else if (executor instanceof NullOperationExecutor) {
+            return new Name[0];
+        } else if (executor instanceof JournalingOperationExecutor) {
+            return getAffectedNames(((JournalingOperationExecutor) executor)
+                    .getTarget());
+        }
+        return null;
+    }
+
+    private static int findRoot(int[] groupOf, int index) {
+        while (groupOf[index] != index) {
+            groupOf[index] = groupOf[groupOf[index]];
+            index = groupOf[index];
+        }
+        return index;
+    }
+
+    private static void join(int[] groupOf, int first, int second) {
+        int firstRoot = findRoot(groupOf, first);
+        int secondRoot = findRoot(groupOf, second);
+        if (firstRoot != secondRoot) {
+            groupOf[Math.max(firstRoot, secondRoot)] = Math.min(firstRoot,
+                    secondRoot);
+        }
+    }
+
+    private static final class AffectedName {
+        private final DistinguishedName dn;
+
+        private final int executorIndex;
+
+        AffectedName(Name name, int executorIndex) {
+            this.dn = new DistinguishedName(name);
+            this.executorIndex = executorIndex;
+        }
+    }
+
+    /**
+     * The processing of the groups of one transaction.
+     */
+    private final class Completion {
+        private final Object monitor = new Object();
+
+        private final List groups;
+
+        private final boolean rollback;
+
+        private final List failures = new ArrayList();
+
+        private final List returnedGroups = new ArrayList();
+
+        private int nextGroup;
+
+        private int runningWorkers;
+
+        Completion(List groups, boolean rollback) {
+            this.groups = groups;
+            this.rollback = rollback;
+        }
+
+        void execute() {
+            int workers = Math.min(concurrency, groups.size()) - 1;
+            for (int i = 0; i < workers; i++) {
+                synchronized (monitor) {
+                    runningWorkers++;
+                }
+                try {
+                    taskExecutor.execute(new Worker());
+                } catch (RuntimeException e) {
+                    // The remaining groups are taken care of by the others
+                    log.debug("Failed to start worker", e);
+                    workerFinished();
+                }
+            }
+
+            // Use the DirContext of the transaction in this thread
+            processGroups();
+
+            boolean interrupted = false;
+            synchronized (monitor) {
+                while (runningWorkers > 0) {
+                    try {
+                        monitor.wait();
+                    } catch (InterruptedException e) {
+                        // The workers may still be using the contexts -
+                        // keep waiting
+                        interrupted = true;
+                    }
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+
+            // Groups handed back by workers that failed to get a DirContext
+            processGroups();
+
+            if (!failures.isEmpty()) {
+                throw new CompensatingTransactionFailureException("Error occurred during "
+                        + (rollback ? "rollback" : "commit"), failures);
+            }
+        }
+
+        private void processGroups() {
+            List group;
+            while ((group = takeGroup()) != null) {
+                processGroup(group);
+            }
+        }
+
+        private void processGroup(List group) {
+            if (rollback) {
+                for (int i = group.size() - 1; i >= 0; i--) {
+                    try {
+                        ((CompensatingTransactionOperationExecutor) group
+                                .get(i)).rollback();
+                    } catch (Exception e) {
+                        addFailure(e);
+                    }
+                }
+            } else {
+                for (int i = 0; i < group.size(); i++) {
+                    try {
+                        ((CompensatingTransactionOperationExecutor) group
+                                .get(i)).commit();
+                    } catch (Exception e) {
+                        addFailure(e);
+                    }
+                }
+            }
+        }
+
+        private List takeGroup() {
+            synchronized (monitor) {
+                if (!returnedGroups.isEmpty()) {
+                    return (List) returnedGroups.remove(returnedGroups.size() - 1);
+                }
+                if (nextGroup < groups.size()) {
+                    return (List) groups.get(nextGroup++);
+                }
+                return null;
+            }
+        }
+
+        private void returnGroup(List group) {
+            synchronized (monitor) {
+                returnedGroups.add(group);
+            }
+        }
+
+        private void addFailure(Exception e) {
+            synchronized (monitor) {
+                failures.add(e);
+            }
+        }
+
+        private void workerFinished() {
+            synchronized (monitor) {
+                runningWorkers--;
+                monitor.notifyAll();
+            }
+        }
+
+        private final class Worker implements Runnable {
+            public void run() {
+                DirContext ctx = null;
+                try {
+                    // Only borrow a DirContext if there is work left for
+                    // this worker; the pool may be exhausted otherwise
+                    List group = takeGroup();
+                    if (group == null) {
+                        return;
+                    }
+                    try {
+                        ctx = contextSource.getReadWriteContext();
+                    } catch (RuntimeException e) {
+                        // Hand the group back to the others
+                        returnGroup(group);
+                        log.warn("Failed to get DirContext for "
+                                + (rollback ? "rollback" : "commit"), e);
+                        return;
+                    }
+                    CompletionContextSource.setThreadContext(ctx);
+                    processGroup(group);
+                    processGroups();
+                } finally {
+                    CompletionContextSource.clearThreadContext();
+                    LdapUtils.closeContext(ctx);
+                    workerFinished();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,369 @@
+/*
+ * Copyright 2005-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.ldap.transaction.compensating;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import javax.naming.Name;
+import javax.naming.NamingEnumeration;
+import javax.naming.NamingException;
+import javax.naming.directory.Attribute;
+import javax.naming.directory.Attributes;
+import javax.naming.directory.BasicAttributes;
+import javax.naming.directory.DirContext;
+import javax.naming.directory.ModificationItem;
+import javax.naming.directory.SearchControls;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.ldap.core.AttributesMapper;
+import org.springframework.ldap.core.ContextMapper;
+import org.springframework.ldap.core.DirContextAdapter;
+import org.springframework.ldap.core.DistinguishedName;
+import org.springframework.ldap.core.LdapOperations;
+import org.springframework.ldap.core.LdapRdn;
+import org.springframework.ldap.core.LdapRdnComponent;
+import org.springframework.ldap.filter.AndFilter;
+import org.springframework.ldap.filter.EqualsFilter;
+import org.springframework.ldap.filter.Filter;
+import org.springframework.ldap.filter.OrFilter;
+import org.springframework.ldap.support.LdapUtils;
+
+/**
+ * Keeps the original values of entry attributes read during a compensating
+ * transaction, so that {@link ModifyAttributesOperationRecorder} only needs to
+ * read each attribute of an entry from the server once per transaction rather
+ * than once per <code>modifyAttributes</code> operation.
+ * <p>
+ * Once an attribute has been read, the values it is given by each successful
+ * modification in the transaction are applied to the cached copy, so that the
+ * pre-image of the next modification can be taken from the cache. The few
+ * modifications whose outcome can not be reliably predicted locally, i.e. the
+ * removal of individual values, cause the attribute to be read again the next
+ * time it is modified. Entries that are bound, rebound or unbound in the
+ * transaction are dropped from the cache altogether, as are renamed entries
+ * along with everything below them.
+ * <p>
+ * Applications that know up front which entries a transaction will modify may
+ * use {@link #prefetch(LdapOperations, Name[], String[])} to read the
+ * pre-images of all of them with one search per parent entry.
+ * <p>
+ * Instances are bound to a single transaction, and thus to a single thread, and
+ * are not thread safe.
+ * 
+ * @author agent
+ * @since 1.3.2
+ */
+public class PreImageCache {
+
+    private static Log log = LogFactory.getLog(PreImageCache.class);
+
+    /**
+     * The known original state of one entry.
+     */
+    private static class PreImage {
+        private final Attributes attributes = new BasicAttributes(true);
+
+        // Lower case IDs of the attributes whose state is known, including
+        // those known not to be present in the entry.
+        private final Set knownIds = new HashSet();
+
+        boolean isKnown(String attributeId) {
+            return knownIds.contains(toKey(attributeId));
+        }
+
+        void setKnown(String attributeId, Attribute attribute) {
+            knownIds.add(toKey(attributeId));
+            if (attribute != null && attribute.size() > 0) {
+                attributes.put((Attribute) attribute.clone());
+            } else {
+                attributes.remove(attributeId);
+            }
+        }
+
+        void forget(String attributeId) {
+            knownIds.remove(toKey(attributeId));
+            attributes.remove(attributeId);
+        }
+
+        void load(String[] attributeIds, Attributes read) {
+            for (int i = 0; i < attributeIds.length; i++) {
+                setKnown(attributeIds[i], read != null ? read
+                        .get(attributeIds[i]) : null);
+            }
+        }
+    }
+
+    private Map preImages = new HashMap();
+
+    private int lookupCount;
+
+    /**
+     * Get the original values of the specified attributes of an entry, reading
+     * only those that are not already known from the server.
+     * 
+     * @param ldapOperations
+     *            the {@link LdapOperations} to read any unknown attributes
+     *            with.
+     * @param dn
+     *            the DN of the entry.
+     * @param attributeIds
+     *            the IDs of the attributes to get.
+     * @return the attributes of the entry among the requested ones. The
+     *         returned instance may be freely modified by the caller.
+     */
+    public Attributes getAttributes(LdapOperations ldapOperations, Name dn,
+            String[] attributeIds) {
+        String key = getKey(dn);
+        PreImage preImage = (PreImage) preImages.get(key);
+
+        List missingIds = new ArrayList();
+        for (int i = 0; i < attributeIds.length; i++) {
+            if (preImage == null || !preImage.isKnown(attributeIds[i])) {
+                missingIds.add(attributeIds[i]);
+            }
+        }
+
+        if (!missingIds.isEmpty()) {
+            String[] missingIdArray = (String[]) missingIds
+                    .toArray(new String[missingIds.size()]);
+            Attributes read = (Attributes) ldapOperations.lookup(dn,
+                    missingIdArray, new AttributesMapper() {
+                        public Object mapFromAttributes(Attributes attributes)
+                                throws NamingException {
+                            return attributes;
+                        }
+                    });
+            lookupCount++;
+
+            if (preImage == null) {
+                preImage = new PreImage();
+                preImages.put(key, preImage);
+            }
+            preImage.load(missingIdArray, read);
+        } else {
+            log.debug("All requested attributes of " + dn + " found in cache");
+        }
+
+        Attributes result = new BasicAttributes(true);
+        for (int i = 0; i < attributeIds.length; i++) {
+            Attribute attribute = preImage.attributes.get(attributeIds[i]);
+            if (attribute != null) {
+                result.put((Attribute) attribute.clone());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Read the original values of the specified attributes of a number of
+     * entries that are about to be modified in the current transaction. The
+     * entries are read with a single one level search per distinct parent
+     * entry. Entries that are not found are ignored; they will be read
+     * individually if they are later modified.
+     * 
+     * @param ldapOperations
+     *            the {@link LdapOperations} to search with.
+     * @param dns
+     *            the DNs of the entries to read.
+     * @param attributeIds
+     *            the IDs of the attributes that are to be modified.
+     */
+    public void prefetch(LdapOperations ldapOperations, Name[] dns,
+            final String[] attributeIds) {
+        // Group the requested entries by parent, keyed on the parent DN
+        Map parents = new HashMap();
+        Map filtersByParent = new HashMap();
+        for (int i = 0; i < dns.length; i++) {
+            DistinguishedName dn = new DistinguishedName(dns[i]);
+            if (dn.isEmpty()) {
+                continue;
+            }
+            DistinguishedName parent = (DistinguishedName) dn.getPrefix(dn
+                    .size() - 1);
+            String parentKey = toKey(parent.toCompactString());
+            OrFilter filter = (OrFilter) filtersByParent.get(parentKey);
+            if (filter == null) {
+                filter = new OrFilter();
+                filtersByParent.put(parentKey, filter);
+                parents.put(parentKey, parent);
+            }
+            filter.or(getRdnFilter(dn.getLdapRdn(dn.size() - 1)));
+        }
+
+        SearchControls controls = new SearchControls();
+        controls.setSearchScope(SearchControls.ONELEVEL_SCOPE);
+        controls.setReturningAttributes(attributeIds);
+        controls.setReturningObjFlag(true);
+
+        for (Iterator iter = parents.entrySet().iterator(); iter.hasNext();) {
+            Map.Entry entry = (Map.Entry) iter.next();
+            final DistinguishedName parent = (DistinguishedName) entry
+                    .getValue();
+            Filter filter = (Filter) filtersByParent.get(entry.getKey());
+
+            ldapOperations.search(parent, filter.encode(), controls,
+                    new ContextMapper() {
+                        public Object mapFromContext(Object ctx) {
+                            DirContextAdapter adapter = (DirContextAdapter) ctx;
+                            DistinguishedName found = new DistinguishedName(
+                                    adapter.getDn());
+                            DistinguishedName dn = (DistinguishedName) parent
+                                    .clone();
+                            dn.add(found.getLdapRdn(found.size() - 1));
+
+                            PreImage preImage = new PreImage();
+                            preImage.load(attributeIds, adapter
+                                    .getAttributes());
+                            preImages.put(getKey(dn), preImage);
+                            return null;
+                        }
+                    });
+            lookupCount++;
+        }
+    }
+
+    /**
+     * Apply a successfully performed modification to the cached pre-images, so
+     * that they reflect the state of the entry for the next modification.
+     * 
+     * @param dn
+     *            the DN of the modified entry.
+     * @param modifications
+     *            the modifications that were performed.
+     */
+    public void modificationPerformed(Name dn, ModificationItem[] modifications) {
+        PreImage preImage = (PreImage) preImages.get(getKey(dn));
+        if (preImage == null) {
+            return;
+        }
+
+        for (int i = 0; i < modifications.length; i++) {
+            Attribute modification = modifications[i].getAttribute();
+            String id = modification.getID();
+            int operation = modifications[i].getModificationOp();
+
+            if (operation == DirContext.REPLACE_ATTRIBUTE) {
+                preImage.setKnown(id, modification);
+            } else if (operation == DirContext.ADD_ATTRIBUTE) {
+                if (preImage.isKnown(id)) {
+                    Attribute current = preImage.attributes.get(id);
+                    if (current == null) {
+                        preImage.setKnown(id, modification);
+                    } else {
+                        addValues(current, modification);
+                    }
+                }
+            } else if (modification.size() == 0) {
+                // Removal of the entire attribute
+                preImage.setKnown(id, null);
+            } else {
+                // Which values are removed depends on the matching rules of
+                // the attribute; read it again if it is modified later on.
+                preImage.forget(id);
+            }
+        }
+    }
+
+    /**
+     * Drop any cached pre-image of the specified entry.
+     * 
+     * @param dn
+     *            the DN of the entry.
+     */
+    public void invalidate(Name dn) {
+        preImages.remove(getKey(dn));
+    }
+
+    /**
+     * Drop any cached pre-images of the specified entry and all entries below
+     * it, e.g. when it is renamed.
+     * 
+     * @param dn
+     *            the DN of the subtree root.
+     */
+    public void invalidateSubtree(Name dn) {
+        DistinguishedName root = new DistinguishedName(getKey(dn));
+        for (Iterator iter = preImages.keySet().iterator(); iter.hasNext();) {
+            String key = (String) iter.next();
+            if (new DistinguishedName(key).startsWith(root)) {
+                iter.remove();
+            }
+        }
+    }
+
+    /**
+     * Drop all cached pre-images.
+     */
+    public void clear() {
+        preImages.clear();
+    }
+
+    /**
+     * Get the number of times the server has been read from by this instance.
+     * 
+     * @return the number of lookups and searches performed.
+     */
+    public int getLookupCount() {
+        return lookupCount;
+    }
+
+    private static void addValues(Attribute target, Attribute values) {
+        try {
+            NamingEnumeration enumeration = values.getAll();
+            while (enumeration.hasMore()) {
+                Object value = enumeration.next();
+                if (!target.contains(value)) {
+                    target.add(value);
+                }
+            }
+        } catch (NamingException e) {
+            throw LdapUtils.convertLdapException(e);
+        }
+    }
+
+    private static Filter getRdnFilter(LdapRdn rdn) {
+        List components = rdn.getComponents();
+        if (components.size() == 1) {
+            LdapRdnComponent component = (LdapRdnComponent) components.get(0);
+            return new EqualsFilter(component.getKey(), component.getValue());
+        }
+
+        AndFilter filter = new AndFilter();
+        for (Iterator iter = components.iterator(); iter.hasNext();) {
+            LdapRdnComponent component = (LdapRdnComponent) iter.next();
+            filter.and(new EqualsFilter(component.getKey(), component
+                    .getValue()));
+        }
+        return filter;
+    }
+
+    // DNs are compared ignoring case and formatting
+    static String getKey(Name dn) {
+        return toKey(new DistinguishedName(dn).toCompactString());
+    }
+
+    private static String toKey(String value) {
+        return value.toLowerCase(Locale.ENGLISH);
+    }
+}
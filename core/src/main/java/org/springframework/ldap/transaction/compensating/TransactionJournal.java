@@ -0,0 +1,730 @@
+/*
+ * Copyright 2005-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.ldap.transaction.compensating;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.ldap.core.ContextSource;
+import org.springframework.ldap.core.LdapOperations;
+import org.springframework.ldap.core.LdapTemplate;
+import org.springframework.transaction.TransactionSystemException;
+import org.springframework.util.Assert;
+
+/**
+ * An append-only journal of the operations of compensating LDAP transactions,
+ * kept in a local directory so that transactions interrupted by a crash can be
+ * completed or rolled back when the application is restarted.
+ * <p>
+ * Every operation is written to the journal, and forced to disk, before it is
+ * performed; once performed, this is recorded too. Before a transaction is
+ * committed a commit marker is written, and once it has been committed or
+ * rolled back it is marked as completed. If the commit or rollback itself
+ * fails, the transaction is marked as failed instead; a failed transaction is
+ * never recovered, since its state is unknown and replaying it could undo
+ * later changes to the same entries. On startup the journal is read and
+ * every transaction that was not completed is finished: if it had started to
+ * commit, any temporary entries left by unbind and rebind operations are
+ * removed, otherwise its operations are undone in reverse order. The recovery
+ * steps are written to be safe whether or not an operation had actually been
+ * performed when the crash occurred.
+ * <p>
+ * Forcing the journal to disk is batched: threads that need their records to
+ * be durable at the same time share a single <code>force</code> of the file.
+ * The journal is split into segments of roughly {@link #setMaxSegmentSize(long)
+ * maxSegmentSize} bytes; a segment is deleted once every transaction with
+ * records in it has completed.
+ * <p>
+ * Only changes made through transactions of the
+ * {@link org.springframework.ldap.transaction.compensating.manager.ContextSourceTransactionManager}
+ * the journal is set on are recorded. The journal directory must not be shared
+ * between applications.
+ * 
+ * @author agent
+ * @since 1.3.2
+ * @see org.springframework.ldap.transaction.compensating.manager.ContextSourceTransactionManager#setTransactionJournal(TransactionJournal)
+ */
+public class TransactionJournal implements InitializingBean, DisposableBean {
+
+    private static Log log = LogFactory.getLog(TransactionJournal.class);
+
+    private static final String SEGMENT_PREFIX = "journal-";
+
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private static final long DEFAULT_MAX_SEGMENT_SIZE = 16 * 1024 * 1024;
+
+    // Larger records can only be the result of a corrupt length
+    private static final int MAX_RECORD_SIZE = 16 * 1024 * 1024;
+
+    static final byte OPERATION = 1;
+
+    static final byte PERFORMED = 2;
+
+    static final byte COMMITTING = 3;
+
+    static final byte COMPLETED = 4;
+
+    static final byte FAILED = 5;
+
+    private File directory;
+
+    private ContextSource contextSource;
+
+    private long maxSegmentSize = DEFAULT_MAX_SEGMENT_SIZE;
+
+    // Guards all of the fields below
+    private final Object lock = new Object();
+
+    private RandomAccessFile segmentFile;
+
+    private FileChannel channel;
+
+    private long segmentNumber;
+
+    private long oldestSegmentNumber;
+
+    // Segments from this one on hold transactions that could not be recovered
+    private long retainedSegmentNumber = Long.MAX_VALUE;
+
+    private long segmentPosition;
+
+    // Bytes written and bytes known to be on disk, over all segments
+    private long writeCount;
+
+    private long syncCount;
+
+    private boolean syncing;
+
+    private long nextTransactionId = 1;
+
+    // Transaction id to the first segment the transaction has records in
+    private final Map activeTransactions = new HashMap();
+
+    private List incompleteTransactions = new ArrayList();
+
+    /**
+     * Set the directory to keep the journal in. It is created if it does not
+     * exist.
+     * 
+     * @param directory
+     *            the journal directory.
+     */
+    public void setDirectory(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Set the {@link ContextSource} to use to recover interrupted transactions
+     * on startup. This should be the same ContextSource as is set on the
+     * transaction manager. If not set, interrupted transactions are kept in
+     * the journal but not recovered.
+     * 
+     * @param contextSource
+     *            the {@link ContextSource} to recover transactions with.
+     */
+    public void setContextSource(ContextSource contextSource) {
+        this.contextSource = contextSource;
+    }
+
+    /**
+     * Set the size in bytes after which a new journal segment is started.
+     * Default is 16 MB.
+     * 
+     * @param maxSegmentSize
+     *            the maximum size of a segment.
+     */
+    public void setMaxSegmentSize(long maxSegmentSize) {
+        this.maxSegmentSize = maxSegmentSize;
+    }
+
+    /*
+     * @see org.springframework.beans.factory.InitializingBean#afterPropertiesSet()
+     */
+    public void afterPropertiesSet() throws Exception {
+        Assert.notNull(directory, "Property 'directory' must be set");
+        Assert.isTrue(maxSegmentSize > 0,
+                "Property 'maxSegmentSize' must be greater than zero");
+
+        open();
+        if (contextSource != null) {
+            recover(new LdapTemplate(contextSource));
+        } else if (!incompleteTransactions.isEmpty()) {
+            log.warn(incompleteTransactions.size()
+                    + " interrupted transaction(s) found in " + directory
+                    + ", but no ContextSource is set to recover them with");
+        }
+    }
+
+    /*
+     * @see org.springframework.beans.factory.DisposableBean#destroy()
+     */
+    public void destroy() throws Exception {
+        synchronized (lock) {
+            waitForSync();
+            if (channel != null) {
+                channel.force(false);
+                segmentFile.close();
+                syncCount = writeCount;
+                channel = null;
+                segmentFile = null;
+            }
+        }
+    }
+
+    /**
+     * Read the existing journal segments and start a new one.
+     */
+    void open() throws IOException {
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Unable to create journal directory "
+                    + directory);
+        }
+
+        long[] segmentNumbers = listSegmentNumbers();
+        Map transactions = new TreeMap();
+        for (int i = 0; i < segmentNumbers.length; i++) {
+            readSegment(segmentNumbers[i], transactions);
+        }
+
+        synchronized (lock) {
+            incompleteTransactions = new ArrayList();
+            for (Iterator iter = transactions.values().iterator(); iter
+                    .hasNext();) {
+                RecoveredTransaction transaction = (RecoveredTransaction) iter
+                        .next();
+                nextTransactionId = Math.max(nextTransactionId,
+                        transaction.id + 1);
+                if (!transaction.completed) {
+                    incompleteTransactions.add(transaction);
+                    retainedSegmentNumber = Math.min(retainedSegmentNumber,
+                            transaction.firstSegmentNumber);
+                }
+            }
+
+            if (segmentNumbers.length > 0) {
+                oldestSegmentNumber = segmentNumbers[0];
+                segmentNumber = segmentNumbers[segmentNumbers.length - 1] + 1;
+            } else {
+                oldestSegmentNumber = 1;
+                segmentNumber = 1;
+            }
+            openSegment();
+            deleteObsoleteSegments();
+        }
+    }
+
+    /**
+     * Finish all transactions found incomplete when the journal was opened.
+     * Transactions that can not be finished are kept in the journal and
+     * retried the next time it is opened.
+     * 
+     * @param ldapOperations
+     *            the {@link LdapOperations} to use.
+     */
+    void recover(LdapOperations ldapOperations) {
+        List transactions;
+        synchronized (lock) {
+            transactions = incompleteTransactions;
+            incompleteTransactions = new ArrayList();
+        }
+        if (transactions.isEmpty()) {
+            return;
+        }
+
+        log.info("Recovering " + transactions.size()
+                + " interrupted transaction(s)");
+        long retained = Long.MAX_VALUE;
+        // Most recent first, in case transactions touched the same entries
+        for (int i = transactions.size() - 1; i >= 0; i--) {
+            RecoveredTransaction transaction = (RecoveredTransaction) transactions
+                    .get(i);
+            try {
+                transaction.recover(ldapOperations);
+                append(COMPLETED, transaction.id, 0, null, false);
+            } catch (RuntimeException e) {
+                log.error("Failed to recover transaction " + transaction.id
+                        + "; it will be retried on next startup", e);
+                retained = Math.min(retained, transaction.firstSegmentNumber);
+            }
+        }
+
+        synchronized (lock) {
+            retainedSegmentNumber = retained;
+        }
+        sync(getWriteCount());
+        synchronized (lock) {
+            deleteObsoleteSegments();
+        }
+    }
+
+    /**
+     * Start journaling a new transaction. Nothing is written until the first
+     * operation of the transaction is performed.
+     * 
+     * @return the journal transaction.
+     */
+    public Transaction begin() {
+        synchronized (lock) {
+            return new Transaction(this, nextTransactionId++);
+        }
+    }
+
+    /**
+     * The journal records of a single transaction. Not thread safe.
+     */
+    public static final class Transaction {
+        private final TransactionJournal journal;
+
+        private final long id;
+
+        private int operationCount;
+
+        private Transaction(TransactionJournal journal, long id) {
+            this.journal = journal;
+            this.id = id;
+        }
+
+        /**
+         * Get the id of the transaction, unique within the journal.
+         * 
+         * @return the transaction id.
+         */
+        public long getId() {
+            return id;
+        }
+
+        /**
+         * Durably record an operation that is about to be performed.
+         * 
+         * @return the sequence number of the operation in the transaction.
+         */
+        int operationStarted(JournaledOperation operation) {
+            int sequence = operationCount++;
+            journal.append(OPERATION, id, sequence, operation, true);
+            return sequence;
+        }
+
+        /**
+         * Record that an operation has been performed. Only operations that
+         * recovery undoes solely if they were performed need this to be
+         * durable; the record of any other operation is written without
+         * forcing the journal to disk.
+         */
+        void operationPerformed(JournaledOperation operation, int sequence) {
+            journal.append(PERFORMED, id, sequence, null, operation
+                    .isUndoneOnlyIfPerformed());
+        }
+
+        /**
+         * Durably record that the transaction is about to be committed, so
+         * that the commit rather than a rollback is completed if it is
+         * interrupted.
+         */
+        public void committing() {
+            if (operationCount > 0) {
+                journal.append(COMMITTING, id, 0, null, true);
+            }
+        }
+
+        /**
+         * Record that the transaction has been committed or rolled back. This
+         * is not forced to disk immediately; if it is lost, recovery merely
+         * repeats the completion of the transaction. Records of any later
+         * transaction are forced after it, so a later change to the same
+         * entries is never undone by mistake.
+         */
+        public void completed() {
+            if (operationCount > 0) {
+                journal.append(COMPLETED, id, 0, null, false);
+            }
+        }
+
+        /**
+         * Durably record that the commit or rollback of the transaction
+         * failed. The transaction will not be recovered on restart; its
+         * outcome has already been reported to the application.
+         */
+        public void failed() {
+            if (operationCount > 0) {
+                journal.append(FAILED, id, 0, null, true);
+            }
+        }
+    }
+
+    private void append(byte type, long transactionId, int sequence,
+            JournaledOperation operation, boolean force) {
+        byte[] record;
+        try {
+            record = createRecord(type, transactionId, sequence, operation);
+        } catch (IOException e) {
+            throw new TransactionSystemException(
+                    "Failed to create transaction journal record", e);
+        }
+
+        long ticket;
+        synchronized (lock) {
+            if (channel == null) {
+                throw new IllegalStateException(
+                        "Transaction journal is not open");
+            }
+            try {
+                if (segmentPosition > 0
+                        && segmentPosition + record.length > maxSegmentSize) {
+                    rollOver();
+                }
+                ByteBuffer buffer = ByteBuffer.wrap(record);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            } catch (IOException e) {
+                throw new TransactionSystemException(
+                        "Failed to write to transaction journal", e);
+            }
+            segmentPosition += record.length;
+            writeCount += record.length;
+            ticket = writeCount;
+
+            Long key = new Long(transactionId);
+            if (type == COMPLETED || type == FAILED) {
+                activeTransactions.remove(key);
+                deleteObsoleteSegments();
+            } else if (!activeTransactions.containsKey(key)) {
+                activeTransactions.put(key, new Long(segmentNumber));
+            }
+        }
+
+        if (force) {
+            sync(ticket);
+        }
+    }
+
+    /**
+     * Make sure that everything written up to the specified count is on disk.
+     * If another thread is already forcing the file, wait for it and then
+     * force everything written in the meantime on behalf of all waiting
+     * threads.
+     */
+    private void sync(long ticket) {
+        FileChannel syncChannel;
+        long target;
+        synchronized (lock) {
+            while (true) {
+                if (syncCount >= ticket) {
+                    return;
+                }
+                if (!syncing) {
+                    break;
+                }
+                waitForLock();
+            }
+            syncing = true;
+            syncChannel = channel;
+            target = writeCount;
+        }
+
+        boolean synced = false;
+        try {
+            syncChannel.force(false);
+            synced = true;
+        } catch (IOException e) {
+            throw new TransactionSystemException(
+                    "Failed to force transaction journal to disk", e);
+        } finally {
+            synchronized (lock) {
+                syncing = false;
+                if (synced) {
+                    syncCount = Math.max(syncCount, target);
+                }
+                lock.notifyAll();
+            }
+        }
+    }
+
+    private long getWriteCount() {
+        synchronized (lock) {
+            return writeCount;
+        }
+    }
+
+    private void waitForLock() {
+        try {
+            lock.wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransactionSystemException(
+                    "Interrupted while waiting for transaction journal");
+        }
+    }
+
+    private void waitForSync() {
+        while (syncing) {
+            waitForLock();
+        }
+    }
+
+    // Called with the lock held
+    private void rollOver() throws IOException {
+        waitForSync();
+        channel.force(false);
+        segmentFile.close();
+        syncCount = writeCount;
+        segmentNumber++;
+        openSegment();
+        deleteObsoleteSegments();
+    }
+
+    // Called with the lock held
+    private void openSegment() throws IOException {
+        segmentFile = new RandomAccessFile(getSegmentFile(segmentNumber), "rw");
+        channel = segmentFile.getChannel();
+        segmentPosition = channel.size();
+        channel.position(segmentPosition);
+    }
+
+    // Called with the lock held
+    private void deleteObsoleteSegments() {
+        long keep = Math.min(segmentNumber, retainedSegmentNumber);
+        for (Iterator iter = activeTransactions.values().iterator(); iter
+                .hasNext();) {
+            keep = Math.min(keep, ((Long) iter.next()).longValue());
+        }
+
+        for (; oldestSegmentNumber < keep; oldestSegmentNumber++) {
+            File file = getSegmentFile(oldestSegmentNumber);
+            if (file.exists() && !file.delete()) {
+                log.warn("Failed to delete journal segment " + file);
+            }
+        }
+    }
+
+    private File getSegmentFile(long number) {
+        return new File(directory, SEGMENT_PREFIX + number + SEGMENT_SUFFIX);
+    }
+
+    private long[] listSegmentNumbers() {
+        String[] names = directory.list();
+        List numbers = new ArrayList();
+        for (int i = 0; names != null && i < names.length; i++) {
+            String name = names[i];
+            if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+                try {
+                    numbers.add(Long.valueOf(name.substring(SEGMENT_PREFIX
+                            .length(), name.length() - SEGMENT_SUFFIX.length())));
+                } catch (NumberFormatException e) {
+                    log.warn("Ignoring unknown file " + name
+                            + " in journal directory");
+                }
+            }
+        }
+
+        long[] result = new long[numbers.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = ((Long) numbers.get(i)).longValue();
+        }
+        Arrays.sort(result);
+        return result;
+    }
+
+    /*
+     * A record is its length, the CRC32 checksum of its contents and the
+     * contents: type, transaction id, sequence number and, for operations,
+     * the operation itself.
+     */
+    private static byte[] createRecord(byte type, long transactionId,
+            int sequence, JournaledOperation operation) throws IOException {
+        ByteArrayOutputStream contents = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(contents);
+        out.writeByte(type);
+        out.writeLong(transactionId);
+        out.writeInt(sequence);
+        if (operation != null) {
+            operation.writeTo(out);
+        }
+        out.close();
+
+        CRC32 crc = new CRC32();
+        crc.update(contents.toByteArray());
+
+        ByteArrayOutputStream record = new ByteArrayOutputStream(contents
+                .size() + 12);
+        DataOutputStream recordOut = new DataOutputStream(record);
+        recordOut.writeInt(contents.size());
+        recordOut.writeLong(crc.getValue());
+        contents.writeTo(recordOut);
+        recordOut.close();
+        return record.toByteArray();
+    }
+
+    private void readSegment(long number, Map transactions)
+            throws IOException {
+        File file = getSegmentFile(number);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(file)));
+        try {
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    return;
+                }
+
+                byte[] contents;
+                long checksum;
+                try {
+                    if (length <= 0 || length > MAX_RECORD_SIZE) {
+                        throw new IOException("Invalid record length "
+                                + length);
+                    }
+                    checksum = in.readLong();
+                    contents = new byte[length];
+                    in.readFully(contents);
+                } catch (IOException e) {
+                    // A record that was being written when the crash occurred
+                    log.warn("Ignoring incomplete record at end of " + file);
+                    return;
+                }
+
+                CRC32 crc = new CRC32();
+                crc.update(contents);
+                if (crc.getValue() != checksum) {
+                    log.warn("Ignoring corrupt record at end of " + file);
+                    return;
+                }
+
+                readRecord(number, contents, transactions);
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void readRecord(long segmentNumber, byte[] contents,
+            Map transactions) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(
+                contents));
+        byte type = in.readByte();
+        long transactionId = in.readLong();
+        int sequence = in.readInt();
+
+        Long key = new Long(transactionId);
+        RecoveredTransaction transaction = (RecoveredTransaction) transactions
+                .get(key);
+        if (transaction == null) {
+            transaction = new RecoveredTransaction(transactionId,
+                    segmentNumber);
+            transactions.put(key, transaction);
+        }
+
+        switch (type) {
+        case OPERATION:
+            transaction.operations.add(JournaledOperation.readFrom(in));
+            break;
+        case PERFORMED:
+            transaction.performed.add(new Integer(sequence));
+            break;
+        case COMMITTING:
+            transaction.committing = true;
+            break;
+        case COMPLETED:
+            transaction.completed = true;
+            break;
+        case FAILED:
+            log.warn("Transaction " + transactionId
+                    + " failed to complete; it will not be recovered");
+            transaction.completed = true;
+            break;
+        default:
+            throw new IOException("Unknown journal record type " + type);
+        }
+    }
+
+    /**
+     * Get the number of transactions found incomplete when the journal was
+     * opened that have not yet been recovered. Package private for testing
+     * purposes.
+     */
+    int getIncompleteTransactionCount() {
+        synchronized (lock) {
+            return incompleteTransactions.size();
+        }
+    }
+
+    /**
+     * A transaction as read from the journal.
+     */
+    private static final class RecoveredTransaction {
+        private final long id;
+
+        private final long firstSegmentNumber;
+
+        // Indexed by sequence number
+        private final List operations = new ArrayList();
+
+        private final Set performed = new HashSet();
+
+        private boolean committing;
+
+        private boolean completed;
+
+        private RecoveredTransaction(long id, long firstSegmentNumber) {
+            this.id = id;
+            this.firstSegmentNumber = firstSegmentNumber;
+        }
+
+        private void recover(LdapOperations ldapOperations) {
+            if (committing) {
+                log.info("Completing commit of transaction " + id);
+                for (int i = 0; i < operations.size(); i++) {
+                    ((JournaledOperation) operations.get(i))
+                            .commit(ldapOperations);
+                }
+            } else {
+                log.info("Rolling back transaction " + id);
+                for (int i = operations.size() - 1; i >= 0; i--) {
+                    ((JournaledOperation) operations.get(i)).rollback(
+                            ldapOperations, performed
+                                    .contains(new Integer(i)));
+                }
+            }
+        }
+    }
+}
@@ -18,6 +18,7 @@ package org.springframework.ldap.transaction.compensating.manager;
 import org.springframework.jdbc.datasource.DataSourceTransactionManager;
 import org.springframework.ldap.core.ContextSource;
 import org.springframework.ldap.transaction.compensating.TempEntryRenamingStrategy;
+import org.springframework.ldap.transaction.compensating.TransactionJournal;
 import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.TransactionException;
 import org.springframework.transaction.TransactionSuspensionNotSupportedException;
@@ -160,6 +161,20 @@ public class ContextSourceAndDataSourceTransactionManager extends
         ldapManagerDelegate.setRenamingStrategy(renamingStrategy);
     }
 
+    /**
+     * Set a {@link TransactionJournal} to record the LDAP operations of every
+     * transaction in, so that transactions interrupted by a crash can be
+     * finished on restart.
+     * 
+     * @param transactionJournal
+     *            the {@link TransactionJournal} to use.
+     * @see ContextSourceTransactionManagerDelegate#setTransactionJournal(TransactionJournal)
+     * @since 1.3.2
+     */
+    public void setTransactionJournal(TransactionJournal transactionJournal) {
+        ldapManagerDelegate.setTransactionJournal(transactionJournal);
+    }
+
     private final static class ContextSourceAndDataSourceTransactionObject {
         private Object ldapTransactionObject;
 
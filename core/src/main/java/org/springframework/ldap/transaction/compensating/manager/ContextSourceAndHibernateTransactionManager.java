@@ -17,6 +17,7 @@ package org.springframework.ldap.transaction.compensating.manager;
 
 import org.springframework.ldap.core.ContextSource;
 import org.springframework.ldap.transaction.compensating.TempEntryRenamingStrategy;
+import org.springframework.ldap.transaction.compensating.TransactionJournal;
 import org.springframework.ldap.transaction.compensating.manager.ContextSourceTransactionManagerDelegate;
 import org.springframework.orm.hibernate3.HibernateTransactionManager;
 import org.springframework.transaction.TransactionDefinition;
@@ -160,6 +161,20 @@ public class ContextSourceAndHibernateTransactionManager extends HibernateTransa
         ldapManagerDelegate.setRenamingStrategy(renamingStrategy);
     }
 
+    /**
+     * Set a {@link TransactionJournal} to record the LDAP operations of every
+     * transaction in, so that transactions interrupted by a crash can be
+     * finished on restart.
+     * 
+     * @param transactionJournal
+     *            the {@link TransactionJournal} to use.
+     * @see ContextSourceTransactionManagerDelegate#setTransactionJournal(TransactionJournal)
+     * @since 1.3.2
+     */
+    public void setTransactionJournal(TransactionJournal transactionJournal) {
+        ldapManagerDelegate.setTransactionJournal(transactionJournal);
+    }
+
     private final static class ContextSourceAndHibernateTransactionObject {
         private Object ldapTransactionObject;
 
@@ -15,12 +15,16 @@
  */
 package org.springframework.ldap.transaction.compensating.manager;
 
+import javax.naming.Name;
+
 import org.springframework.ldap.core.ContextSource;
 import org.springframework.ldap.transaction.compensating.TempEntryRenamingStrategy;
+import org.springframework.ldap.transaction.compensating.TransactionJournal;
 import org.springframework.ldap.transaction.compensating.UnbindOperationExecutor;
 import org.springframework.ldap.transaction.compensating.support.DefaultTempEntryRenamingStrategy;
 import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.compensating.CompensatingTransactionCompletionStrategy;
 import org.springframework.transaction.compensating.CompensatingTransactionOperationExecutor;
 import org.springframework.transaction.compensating.CompensatingTransactionOperationRecorder;
 import org.springframework.transaction.compensating.support.DefaultCompensatingTransactionOperationManager;
@@ -187,4 +191,64 @@ public class ContextSourceTransactionManager extends
     public void setRenamingStrategy(TempEntryRenamingStrategy renamingStrategy) {
         delegate.setRenamingStrategy(renamingStrategy);
     }
+
+    /**
+     * Set whether the original values of attributes modified in a transaction
+     * should be kept for the duration of the transaction. Default value is
+     * <code>true</code>.
+     * 
+     * @param preImageCaching
+     *            <code>false</code> to look up the original values before
+     *            every modifyAttributes operation.
+     * @see ContextSourceTransactionManagerDelegate#setPreImageCaching(boolean)
+     * @since 1.3.2
+     */
+    public void setPreImageCaching(boolean preImageCaching) {
+        delegate.setPreImageCaching(preImageCaching);
+    }
+
+    /**
+     * Set the {@link CompensatingTransactionCompletionStrategy} to commit and
+     * roll back transactions with. By default all operations of a transaction
+     * are processed one at a time.
+     * 
+     * @param completionStrategy
+     *            the {@link CompensatingTransactionCompletionStrategy} to use.
+     * @see org.springframework.ldap.transaction.compensating.ParallelCompletionStrategy
+     * @since 1.3.2
+     */
+    public void setCompletionStrategy(
+            CompensatingTransactionCompletionStrategy completionStrategy) {
+        delegate.setCompletionStrategy(completionStrategy);
+    }
+
+    /**
+     * Set a {@link TransactionJournal} to record the operations of every
+     * transaction in, so that transactions interrupted by a crash can be
+     * finished on restart.
+     * 
+     * @param transactionJournal
+     *            the {@link TransactionJournal} to use.
+     * @see ContextSourceTransactionManagerDelegate#setTransactionJournal(TransactionJournal)
+     * @since 1.3.2
+     */
+    public void setTransactionJournal(TransactionJournal transactionJournal) {
+        delegate.setTransactionJournal(transactionJournal);
+    }
+
+    /**
+     * Read the original values of the specified attributes of a number of
+     * entries that are about to be modified in the current transaction.
+     * 
+     * @param dns
+     *            the DNs of the entries that will be modified.
+     * @param attributeIds
+     *            the IDs of the attributes that will be modified.
+     * @see ContextSourceTransactionManagerDelegate#prefetchPreImages(Name[],
+     *      String[])
+     * @since 1.3.2
+     */
+    public void prefetchPreImages(Name[] dns, String[] attributeIds) {
+        delegate.prefetchPreImages(dns, attributeIds);
+    }
 }
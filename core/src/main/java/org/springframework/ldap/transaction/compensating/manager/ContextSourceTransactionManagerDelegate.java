@@ -15,18 +15,28 @@
  */
 package org.springframework.ldap.transaction.compensating.manager;
 
+import javax.naming.Name;
 import javax.naming.NamingException;
 import javax.naming.directory.DirContext;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.springframework.ldap.core.ContextSource;
+import org.springframework.ldap.core.LdapTemplate;
+import org.springframework.ldap.core.support.SingleContextSource;
 import org.springframework.ldap.transaction.compensating.LdapCompensatingTransactionOperationFactory;
+import org.springframework.ldap.transaction.compensating.PreImageCache;
 import org.springframework.ldap.transaction.compensating.TempEntryRenamingStrategy;
+import org.springframework.ldap.transaction.compensating.TransactionJournal;
 import org.springframework.ldap.transaction.compensating.support.DefaultTempEntryRenamingStrategy;
+import org.springframework.transaction.compensating.CompensatingTransactionCompletionStrategy;
+import org.springframework.transaction.TransactionException;
 import org.springframework.transaction.compensating.support.AbstractCompensatingTransactionManagerDelegate;
 import org.springframework.transaction.compensating.support.CompensatingTransactionHolderSupport;
+import org.springframework.transaction.compensating.support.CompensatingTransactionObject;
 import org.springframework.transaction.compensating.support.DefaultCompensatingTransactionOperationManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 /**
  * This delegate performs all the work for the
@@ -49,6 +59,12 @@ public class ContextSourceTransactionManagerDelegate extends
 
     private TempEntryRenamingStrategy renamingStrategy = new DefaultTempEntryRenamingStrategy();
 
+    private boolean preImageCaching = true;
+
+    private CompensatingTransactionCompletionStrategy completionStrategy;
+
+    private TransactionJournal transactionJournal;
+
     /**
      * Set the ContextSource to work on. Even though the actual ContextSource
      * sent to the LdapTemplate instance should be a
@@ -84,13 +100,84 @@ public class ContextSourceTransactionManagerDelegate extends
      */
     protected CompensatingTransactionHolderSupport getNewHolder() {
         DirContext newCtx = getContextSource().getReadWriteContext();
+        PreImageCache preImageCache = preImageCaching ? new PreImageCache()
+                : null;
+        LdapCompensatingTransactionOperationFactory operationFactory = new LdapCompensatingTransactionOperationFactory(
+                renamingStrategy, preImageCache);
+        TransactionJournal.Transaction journalTransaction = null;
+        if (transactionJournal != null) {
+            journalTransaction = transactionJournal.begin();
+            operationFactory.setJournalTransaction(journalTransaction);
+        }
+        DefaultCompensatingTransactionOperationManager operationManager = new DefaultCompensatingTransactionOperationManager(
+                operationFactory);
+        operationManager.setCompletionStrategy(completionStrategy);
         DirContextHolder contextHolder = new DirContextHolder(
-                new DefaultCompensatingTransactionOperationManager(
-                        new LdapCompensatingTransactionOperationFactory(
-                                renamingStrategy)), newCtx);
+                operationManager, newCtx);
+        contextHolder.setPreImageCache(preImageCache);
+        contextHolder.setJournalTransaction(journalTransaction);
         return contextHolder;
     }
 
+    /*
+     * @see org.springframework.transaction.compensating.support.AbstractCompensatingTransactionManagerDelegate#doCommit(org.springframework.transaction.support.DefaultTransactionStatus)
+     */
+    public void doCommit(DefaultTransactionStatus status)
+            throws TransactionException {
+        TransactionJournal.Transaction journalTransaction = getJournalTransaction(status);
+        if (journalTransaction != null) {
+            journalTransaction.committing();
+        }
+        boolean succeeded = false;
+        try {
+            super.doCommit(status);
+            succeeded = true;
+        } finally {
+            journalCompletion(journalTransaction, succeeded);
+        }
+    }
+
+    /*
+     * @see org.springframework.transaction.compensating.support.AbstractCompensatingTransactionManagerDelegate#doRollback(org.springframework.transaction.support.DefaultTransactionStatus)
+     */
+    public void doRollback(DefaultTransactionStatus status)
+            throws TransactionException {
+        TransactionJournal.Transaction journalTransaction = getJournalTransaction(status);
+        boolean succeeded = false;
+        try {
+            super.doRollback(status);
+            succeeded = true;
+        } finally {
+            journalCompletion(journalTransaction, succeeded);
+        }
+    }
+
+    /**
+     * Record the outcome of a commit or rollback in the journal. A failed
+     * transaction must not be left active in the journal, or recovery would
+     * later replay it on top of subsequent changes.
+     */
+    private void journalCompletion(
+            TransactionJournal.Transaction journalTransaction,
+            boolean succeeded) {
+        if (journalTransaction == null) {
+            return;
+        }
+        if (succeeded) {
+            journalTransaction.completed();
+        } else {
+            journalTransaction.failed();
+        }
+    }
+
+    private TransactionJournal.Transaction getJournalTransaction(
+            DefaultTransactionStatus status) {
+        CompensatingTransactionObject txObject = (CompensatingTransactionObject) status
+                .getTransaction();
+        return ((DirContextHolder) txObject.getHolder())
+                .getJournalTransaction();
+    }
+
     /*
      * @see org.springframework.transaction.compensating.support.AbstractCompensatingTransactionManagerDelegate#closeTargetResource(org.springframework.transaction.compensating.support.CompensatingTransactionHolderSupport)
      */
@@ -118,4 +205,80 @@ public class ContextSourceTransactionManagerDelegate extends
     public void setRenamingStrategy(TempEntryRenamingStrategy renamingStrategy) {
         this.renamingStrategy = renamingStrategy;
     }
+
+    /**
+     * Set whether the original values of attributes modified in a transaction
+     * should be kept for the duration of the transaction, so that repeated
+     * modifications of the same entry only need to read them from the server
+     * once. Default value is <code>true</code>.
+     * 
+     * @param preImageCaching
+     *            <code>false</code> to look up the original values before
+     *            every modifyAttributes operation.
+     * @see PreImageCache
+     * @since 1.3.2
+     */
+    public void setPreImageCaching(boolean preImageCaching) {
+        this.preImageCaching = preImageCaching;
+    }
+
+    /**
+     * Set the {@link CompensatingTransactionCompletionStrategy} to commit and
+     * roll back transactions with. By default all operations of a transaction
+     * are processed one at a time.
+     * 
+     * @param completionStrategy
+     *            the {@link CompensatingTransactionCompletionStrategy} to use,
+     *            e.g. a
+     *            {@link org.springframework.ldap.transaction.compensating.ParallelCompletionStrategy}.
+     * @since 1.3.2
+     */
+    public void setCompletionStrategy(
+            CompensatingTransactionCompletionStrategy completionStrategy) {
+        this.completionStrategy = completionStrategy;
+    }
+
+    /**
+     * Set a {@link TransactionJournal} to record the operations of every
+     * transaction in before they are performed. If the application stops
+     * before a transaction is completed, the transaction is committed or
+     * rolled back when the journal is next opened. Default is no journal.
+     * 
+     * @param transactionJournal
+     *            the {@link TransactionJournal} to use, or <code>null</code>
+     *            for none.
+     * @since 1.3.2
+     */
+    public void setTransactionJournal(TransactionJournal transactionJournal) {
+        this.transactionJournal = transactionJournal;
+    }
+
+    /**
+     * Read the original values of the specified attributes of a number of
+     * entries that are about to be modified in the current transaction, using
+     * as few searches as possible. Does nothing if there is no current
+     * transaction or if pre-image caching is disabled.
+     * 
+     * @param dns
+     *            the DNs of the entries that will be modified.
+     * @param attributeIds
+     *            the IDs of the attributes that will be modified.
+     * @see PreImageCache#prefetch(org.springframework.ldap.core.LdapOperations,
+     *      Name[], String[])
+     * @since 1.3.2
+     */
+    public void prefetchPreImages(Name[] dns, String[] attributeIds) {
+        Object holder = TransactionSynchronizationManager
+                .getResource(getTransactionSynchronizationKey());
+        if (!(holder instanceof DirContextHolder)
+                || ((DirContextHolder) holder).getPreImageCache() == null) {
+            log.debug("No transaction with pre-image caching active - not prefetching");
+            return;
+        }
+
+        DirContextHolder contextHolder = (DirContextHolder) holder;
+        contextHolder.getPreImageCache().prefetch(
+                new LdapTemplate(new SingleContextSource(contextHolder
+                        .getCtx())), dns, attributeIds);
+    }
 }
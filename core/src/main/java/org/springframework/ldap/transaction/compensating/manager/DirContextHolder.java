@@ -17,6 +17,8 @@ package org.springframework.ldap.transaction.compensating.manager;
 
 import javax.naming.directory.DirContext;
 
+import org.springframework.ldap.transaction.compensating.PreImageCache;
+import org.springframework.ldap.transaction.compensating.TransactionJournal;
 import org.springframework.transaction.compensating.CompensatingTransactionOperationManager;
 import org.springframework.transaction.compensating.support.CompensatingTransactionHolderSupport;
 
@@ -33,6 +35,10 @@ import org.springframework.transaction.compensating.support.CompensatingTransact
 public class DirContextHolder extends CompensatingTransactionHolderSupport {
     private DirContext ctx;
 
+    private PreImageCache preImageCache;
+
+    private TransactionJournal.Transaction journalTransaction;
+
     /**
      * Constructor.
      * 
@@ -64,6 +70,54 @@ public class DirContextHolder extends CompensatingTransactionHolderSupport {
         return ctx;
     }
 
+    /**
+     * Set the {@link PreImageCache} of the current transaction.
+     * 
+     * @param preImageCache
+     *            the {@link PreImageCache}, or <code>null</code> if none is
+     *            used.
+     * @since 1.3.2
+     */
+    public void setPreImageCache(PreImageCache preImageCache) {
+        this.preImageCache = preImageCache;
+    }
+
+    /**
+     * Return the {@link PreImageCache} of the current transaction.
+     * 
+     * @return the {@link PreImageCache}, or <code>null</code> if none is used.
+     * @since 1.3.2
+     */
+    public PreImageCache getPreImageCache() {
+        return preImageCache;
+    }
+
+    /**
+     * Set the {@link TransactionJournal} transaction of the current
+     * transaction.
+     * 
+     * @param journalTransaction
+     *            the journal transaction, or <code>null</code> if the
+     *            transaction is not journaled.
+     * @since 1.3.2
+     */
+    public void setJournalTransaction(
+            TransactionJournal.Transaction journalTransaction) {
+        this.journalTransaction = journalTransaction;
+    }
+
+    /**
+     * Return the {@link TransactionJournal} transaction of the current
+     * transaction.
+     * 
+     * @return the journal transaction, or <code>null</code> if the
+     *         transaction is not journaled.
+     * @since 1.3.2
+     */
+    public TransactionJournal.Transaction getJournalTransaction() {
+        return journalTransaction;
+    }
+
     /*
      * @see org.springframework.transaction.compensating.support.CompensatingTransactionHolderSupport#getTransactedResource()
      */
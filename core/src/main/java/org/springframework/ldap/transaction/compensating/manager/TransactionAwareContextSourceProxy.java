@@ -15,14 +15,11 @@
  */
 package org.springframework.ldap.transaction.compensating.manager;
 
-import java.lang.reflect.Proxy;
-
 import javax.naming.directory.DirContext;
 
 import org.springframework.ldap.NamingException;
 import org.springframework.ldap.core.ContextSource;
-import org.springframework.ldap.core.DirContextProxy;
-import org.springframework.ldap.support.LdapUtils;
+import org.springframework.ldap.core.support.ForwardingDirContext;
 import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 /**
@@ -39,6 +36,8 @@ import org.springframework.transaction.support.TransactionSynchronizationManager
 public class TransactionAwareContextSourceProxy implements ContextSource {
     private ContextSource target;
 
+    private ForwardingDirContext.Interceptor interceptor;
+
     /**
      * Constructor.
      * 
@@ -47,6 +46,7 @@ public class TransactionAwareContextSourceProxy implements ContextSource {
      */
     public TransactionAwareContextSourceProxy(ContextSource target) {
         this.target = target;
+        this.interceptor = new TransactionAwareDirContextInterceptor(target);
     }
 
     /**
@@ -65,17 +65,8 @@ public class TransactionAwareContextSourceProxy implements ContextSource {
         return getReadWriteContext();
     }
 
-    private DirContext getTransactionAwareDirContextProxy(DirContext context,
-            ContextSource target) {
-        return (DirContext) Proxy
-                .newProxyInstance(DirContextProxy.class.getClassLoader(),
-                        new Class[] {
-                                LdapUtils
-                                        .getActualTargetClass(context),
-                                DirContextProxy.class },
-                        new TransactionAwareDirContextInvocationHandler(
-                                context, target));
-
+    private DirContext getTransactionAwareDirContextProxy(DirContext context) {
+        return ForwardingDirContext.forTarget(context, interceptor);
     }
 
     /*
@@ -96,7 +87,7 @@ public class TransactionAwareContextSourceProxy implements ContextSource {
                 contextHolder.setCtx(ctx);
             }
         }
-        return getTransactionAwareDirContextProxy(ctx, target);
+        return getTransactionAwareDirContextProxy(ctx);
     }
 
 	public DirContext getContext(String principal, String credentials) throws NamingException {
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2005-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.ldap.transaction.compensating.manager;
+
+import javax.naming.NamingException;
+import javax.naming.directory.DirContext;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.ldap.core.ContextSource;
+import org.springframework.ldap.core.support.ForwardingDirContext;
+import org.springframework.transaction.compensating.support.CompensatingTransactionUtils;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * {@link ForwardingDirContext.Interceptor} for the contexts handed out by
+ * {@link TransactionAwareContextSourceProxy}, making sure that the transaction
+ * context is not closed during a transaction, and that all modifying
+ * operations are recorded, storing compensating rollback operations for them.
+ * 
+ * @author agent
+ * @since 1.3.2
+ */
+public class TransactionAwareDirContextInterceptor implements
+        ForwardingDirContext.Interceptor {
+
+    private static Log log = LogFactory
+            .getLog(TransactionAwareDirContextInterceptor.class);
+
+    private final ContextSource contextSource;
+
+    /**
+     * Constructor.
+     * 
+     * @param contextSource
+     *            The transactional ContextSource, needed to get hold of the
+     *            current transaction's {@link DirContextHolder}.
+     */
+    public TransactionAwareDirContextInterceptor(ContextSource contextSource) {
+        this.contextSource = contextSource;
+    }
+
+    /**
+     * Close the supplied context, but only if it is not associated with the
+     * current transaction.
+     * 
+     * @param target
+     *            the DirContext to close.
+     */
+    public void close(DirContext target) throws NamingException {
+        DirContextHolder transactionContextHolder = (DirContextHolder) TransactionSynchronizationManager
+                .getResource(contextSource);
+        if (transactionContextHolder == null
+                || transactionContextHolder.getCtx() != target) {
+            log.debug("Closing context");
+            // This is not the transactional context or the transaction is
+            // no longer active - we should close it.
+            target.close();
+        } else {
+            log.debug("Leaving transactional context open");
+        }
+    }
+
+    /*
+     * @see org.springframework.ldap.core.support.ForwardingDirContext.Interceptor#performWriteOperation(javax.naming.directory.DirContext,
+     *      java.lang.String, java.lang.Object[])
+     */
+    public boolean performWriteOperation(DirContext target, String operation,
+            Object[] args) {
+        // Store transaction data and allow operation to proceed.
+        return CompensatingTransactionUtils.performOperation(contextSource,
+                operation, args);
+    }
+}
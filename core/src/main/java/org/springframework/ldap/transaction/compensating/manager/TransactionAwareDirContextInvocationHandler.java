@@ -21,13 +21,10 @@ import java.lang.reflect.Method;
 
 import javax.naming.directory.DirContext;
 
-import org.apache.commons.logging.Log;
-import org.apache.commons.logging.LogFactory;
 import org.springframework.ldap.NamingException;
 import org.springframework.ldap.core.ContextSource;
 import org.springframework.ldap.transaction.compensating.LdapTransactionUtils;
 import org.springframework.transaction.compensating.support.CompensatingTransactionUtils;
-import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 /**
  * Proxy implementation for DirContext, making sure that the instance is not
@@ -36,13 +33,14 @@ import org.springframework.transaction.support.TransactionSynchronizationManager
  * 
  * @author Mattias Hellborg Arthursson
  * @since 1.2
+ * @deprecated no longer used by {@link TransactionAwareContextSourceProxy},
+ * which now returns
+ * {@link org.springframework.ldap.core.support.ForwardingDirContext}
+ * instances intercepted by a {@link TransactionAwareDirContextInterceptor}.
  */
 public class TransactionAwareDirContextInvocationHandler implements
         InvocationHandler {
 
-    private static Log log = LogFactory
-            .getLog(TransactionAwareDirContextInvocationHandler.class);
-
     private DirContext target;
 
     private ContextSource contextSource;
@@ -108,16 +106,6 @@ public class TransactionAwareDirContextInvocationHandler implements
      */
     void doCloseConnection(DirContext context, ContextSource contextSource)
             throws javax.naming.NamingException {
-        DirContextHolder transactionContextHolder = (DirContextHolder) TransactionSynchronizationManager
-                .getResource(contextSource);
-        if (transactionContextHolder == null
-                || transactionContextHolder.getCtx() != context) {
-            log.debug("Closing context");
-            // This is not the transactional context or the transaction is
-            // no longer active - we should close it.
-            context.close();
-        } else {
-            log.debug("Leaving transactional context open");
-        }
+        new TransactionAwareDirContextInterceptor(contextSource).close(context);
     }
 }
\ No newline at end of file
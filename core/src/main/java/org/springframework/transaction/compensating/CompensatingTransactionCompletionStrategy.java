@@ -0,0 +1,59 @@
+/*
+ * Copyright 2005-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.transaction.compensating;
+
+import java.util.List;
+
+/**
+ * Decides how the recorded {@link CompensatingTransactionOperationExecutor}
+ * instances of a compensating transaction are committed or rolled back. Used by
+ * {@link org.springframework.transaction.compensating.support.DefaultCompensatingTransactionOperationManager}
+ * in place of its default strategy of committing the executors one at a time in
+ * the order their operations were performed and rolling them back one at a
+ * time in the reverse order.
+ * <p>
+ * An implementation may change the order in which executors are processed or
+ * process several of them concurrently, as long as the outcome is the same as
+ * that of the default strategy.
+ * 
+ * @author agent
+ * @since 1.3.2
+ */
+public interface CompensatingTransactionCompletionStrategy {
+    /**
+     * Roll back all the supplied executors.
+     * 
+     * @param operationExecutors
+     *            the {@link CompensatingTransactionOperationExecutor} instances
+     *            of the transaction, in the order their operations were
+     *            performed.
+     * @throws org.springframework.transaction.TransactionSystemException
+     *             if any of the executors fails to roll back.
+     */
+    void rollback(List operationExecutors);
+
+    /**
+     * Commit all the supplied executors.
+     * 
+     * @param operationExecutors
+     *            the {@link CompensatingTransactionOperationExecutor} instances
+     *            of the transaction, in the order their operations were
+     *            performed.
+     * @throws org.springframework.transaction.TransactionSystemException
+     *             if any of the executors fails to commit.
+     */
+    void commit(List operationExecutors);
+}
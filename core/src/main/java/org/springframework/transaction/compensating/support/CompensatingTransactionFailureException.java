@@ -0,0 +1,63 @@
+/*
+ * Copyright 2005-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.transaction.compensating.support;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.springframework.transaction.TransactionSystemException;
+
+/**
+ * Thrown when one or more operations of a compensating transaction could not
+ * be committed or rolled back. All operations are attempted regardless of the
+ * failure of others; this exception holds every failure encountered. The cause
+ * of the exception is the first failure.
+ * 
+ * @author agent
+ * @since 1.3.2
+ */
+public class CompensatingTransactionFailureException extends
+        TransactionSystemException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final List failures;
+
+    /**
+     * Constructor.
+     * 
+     * @param msg
+     *            the detail message.
+     * @param failures
+     *            the exceptions thrown by the failed operations. Must not be
+     *            empty.
+     */
+    public CompensatingTransactionFailureException(String msg, List failures) {
+        super(msg + " (" + failures.size() + " operation(s) failed)",
+                (Throwable) failures.get(0));
+        this.failures = Collections.unmodifiableList(new ArrayList(failures));
+    }
+
+    /**
+     * Get all failures.
+     * 
+     * @return the exceptions thrown by the failed operations, never empty.
+     */
+    public List getFailures() {
+        return failures;
+    }
+}
@@ -54,16 +54,7 @@ public class CompensatingTransactionUtils {
      */
     public static void performOperation(Object synchronizationKey,
             Object target, Method method, Object[] args) throws Throwable {
-        CompensatingTransactionHolderSupport transactionResourceHolder = (CompensatingTransactionHolderSupport) TransactionSynchronizationManager
-                .getResource(synchronizationKey);
-        if (transactionResourceHolder != null) {
-
-            CompensatingTransactionOperationManager transactionOperationManager = transactionResourceHolder
-                    .getTransactionOperationManager();
-            transactionOperationManager.performOperation(
-                    transactionResourceHolder.getTransactedResource(), method
-                            .getName(), args);
-        } else {
+        if (!performOperation(synchronizationKey, method.getName(), args)) {
             // Perform the target operation
             try {
                 method.invoke(target, args);
@@ -73,4 +64,37 @@ public class CompensatingTransactionUtils {
         }
     }
 
+    /**
+     * Perform the specified operation within the current transaction, storing
+     * the state prior to the operation in order to enable commit/rollback
+     * later. If no transaction is currently active nothing is done, and the
+     * caller is expected to perform the operation itself.
+     * 
+     * @param synchronizationKey
+     *            the transaction synchronization key we are operating on
+     *            (typically something similar to a DataSource).
+     * @param operation
+     *            name of the method to be invoked.
+     * @param args
+     *            arguments with which the operation is invoked.
+     * @return <code>true</code> if the operation was performed within the
+     *         current transaction, <code>false</code> if no transaction is
+     *         active.
+     * @since 1.3.2
+     */
+    public static boolean performOperation(Object synchronizationKey,
+            String operation, Object[] args) {
+        CompensatingTransactionHolderSupport transactionResourceHolder = (CompensatingTransactionHolderSupport) TransactionSynchronizationManager
+                .getResource(synchronizationKey);
+        if (transactionResourceHolder == null) {
+            return false;
+        }
+
+        CompensatingTransactionOperationManager transactionOperationManager = transactionResourceHolder
+                .getTransactionOperationManager();
+        transactionOperationManager.performOperation(transactionResourceHolder
+                .getTransactedResource(), operation, args);
+        return true;
+    }
+
 }
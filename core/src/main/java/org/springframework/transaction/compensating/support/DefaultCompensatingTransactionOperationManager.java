@@ -15,12 +15,15 @@
  */
 package org.springframework.transaction.compensating.support;
 
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Stack;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.springframework.transaction.TransactionSystemException;
+import org.springframework.transaction.compensating.CompensatingTransactionCompletionStrategy;
 import org.springframework.transaction.compensating.CompensatingTransactionOperationExecutor;
 import org.springframework.transaction.compensating.CompensatingTransactionOperationFactory;
 import org.springframework.transaction.compensating.CompensatingTransactionOperationManager;
@@ -44,6 +47,8 @@ public class DefaultCompensatingTransactionOperationManager implements
 
     private CompensatingTransactionOperationFactory operationFactory;
 
+    private CompensatingTransactionCompletionStrategy completionStrategy;
+
     /**
      * Set the {@link CompensatingTransactionOperationFactory} to use.
      * 
@@ -55,6 +60,22 @@ public class DefaultCompensatingTransactionOperationManager implements
         this.operationFactory = operationFactory;
     }
 
+    /**
+     * Set the {@link CompensatingTransactionCompletionStrategy} to commit and
+     * roll back the recorded operations with. By default the operations are
+     * committed one at a time in the order they were performed and rolled back
+     * one at a time in the reverse order, aborting at the first failure.
+     * 
+     * @param completionStrategy
+     *            the {@link CompensatingTransactionCompletionStrategy} to use,
+     *            or <code>null</code> for the default behaviour.
+     * @since 1.3.2
+     */
+    public void setCompletionStrategy(
+            CompensatingTransactionCompletionStrategy completionStrategy) {
+        this.completionStrategy = completionStrategy;
+    }
+
     /*
      * @see org.springframework.transaction.compensating.CompensatingTransactionOperationManager#performOperation(java.lang.Object,
      *      java.lang.String, java.lang.Object[])
@@ -77,6 +98,13 @@ public class DefaultCompensatingTransactionOperationManager implements
      */
     public void rollback() {
         log.debug("Performing rollback");
+        if (completionStrategy != null) {
+            List executors = new ArrayList(operationExecutors);
+            operationExecutors.clear();
+            completionStrategy.rollback(executors);
+            return;
+        }
+
         while (!operationExecutors.isEmpty()) {
             CompensatingTransactionOperationExecutor rollbackOperation = (CompensatingTransactionOperationExecutor) operationExecutors
                     .pop();
@@ -114,6 +142,11 @@ public class DefaultCompensatingTransactionOperationManager implements
      */
     public void commit() {
         log.debug("Performing commit");
+        if (completionStrategy != null) {
+            completionStrategy.commit(new ArrayList(operationExecutors));
+            return;
+        }
+
         for (Iterator iter = operationExecutors.iterator(); iter.hasNext();) {
             CompensatingTransactionOperationExecutor operationExecutor = (CompensatingTransactionOperationExecutor) iter
                     .next();
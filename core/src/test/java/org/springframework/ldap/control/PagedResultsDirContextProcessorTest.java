@@ -144,6 +144,31 @@ public class PagedResultsDirContextProcessorTest extends TestCase {
         assertEquals(0, tested.getResultSize());
     }
 
+    public void testHasMore() throws Exception {
+        assertFalse(tested.hasMore());
+
+        byte[] cookie = encodeValue(50, new byte[] { 8 });
+        PagedResultsResponseControl control = new PagedResultsResponseControl(
+                "dummy", true, cookie);
+
+        ldapContextControl.expectAndDefaultReturn(ldapContextMock
+                .getResponseControls(), new Control[] { control });
+
+        replay();
+
+        tested.postProcess(ldapContextMock);
+
+        verify();
+
+        assertTrue(tested.hasMore());
+    }
+
+    public void testHasMore_EmptyCookie() throws Exception {
+        PagedResultsDirContextProcessor tested = new PagedResultsDirContextProcessor(20,
+                new PagedResultsCookie(new byte[0]));
+        assertFalse(tested.hasMore());
+    }
+
     public void testBerDecoding() throws Exception {
         byte[] value = new byte[1];
         value[0] = 8;
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2005-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.ldap.core;
+
+import javax.naming.directory.Attribute;
+import javax.naming.directory.BasicAttribute;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for the {@link AttributeValueDiff} class.
+ * 
+ * @author agent
+ */
+public class AttributeValueDiffTest extends TestCase {
+
+	public void testDiff() throws Exception {
+		Attribute original = AttributeValueDiff.createAttribute("member", new String[] { "a", "b", "c" }, false);
+		Attribute changed = AttributeValueDiff.createAttribute("member", new String[] { "d", "c", "a" }, false);
+
+		AttributeValueDiff tested = new AttributeValueDiff(original, changed);
+
+		assertFalse(tested.isEmpty());
+		assertEquals(1, tested.getAddedValues().size());
+		assertEquals("d", tested.getAddedValues().get(0));
+		assertEquals(1, tested.getRemovedValues().size());
+		assertEquals("b", tested.getRemovedValues().get(0));
+
+		Attribute added = tested.getAddedAttribute();
+		assertEquals("member", added.getID());
+		assertFalse(added.isOrdered());
+		assertEquals(new BasicAttribute("member", "d"), added);
+		assertEquals(new BasicAttribute("member", "b"), tested.getRemovedAttribute());
+	}
+
+	public void testDiff_NoChanges() throws Exception {
+		Attribute original = AttributeValueDiff.createAttribute("member", new String[] { "a", "b" }, false);
+		Attribute changed = AttributeValueDiff.createAttribute("member", new String[] { "b", "a" }, false);
+
+		AttributeValueDiff tested = new AttributeValueDiff(original, changed);
+
+		assertTrue(tested.isEmpty());
+		assertNull(tested.getAddedAttribute());
+		assertNull(tested.getRemovedAttribute());
+	}
+
+	public void testDiff_DuplicatesInOrderedOriginal() throws Exception {
+		Attribute original = AttributeValueDiff.createAttribute("abc", new String[] { "a", "b", "a" }, true);
+		Attribute changed = AttributeValueDiff.createAttribute("abc", new String[] { "a", "b" }, false);
+
+		AttributeValueDiff tested = new AttributeValueDiff(original, changed);
+
+		assertTrue(tested.getAddedValues().isEmpty());
+		assertEquals(1, tested.getRemovedValues().size());
+		assertEquals("a", tested.getRemovedValues().get(0));
+		assertTrue(tested.getRemovedAttribute().isOrdered());
+	}
+
+	public void testDiff_BinaryValuesComparedByContent() throws Exception {
+		Attribute original = new BasicAttribute("photo");
+		original.add(new byte[] { 1, 2, 3 });
+		original.add(new byte[] { 4, 5 });
+		Attribute changed = new BasicAttribute("photo");
+		changed.add(new byte[] { 1, 2, 3 });
+		changed.add(new byte[] { 6 });
+
+		AttributeValueDiff tested = new AttributeValueDiff(original, changed);
+
+		assertEquals(1, tested.getAddedValues().size());
+		assertEquals(6, ((byte[]) tested.getAddedValues().get(0))[0]);
+		assertEquals(1, tested.getRemovedValues().size());
+		assertEquals(4, ((byte[]) tested.getRemovedValues().get(0))[0]);
+	}
+
+	public void testEqualValues() throws Exception {
+		Attribute attribute = AttributeValueDiff.createAttribute("abc", new String[] { "a", "b" }, false);
+
+		assertFalse(AttributeValueDiff.equalValues(attribute, new BasicAttribute("abc", "b")));
+		assertTrue(AttributeValueDiff.equalValues(attribute, AttributeValueDiff.createAttribute("abc",
+				new String[] { "b", "a" }, false)));
+		assertFalse(AttributeValueDiff.equalValues(attribute, AttributeValueDiff.createAttribute("ABC",
+				new String[] { "b", "a" }, false)));
+		assertFalse(AttributeValueDiff.equalValues(attribute, AttributeValueDiff.createAttribute("abc",
+				new String[] { "a", "b" }, true)));
+		assertFalse(AttributeValueDiff.equalValues(attribute, null));
+	}
+
+	public void testCreateAttribute() throws Exception {
+		Attribute unordered = AttributeValueDiff.createAttribute("abc", new Object[] { "a", "a", null, null }, false);
+		assertEquals(2, unordered.size());
+
+		Attribute ordered = AttributeValueDiff.createAttribute("abc", new Object[] { "a", "a" }, true);
+		assertEquals(2, ordered.size());
+		assertTrue(ordered.isOrdered());
+
+		assertEquals(0, AttributeValueDiff.createAttribute("abc", null, false).size());
+	}
+}
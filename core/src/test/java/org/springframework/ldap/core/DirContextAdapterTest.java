@@ -1155,4 +1155,78 @@ public class DirContextAdapterTest extends TestCase {
 		DirContextAdapter tested = new DirContextAdapter("cn=john doe, ou=company");
 		assertEquals(new DistinguishedName("cn=john doe, ou=company"), tested.getDn());
 	}
+
+	public void testGetModificationItemsLargeMultiValueAttributeGivesDeltas() throws Exception {
+		String[] originalValues = new String[20000];
+		for (int i = 0; i < originalValues.length; i++) {
+			originalValues[i] = "cn=member" + i + ",ou=people";
+		}
+		tested.setAttributeValues("member", originalValues);
+		tested.setUpdateMode(true);
+
+		String[] newValues = new String[originalValues.length];
+		System.arraycopy(originalValues, 1, newValues, 0, originalValues.length - 1);
+		newValues[newValues.length - 1] = "cn=newMember,ou=people";
+
+		// Perform test
+		tested.setAttributeValues("member", newValues, false);
+
+		ModificationItem[] modificationItems = tested.getModificationItems();
+		assertEquals(2, modificationItems.length);
+		assertEquals(DirContext.REMOVE_ATTRIBUTE, modificationItems[0].getModificationOp());
+		assertEquals(1, modificationItems[0].getAttribute().size());
+		assertEquals("cn=member0,ou=people", modificationItems[0].getAttribute().get());
+		assertEquals(DirContext.ADD_ATTRIBUTE, modificationItems[1].getModificationOp());
+		assertEquals(1, modificationItems[1].getAttribute().size());
+		assertEquals("cn=newMember,ou=people", modificationItems[1].getAttribute().get());
+	}
+
+	public void testSetAttributeValuesUnorderedRemovesDuplicates() throws Exception {
+		tested.setAttributeValues("abc", new String[] { "a", "b", "a" });
+
+		Attribute attribute = tested.getAttributes().get("abc");
+		assertEquals(2, attribute.size());
+		assertTrue(attribute.contains("a"));
+		assertTrue(attribute.contains("b"));
+	}
+
+	public void testFromUnparsedDn() throws Exception {
+		DirContextAdapter tested = DirContextAdapter.fromUnparsedDn(null, "c=SE",
+				BASE_NAME.immutableDistinguishedName(), null);
+		tested.setUpdateMode(true);
+
+		assertEquals(new DistinguishedName("c=SE"), tested.getDn());
+		assertEquals(DUMMY_NAME.toString(), tested.getNameInNamespace());
+		assertEquals(0, tested.getModificationItems().length);
+		assertEquals(0, tested.getNamesOfModifiedAttributes().length);
+		assertFalse(tested.isReferral());
+	}
+
+	public void testFromUnparsedDn_EqualsParsedInstance() throws Exception {
+		BasicAttributes attrs = new BasicAttributes(true);
+		attrs.put("cn", "john doe");
+		DirContextAdapter lazy = DirContextAdapter.fromUnparsedDn(attrs, "cn=john doe, c=SE", BASE_NAME, null);
+		lazy.setUpdateMode(true);
+		DirContextAdapter eager = new DirContextAdapter(attrs, new DistinguishedName("cn=john doe, c=SE"),
+				BASE_NAME);
+		eager.setUpdateMode(true);
+
+		assertEquals(eager, lazy);
+		assertEquals(eager.hashCode(), lazy.hashCode());
+	}
+
+	public void testFromUnparsedDn_Modifications() throws Exception {
+		BasicAttributes attrs = new BasicAttributes(true);
+		attrs.put("cn", "john doe");
+		DirContextAdapter tested = DirContextAdapter.fromUnparsedDn(attrs, "cn=john doe", null, null);
+		tested.setUpdateMode(true);
+
+		tested.setAttributeValue("cn", "jane doe");
+
+		ModificationItem[] modificationItems = tested.getModificationItems();
+		assertEquals(1, modificationItems.length);
+		assertEquals(DirContext.REPLACE_ATTRIBUTE, modificationItems[0].getModificationOp());
+		assertEquals("jane doe", modificationItems[0].getAttribute().get());
+		assertEquals(new DistinguishedName("cn=john doe"), tested.getDn());
+	}
 }
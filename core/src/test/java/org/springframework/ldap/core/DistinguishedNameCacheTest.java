@@ -0,0 +1,150 @@
+/*
+ * Copyright 2005-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.ldap.core;
+
+import junit.framework.TestCase;
+
+import org.springframework.ldap.BadLdapGrammarException;
+
+/**
+ * Unit tests for the {@link DistinguishedNameCache} class.
+ * 
+ * @author agent
+ */
+public class DistinguishedNameCacheTest extends TestCase {
+
+	private DistinguishedNameCache tested;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		tested = new DistinguishedNameCache(100);
+	}
+
+	protected void tearDown() throws Exception {
+		super.tearDown();
+		DistinguishedNameCache.setParseThroughCache(false);
+	}
+
+	public void testGetDistinguishedName() {
+		DistinguishedName result = tested.getDistinguishedName("ou=people, dc=example,dc=com");
+		assertEquals(new DistinguishedName("ou=people,dc=example,dc=com"), result);
+		assertEquals(0, tested.getHitCount());
+		assertEquals(1, tested.getMissCount());
+
+		assertSame(result, tested.getDistinguishedName("ou=people, dc=example,dc=com"));
+		assertEquals(1, tested.getHitCount());
+		assertEquals(1, tested.getMissCount());
+		assertEquals(0.5, tested.getHitRatio(), 0.001);
+		assertEquals(1, tested.getSize());
+	}
+
+	public void testGetDistinguishedName_ResultIsImmutable() {
+		DistinguishedName result = tested.getDistinguishedName("ou=people,dc=example,dc=com");
+		try {
+			result.add("cn=john doe");
+			fail("UnsupportedOperationException expected");
+		}
+		catch (UnsupportedOperationException expected) {
+			assertTrue(true);
+		}
+		catch (Exception e) {
+			fail("UnsupportedOperationException expected");
+		}
+	}
+
+	public void testGetDistinguishedName_Blank() {
+		assertSame(DistinguishedName.EMPTY_PATH, tested.getDistinguishedName(""));
+		assertSame(DistinguishedName.EMPTY_PATH, tested.getDistinguishedName(null));
+		assertEquals(0, tested.getMissCount());
+	}
+
+	public void testGetDistinguishedName_Invalid() {
+		try {
+			tested.getDistinguishedName("cn=");
+			fail("BadLdapGrammarException expected");
+		}
+		catch (BadLdapGrammarException expected) {
+			assertTrue(true);
+		}
+		assertEquals(0, tested.getSize());
+	}
+
+	public void testSizeIsBounded() {
+		for (int i = 0; i < 1000; i++) {
+			tested.getDistinguishedName("cn=" + i + ",dc=example,dc=com");
+		}
+		assertEquals(100, tested.getSize());
+		assertEquals(1000, tested.getMissCount());
+	}
+
+	public void testLeastRecentlyUsedIsEvicted() {
+		DistinguishedNameCache cache = new DistinguishedNameCache(1);
+		DistinguishedName first = cache.getDistinguishedName("dc=first");
+		cache.getDistinguishedName("dc=second");
+
+		assertNotSame(first, cache.getDistinguishedName("dc=first"));
+		assertEquals(3, cache.getMissCount());
+	}
+
+	public void testZeroSizeDisablesCaching() {
+		DistinguishedNameCache cache = new DistinguishedNameCache(0);
+		DistinguishedName first = cache.getDistinguishedName("dc=example");
+		assertNotSame(first, cache.getDistinguishedName("dc=example"));
+		assertEquals(first, cache.getDistinguishedName("dc=example"));
+		assertEquals(0, cache.getSize());
+	}
+
+	public void testKeyCaseFoldChangeIsRespected() {
+		try {
+			assertEquals("ou=foo", tested.getDistinguishedName("OU=foo").toString());
+			System.setProperty(DistinguishedName.KEY_CASE_FOLD_PROPERTY, DistinguishedName.KEY_CASE_FOLD_UPPER);
+			assertEquals("OU=foo", tested.getDistinguishedName("OU=foo").toString());
+		}
+		finally {
+			System.clearProperty(DistinguishedName.KEY_CASE_FOLD_PROPERTY);
+		}
+	}
+
+	public void testClear() {
+		tested.getDistinguishedName("dc=example");
+		tested.getDistinguishedName("dc=example");
+		tested.clear();
+
+		assertEquals(0, tested.getSize());
+		assertEquals(0, tested.getHitCount());
+		assertEquals(0, tested.getMissCount());
+	}
+
+	public void testParseThroughCache_GivesMutableCopies() throws Exception {
+		DistinguishedNameCache.getSharedInstance().clear();
+		DistinguishedNameCache.setParseThroughCache(true);
+
+		DistinguishedName first = new DistinguishedName("ou=people,dc=example,dc=com");
+		DistinguishedName second = new DistinguishedName("ou=people,dc=example,dc=com");
+		assertEquals(1, DistinguishedNameCache.getSharedInstance().getHitCount());
+
+		first.add("cn=john doe");
+		first.getLdapRdn(0).getComponent().setValue("org");
+		assertEquals("ou=people,dc=example,dc=com", second.toString());
+		assertEquals("cn=john doe,ou=people,dc=example,dc=org", first.toString());
+	}
+
+	public void testImmutableDistinguishedNameUsesSharedCache() {
+		assertSame(DistinguishedName.immutableDistinguishedName("dc=shared,dc=example"), DistinguishedName
+				.immutableDistinguishedName("dc=shared,dc=example"));
+	}
+}
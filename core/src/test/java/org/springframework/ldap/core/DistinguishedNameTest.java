@@ -17,6 +17,8 @@
 package org.springframework.ldap.core;
 
 import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
 
 import javax.naming.CompositeName;
 import javax.naming.InvalidNameException;
@@ -657,4 +659,38 @@ public class DistinguishedNameTest extends TestCase {
 			System.clearProperty(DistinguishedName.KEY_CASE_FOLD_PROPERTY);
 		}
 	}
+
+	public void testImmutableHashCodeAndStringMatchMutable() throws Exception {
+		DistinguishedName mutable = new DistinguishedName("cn=john doe+sn=doe,ou=people,dc=example,dc=com");
+		DistinguishedName immutable = mutable.immutableDistinguishedName();
+
+		assertEquals(mutable.hashCode(), immutable.hashCode());
+		assertEquals(mutable.toString(), immutable.toString());
+		assertEquals(mutable, immutable);
+		assertEquals(immutable, mutable);
+
+		Map map = new HashMap();
+		map.put(immutable, "value");
+		assertEquals("value", map.get(mutable));
+		assertFalse(immutable.equals(DistinguishedName.immutableDistinguishedName("ou=people,dc=example,dc=com")));
+	}
+
+	public void testCloneOfImmutableIsMutable() throws Exception {
+		DistinguishedName immutable = DistinguishedName.immutableDistinguishedName("ou=people,dc=example,dc=com");
+		DistinguishedName clone = (DistinguishedName) immutable.clone();
+		clone.add("cn=john doe");
+
+		assertEquals("cn=john doe,ou=people,dc=example,dc=com", clone.toString());
+		assertEquals(new DistinguishedName("cn=john doe,ou=people,dc=example,dc=com").hashCode(), clone.hashCode());
+		assertEquals("ou=people,dc=example,dc=com", immutable.toString());
+	}
+
+	public void testHashCodeReflectsRdnChanges() throws Exception {
+		DistinguishedName name = new DistinguishedName("cn=john doe,dc=example,dc=com");
+		int hashCode = name.hashCode();
+		name.getLdapRdn(2).getComponent().setValue("jane doe");
+
+		assertFalse(hashCode == name.hashCode());
+		assertEquals("cn=jane doe,dc=example,dc=com", name.toString());
+	}
 }
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2005-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.ldap.core;
+
+import java.io.StringReader;
+import java.util.Iterator;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for the {@link FastDnParser} class, verifying that it produces
+ * the same results as the generated {@link DnParserImpl}.
+ * 
+ * @author agent
+ */
+public class FastDnParserTest extends TestCase {
+
+	private static final String[] VALID_DNS = new String[] { "cn=john doe, ou=company, c=SE",
+			"CN=John Doe,OU=Company,C=SE", "cn=john doe;ou=company;c=SE", " cn = john doe , ou = company ",
+			"cn=Steve Kille,O=Isode Limited,C=GB", "OU=Sales+CN=J. Smith,O=Widget Inc.,C=US",
+			"cn=a+sn=b+uid=c,ou=people", "CN=L. Eagle,O=Sue\\, Grabbit and Runn,C=GB",
+			"CN=Before\\0DAfter,O=Test,C=GB", "1.3.6.1.4.1.1466.0=#04024869,O=Test,C=GB",
+			"SN=Lu\\C4\\8Di\\C4\\87", "cn=\\#hash", "cn=\\ leading", "cn=trailing\\ ", "cn=\\ ",
+			"cn=with\\\\backslash", "cn=with\\\"quote", "cn=with\\+plus\\<\\>", "cn=\"quoted, value\"",
+			"cn=\"quoted \\\" escape\"", "ou=a/b,dc=example,dc=com", "cn=x-y_z,ou=1-2", "cn=åäö",
+			"uid=user1,ou=people,dc=example,dc=com", "cn=value  with  inner  spaces   ,ou=x",
+			"cn-1=a", "cn=#ABCDEF", "cn=a\\2cb", "cn=a\\2Cb\\3d" };
+
+	private static final String[] INVALID_DNS = new String[] { "cn=", "=value", "cn", "cn=a,", "cn=a+",
+			"cn=a\\", "cn=a\\x", "cn=\"\"", "cn=\"unterminated", "cn==a", "1.2.=a", ",cn=a", "cn=a=b" };
+
+	protected void tearDown() throws Exception {
+		DefaultDnParserFactory.setUseJavaCCParser(false);
+	}
+
+	public void testDefaultFactoryCreatesFastParser() {
+		assertTrue(DefaultDnParserFactory.createDnParser("cn=a") instanceof FastDnParser);
+	}
+
+	public void testFactoryCreatesJavaCCParserIfConfigured() {
+		DefaultDnParserFactory.setUseJavaCCParser(true);
+		assertTrue(DefaultDnParserFactory.createDnParser("cn=a") instanceof DnParserImpl);
+	}
+
+	public void testDn_SameResultAsJavaCC() throws Exception {
+		for (int i = 0; i < VALID_DNS.length; i++) {
+			String dn = VALID_DNS[i];
+			DistinguishedName expected = new DnParserImpl(new StringReader(dn)).dn();
+			DistinguishedName result = new FastDnParser(dn).dn();
+			assertSameNames(dn, expected.getNames(), result.getNames());
+		}
+	}
+
+	public void testRdn_SameResultAsJavaCC() throws Exception {
+		String[] rdns = new String[] { "foo=bar", " foo = bar ", "foo=bar\\=fum", "foo=bar\\3dfum",
+				"foo=\\ bar\\ ", "cn=a+sn=b", "cn=a,ou=ignored" };
+		for (int i = 0; i < rdns.length; i++) {
+			LdapRdn expected = new DnParserImpl(new StringReader(rdns[i])).rdn();
+			LdapRdn result = new FastDnParser(rdns[i]).rdn();
+			assertSameComponents(rdns[i], expected, result);
+		}
+	}
+
+	public void testDn_DecodesValues() throws Exception {
+		DistinguishedName dn = new FastDnParser("cn=Sue\\, Grabbit\\2C and Runn , ou=\\#1").dn();
+		assertEquals("Sue, Grabbit, and Runn", dn.getLdapRdn(1).getComponent().getValue());
+		assertEquals("#1", dn.getLdapRdn(0).getComponent().getValue());
+		assertEquals("cn", dn.getLdapRdn(1).getComponent().getKey());
+	}
+
+	public void testDn_InvalidFailsLikeJavaCC() {
+		for (int i = 0; i < INVALID_DNS.length; i++) {
+			String dn = INVALID_DNS[i];
+			Throwable expected = null;
+			try {
+				new DnParserImpl(new StringReader(dn)).dn();
+			}
+			catch (Throwable e) {
+				expected = e;
+			}
+
+			Throwable result = null;
+			try {
+				new FastDnParser(dn).dn();
+			}
+			catch (Throwable e) {
+				result = e;
+			}
+
+			if (expected == null) {
+				assertNull("Expected " + dn + " to be accepted", result);
+			}
+			else {
+				assertNotNull("Expected " + dn + " to fail", result);
+				assertEquals(dn, expected.getClass(), result.getClass());
+				assertEquals(dn, expected.getMessage(), result.getMessage());
+			}
+		}
+	}
+
+	private void assertSameNames(String dn, List expected, List result) {
+		assertEquals(dn, expected.size(), result.size());
+		Iterator resultIterator = result.iterator();
+		for (Iterator iterator = expected.iterator(); iterator.hasNext();) {
+			assertSameComponents(dn, (LdapRdn) iterator.next(), (LdapRdn) resultIterator.next());
+		}
+	}
+
+	private void assertSameComponents(String dn, LdapRdn expected, LdapRdn result) {
+		List expectedComponents = expected.getComponents();
+		List resultComponents = result.getComponents();
+		assertEquals(dn, expectedComponents.size(), resultComponents.size());
+		for (int i = 0; i < expectedComponents.size(); i++) {
+			LdapRdnComponent expectedComponent = (LdapRdnComponent) expectedComponents.get(i);
+			LdapRdnComponent resultComponent = (LdapRdnComponent) resultComponents.get(i);
+			assertEquals(dn, expectedComponent.getKey(), resultComponent.getKey());
+			assertEquals(dn, expectedComponent.getValue(), resultComponent.getValue());
+		}
+	}
+}
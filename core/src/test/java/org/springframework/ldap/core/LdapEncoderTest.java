@@ -43,6 +43,21 @@ public class LdapEncoderTest extends TestCase {
 
     }
 
+    public void testFilterEncode_NulCharacter() {
+        assertEquals("a\\00b", LdapEncoder.filterEncode("a\u0000b"));
+    }
+
+    public void testFilterEncode_NothingToEscapeReturnsSameInstance() {
+        String value = "nothing to escape here";
+        assertSame(value, LdapEncoder.filterEncode(value));
+    }
+
+    public void testFilterEncode_KeepWildcards() {
+        assertEquals("*a*b\\28c\\29d*\\5c", LdapEncoder.filterEncode("*a*b(c)d*\\", true));
+        assertEquals("\\2aa", LdapEncoder.filterEncode("*a", false));
+        assertNull(LdapEncoder.filterEncode(null, true));
+    }
+
     public void testNameEncode() {
 
         String res = LdapEncoder.nameEncode("# foo ,+\"\\<>; ");
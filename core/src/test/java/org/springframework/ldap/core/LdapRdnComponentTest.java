@@ -54,4 +54,18 @@ public class LdapRdnComponentTest extends TestCase {
         int result = component1.compareTo(component2);
         assertEquals(0, result);
     }
-}
\ No newline at end of file
+
+    public void testSetValue_CachedFormsAreCleared() {
+        LdapRdnComponent component = new LdapRdnComponent("cn", "john doe");
+        int hashCode = component.hashCode();
+        assertEquals("cn=john doe", component.getLdapEncoded());
+
+        component.setValue("jane, doe");
+        assertEquals("cn=jane\\, doe", component.getLdapEncoded());
+        assertEquals(new LdapRdnComponent("cn", "jane, doe").hashCode(), component.hashCode());
+        assertFalse(hashCode == component.hashCode());
+
+        component.setKey("sn");
+        assertEquals("sn=jane\\, doe", component.getLdapEncoded());
+    }
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright 2005-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.ldap.core;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.naming.NamingEnumeration;
+import javax.naming.directory.SearchResult;
+import javax.naming.directory.BasicAttributes;
+import javax.naming.ldap.Control;
+import javax.naming.ldap.LdapContext;
+import javax.naming.ldap.PagedResultsResponseControl;
+
+import junit.framework.TestCase;
+
+import org.easymock.MockControl;
+import org.springframework.ldap.control.PagedResultsListener;
+import org.springframework.ldap.control.PagedResultsStatistics;
+
+import com.sun.jndi.ldap.Ber;
+import com.sun.jndi.ldap.BerEncoder;
+
+/**
+ * Unit tests for the <code>searchPaged</code> operations in
+ * {@link LdapTemplate}.
+ * 
+ * @author agent
+ */
+public class LdapTemplatePagedSearchTest extends TestCase {
+
+	private MockControl contextSourceControl;
+
+	private ContextSource contextSourceMock;
+
+	private MockControl ldapContextControl;
+
+	private LdapContext ldapContextMock;
+
+	private MockControl searchExecutorControl;
+
+	private SearchExecutor searchExecutorMock;
+
+	private MockControl handlerControl;
+
+	private NameClassPairCallbackHandler handlerMock;
+
+	private LdapTemplate tested;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+
+		contextSourceControl = MockControl.createControl(ContextSource.class);
+		contextSourceMock = (ContextSource) contextSourceControl.getMock();
+
+		ldapContextControl = MockControl.createControl(LdapContext.class);
+		ldapContextControl.setDefaultMatcher(MockControl.ALWAYS_MATCHER);
+		ldapContextMock = (LdapContext) ldapContextControl.getMock();
+
+		searchExecutorControl = MockControl.createControl(SearchExecutor.class);
+		searchExecutorMock = (SearchExecutor) searchExecutorControl.getMock();
+
+		handlerControl = MockControl.createControl(NameClassPairCallbackHandler.class);
+		handlerMock = (NameClassPairCallbackHandler) handlerControl.getMock();
+
+		tested = new LdapTemplate(contextSourceMock);
+	}
+
+	protected void tearDown() throws Exception {
+		super.tearDown();
+
+		contextSourceControl = null;
+		contextSourceMock = null;
+		ldapContextControl = null;
+		ldapContextMock = null;
+		searchExecutorControl = null;
+		searchExecutorMock = null;
+		handlerControl = null;
+		handlerMock = null;
+		tested = null;
+	}
+
+	protected void replay() {
+		contextSourceControl.replay();
+		ldapContextControl.replay();
+		searchExecutorControl.replay();
+		handlerControl.replay();
+	}
+
+	protected void verify() {
+		contextSourceControl.verify();
+		ldapContextControl.verify();
+		searchExecutorControl.verify();
+		handlerControl.verify();
+	}
+
+	public void testSearchPaged() throws Exception {
+		contextSourceControl.expectAndReturn(contextSourceMock.getReadOnlyContext(), ldapContextMock);
+
+		ldapContextControl.expectAndDefaultReturn(ldapContextMock.getRequestControls(), null);
+		ldapContextMock.setRequestControls(null);
+		ldapContextControl.setVoidCallable(MockControl.ONE_OR_MORE);
+
+		SearchResult result1 = new SearchResult("cn=one", null, new BasicAttributes());
+		SearchResult result2 = new SearchResult("cn=two", null, new BasicAttributes());
+		SearchResult result3 = new SearchResult("cn=three", null, new BasicAttributes());
+
+		// First page
+		searchExecutorControl.expectAndReturn(searchExecutorMock.executeSearch(ldapContextMock), new ArrayEnumeration(
+				new Object[] { result1, result2 }));
+		ldapContextControl.expectAndReturn(ldapContextMock.getResponseControls(),
+				new Control[] { responseControl(3, new byte[] { 8 }) });
+
+		// Second page
+		searchExecutorControl.expectAndReturn(searchExecutorMock.executeSearch(ldapContextMock), new ArrayEnumeration(
+				new Object[] { result3 }));
+		ldapContextControl.expectAndReturn(ldapContextMock.getResponseControls(),
+				new Control[] { responseControl(3, new byte[0]) });
+
+		handlerMock.handleNameClassPair(result1);
+		handlerMock.handleNameClassPair(result2);
+		handlerMock.handleNameClassPair(result3);
+
+		ldapContextMock.close();
+
+		replay();
+
+		CollectingPagedResultsListener listener = new CollectingPagedResultsListener();
+		tested.searchPaged(searchExecutorMock, handlerMock, 2, listener);
+
+		verify();
+
+		assertEquals(2, listener.statistics.size());
+
+		PagedResultsStatistics first = (PagedResultsStatistics) listener.statistics.get(0);
+		assertEquals(1, first.getPageNumber());
+		assertEquals(2, first.getEntryCount());
+		assertEquals(3, first.getResultSize());
+		assertFalse(first.isLastPage());
+
+		PagedResultsStatistics second = (PagedResultsStatistics) listener.statistics.get(1);
+		assertEquals(2, second.getPageNumber());
+		assertEquals(1, second.getEntryCount());
+		assertTrue(second.isLastPage());
+	}
+
+	public void testSearchPaged_NoResponseControl() throws Exception {
+		contextSourceControl.expectAndReturn(contextSourceMock.getReadOnlyContext(), ldapContextMock);
+
+		ldapContextControl.expectAndDefaultReturn(ldapContextMock.getRequestControls(), null);
+		ldapContextMock.setRequestControls(null);
+		ldapContextControl.setVoidCallable(MockControl.ONE_OR_MORE);
+
+		searchExecutorControl.expectAndReturn(searchExecutorMock.executeSearch(ldapContextMock), new ArrayEnumeration(
+				new Object[0]));
+		ldapContextControl.expectAndReturn(ldapContextMock.getResponseControls(), null);
+
+		ldapContextMock.close();
+
+		replay();
+
+		tested.searchPaged(searchExecutorMock, handlerMock, 2, null);
+
+		verify();
+	}
+
+	public void testSearchPaged_InvalidPageSize() throws Exception {
+		replay();
+
+		try {
+			tested.searchPaged(searchExecutorMock, handlerMock, 0, null);
+			fail("IllegalArgumentException expected");
+		}
+		catch (IllegalArgumentException expected) {
+			assertTrue(true);
+		}
+
+		verify();
+	}
+
+	private PagedResultsResponseControl responseControl(int resultSize, byte[] cookie) throws IOException {
+		BerEncoder ber = new BerEncoder(10 + cookie.length);
+
+		ber.beginSeq(Ber.ASN_SEQUENCE | Ber.ASN_CONSTRUCTOR);
+		ber.encodeInt(resultSize);
+		ber.encodeOctetString(cookie, Ber.ASN_OCTET_STR);
+		ber.endSeq();
+
+		return new PagedResultsResponseControl("dummy", true, ber.getTrimmedBuf());
+	}
+
+	private static class CollectingPagedResultsListener implements PagedResultsListener {
+		private List statistics = new ArrayList();
+
+		public void pageProcessed(PagedResultsStatistics pageStatistics) {
+			statistics.add(pageStatistics);
+		}
+	}
+
+	private static class ArrayEnumeration implements NamingEnumeration {
+		private final Object[] values;
+
+		private int index = 0;
+
+		public ArrayEnumeration(Object[] values) {
+			this.values = values;
+		}
+
+		public boolean hasMore() {
+			return index < values.length;
+		}
+
+		public Object next() {
+			return values[index++];
+		}
+
+		public boolean hasMoreElements() {
+			return hasMore();
+		}
+
+		public Object nextElement() {
+			return next();
+		}
+
+		public void close() {
+		}
+	}
+}
@@ -0,0 +1,371 @@
+/*
+ * Copyright 2005-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.ldap.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.naming.Name;
+import javax.naming.NameClassPair;
+import javax.naming.NamingEnumeration;
+import javax.naming.directory.BasicAttributes;
+import javax.naming.directory.DirContext;
+import javax.naming.directory.SearchControls;
+import javax.naming.directory.SearchResult;
+
+import junit.framework.TestCase;
+
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.ldap.CommunicationException;
+
+/**
+ * Unit tests for the <code>searchInParallel</code> operations in
+ * {@link LdapTemplate}.
+ * 
+ * @author agent
+ */
+public class LdapTemplateParallelSearchTest extends TestCase {
+
+	private SearchRecordingDirContext dirContext;
+
+	private CollectingHandler handler;
+
+	private LdapTemplate tested;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+
+		dirContext = new SearchRecordingDirContext();
+		handler = new CollectingHandler();
+
+		tested = new LdapTemplate(new ContextSource() {
+			public DirContext getReadOnlyContext() {
+				return dirContext;
+			}
+
+			public DirContext getReadWriteContext() {
+				return dirContext;
+			}
+
+			public DirContext getContext(String principal, String credentials) {
+				return dirContext;
+			}
+		});
+	}
+
+	protected void tearDown() throws Exception {
+		super.tearDown();
+
+		dirContext = null;
+		handler = null;
+		tested = null;
+	}
+
+	public void testSearchInParallel_Ordered() throws Exception {
+		tested.setTaskExecutor(new SimpleAsyncTaskExecutor());
+
+		Gate gate = new Gate();
+		SearchResult first1 = searchResult("cn=first1");
+		SearchResult first2 = searchResult("cn=first2");
+		SearchResult second1 = searchResult("cn=second1");
+		SearchResult second2 = searchResult("cn=second2");
+
+		tested.searchInParallel(new SearchExecutor[] {
+				new StubSearchExecutor(new Object[] { first1, first2 }, gate, null),
+				new StubSearchExecutor(new Object[] { second1, second2 }, null, gate) }, handler, true);
+
+		// The second partition finishes first, but its results are held back
+		assertEquals(4, handler.results.size());
+		assertSame(first1, handler.results.get(0));
+		assertSame(first2, handler.results.get(1));
+		assertSame(second1, handler.results.get(2));
+		assertSame(second2, handler.results.get(3));
+	}
+
+	public void testSearchInParallel_Unordered() throws Exception {
+		tested.setTaskExecutor(new SimpleAsyncTaskExecutor());
+
+		Gate gate = new Gate();
+		SearchResult first1 = searchResult("cn=first1");
+		SearchResult second1 = searchResult("cn=second1");
+		SearchResult second2 = searchResult("cn=second2");
+
+		tested.searchInParallel(new SearchExecutor[] { new StubSearchExecutor(new Object[] { first1 }, gate, null),
+				new StubSearchExecutor(new Object[] { second1, second2 }, null, gate) }, handler, false);
+
+		assertEquals(3, handler.results.size());
+		assertSame(second1, handler.results.get(0));
+		assertSame(second2, handler.results.get(1));
+		assertSame(first1, handler.results.get(2));
+	}
+
+	public void testSearchInParallel_MaxConcurrentPartitions() throws Exception {
+		tested.setTaskExecutor(new SimpleAsyncTaskExecutor());
+		tested.setMaxConcurrentPartitions(2);
+
+		ConcurrencyCounter counter = new ConcurrencyCounter();
+		SearchExecutor[] partitions = new SearchExecutor[6];
+		for (int i = 0; i < partitions.length; i++) {
+			partitions[i] = new CountingSearchExecutor(counter, searchResult("cn=" + i));
+		}
+
+		tested.searchInParallel(partitions, handler, false);
+
+		assertEquals(6, handler.results.size());
+		assertTrue(counter.max <= 2);
+	}
+
+	public void testSearchInParallel_FailingPartition() throws Exception {
+		tested.setTaskExecutor(new SyncTaskExecutor());
+		tested.setMaxConcurrentPartitions(1);
+
+		StubSearchExecutor failing = new StubSearchExecutor(null, null, null);
+		StubSearchExecutor notExecuted = new StubSearchExecutor(new Object[] { searchResult("cn=other") }, null,
+				null);
+
+		try {
+			tested.searchInParallel(new SearchExecutor[] { failing, notExecuted }, handler, true);
+			fail("CommunicationException expected");
+		}
+		catch (CommunicationException expected) {
+			assertTrue(true);
+		}
+
+		assertTrue(failing.executed);
+		assertFalse(notExecuted.executed);
+		assertTrue(handler.results.isEmpty());
+	}
+
+	public void testSearchInParallel_PartitionFilters() throws Exception {
+		tested.setTaskExecutor(new SyncTaskExecutor());
+
+		SearchControls controls = new SearchControls();
+		controls.setSearchScope(SearchControls.SUBTREE_SCOPE);
+
+		tested.searchInParallel("ou=people", "(objectclass=person)", controls, new String[] { "(sn=a*)",
+				"(sn=b*)" }, handler, true);
+
+		assertEquals(2, dirContext.filters.size());
+		assertEquals("(&(objectclass=person)(sn=a*))", dirContext.filters.get(0));
+		assertEquals("(&(objectclass=person)(sn=b*))", dirContext.filters.get(1));
+		assertEquals(new DistinguishedName("ou=people"), dirContext.bases.get(0));
+		assertEquals(new DistinguishedName("ou=people"), dirContext.bases.get(1));
+	}
+
+	public void testSearchInParallel_ChildPartitions() throws Exception {
+		tested.setTaskExecutor(new SyncTaskExecutor());
+		dirContext.children = new Object[] { searchResult("ou=a"), searchResult("ou=b") };
+
+		SearchControls controls = new SearchControls();
+		controls.setSearchScope(SearchControls.SUBTREE_SCOPE);
+
+		tested.searchInParallel("dc=example,dc=com", "(objectclass=person)", controls, handler, true);
+
+		// One level listing, the base entry itself, and one for each child
+		assertEquals(4, dirContext.bases.size());
+		assertEquals(new DistinguishedName("dc=example,dc=com"), dirContext.bases.get(0));
+		assertEquals(new Integer(SearchControls.ONELEVEL_SCOPE), dirContext.scopes.get(0));
+		assertEquals("(objectclass=*)", dirContext.filters.get(0));
+
+		assertEquals(new DistinguishedName("dc=example,dc=com"), dirContext.bases.get(1));
+		assertEquals(new Integer(SearchControls.OBJECT_SCOPE), dirContext.scopes.get(1));
+		assertEquals("(objectclass=person)", dirContext.filters.get(1));
+
+		assertEquals(new DistinguishedName("ou=a,dc=example,dc=com"), dirContext.bases.get(2));
+		assertEquals(new Integer(SearchControls.SUBTREE_SCOPE), dirContext.scopes.get(2));
+
+		assertEquals(new DistinguishedName("ou=b,dc=example,dc=com"), dirContext.bases.get(3));
+		assertEquals(new Integer(SearchControls.SUBTREE_SCOPE), dirContext.scopes.get(3));
+	}
+
+	public void testSearchInParallel_NotSubtreeScope() throws Exception {
+		tested.setTaskExecutor(new SyncTaskExecutor());
+
+		SearchControls controls = new SearchControls();
+		controls.setSearchScope(SearchControls.ONELEVEL_SCOPE);
+
+		tested.searchInParallel("dc=example,dc=com", "(objectclass=person)", controls, handler, true);
+
+		assertEquals(1, dirContext.bases.size());
+		assertEquals(new Integer(SearchControls.ONELEVEL_SCOPE), dirContext.scopes.get(0));
+	}
+
+	private static SearchResult searchResult(String name) {
+		return new SearchResult(name, null, new BasicAttributes());
+	}
+
+	private static class CollectingHandler implements NameClassPairCallbackHandler {
+		private final List results = new ArrayList();
+
+		public void handleNameClassPair(NameClassPair nameClassPair) {
+			results.add(nameClassPair);
+		}
+	}
+
+	/**
+	 * Used for making one partition wait until another one has finished.
+	 */
+	private static class Gate {
+		private boolean open = false;
+
+		public synchronized void open() {
+			open = true;
+			notifyAll();
+		}
+
+		public synchronized void await() {
+			long timeout = System.currentTimeMillis() + 5000;
+			while (!open && System.currentTimeMillis() < timeout) {
+				try {
+					wait(100);
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+		}
+	}
+
+	private static class StubSearchExecutor implements SearchExecutor {
+		private final Object[] results;
+
+		private final Gate waitFor;
+
+		private final Gate openWhenDone;
+
+		private boolean executed = false;
+
+		public StubSearchExecutor(Object[] results, Gate waitFor, Gate openWhenDone) {
+			this.results = results;
+			this.waitFor = waitFor;
+			this.openWhenDone = openWhenDone;
+		}
+
+		public NamingEnumeration executeSearch(DirContext ctx) throws javax.naming.NamingException {
+			executed = true;
+			if (results == null) {
+				throw new javax.naming.CommunicationException();
+			}
+			if (waitFor != null) {
+				waitFor.await();
+			}
+			return new ArrayEnumeration(results) {
+				public void close() {
+					if (openWhenDone != null) {
+						openWhenDone.open();
+					}
+				}
+			};
+		}
+	}
+
+	private static class ConcurrencyCounter {
+		private int current = 0;
+
+		private int max = 0;
+
+		public synchronized void increment() {
+			current++;
+			max = Math.max(max, current);
+		}
+
+		public synchronized void decrement() {
+			current--;
+		}
+	}
+
+	private static class CountingSearchExecutor implements SearchExecutor {
+		private final ConcurrencyCounter counter;
+
+		private final SearchResult result;
+
+		public CountingSearchExecutor(ConcurrencyCounter counter, SearchResult result) {
+			this.counter = counter;
+			this.result = result;
+		}
+
+		public NamingEnumeration executeSearch(DirContext ctx) throws javax.naming.NamingException {
+			counter.increment();
+			try {
+				Thread.sleep(20);
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return new ArrayEnumeration(new Object[] { result }) {
+				public void close() {
+					counter.decrement();
+				}
+			};
+		}
+	}
+
+	private static class SearchRecordingDirContext extends DirContextAdapter {
+		private final List bases = Collections.synchronizedList(new ArrayList());
+
+		private final List filters = Collections.synchronizedList(new ArrayList());
+
+		private final List scopes = Collections.synchronizedList(new ArrayList());
+
+		private Object[] children = new Object[0];
+
+		public NamingEnumeration search(Name name, String filter, SearchControls cons) {
+			bases.add(name);
+			filters.add(filter);
+			scopes.add(new Integer(cons.getSearchScope()));
+			if (cons.getSearchScope() == SearchControls.ONELEVEL_SCOPE && "(objectclass=*)".equals(filter)) {
+				return new ArrayEnumeration(children);
+			}
+			return new ArrayEnumeration(new Object[0]);
+		}
+
+		public void close() {
+		}
+	}
+
+	private static class ArrayEnumeration implements NamingEnumeration {
+		private final Object[] values;
+
+		private int index = 0;
+
+		public ArrayEnumeration(Object[] values) {
+			this.values = values;
+		}
+
+		public boolean hasMore() {
+			return index < values.length;
+		}
+
+		public Object next() {
+			return values[index++];
+		}
+
+		public boolean hasMoreElements() {
+			return hasMore();
+		}
+
+		public Object nextElement() {
+			return next();
+		}
+
+		public void close() {
+		}
+	}
+}
@@ -688,6 +688,71 @@ public class LdapTemplateTest extends TestCase {
 		assertSame(expectedResult, list.get(0));
 	}
 
+	public void testSearchForIterator_ContextMapper() throws Exception {
+		expectGetReadOnlyContext();
+
+		Object expectedObject = new Object();
+		SearchResult searchResult = new SearchResult("", expectedObject, new BasicAttributes());
+
+		singleSearchResult(searchControlsOneLevel(), searchResult);
+
+		Object expectedResult = expectedObject;
+		contextMapperControl.expectAndReturn(contextMapperMock.mapFromContext(expectedObject), expectedResult);
+
+		dirContextMock.close();
+
+		replay();
+		CloseableIterator iterator = tested.searchForIterator(nameMock, "(ou=somevalue)", searchControlsOneLevel(),
+				contextMapperMock);
+
+		assertTrue(iterator.hasNext());
+		assertSame(expectedResult, iterator.next());
+		assertFalse(iterator.hasNext());
+		verify();
+	}
+
+	public void testSearchForIterator_NameNotFoundException_Ignored() throws Exception {
+		expectGetReadOnlyContext();
+
+		SearchControls controls = searchControlsOneLevel();
+
+		dirContextControl.setDefaultMatcher(new SearchControlsMatcher());
+		javax.naming.NameNotFoundException ne = new javax.naming.NameNotFoundException("some text");
+		dirContextControl.expectAndThrow(dirContextMock.search(nameMock, "(ou=somevalue)", controls), ne);
+
+		dirContextMock.close();
+
+		tested.setIgnoreNameNotFoundException(true);
+
+		replay();
+		CloseableIterator iterator = tested.searchForIterator(nameMock, "(ou=somevalue)", controls, contextMapperMock);
+		assertFalse(iterator.hasNext());
+		iterator.close();
+		verify();
+	}
+
+	public void testSearchForIterator_NamingException() throws Exception {
+		expectGetReadOnlyContext();
+
+		SearchControls controls = searchControlsOneLevel();
+
+		dirContextControl.setDefaultMatcher(new SearchControlsMatcher());
+		javax.naming.LimitExceededException ne = new javax.naming.LimitExceededException();
+		dirContextControl.expectAndThrow(dirContextMock.search(nameMock, "(ou=somevalue)", controls), ne);
+
+		dirContextMock.close();
+
+		replay();
+		try {
+			tested.searchForIterator(nameMock, "(ou=somevalue)", controls, contextMapperMock);
+			fail("LimitExceededException expected");
+		}
+		catch (LimitExceededException expected) {
+			assertTrue(true);
+		}
+		verify();
+	}
+
 	public void testSearch_ContextMapper_ReturningAttrs() throws Exception {
 		expectGetReadOnlyContext();
 
@@ -0,0 +1,229 @@
+/*
+ * Copyright 2005-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.ldap.core;
+
+import java.util.NoSuchElementException;
+
+import javax.naming.Binding;
+import javax.naming.NamingEnumeration;
+import javax.naming.directory.DirContext;
+
+import junit.framework.TestCase;
+
+import org.easymock.MockControl;
+import org.springframework.ldap.PartialResultException;
+
+/**
+ * Unit tests for the {@link NamingEnumerationIterator} class.
+ * 
+ * @author agent
+ */
+public class NamingEnumerationIteratorTest extends TestCase {
+
+	private MockControl dirContextControl;
+
+	private DirContext dirContextMock;
+
+	private MockControl namingEnumerationControl;
+
+	private NamingEnumeration namingEnumerationMock;
+
+	private MockControl contextMapperControl;
+
+	private ContextMapper contextMapperMock;
+
+	private MockControl processorControl;
+
+	private DirContextProcessor processorMock;
+
+	private NamingEnumerationIterator tested;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+
+		dirContextControl = MockControl.createControl(DirContext.class);
+		dirContextMock = (DirContext) dirContextControl.getMock();
+
+		namingEnumerationControl = MockControl.createControl(NamingEnumeration.class);
+		namingEnumerationMock = (NamingEnumeration) namingEnumerationControl.getMock();
+
+		contextMapperControl = MockControl.createControl(ContextMapper.class);
+		contextMapperMock = (ContextMapper) contextMapperControl.getMock();
+
+		processorControl = MockControl.createControl(DirContextProcessor.class);
+		processorMock = (DirContextProcessor) processorControl.getMock();
+
+		tested = new NamingEnumerationIterator(dirContextMock, namingEnumerationMock, new ContextMapperCallbackHandler(
+				contextMapperMock), processorMock);
+	}
+
+	protected void tearDown() throws Exception {
+		super.tearDown();
+
+		dirContextControl = null;
+		dirContextMock = null;
+		namingEnumerationControl = null;
+		namingEnumerationMock = null;
+		contextMapperControl = null;
+		contextMapperMock = null;
+		processorControl = null;
+		processorMock = null;
+		tested = null;
+	}
+
+	protected void replay() {
+		dirContextControl.replay();
+		namingEnumerationControl.replay();
+		contextMapperControl.replay();
+		processorControl.replay();
+	}
+
+	protected void verify() {
+		dirContextControl.verify();
+		namingEnumerationControl.verify();
+		contextMapperControl.verify();
+		processorControl.verify();
+	}
+
+	private void expectClose() throws Exception {
+		processorMock.postProcess(dirContextMock);
+		namingEnumerationMock.close();
+		dirContextMock.close();
+	}
+
+	public void testIterateAllResults() throws Exception {
+		Object expectedObject1 = new Object();
+		Object expectedObject2 = new Object();
+		Object expectedResult1 = "result1";
+		Object expectedResult2 = "result2";
+
+		namingEnumerationControl.expectAndReturn(namingEnumerationMock.hasMore(), true);
+		namingEnumerationControl.expectAndReturn(namingEnumerationMock.next(), new Binding("cn=one", expectedObject1));
+		namingEnumerationControl.expectAndReturn(namingEnumerationMock.hasMore(), true);
+		namingEnumerationControl.expectAndReturn(namingEnumerationMock.next(), new Binding("cn=two", expectedObject2));
+		namingEnumerationControl.expectAndReturn(namingEnumerationMock.hasMore(), false);
+
+		contextMapperControl.expectAndReturn(contextMapperMock.mapFromContext(expectedObject1), expectedResult1);
+		contextMapperControl.expectAndReturn(contextMapperMock.mapFromContext(expectedObject2), expectedResult2);
+
+		expectClose();
+
+		replay();
+
+		assertTrue(tested.hasNext());
+		assertTrue(tested.hasNext());
+		assertSame(expectedResult1, tested.next());
+		assertSame(expectedResult2, tested.next());
+		assertFalse(tested.hasNext());
+		assertTrue(tested.isClosed());
+
+		verify();
+	}
+
+	public void testNextWhenExhausted() throws Exception {
+		namingEnumerationControl.expectAndReturn(namingEnumerationMock.hasMore(), false);
+		expectClose();
+
+		replay();
+
+		try {
+			tested.next();
+			fail("NoSuchElementException expected");
+		}
+		catch (NoSuchElementException expected) {
+			assertTrue(true);
+		}
+
+		verify();
+	}
+
+	public void testCloseBeforeExhausted() throws Exception {
+		expectClose();
+
+		replay();
+
+		tested.close();
+		// Second close should have no effect
+		tested.close();
+		assertFalse(tested.hasNext());
+
+		verify();
+	}
+
+	public void testHasNextNamingExceptionClosesResources() throws Exception {
+		namingEnumerationControl.expectAndThrow(namingEnumerationMock.hasMore(), new javax.naming.LimitExceededException());
+		expectClose();
+
+		replay();
+
+		try {
+			tested.hasNext();
+			fail("LimitExceededException expected");
+		}
+		catch (org.springframework.ldap.LimitExceededException expected) {
+			assertTrue(true);
+		}
+		assertTrue(tested.isClosed());
+
+		verify();
+	}
+
+	public void testPartialResultExceptionIgnored() throws Exception {
+		tested.setIgnorePartialResultException(true);
+		namingEnumerationControl.expectAndThrow(namingEnumerationMock.hasMore(),
+				new javax.naming.PartialResultException());
+		expectClose();
+
+		replay();
+
+		assertFalse(tested.hasNext());
+
+		verify();
+	}
+
+	public void testPartialResultExceptionNotIgnored() throws Exception {
+		namingEnumerationControl.expectAndThrow(namingEnumerationMock.hasMore(),
+				new javax.naming.PartialResultException());
+		expectClose();
+
+		replay();
+
+		try {
+			tested.hasNext();
+			fail("PartialResultException expected");
+		}
+		catch (PartialResultException expected) {
+			assertTrue(true);
+		}
+
+		verify();
+	}
+
+	public void testRemoveNotSupported() {
+		replay();
+
+		try {
+			tested.remove();
+			fail("UnsupportedOperationException expected");
+		}
+		catch (UnsupportedOperationException expected) {
+			assertTrue(true);
+		}
+
+		verify();
+	}
+}
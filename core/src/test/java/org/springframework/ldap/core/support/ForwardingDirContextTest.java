@@ -0,0 +1,149 @@
+/*
+ * Copyright 2005-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.ldap.core.support;
+
+import javax.naming.Name;
+import javax.naming.NamingException;
+import javax.naming.directory.Attributes;
+import javax.naming.directory.BasicAttributes;
+import javax.naming.directory.DirContext;
+import javax.naming.directory.ModificationItem;
+import javax.naming.ldap.LdapContext;
+
+import junit.framework.TestCase;
+
+import org.easymock.MockControl;
+import org.springframework.ldap.core.DirContextProxy;
+import org.springframework.ldap.core.DistinguishedName;
+
+public class ForwardingDirContextTest extends TestCase {
+
+    private static final Name DN = new DistinguishedName("cn=john doe");
+
+    private MockControl dirContextControl;
+
+    private DirContext dirContextMock;
+
+    private MockControl interceptorControl;
+
+    private ForwardingDirContext.Interceptor interceptorMock;
+
+    protected void setUp() throws Exception {
+        dirContextControl = MockControl.createControl(DirContext.class);
+        dirContextMock = (DirContext) dirContextControl.getMock();
+
+        interceptorControl = MockControl
+                .createControl(ForwardingDirContext.Interceptor.class);
+        interceptorMock = (ForwardingDirContext.Interceptor) interceptorControl
+                .getMock();
+    }
+
+    protected void tearDown() throws Exception {
+        dirContextControl = null;
+        dirContextMock = null;
+
+        interceptorControl = null;
+        interceptorMock = null;
+    }
+
+    protected void replay() {
+        dirContextControl.replay();
+        interceptorControl.replay();
+    }
+
+    protected void verify() {
+        dirContextControl.verify();
+        interceptorControl.verify();
+    }
+
+    public void testForTarget_DirContext() {
+        DirContext result = ForwardingDirContext.forTarget(dirContextMock,
+                interceptorMock);
+
+        assertFalse(result instanceof LdapContext);
+        assertTrue(result instanceof DirContextProxy);
+        assertSame(dirContextMock, ((DirContextProxy) result)
+                .getTargetContext());
+    }
+
+    public void testForTarget_LdapContext() {
+        LdapContext ldapContextMock = (LdapContext) MockControl.createControl(
+                LdapContext.class).getMock();
+
+        DirContext result = ForwardingDirContext.forTarget(ldapContextMock,
+                interceptorMock);
+
+        assertTrue(result instanceof LdapContext);
+        assertSame(ldapContextMock, ((DirContextProxy) result)
+                .getTargetContext());
+    }
+
+    public void testReadOperationIsForwarded() throws NamingException {
+        Attributes expectedAttributes = new BasicAttributes();
+        dirContextControl.expectAndReturn(dirContextMock.getAttributes(DN),
+                expectedAttributes);
+
+        replay();
+        Attributes result = new ForwardingDirContext(dirContextMock,
+                interceptorMock).getAttributes(DN);
+        verify();
+
+        assertSame(expectedAttributes, result);
+    }
+
+    public void testClose() throws NamingException {
+        interceptorMock.close(dirContextMock);
+
+        replay();
+        new ForwardingDirContext(dirContextMock, interceptorMock).close();
+        verify();
+    }
+
+    public void testWriteOperation_Forwarded() throws NamingException {
+        ModificationItem[] mods = new ModificationItem[0];
+        interceptorControl.setDefaultMatcher(MockControl.ARRAY_MATCHER);
+        interceptorControl.expectAndReturn(interceptorMock
+                .performWriteOperation(dirContextMock, "modifyAttributes",
+                        new Object[] { DN, mods }), false);
+        dirContextMock.modifyAttributes(DN, mods);
+
+        replay();
+        new ForwardingDirContext(dirContextMock, interceptorMock)
+                .modifyAttributes(DN, mods);
+        verify();
+    }
+
+    public void testWriteOperation_Intercepted() throws NamingException {
+        interceptorControl.setDefaultMatcher(MockControl.ARRAY_MATCHER);
+        interceptorControl.expectAndReturn(interceptorMock
+                .performWriteOperation(dirContextMock, "unbind",
+                        new Object[] { DN }), true);
+
+        replay();
+        new ForwardingDirContext(dirContextMock, interceptorMock).unbind(DN);
+        verify();
+    }
+
+    public void testEquals() {
+        DirContext first = new ForwardingDirContext(dirContextMock,
+                interceptorMock);
+        DirContext second = new ForwardingDirContext(dirContextMock,
+                interceptorMock);
+
+        assertEquals(first, first);
+        assertFalse(first.equals(second));
+    }
+}
@@ -63,4 +63,30 @@ public class OrFilterTest extends TestCase {
         assertEquals("(|(a=b)(c=d)(e=f))", of.encode());
     }
 
+    public void testEncodedLengthIsExactForCompareFilters() {
+        OrFilter of = new OrFilter();
+        StringBuffer expected = new StringBuffer("(|");
+        for (int i = 0; i < 1000; i++) {
+            of.or(new EqualsFilter("uid", "user(" + i + ")"));
+            expected.append("(uid=user\\28").append(i).append("\\29)");
+        }
+        expected.append(')');
+
+        String encoded = of.encode();
+        assertEquals(expected.toString(), encoded);
+        assertEquals(encoded.length(), of.getEncodedLength());
+
+        // Encoding again gives the same result
+        assertEquals(encoded, of.encode());
+    }
+
+    public void testNested() {
+        OrFilter of = new OrFilter().or(new EqualsFilter("a", "b")).or(
+                new NotFilter(new AndFilter().and(new PresentFilter("c")).and(new EqualsFilter("d", "e"))));
+
+        String encoded = of.encode();
+        assertEquals("(|(a=b)(!(&(c=*)(d=e))))", encoded);
+        assertEquals(encoded.length(), of.getEncodedLength());
+    }
+
 }
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2005-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.ldap.pool.factory;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for the {@link LatencyHistogram} class.
+ * 
+ * @author agent
+ */
+public class LatencyHistogramTest extends TestCase {
+
+	private LatencyHistogram tested;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		tested = new LatencyHistogram();
+	}
+
+	public void testEmpty() {
+		assertEquals(0, tested.getCount());
+		assertEquals(0, tested.getMax());
+		assertEquals(0, tested.getAverage(), 0);
+		assertEquals(0, tested.getPercentile(0.99));
+	}
+
+	public void testRecord() {
+		tested.record(0);
+		tested.record(3);
+		tested.record(3);
+		tested.record(150);
+
+		assertEquals(4, tested.getCount());
+		assertEquals(150, tested.getMax());
+		assertEquals(39, tested.getAverage(), 0.001);
+
+		long[] buckets = tested.getBuckets();
+		assertEquals(LatencyHistogram.BUCKET_LIMITS.length + 1, buckets.length);
+		assertEquals(1, buckets[0]);
+		assertEquals(2, buckets[2]);
+		assertEquals(1, buckets[7]);
+	}
+
+	public void testPercentile() {
+		for (int i = 0; i < 99; i++) {
+			tested.record(1);
+		}
+		tested.record(700);
+
+		assertEquals(1, tested.getPercentile(0.5));
+		assertEquals(1, tested.getPercentile(0.99));
+		assertEquals(1000, tested.getPercentile(1.0));
+	}
+
+	public void testPercentileAboveLastLimit() {
+		tested.record(20000);
+		assertEquals(-1, tested.getPercentile(0.99));
+	}
+
+	public void testReset() {
+		tested.record(10);
+		tested.reset();
+
+		assertEquals(0, tested.getCount());
+		assertEquals(0, tested.getMax());
+		assertEquals(0, tested.getBuckets()[3]);
+	}
+
+	public void testToString() {
+		tested.record(1);
+		tested.record(20001);
+		String result = tested.toString();
+		assertTrue(result.startsWith("<=1ms: 1"));
+		assertTrue(result.endsWith(">10000ms: 1"));
+	}
+
+	public void testConcurrentRecording() throws Exception {
+		Thread[] threads = new Thread[8];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread() {
+				public void run() {
+					for (int j = 0; j < 1000; j++) {
+						tested.record(j % 50);
+					}
+				}
+			};
+			threads[i].start();
+		}
+		for (int i = 0; i < threads.length; i++) {
+			threads[i].join();
+		}
+
+		assertEquals(8000, tested.getCount());
+		assertEquals(49, tested.getMax());
+	}
+}
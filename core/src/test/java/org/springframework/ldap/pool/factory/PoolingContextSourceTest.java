@@ -20,9 +20,12 @@ import javax.naming.ldap.LdapContext;
 
 import org.apache.commons.pool.impl.GenericKeyedObjectPool;
 import org.easymock.MockControl;
+import org.springframework.core.task.SyncTaskExecutor;
 import org.springframework.dao.DataAccessResourceFailureException;
 import org.springframework.ldap.core.ContextSource;
 import org.springframework.ldap.pool.AbstractPoolTestCase;
+import org.springframework.ldap.pool.DirContextType;
+import org.springframework.ldap.pool.PoolListener;
 import org.springframework.ldap.pool.validation.DirContextValidator;
 
 /**
@@ -105,6 +108,14 @@ public class PoolingContextSourceTest extends AbstractPoolTestCase {
         final byte whenExhaustedAction = poolingContextSource.getWhenExhaustedAction();
         assertEquals(GenericKeyedObjectPool.WHEN_EXHAUSTED_BLOCK, whenExhaustedAction);
         
+        poolingContextSource.setValidationFreshnessMillis(30000L);
+        final long validationFreshnessMillis = poolingContextSource.getValidationFreshnessMillis();
+        assertEquals(30000L, validationFreshnessMillis);
+        
+        poolingContextSource.setTimeBetweenValidationRunsMillis(20000L);
+        final long timeBetweenValidationRunsMillis = poolingContextSource.getTimeBetweenValidationRunsMillis();
+        assertEquals(20000L, timeBetweenValidationRunsMillis);
+        
         final int numActive = poolingContextSource.getNumActive();
         assertEquals(0, numActive);
         
@@ -270,4 +281,214 @@ public class PoolingContextSourceTest extends AbstractPoolTestCase {
 
         secondLdapContextControl.verify();
     }
+
+    public void testWarmUp() throws Exception {
+        MockControl secondDirContextControl = MockControl.createControl(DirContext.class);
+        DirContext secondDirContextMock = (DirContext) secondDirContextControl.getMock();
+        MockControl thirdDirContextControl = MockControl.createControl(DirContext.class);
+        DirContext thirdDirContextMock = (DirContext) thirdDirContextControl.getMock();
+
+        contextSourceControl.expectAndReturn(contextSourceMock.getReadOnlyContext(), dirContextMock);
+        contextSourceControl.expectAndReturn(contextSourceMock.getReadOnlyContext(), secondDirContextMock);
+        contextSourceControl.expectAndReturn(contextSourceMock.getReadWriteContext(), thirdDirContextMock);
+
+        replay();
+
+        final PoolingContextSource poolingContextSource = new PoolingContextSource();
+        poolingContextSource.setContextSource(contextSourceMock);
+        poolingContextSource.setWarmUpTaskExecutor(new SyncTaskExecutor());
+        poolingContextSource.setInitialReadOnlyContexts(2);
+        poolingContextSource.setInitialReadWriteContexts(1);
+        poolingContextSource.afterPropertiesSet();
+
+        assertEquals(0, poolingContextSource.getNumActive());
+        assertEquals(3, poolingContextSource.getNumIdle());
+
+        //Borrowing should not need to create any new contexts
+        final DirContext readWriteContext = poolingContextSource.getReadWriteContext();
+        assertEquals(readWriteContext, thirdDirContextMock);
+    }
+
+    public void testWarmUp_LimitedByMaxIdle() throws Exception {
+        contextSourceControl.expectAndReturn(contextSourceMock.getReadOnlyContext(), dirContextMock);
+
+        replay();
+
+        final PoolingContextSource poolingContextSource = new PoolingContextSource();
+        poolingContextSource.setContextSource(contextSourceMock);
+        poolingContextSource.setWarmUpTaskExecutor(new SyncTaskExecutor());
+        poolingContextSource.setMaxIdle(1);
+        poolingContextSource.setInitialReadOnlyContexts(5);
+
+        assertEquals(1, poolingContextSource.warmUp());
+        assertEquals(1, poolingContextSource.getNumIdle());
+    }
+
+    public void testWarmUp_FailureIsNotFatal() throws Exception {
+        contextSourceControl.expectAndThrow(contextSourceMock.getReadOnlyContext(), new RuntimeException(
+                "Problem getting context"));
+        contextSourceControl.expectAndReturn(contextSourceMock.getReadOnlyContext(), dirContextMock);
+
+        replay();
+
+        final PoolingContextSource poolingContextSource = new PoolingContextSource();
+        poolingContextSource.setContextSource(contextSourceMock);
+        poolingContextSource.setWarmUpTaskExecutor(new SyncTaskExecutor());
+        poolingContextSource.setInitialReadOnlyContexts(2);
+
+        assertEquals(1, poolingContextSource.warmUp());
+        assertEquals(1, poolingContextSource.getNumIdle());
+    }
+
+    public void testPoolStatistics() throws Exception {
+        contextSourceControl.expectAndReturn(contextSourceMock.getReadOnlyContext(), dirContextMock);
+
+        replay();
+
+        final PoolingContextSource poolingContextSource = new PoolingContextSource();
+        poolingContextSource.setContextSource(contextSourceMock);
+        final PoolStatistics poolStatistics = new PoolStatistics();
+        poolStatistics.setPoolingContextSource(poolingContextSource);
+        assertSame(poolStatistics, poolingContextSource.getPoolListener());
+
+        final DirContext readOnlyContext = poolingContextSource.getReadOnlyContext();
+        final DirContextTypeStatistics readOnlyStatistics = poolStatistics.getReadOnlyStatistics();
+        assertEquals(1, readOnlyStatistics.getNumActive());
+        assertEquals(1, readOnlyStatistics.getBorrowCount());
+        assertEquals(1, readOnlyStatistics.getCreatedCount());
+
+        readOnlyContext.close();
+        assertEquals(0, readOnlyStatistics.getNumActive());
+        assertEquals(1, readOnlyStatistics.getNumIdle());
+        assertEquals(1, readOnlyStatistics.getInUseHistogramBuckets()[0]
+                + readOnlyStatistics.getInUseHistogramBuckets()[1]
+                + readOnlyStatistics.getInUseHistogramBuckets()[2]);
+
+        poolingContextSource.getReadOnlyContext().close();
+        assertEquals(2, readOnlyStatistics.getBorrowCount());
+        assertEquals(1, readOnlyStatistics.getCreatedCount());
+        assertEquals(0, poolStatistics.getReadWriteStatistics().getBorrowCount());
+
+        poolStatistics.reset();
+        assertEquals(0, readOnlyStatistics.getBorrowCount());
+        assertEquals(1, readOnlyStatistics.getNumIdle());
+    }
+
+    public void testLeakDetection() throws Exception {
+        contextSourceControl.expectAndReturn(contextSourceMock.getReadOnlyContext(), dirContextMock);
+
+        replay();
+
+        final PoolingContextSource poolingContextSource = new PoolingContextSource();
+        poolingContextSource.setContextSource(contextSourceMock);
+        final CountingPoolListener poolListener = new CountingPoolListener();
+        poolingContextSource.setPoolListener(poolListener);
+        poolingContextSource.setLeakDetectionThresholdMillis(20);
+
+        try {
+            final DirContext readOnlyContext = poolingContextSource.getReadOnlyContext();
+            Thread.sleep(150);
+
+            // Each leak should be reported only once
+            assertEquals(1, poolListener.leaks);
+            assertNotNull(poolListener.borrowLocation);
+            assertEquals(0, poolingContextSource.detectLeaks());
+
+            readOnlyContext.close();
+            assertEquals(1, poolListener.returns);
+        }
+        finally {
+            poolingContextSource.setLeakDetectionThresholdMillis(-1);
+        }
+    }
+
+    public void testLeakDetection_ReturnedContextNotReported() throws Exception {
+        contextSourceControl.expectAndReturn(contextSourceMock.getReadOnlyContext(), dirContextMock);
+
+        replay();
+
+        final PoolingContextSource poolingContextSource = new PoolingContextSource();
+        poolingContextSource.setContextSource(contextSourceMock);
+        final CountingPoolListener poolListener = new CountingPoolListener();
+        poolingContextSource.setPoolListener(poolListener);
+        poolingContextSource.setLeakDetectionThresholdMillis(Long.MAX_VALUE);
+
+        try {
+            poolingContextSource.getReadOnlyContext().close();
+            assertEquals(0, poolingContextSource.detectLeaks());
+            assertEquals(1, poolListener.borrows);
+            assertEquals(1, poolListener.returns);
+            assertEquals(0, poolListener.leaks);
+        }
+        finally {
+            poolingContextSource.setLeakDetectionThresholdMillis(-1);
+        }
+    }
+
+    public void testLeakDetection_SwitchedWhileBorrowed() throws Exception {
+        contextSourceControl.expectAndReturn(contextSourceMock.getReadOnlyContext(), dirContextMock);
+
+        replay();
+
+        final PoolingContextSource poolingContextSource = new PoolingContextSource();
+        poolingContextSource.setContextSource(contextSourceMock);
+        final CountingPoolListener poolListener = new CountingPoolListener();
+
+        try {
+            // Borrowed without monitoring, so never registered
+            DirContext readOnlyContext = poolingContextSource.getReadOnlyContext();
+            poolingContextSource.setPoolListener(poolListener);
+            poolingContextSource.setLeakDetectionThresholdMillis(1);
+            readOnlyContext.close();
+            assertEquals(0, poolListener.returns);
+
+            // Borrowed with monitoring, so unregistered when returned
+            readOnlyContext = poolingContextSource.getReadOnlyContext();
+            poolingContextSource.setLeakDetectionThresholdMillis(-1);
+            readOnlyContext.close();
+            assertEquals(1, poolListener.borrows);
+            assertEquals(1, poolListener.returns);
+
+            poolingContextSource.setLeakDetectionThresholdMillis(1);
+            Thread.sleep(20);
+            assertEquals(0, poolingContextSource.detectLeaks());
+            assertEquals(0, poolListener.leaks);
+        }
+        finally {
+            poolingContextSource.setLeakDetectionThresholdMillis(-1);
+        }
+    }
+
+    private static class CountingPoolListener implements PoolListener {
+        private int borrows;
+
+        private int returns;
+
+        private int leaks;
+
+        private Throwable borrowLocation;
+
+        public synchronized void contextBorrowed(DirContextType dirContextType, long borrowMillis) {
+            borrows++;
+        }
+
+        public synchronized void contextReturned(DirContextType dirContextType, long inUseMillis) {
+            returns++;
+        }
+
+        public void contextCreated(DirContextType dirContextType, long creationMillis) {
+        }
+
+        public void contextValidated(DirContextType dirContextType, long validationMillis, boolean valid) {
+        }
+
+        public void contextDestroyed(DirContextType dirContextType) {
+        }
+
+        public synchronized void contextLeakSuspected(DirContextType dirContextType, long heldMillis,
+                Throwable borrowLocation) {
+            leaks++;
+            this.borrowLocation = borrowLocation;
+        }
+    }
 }
@@ -0,0 +1,451 @@
+/*
+ * Copyright 2005-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.ldap.pool.factory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.pool.BaseKeyedPoolableObjectFactory;
+
+/**
+ * Unit tests for {@link StripedKeyedObjectPool}.
+ * 
+ * @author agent
+ */
+public class StripedKeyedObjectPoolTest extends TestCase {
+
+	private static final String KEY = "key";
+
+	private static final String OTHER_KEY = "otherKey";
+
+	private CountingFactory factory;
+
+	private StripedKeyedObjectPool tested;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+
+		factory = new CountingFactory();
+		tested = new StripedKeyedObjectPool(4);
+		tested.setFactory(factory);
+	}
+
+	protected void tearDown() throws Exception {
+		super.tearDown();
+
+		tested.close();
+		tested = null;
+		factory = null;
+	}
+
+	public void testBorrowReturn_ReusesMostRecentlyReturned() throws Exception {
+		Object first = tested.borrowObject(KEY);
+		Object second = tested.borrowObject(KEY);
+		assertNotSame(first, second);
+		assertEquals(2, tested.getNumActive(KEY));
+		assertEquals(0, tested.getNumIdle(KEY));
+
+		tested.returnObject(KEY, first);
+		tested.returnObject(KEY, second);
+		assertEquals(0, tested.getNumActive(KEY));
+		assertEquals(2, tested.getNumIdle(KEY));
+
+		assertSame(second, tested.borrowObject(KEY));
+		assertSame(first, tested.borrowObject(KEY));
+		assertEquals(2, factory.created.size());
+	}
+
+	public void testBorrow_KeysAreSeparate() throws Exception {
+		Object first = tested.borrowObject(KEY);
+		tested.returnObject(KEY, first);
+
+		Object other = tested.borrowObject(OTHER_KEY);
+		assertNotSame(first, other);
+		assertEquals(1, tested.getNumActive(OTHER_KEY));
+		assertEquals(1, tested.getNumIdle(KEY));
+		assertEquals(1, tested.getNumActive());
+		assertEquals(1, tested.getNumIdle());
+	}
+
+	public void testBorrow_ExhaustedFail() throws Exception {
+		tested.setMaxActive(1);
+		tested.setWhenExhaustedAction(StripedKeyedObjectPool.WHEN_EXHAUSTED_FAIL);
+
+		tested.borrowObject(KEY);
+		try {
+			tested.borrowObject(KEY);
+			fail("NoSuchElementException expected");
+		}
+		catch (NoSuchElementException expected) {
+			assertTrue(true);
+		}
+	}
+
+	public void testBorrow_ExhaustedGrow() throws Exception {
+		tested.setMaxActive(1);
+		tested.setWhenExhaustedAction(StripedKeyedObjectPool.WHEN_EXHAUSTED_GROW);
+
+		tested.borrowObject(KEY);
+		tested.borrowObject(KEY);
+		assertEquals(2, tested.getNumActive(KEY));
+	}
+
+	public void testBorrow_ExhaustedBlockTimesOut() throws Exception {
+		tested.setMaxActive(1);
+		tested.setMaxWait(50);
+
+		tested.borrowObject(KEY);
+		long start = System.currentTimeMillis();
+		try {
+			tested.borrowObject(KEY);
+			fail("NoSuchElementException expected");
+		}
+		catch (NoSuchElementException expected) {
+			assertTrue(System.currentTimeMillis() - start >= 40);
+		}
+	}
+
+	public void testBorrow_ExhaustedBlockGetsReturnedObject() throws Exception {
+		tested.setMaxActive(1);
+		tested.setMaxWait(5000);
+
+		final Object borrowed = tested.borrowObject(KEY);
+		Thread returner = new Thread() {
+			public void run() {
+				try {
+					Thread.sleep(50);
+					tested.returnObject(KEY, borrowed);
+				}
+				catch (Exception e) {
+					fail(e.getMessage());
+				}
+			}
+		};
+		returner.start();
+
+		assertSame(borrowed, tested.borrowObject(KEY));
+		returner.join();
+		assertEquals(1, factory.created.size());
+	}
+
+	public void testBorrow_TestOnBorrowFailsForIdle() throws Exception {
+		tested.setTestOnBorrow(true);
+
+		Object first = tested.borrowObject(KEY);
+		tested.returnObject(KEY, first);
+		factory.invalid.add(first);
+
+		Object second = tested.borrowObject(KEY);
+		assertNotSame(first, second);
+		assertTrue(factory.destroyed.contains(first));
+		assertEquals(1, tested.getNumActive(KEY));
+		assertEquals(0, tested.getNumIdle(KEY));
+	}
+
+	public void testBorrow_MakeObjectFails() throws Exception {
+		tested.setMaxActive(1);
+		factory.failCreation = true;
+
+		try {
+			tested.borrowObject(KEY);
+			fail("IllegalStateException expected");
+		}
+		catch (IllegalStateException expected) {
+			assertTrue(true);
+		}
+
+		// The failed creation should not count against maxActive
+		factory.failCreation = false;
+		assertNotNull(tested.borrowObject(KEY));
+	}
+
+	public void testBorrow_FreshIdleNotValidated() throws Exception {
+		tested.setTestOnBorrow(true);
+		tested.setValidationFreshnessMillis(60000);
+
+		Object first = tested.borrowObject(KEY);
+		tested.returnObject(KEY, first);
+		int validations = factory.validations;
+
+		assertSame(first, tested.borrowObject(KEY));
+		assertEquals(validations, factory.validations);
+	}
+
+	public void testBorrow_StaleIdleValidated() throws Exception {
+		tested.setTestOnBorrow(true);
+		tested.setValidationFreshnessMillis(1);
+
+		Object first = tested.borrowObject(KEY);
+		tested.returnObject(KEY, first);
+		factory.invalid.add(first);
+		Thread.sleep(10);
+
+		assertNotSame(first, tested.borrowObject(KEY));
+		assertTrue(factory.destroyed.contains(first));
+	}
+
+	public void testValidateIdleObjects_ReplacesInvalid() throws Exception {
+		Object first = tested.borrowObject(KEY);
+		Object second = tested.borrowObject(KEY);
+		tested.returnObject(KEY, first);
+		tested.returnObject(KEY, second);
+		factory.invalid.add(first);
+		Thread.sleep(5);
+
+		tested.validateIdleObjects();
+
+		assertTrue(factory.destroyed.contains(first));
+		assertEquals(3, factory.created.size());
+		assertEquals(2, tested.getNumIdle(KEY));
+		assertEquals(0, tested.getNumActive(KEY));
+	}
+
+	public void testValidateIdleObjects_ValidatedObjectIsFresh() throws Exception {
+		tested.setTestOnBorrow(true);
+		tested.setValidationFreshnessMillis(60000);
+
+		Object first = tested.borrowObject(KEY);
+		tested.returnObject(KEY, first);
+		Thread.sleep(5);
+		tested.validateIdleObjects();
+		int validations = factory.validations;
+
+		assertSame(first, tested.borrowObject(KEY));
+		assertEquals(validations, factory.validations);
+	}
+
+	public void testBackgroundValidation() throws Exception {
+		Object first = tested.borrowObject(KEY);
+		tested.returnObject(KEY, first);
+		factory.invalid.add(first);
+
+		tested.setTimeBetweenValidationRunsMillis(10);
+		long timeout = System.currentTimeMillis() + 5000;
+		while (factory.created.size() < 2 && System.currentTimeMillis() < timeout) {
+			Thread.sleep(10);
+		}
+
+		assertTrue(factory.destroyed.contains(first));
+		assertEquals(1, tested.getNumIdle(KEY));
+	}
+
+	public void testReturn_MaxIdle() throws Exception {
+		tested.setMaxIdle(1);
+
+		Object first = tested.borrowObject(KEY);
+		Object second = tested.borrowObject(KEY);
+		tested.returnObject(KEY, first);
+		tested.returnObject(KEY, second);
+
+		assertEquals(1, tested.getNumIdle(KEY));
+		assertTrue(factory.destroyed.contains(second));
+	}
+
+	public void testReturn_TestOnReturnFails() throws Exception {
+		tested.setTestOnReturn(true);
+
+		Object first = tested.borrowObject(KEY);
+		factory.invalid.add(first);
+		tested.returnObject(KEY, first);
+
+		assertEquals(0, tested.getNumIdle(KEY));
+		assertEquals(0, tested.getNumActive(KEY));
+		assertTrue(factory.destroyed.contains(first));
+	}
+
+	public void testInvalidate() throws Exception {
+		Object first = tested.borrowObject(KEY);
+		tested.invalidateObject(KEY, first);
+
+		assertEquals(0, tested.getNumActive(KEY));
+		assertTrue(factory.destroyed.contains(first));
+	}
+
+	public void testMaxTotal_DestroysIdleOfOtherKey() throws Exception {
+		tested.setMaxTotal(1);
+
+		Object first = tested.borrowObject(KEY);
+		tested.returnObject(KEY, first);
+
+		Object other = tested.borrowObject(OTHER_KEY);
+		assertNotSame(first, other);
+		assertTrue(factory.destroyed.contains(first));
+		assertEquals(0, tested.getNumIdle(KEY));
+	}
+
+	public void testEvict_IdleTooLong() throws Exception {
+		tested.setMinEvictableIdleTimeMillis(1);
+
+		Object first = tested.borrowObject(KEY);
+		tested.returnObject(KEY, first);
+		Thread.sleep(10);
+
+		tested.evict();
+		assertEquals(0, tested.getNumIdle(KEY));
+		assertTrue(factory.destroyed.contains(first));
+	}
+
+	public void testEvict_TestWhileIdle() throws Exception {
+		tested.setTestWhileIdle(true);
+		tested.setNumTestsPerEvictionRun(-1);
+
+		Object first = tested.borrowObject(KEY);
+		Object second = tested.borrowObject(KEY);
+		tested.returnObject(KEY, first);
+		tested.returnObject(KEY, second);
+		factory.invalid.add(first);
+
+		tested.evict();
+		assertEquals(1, tested.getNumIdle(KEY));
+		assertTrue(factory.destroyed.contains(first));
+		assertFalse(factory.destroyed.contains(second));
+	}
+
+	public void testEnsureMinIdle() throws Exception {
+		tested.setMinIdle(3);
+		tested.setMaxActive(4);
+
+		Object first = tested.borrowObject(KEY);
+		tested.ensureMinIdle();
+		assertEquals(3, tested.getNumIdle(KEY));
+		assertEquals(1, tested.getNumActive(KEY));
+
+		tested.returnObject(KEY, first);
+		tested.borrowObject(KEY);
+		tested.borrowObject(KEY);
+		tested.ensureMinIdle();
+		// Limited by maxActive
+		assertEquals(2, tested.getNumIdle(KEY));
+	}
+
+	public void testBorrow_ReplenishesMinIdleInBackground() throws Exception {
+		Object first = tested.borrowObject(KEY);
+		tested.returnObject(KEY, first);
+		tested.setMinIdle(2);
+
+		tested.borrowObject(KEY);
+		long timeout = System.currentTimeMillis() + 5000;
+		while (tested.getNumIdle(KEY) < 2 && System.currentTimeMillis() < timeout) {
+			Thread.sleep(10);
+		}
+
+		assertEquals(2, tested.getNumIdle(KEY));
+		assertEquals(1, tested.getNumActive(KEY));
+	}
+
+	public void testEnsureMinIdle_LimitedByMaxIdle() throws Exception {
+		tested.setMaxIdle(1);
+		tested.setMinIdle(3);
+		tested.borrowObject(KEY);
+
+		tested.ensureMinIdle();
+		assertEquals(1, tested.getNumIdle(KEY));
+	}
+
+	public void testClose() throws Exception {
+		Object first = tested.borrowObject(KEY);
+		Object second = tested.borrowObject(KEY);
+		tested.returnObject(KEY, first);
+
+		tested.close();
+		assertTrue(factory.destroyed.contains(first));
+
+		tested.returnObject(KEY, second);
+		assertTrue(factory.destroyed.contains(second));
+
+		try {
+			tested.borrowObject(KEY);
+			fail("IllegalStateException expected");
+		}
+		catch (IllegalStateException expected) {
+			assertTrue(true);
+		}
+	}
+
+	public void testConcurrentBorrowers() throws Exception {
+		tested.setMaxActive(5);
+		tested.setMaxWait(10000);
+
+		final List failures = Collections.synchronizedList(new ArrayList());
+		final Set inUse = Collections.synchronizedSet(new HashSet());
+		Thread[] threads = new Thread[20];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread() {
+				public void run() {
+					try {
+						for (int j = 0; j < 200; j++) {
+							Object borrowed = tested.borrowObject(KEY);
+							if (!inUse.add(borrowed)) {
+								failures.add("Object borrowed twice: " + borrowed);
+							}
+							Thread.yield();
+							inUse.remove(borrowed);
+							tested.returnObject(KEY, borrowed);
+						}
+					}
+					catch (Exception e) {
+						failures.add(e);
+					}
+				}
+			};
+			threads[i].start();
+		}
+		for (int i = 0; i < threads.length; i++) {
+			threads[i].join();
+		}
+
+		assertEquals(Collections.EMPTY_LIST, failures);
+		assertEquals(0, tested.getNumActive(KEY));
+		assertTrue(factory.created.size() - factory.destroyed.size() <= 5);
+	}
+
+	private static class CountingFactory extends BaseKeyedPoolableObjectFactory {
+		private final List created = Collections.synchronizedList(new ArrayList());
+
+		private final List destroyed = Collections.synchronizedList(new ArrayList());
+
+		private final Set invalid = Collections.synchronizedSet(new HashSet());
+
+		private boolean failCreation = false;
+
+		private volatile int validations = 0;
+
+		public Object makeObject(Object key) throws Exception {
+			if (failCreation) {
+				throw new IllegalStateException("Failed to create");
+			}
+			Object result = new Object();
+			created.add(result);
+			return result;
+		}
+
+		public void destroyObject(Object key, Object obj) throws Exception {
+			destroyed.add(obj);
+		}
+
+		public boolean validateObject(Object key, Object obj) {
+			validations++;
+			return !invalid.contains(obj);
+		}
+	}
+}
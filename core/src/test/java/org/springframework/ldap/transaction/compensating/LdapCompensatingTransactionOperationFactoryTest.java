@@ -20,7 +20,9 @@ import javax.naming.directory.DirContext;
 import junit.framework.TestCase;
 
 import org.easymock.MockControl;
+import org.springframework.ldap.core.DistinguishedName;
 import org.springframework.ldap.core.LdapOperations;
+import org.springframework.transaction.compensating.CompensatingTransactionOperationExecutor;
 import org.springframework.transaction.compensating.CompensatingTransactionOperationRecorder;
 
 public class LdapCompensatingTransactionOperationFactoryTest extends TestCase {
@@ -131,4 +133,16 @@ public class LdapCompensatingTransactionOperationFactoryTest extends TestCase {
         assertSame(renamingStrategyMock, recordingOperation
                 .getRenamingStrategy());
     }
+
+    public void testGetRecordingOperation_Journaled() throws Exception {
+        tested.setJournalTransaction(new TransactionJournal().begin());
+
+        CompensatingTransactionOperationExecutor result = tested
+                .createRecordingOperation(dirContextMock, "bind")
+                .recordOperation(
+                        new Object[] { new DistinguishedName("cn=john doe"),
+                                null, null });
+        assertTrue(result instanceof JournalingOperationExecutor);
+        assertTrue(((JournalingOperationExecutor) result).getTarget() instanceof BindOperationExecutor);
+    }
 }
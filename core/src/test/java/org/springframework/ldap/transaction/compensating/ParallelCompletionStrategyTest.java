@@ -0,0 +1,247 @@
+/*
+ * Copyright 2005-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.ldap.transaction.compensating;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.naming.Name;
+import javax.naming.directory.DirContext;
+import javax.naming.directory.ModificationItem;
+
+import junit.framework.TestCase;
+
+import org.easymock.MockControl;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.ldap.UncategorizedLdapException;
+import org.springframework.ldap.core.ContextSource;
+import org.springframework.ldap.core.DistinguishedName;
+import org.springframework.ldap.core.LdapTemplate;
+import org.springframework.transaction.compensating.CompensatingTransactionOperationExecutor;
+import org.springframework.transaction.compensating.support.CompensatingTransactionFailureException;
+
+public class ParallelCompletionStrategyTest extends TestCase {
+
+    private MockControl dirContextControl;
+
+    private DirContext dirContextMock;
+
+    private CountingContextSource contextSource;
+
+    private RecordingLdapTemplate ldapTemplate;
+
+    protected void setUp() throws Exception {
+        dirContextControl = MockControl.createNiceControl(DirContext.class);
+        dirContextMock = (DirContext) dirContextControl.getMock();
+        dirContextControl.replay();
+
+        contextSource = new CountingContextSource();
+        ldapTemplate = new RecordingLdapTemplate();
+    }
+
+    protected void tearDown() throws Exception {
+        dirContextControl = null;
+        dirContextMock = null;
+        contextSource = null;
+        ldapTemplate = null;
+    }
+
+    public void testGroupByAncestry() {
+        CompensatingTransactionOperationExecutor[] executors = new CompensatingTransactionOperationExecutor[] {
+                modify("cn=a,ou=x"),
+                modify("OU=X"),
+                bind("cn=b,ou=y"),
+                new RenameOperationExecutor(ldapTemplate,
+                        new DistinguishedName("cn=c,ou=z"),
+                        new DistinguishedName("cn=c,cn=b,ou=y")),
+                modify("cn=a,ou=w"), new NullOperationExecutor() };
+
+        ParallelCompletionStrategy tested = new ParallelCompletionStrategy(
+                contextSource, new SyncTaskExecutor());
+        List groups = tested.groupByAncestry(Arrays.asList(executors));
+
+        assertEquals(4, groups.size());
+        assertEquals(Arrays.asList(new Object[] { executors[0], executors[1] }),
+                groups.get(0));
+        assertEquals(Arrays.asList(new Object[] { executors[2], executors[3] }),
+                groups.get(1));
+        assertEquals(Collections.singletonList(executors[4]), groups.get(2));
+        assertEquals(Collections.singletonList(executors[5]), groups.get(3));
+    }
+
+    public void testGroupByAncestry_UnknownExecutor() {
+        MockControl executorControl = MockControl
+                .createControl(CompensatingTransactionOperationExecutor.class);
+        List executors = Arrays.asList(new Object[] { modify("cn=a,ou=x"),
+                executorControl.getMock(), modify("cn=a,ou=y") });
+
+        ParallelCompletionStrategy tested = new ParallelCompletionStrategy(
+                contextSource, new SyncTaskExecutor());
+        List groups = tested.groupByAncestry(executors);
+
+        assertEquals(1, groups.size());
+        assertEquals(executors, groups.get(0));
+    }
+
+    public void testRollback() {
+        List executors = Arrays.asList(new Object[] { bind("ou=x"),
+                bind("ou=y"), bind("cn=a,ou=x"), bind("cn=b,ou=y"),
+                bind("cn=c,ou=y"), bind("ou=z") });
+
+        ParallelCompletionStrategy tested = new ParallelCompletionStrategy(
+                contextSource, new SimpleAsyncTaskExecutor());
+        tested.setConcurrency(3);
+        tested.rollback(executors);
+
+        List unbound = ldapTemplate.getUnbound();
+        assertEquals(6, unbound.size());
+        assertTrue(unbound.indexOf("cn=a,ou=x") < unbound.indexOf("ou=x"));
+        assertTrue(unbound.indexOf("cn=c,ou=y") < unbound.indexOf("cn=b,ou=y"));
+        assertTrue(unbound.indexOf("cn=b,ou=y") < unbound.indexOf("ou=y"));
+
+        // At most two additional threads, each borrowing a context only if
+        // it finds a group left; the calling thread uses the transaction
+        // context
+        assertTrue(contextSource.getCount() <= 2);
+    }
+
+    public void testCommit_AllFailuresReported() {
+        ldapTemplate.failOn("cn=a_temp,ou=x");
+        ldapTemplate.failOn("cn=c_temp,ou=z");
+        List executors = Arrays.asList(new Object[] {
+                unbind("cn=a,ou=x", "cn=a_temp,ou=x"),
+                unbind("cn=b,ou=y", "cn=b_temp,ou=y"),
+                unbind("cn=c,ou=z", "cn=c_temp,ou=z") });
+
+        ParallelCompletionStrategy tested = new ParallelCompletionStrategy(
+                contextSource, new SyncTaskExecutor());
+        try {
+            tested.commit(executors);
+            fail("CompensatingTransactionFailureException expected");
+        } catch (CompensatingTransactionFailureException expected) {
+            assertEquals(2, expected.getFailures().size());
+            assertSame(expected.getFailures().get(0), expected.getCause());
+        }
+
+        assertEquals(3, ldapTemplate.getUnbound().size());
+    }
+
+    public void testCommit_NoContextBorrowedWithoutWork() {
+        List executors = Arrays.asList(new Object[] {
+                unbind("cn=a,ou=x", "cn=a_temp,ou=x"),
+                unbind("cn=b,ou=y", "cn=b_temp,ou=y"),
+                unbind("cn=c,ou=z", "cn=c_temp,ou=z") });
+
+        ParallelCompletionStrategy tested = new ParallelCompletionStrategy(
+                contextSource, new SyncTaskExecutor());
+        tested.setConcurrency(3);
+        tested.commit(executors);
+
+        assertEquals(3, ldapTemplate.getUnbound().size());
+        // The first worker runs synchronously and takes all groups; the
+        // second one finds nothing left and must not get a DirContext
+        assertEquals(1, contextSource.getCount());
+    }
+
+    public void testCommit_ContextUnavailable() {
+        contextSource.setAvailable(false);
+        List executors = Arrays.asList(new Object[] {
+                unbind("cn=a,ou=x", "cn=a_temp,ou=x"),
+                unbind("cn=b,ou=y", "cn=b_temp,ou=y") });
+
+        ParallelCompletionStrategy tested = new ParallelCompletionStrategy(
+                contextSource, new SyncTaskExecutor());
+        tested.commit(executors);
+
+        // All done by the calling thread
+        assertEquals(2, ldapTemplate.getUnbound().size());
+    }
+
+    private ModifyAttributesOperationExecutor modify(String dn) {
+        return new ModifyAttributesOperationExecutor(ldapTemplate,
+                new DistinguishedName(dn), new ModificationItem[0],
+                new ModificationItem[0]);
+    }
+
+    private BindOperationExecutor bind(String dn) {
+        return new BindOperationExecutor(ldapTemplate, new DistinguishedName(
+                dn), null, null);
+    }
+
+    private UnbindOperationExecutor unbind(String dn, String temporaryDn) {
+        return new UnbindOperationExecutor(ldapTemplate,
+                new DistinguishedName(dn), new DistinguishedName(temporaryDn));
+    }
+
+    private class CountingContextSource implements ContextSource {
+        private int count;
+
+        private boolean available = true;
+
+        synchronized void setAvailable(boolean available) {
+            this.available = available;
+        }
+
+        synchronized int getCount() {
+            return count;
+        }
+
+        public synchronized DirContext getReadWriteContext() {
+            if (!available) {
+                throw new UncategorizedLdapException("Unavailable");
+            }
+            count++;
+            return dirContextMock;
+        }
+
+        public DirContext getReadOnlyContext() {
+            return getReadWriteContext();
+        }
+
+        public DirContext getContext(String principal, String credentials) {
+            return getReadWriteContext();
+        }
+    }
+
+    private static class RecordingLdapTemplate extends LdapTemplate {
+        private final List unbound = new ArrayList();
+
+        private final Set failing = new HashSet();
+
+        synchronized void failOn(String dn) {
+            failing.add(dn);
+        }
+
+        synchronized List getUnbound() {
+            return new ArrayList(unbound);
+        }
+
+        public void unbind(Name dn) {
+            synchronized (this) {
+                unbound.add(dn.toString());
+                if (!failing.contains(dn.toString())) {
+                    return;
+                }
+            }
+            throw new UncategorizedLdapException("Failed to unbind " + dn);
+        }
+    }
+}
@@ -0,0 +1,298 @@
+/*
+ * Copyright 2005-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.ldap.transaction.compensating;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.naming.Name;
+import javax.naming.NamingException;
+import javax.naming.directory.Attributes;
+import javax.naming.directory.BasicAttribute;
+import javax.naming.directory.BasicAttributes;
+import javax.naming.directory.DirContext;
+import javax.naming.directory.ModificationItem;
+import javax.naming.directory.SearchControls;
+
+import junit.framework.TestCase;
+
+import org.springframework.ldap.core.AttributesMapper;
+import org.springframework.ldap.core.ContextMapper;
+import org.springframework.ldap.core.DirContextAdapter;
+import org.springframework.ldap.core.DistinguishedName;
+import org.springframework.ldap.core.LdapTemplate;
+import org.springframework.transaction.compensating.CompensatingTransactionOperationExecutor;
+
+public class PreImageCacheTest extends TestCase {
+
+    private static final DistinguishedName DN = new DistinguishedName(
+            "cn=john doe,ou=people");
+
+    private StubLdapTemplate ldapTemplate;
+
+    private PreImageCache tested;
+
+    protected void setUp() throws Exception {
+        Attributes attributes = new BasicAttributes(true);
+        BasicAttribute attribute = new BasicAttribute("description");
+        attribute.add("desc1");
+        attribute.add("desc2");
+        attributes.put(attribute);
+        attributes.put("telephoneNumber", "123");
+
+        ldapTemplate = new StubLdapTemplate();
+        ldapTemplate.attributes = attributes;
+
+        tested = new PreImageCache();
+    }
+
+    protected void tearDown() throws Exception {
+        ldapTemplate = null;
+        tested = null;
+    }
+
+    public void testGetAttributes_ReadsEachAttributeOnce() throws Exception {
+        Attributes result = tested.getAttributes(ldapTemplate, DN,
+                new String[] { "description" });
+        assertEquals(2, result.get("description").size());
+        assertEquals(Arrays.asList(new String[] { "description" }),
+                ldapTemplate.lookedUp.get(0));
+
+        // Already known, regardless of case and DN formatting
+        result = tested.getAttributes(ldapTemplate, new DistinguishedName(
+                "CN=John Doe, ou=People"), new String[] { "DESCRIPTION" });
+        assertEquals(2, result.get("description").size());
+        assertEquals(1, ldapTemplate.lookedUp.size());
+
+        // Only the unknown attributes are read
+        result = tested.getAttributes(ldapTemplate, DN, new String[] {
+                "description", "telephoneNumber", "mail" });
+        assertEquals(2, result.size());
+        assertEquals("123", result.get("telephoneNumber").get());
+        assertEquals(2, ldapTemplate.lookedUp.size());
+        assertEquals(Arrays.asList(new String[] { "telephoneNumber", "mail" }),
+                ldapTemplate.lookedUp.get(1));
+
+        // Absent attributes are remembered as such
+        result = tested.getAttributes(ldapTemplate, DN,
+                new String[] { "mail" });
+        assertEquals(0, result.size());
+        assertEquals(2, tested.getLookupCount());
+    }
+
+    public void testGetAttributes_ReturnsCopies() throws Exception {
+        Attributes result = tested.getAttributes(ldapTemplate, DN,
+                new String[] { "description" });
+        result.get("description").clear();
+
+        result = tested.getAttributes(ldapTemplate, DN,
+                new String[] { "description" });
+        assertEquals(2, result.get("description").size());
+    }
+
+    public void testModificationPerformed_ReplaceAndAdd() throws Exception {
+        tested.getAttributes(ldapTemplate, DN, new String[] { "description",
+                "telephoneNumber", "mail" });
+
+        tested.modificationPerformed(DN, new ModificationItem[] {
+                new ModificationItem(DirContext.REPLACE_ATTRIBUTE,
+                        new BasicAttribute("description", "new")),
+                new ModificationItem(DirContext.ADD_ATTRIBUTE,
+                        new BasicAttribute("telephoneNumber", "456")),
+                new ModificationItem(DirContext.ADD_ATTRIBUTE,
+                        new BasicAttribute("mail", "john@example.com")) });
+
+        Attributes result = tested.getAttributes(ldapTemplate, DN,
+                new String[] { "description", "telephoneNumber", "mail" });
+        assertEquals(1, ldapTemplate.lookedUp.size());
+        assertEquals(1, result.get("description").size());
+        assertEquals("new", result.get("description").get());
+        assertEquals(2, result.get("telephoneNumber").size());
+        assertTrue(result.get("telephoneNumber").contains("456"));
+        assertEquals("john@example.com", result.get("mail").get());
+    }
+
+    public void testModificationPerformed_RemoveAttribute() throws Exception {
+        tested.getAttributes(ldapTemplate, DN, new String[] { "description" });
+
+        tested.modificationPerformed(DN,
+                new ModificationItem[] { new ModificationItem(
+                        DirContext.REMOVE_ATTRIBUTE, new BasicAttribute(
+                                "description")) });
+
+        Attributes result = tested.getAttributes(ldapTemplate, DN,
+                new String[] { "description" });
+        assertEquals(1, ldapTemplate.lookedUp.size());
+        assertNull(result.get("description"));
+    }
+
+    public void testModificationPerformed_RemoveValueRereadsAttribute()
+            throws Exception {
+        tested.getAttributes(ldapTemplate, DN, new String[] { "description",
+                "telephoneNumber" });
+
+        tested.modificationPerformed(DN,
+                new ModificationItem[] { new ModificationItem(
+                        DirContext.REMOVE_ATTRIBUTE, new BasicAttribute(
+                                "description", "DESC1")) });
+
+        tested.getAttributes(ldapTemplate, DN, new String[] { "description",
+                "telephoneNumber" });
+        assertEquals(2, ldapTemplate.lookedUp.size());
+        assertEquals(Arrays.asList(new String[] { "description" }),
+                ldapTemplate.lookedUp.get(1));
+    }
+
+    public void testModificationPerformed_UnknownAttributeIsIgnored()
+            throws Exception {
+        tested.getAttributes(ldapTemplate, DN,
+                new String[] { "telephoneNumber" });
+
+        tested.modificationPerformed(DN,
+                new ModificationItem[] { new ModificationItem(
+                        DirContext.ADD_ATTRIBUTE, new BasicAttribute(
+                                "description", "desc3")) });
+
+        Attributes result = tested.getAttributes(ldapTemplate, DN,
+                new String[] { "description" });
+        assertEquals(2, ldapTemplate.lookedUp.size());
+        assertEquals(2, result.get("description").size());
+    }
+
+    public void testInvalidate() throws Exception {
+        tested.getAttributes(ldapTemplate, DN, new String[] { "description" });
+        tested.invalidate(new DistinguishedName("cn=John Doe,ou=people"));
+        tested.getAttributes(ldapTemplate, DN, new String[] { "description" });
+        assertEquals(2, ldapTemplate.lookedUp.size());
+    }
+
+    public void testInvalidateSubtree() throws Exception {
+        DistinguishedName otherSubtree = new DistinguishedName(
+                "ou=people,ou=other");
+        DistinguishedName escaped = new DistinguishedName(
+                "cn=john doe\\,ou\\=people");
+        tested.getAttributes(ldapTemplate, DN, new String[] { "description" });
+        tested.getAttributes(ldapTemplate, otherSubtree,
+                new String[] { "description" });
+        tested.getAttributes(ldapTemplate, escaped,
+                new String[] { "description" });
+        assertEquals(3, ldapTemplate.lookedUp.size());
+
+        tested.invalidateSubtree(new DistinguishedName("OU=People"));
+
+        // Only the entry below the renamed one is read again
+        tested.getAttributes(ldapTemplate, otherSubtree,
+                new String[] { "description" });
+        tested.getAttributes(ldapTemplate, escaped,
+                new String[] { "description" });
+        assertEquals(3, ldapTemplate.lookedUp.size());
+        tested.getAttributes(ldapTemplate, DN, new String[] { "description" });
+        assertEquals(4, ldapTemplate.lookedUp.size());
+    }
+
+    public void testPrefetch() throws Exception {
+        tested.prefetch(ldapTemplate, new Name[] { DN,
+                new DistinguishedName("cn=jane doe,ou=people"),
+                new DistinguishedName("cn=admin+uid=1,ou=system") },
+                new String[] { "description", "mail" });
+
+        assertEquals(2, ldapTemplate.searches.size());
+        assertTrue(ldapTemplate.searches
+                .contains("ou=people:(|(cn=john doe)(cn=jane doe))"));
+        assertTrue(ldapTemplate.searches
+                .contains("ou=system:(&(cn=admin)(uid=1))"));
+        assertEquals(2, tested.getLookupCount());
+
+        Attributes result = tested.getAttributes(ldapTemplate, DN,
+                new String[] { "description", "mail" });
+        assertEquals(0, ldapTemplate.lookedUp.size());
+        assertEquals(2, result.get("description").size());
+        assertNull(result.get("mail"));
+
+        // Only the prefetched attributes are known
+        tested.getAttributes(ldapTemplate, DN,
+                new String[] { "telephoneNumber" });
+        assertEquals(1, ldapTemplate.lookedUp.size());
+    }
+
+    public void testRecordOperation_RepeatedModificationsOfSameEntry()
+            throws Exception {
+        ModifyAttributesOperationRecorder recorder = new ModifyAttributesOperationRecorder(
+                ldapTemplate, tested);
+
+        CompensatingTransactionOperationExecutor first = recorder
+                .recordOperation(new Object[] {
+                        DN,
+                        new ModificationItem[] { new ModificationItem(
+                                DirContext.REPLACE_ATTRIBUTE,
+                                new BasicAttribute("description", "first")) } });
+        first.performOperation();
+
+        ModifyAttributesOperationExecutor second = (ModifyAttributesOperationExecutor) recorder
+                .recordOperation(new Object[] {
+                        DN,
+                        new ModificationItem[] { new ModificationItem(
+                                DirContext.REPLACE_ATTRIBUTE,
+                                new BasicAttribute("description", "second")) } });
+
+        assertEquals(1, ldapTemplate.lookedUp.size());
+        assertSame(tested, second.getPreImageCache());
+        ModificationItem rollbackItem = second.getCompensatingModifications()[0];
+        assertEquals(DirContext.REPLACE_ATTRIBUTE, rollbackItem
+                .getModificationOp());
+        assertEquals(1, rollbackItem.getAttribute().size());
+        assertEquals("first", rollbackItem.getAttribute().get());
+    }
+
+    private static class StubLdapTemplate extends LdapTemplate {
+        private Attributes attributes;
+
+        private List lookedUp = new ArrayList();
+
+        private List searches = new ArrayList();
+
+        public Object lookup(Name dn, String[] attributeIds,
+                AttributesMapper mapper) {
+            lookedUp.add(Arrays.asList(attributeIds));
+            Attributes result = new BasicAttributes(true);
+            for (int i = 0; i < attributeIds.length; i++) {
+                if (attributes.get(attributeIds[i]) != null) {
+                    result.put(attributes.get(attributeIds[i]));
+                }
+            }
+            try {
+                return mapper.mapFromAttributes(result);
+            } catch (NamingException e) {
+                throw new AssertionError(e);
+            }
+        }
+
+        public List search(Name base, String filter, SearchControls controls,
+                ContextMapper mapper) {
+            searches.add(base + ":" + filter);
+            if (base.toString().equals("ou=people")) {
+                mapper.mapFromContext(new DirContextAdapter(attributes,
+                        new DistinguishedName("cn=John Doe,ou=people")));
+            }
+            return Collections.EMPTY_LIST;
+        }
+
+        public void modifyAttributes(Name dn, ModificationItem[] mods) {
+        }
+    }
+}
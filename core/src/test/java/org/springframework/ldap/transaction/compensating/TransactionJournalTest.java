@@ -0,0 +1,349 @@
+/*
+ * Copyright 2005-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.ldap.transaction.compensating;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import javax.naming.directory.BasicAttribute;
+import javax.naming.directory.DirContext;
+import javax.naming.directory.ModificationItem;
+
+import junit.framework.TestCase;
+
+import org.easymock.MockControl;
+import org.springframework.ldap.NameNotFoundException;
+import org.springframework.ldap.core.DistinguishedName;
+import org.springframework.ldap.core.LdapOperations;
+import org.springframework.ldap.transaction.compensating.manager.ContextSourceTransactionManagerDelegate;
+import org.springframework.ldap.transaction.compensating.manager.DirContextHolder;
+import org.springframework.transaction.TransactionSystemException;
+import org.springframework.transaction.compensating.CompensatingTransactionOperationManager;
+import org.springframework.transaction.compensating.support.CompensatingTransactionObject;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+
+public class TransactionJournalTest extends TestCase {
+
+    private static final DistinguishedName DN = new DistinguishedName(
+            "cn=john doe, ou=people");
+
+    private static final DistinguishedName TEMP_DN = new DistinguishedName(
+            "cn=john doe_temp, ou=people");
+
+    private File directory;
+
+    private MockControl ldapOperationsControl;
+
+    private LdapOperations ldapOperationsMock;
+
+    protected void setUp() throws Exception {
+        directory = File.createTempFile("journal", "");
+        directory.delete();
+
+        ldapOperationsControl = MockControl
+                .createStrictControl(LdapOperations.class);
+        ldapOperationsMock = (LdapOperations) ldapOperationsControl.getMock();
+    }
+
+    protected void tearDown() throws Exception {
+        File[] files = directory.listFiles();
+        for (int i = 0; files != null && i < files.length; i++) {
+            files[i].delete();
+        }
+        directory.delete();
+
+        ldapOperationsControl = null;
+        ldapOperationsMock = null;
+    }
+
+    protected void replay() {
+        ldapOperationsControl.replay();
+    }
+
+    protected void verify() {
+        ldapOperationsControl.verify();
+    }
+
+    private TransactionJournal openJournal() throws Exception {
+        TransactionJournal journal = new TransactionJournal();
+        journal.setDirectory(directory);
+        journal.afterPropertiesSet();
+        return journal;
+    }
+
+    public void testCompletedTransactionIsNotRecovered() throws Exception {
+        TransactionJournal journal = openJournal();
+        TransactionJournal.Transaction transaction = journal.begin();
+        JournaledOperation operation = new JournaledOperation(
+                JournaledOperation.UNBIND, DN, TEMP_DN, null);
+        int sequence = transaction.operationStarted(operation);
+        transaction.operationPerformed(operation, sequence);
+        transaction.committing();
+        transaction.completed();
+        journal.destroy();
+
+        journal = openJournal();
+        assertEquals(0, journal.getIncompleteTransactionCount());
+        journal.destroy();
+
+        // Only the new, empty, segment should be left
+        assertEquals(1, directory.list().length);
+    }
+
+    public void testTransactionWithoutOperationsIsNotWritten()
+            throws Exception {
+        TransactionJournal journal = openJournal();
+        TransactionJournal.Transaction transaction = journal.begin();
+        transaction.committing();
+        transaction.completed();
+        journal.destroy();
+
+        assertEquals(0, directory.listFiles()[0].length());
+    }
+
+    public void testRecover_InterruptedTransactionIsRolledBack()
+            throws Exception {
+        TransactionJournal journal = openJournal();
+        TransactionJournal.Transaction transaction = journal.begin();
+        JournaledOperation operation = new JournaledOperation(
+                JournaledOperation.BIND, DN, null, null);
+        int sequence = transaction.operationStarted(operation);
+        transaction.operationPerformed(operation, sequence);
+        transaction.operationStarted(new JournaledOperation(
+                JournaledOperation.UNBIND, DN, TEMP_DN, null));
+        // Crash before the unbind is performed
+        journal.destroy();
+
+        journal = openJournal();
+        assertEquals(1, journal.getIncompleteTransactionCount());
+
+        // Undone in reverse order; the unbind never moved the entry
+        ldapOperationsMock.lookup(TEMP_DN);
+        ldapOperationsControl.setThrowable(new NameNotFoundException(
+                "not found"));
+        ldapOperationsMock.unbind(DN);
+
+        replay();
+        journal.recover(ldapOperationsMock);
+        verify();
+
+        assertEquals(0, journal.getIncompleteTransactionCount());
+        journal.destroy();
+
+        journal = openJournal();
+        assertEquals(0, journal.getIncompleteTransactionCount());
+        journal.destroy();
+    }
+
+    public void testRecover_BindNotPerformedIsNotUndone() throws Exception {
+        TransactionJournal journal = openJournal();
+        TransactionJournal.Transaction transaction = journal.begin();
+        transaction.operationStarted(new JournaledOperation(
+                JournaledOperation.BIND, DN, null, null));
+        journal.destroy();
+
+        journal = openJournal();
+
+        replay();
+        journal.recover(ldapOperationsMock);
+        verify();
+
+        journal.destroy();
+    }
+
+    public void testRecover_InterruptedRebindIsRolledBack() throws Exception {
+        TransactionJournal journal = openJournal();
+        TransactionJournal.Transaction transaction = journal.begin();
+        transaction.operationStarted(new JournaledOperation(
+                JournaledOperation.REBIND, DN, TEMP_DN, null));
+        journal.destroy();
+
+        journal = openJournal();
+
+        ldapOperationsControl.expectAndReturn(ldapOperationsMock
+                .lookup(TEMP_DN), new Object());
+        ldapOperationsMock.unbind(DN);
+        ldapOperationsMock.rename(TEMP_DN, DN);
+
+        replay();
+        journal.recover(ldapOperationsMock);
+        verify();
+
+        journal.destroy();
+    }
+
+    public void testRecover_InterruptedCommitIsCompleted() throws Exception {
+        TransactionJournal journal = openJournal();
+        TransactionJournal.Transaction transaction = journal.begin();
+        JournaledOperation operation = new JournaledOperation(
+                JournaledOperation.REBIND, DN, TEMP_DN, null);
+        int sequence = transaction.operationStarted(operation);
+        transaction.operationPerformed(operation, sequence);
+        transaction.committing();
+        journal.destroy();
+
+        journal = openJournal();
+
+        ldapOperationsMock.unbind(TEMP_DN);
+        ldapOperationsControl.setThrowable(new NameNotFoundException(
+                "not found"));
+
+        replay();
+        journal.recover(ldapOperationsMock);
+        verify();
+
+        journal.destroy();
+    }
+
+    public void testRecover_FailedTransactionIsRetained() throws Exception {
+        TransactionJournal journal = openJournal();
+        TransactionJournal.Transaction transaction = journal.begin();
+        transaction.operationStarted(new JournaledOperation(
+                JournaledOperation.UNBIND, DN, TEMP_DN, null));
+        journal.destroy();
+
+        journal = openJournal();
+
+        ldapOperationsControl.expectAndReturn(ldapOperationsMock
+                .lookup(TEMP_DN), new Object());
+        ldapOperationsMock.rename(TEMP_DN, DN);
+        ldapOperationsControl.setThrowable(new RuntimeException(
+                "server down"));
+
+        replay();
+        journal.recover(ldapOperationsMock);
+        verify();
+
+        journal.destroy();
+
+        journal = openJournal();
+        assertEquals(1, journal.getIncompleteTransactionCount());
+        journal.destroy();
+    }
+
+    public void testFailedRollbackIsNotRecovered() throws Exception {
+        TransactionJournal journal = openJournal();
+        TransactionJournal.Transaction transaction = journal.begin();
+        JournaledOperation operation = new JournaledOperation(
+                JournaledOperation.BIND, DN, null, null);
+        int sequence = transaction.operationStarted(operation);
+        transaction.operationPerformed(operation, sequence);
+
+        MockControl operationManagerControl = MockControl
+                .createControl(CompensatingTransactionOperationManager.class);
+        CompensatingTransactionOperationManager operationManagerMock = (CompensatingTransactionOperationManager) operationManagerControl
+                .getMock();
+        operationManagerMock.rollback();
+        operationManagerControl.setThrowable(new TransactionSystemException(
+                "rollback failed"));
+        operationManagerControl.replay();
+
+        DirContextHolder holder = new DirContextHolder(operationManagerMock,
+                null);
+        holder.setJournalTransaction(transaction);
+        DefaultTransactionStatus status = new DefaultTransactionStatus(
+                new CompensatingTransactionObject(holder), true, false, false,
+                false, null);
+        try {
+            new ContextSourceTransactionManagerDelegate().doRollback(status);
+            fail("TransactionSystemException expected");
+        } catch (TransactionSystemException expected) {
+            assertTrue(true);
+        }
+        operationManagerControl.verify();
+        journal.destroy();
+
+        // The failed rollback must not be replayed on top of later changes
+        journal = openJournal();
+        assertEquals(0, journal.getIncompleteTransactionCount());
+        journal.destroy();
+
+        assertEquals(1, directory.list().length);
+    }
+
+    public void testOpen_IncompleteRecordIsIgnored() throws Exception {
+        TransactionJournal journal = openJournal();
+        TransactionJournal.Transaction transaction = journal.begin();
+        transaction.operationStarted(new JournaledOperation(
+                JournaledOperation.BIND, DN, null, null));
+        journal.destroy();
+
+        File segment = directory.listFiles()[0];
+        FileOutputStream out = new FileOutputStream(segment, true);
+        out.write(new byte[] { 0, 0, 0, 100, 1, 2, 3 });
+        out.close();
+
+        journal = openJournal();
+        assertEquals(1, journal.getIncompleteTransactionCount());
+        journal.destroy();
+    }
+
+    public void testSegmentsOfCompletedTransactionsAreDeleted()
+            throws Exception {
+        TransactionJournal journal = new TransactionJournal();
+        journal.setDirectory(directory);
+        journal.setMaxSegmentSize(100);
+        journal.afterPropertiesSet();
+
+        TransactionJournal.Transaction active = journal.begin();
+        active.operationStarted(new JournaledOperation(
+                JournaledOperation.BIND, DN, null, null));
+
+        for (int i = 0; i < 20; i++) {
+            TransactionJournal.Transaction transaction = journal.begin();
+            JournaledOperation operation = new JournaledOperation(
+                    JournaledOperation.BIND, DN, null, null);
+            int sequence = transaction.operationStarted(operation);
+            transaction.operationPerformed(operation, sequence);
+            transaction.completed();
+        }
+        // The segment of the active transaction must be kept
+        assertTrue(directory.list().length > 1);
+
+        active.completed();
+        assertEquals(1, directory.list().length);
+        journal.destroy();
+    }
+
+    public void testJournaledOperationRoundTrip() throws IOException {
+        ModificationItem[] mods = new ModificationItem[] { new ModificationItem(
+                DirContext.REPLACE_ATTRIBUTE, new BasicAttribute("cn",
+                        "john doe")) };
+        JournaledOperation operation = new JournaledOperation(
+                JournaledOperation.MODIFY_ATTRIBUTES, DN, null, mods);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        operation.writeTo(out);
+        out.close();
+
+        JournaledOperation result = JournaledOperation
+                .readFrom(new DataInputStream(new ByteArrayInputStream(bytes
+                        .toByteArray())));
+
+        assertEquals(JournaledOperation.MODIFY_ATTRIBUTES, result.getType());
+        assertEquals(DN, result.getDn());
+        assertNull(result.getOtherDn());
+        assertEquals(1, result.getCompensatingModifications().length);
+        assertEquals(mods[0].toString(), result
+                .getCompensatingModifications()[0].toString());
+    }
+}
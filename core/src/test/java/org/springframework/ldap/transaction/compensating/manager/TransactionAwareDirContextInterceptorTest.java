@@ -0,0 +1,131 @@
+/*
+ * Copyright 2005-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.ldap.transaction.compensating.manager;
+
+import javax.naming.NamingException;
+import javax.naming.directory.DirContext;
+
+import junit.framework.TestCase;
+
+import org.easymock.MockControl;
+import org.springframework.ldap.core.ContextSource;
+import org.springframework.ldap.core.DistinguishedName;
+import org.springframework.transaction.compensating.CompensatingTransactionOperationManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+public class TransactionAwareDirContextInterceptorTest extends TestCase {
+
+    private MockControl contextSourceControl;
+
+    private ContextSource contextSourceMock;
+
+    private MockControl dirContextControl;
+
+    private DirContext dirContextMock;
+
+    private MockControl operationManagerControl;
+
+    private CompensatingTransactionOperationManager operationManagerMock;
+
+    private TransactionAwareDirContextInterceptor tested;
+
+    protected void setUp() throws Exception {
+        dirContextControl = MockControl.createControl(DirContext.class);
+        dirContextMock = (DirContext) dirContextControl.getMock();
+
+        contextSourceControl = MockControl.createControl(ContextSource.class);
+        contextSourceMock = (ContextSource) contextSourceControl.getMock();
+
+        operationManagerControl = MockControl
+                .createControl(CompensatingTransactionOperationManager.class);
+        operationManagerMock = (CompensatingTransactionOperationManager) operationManagerControl
+                .getMock();
+
+        tested = new TransactionAwareDirContextInterceptor(contextSourceMock);
+    }
+
+    protected void tearDown() throws Exception {
+        if (TransactionSynchronizationManager.hasResource(contextSourceMock)) {
+            TransactionSynchronizationManager.unbindResource(contextSourceMock);
+        }
+
+        dirContextControl = null;
+        dirContextMock = null;
+
+        contextSourceControl = null;
+        contextSourceMock = null;
+
+        operationManagerControl = null;
+        operationManagerMock = null;
+
+        tested = null;
+    }
+
+    protected void replay() {
+        dirContextControl.replay();
+        contextSourceControl.replay();
+        operationManagerControl.replay();
+    }
+
+    protected void verify() {
+        dirContextControl.verify();
+        contextSourceControl.verify();
+        operationManagerControl.verify();
+    }
+
+    public void testClose_NoTransaction() throws NamingException {
+        dirContextMock.close();
+
+        replay();
+        tested.close(dirContextMock);
+        verify();
+    }
+
+    public void testClose_ActiveTransaction() throws NamingException {
+        TransactionSynchronizationManager.bindResource(contextSourceMock,
+                new DirContextHolder(operationManagerMock, dirContextMock));
+
+        // Context should not be closed.
+
+        replay();
+        tested.close(dirContextMock);
+        verify();
+    }
+
+    public void testPerformWriteOperation_NoTransaction() {
+        replay();
+        boolean result = tested.performWriteOperation(dirContextMock,
+                "unbind", new Object[] { new DistinguishedName("cn=john doe") });
+        verify();
+
+        assertFalse(result);
+    }
+
+    public void testPerformWriteOperation_ActiveTransaction() {
+        TransactionSynchronizationManager.bindResource(contextSourceMock,
+                new DirContextHolder(operationManagerMock, dirContextMock));
+
+        Object[] args = new Object[] { new DistinguishedName("cn=john doe") };
+        operationManagerMock.performOperation(dirContextMock, "unbind", args);
+
+        replay();
+        boolean result = tested.performWriteOperation(dirContextMock,
+                "unbind", args);
+        verify();
+
+        assertTrue(result);
+    }
+}
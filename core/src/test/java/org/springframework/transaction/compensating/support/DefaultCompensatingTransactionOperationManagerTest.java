@@ -15,12 +15,14 @@
  */
 package org.springframework.transaction.compensating.support;
 
+import java.util.Collections;
 import java.util.Stack;
 
 import junit.framework.TestCase;
 
 import org.easymock.MockControl;
 import org.springframework.transaction.TransactionSystemException;
+import org.springframework.transaction.compensating.CompensatingTransactionCompletionStrategy;
 import org.springframework.transaction.compensating.CompensatingTransactionOperationExecutor;
 import org.springframework.transaction.compensating.CompensatingTransactionOperationFactory;
 import org.springframework.transaction.compensating.CompensatingTransactionOperationRecorder;
@@ -165,4 +167,48 @@ public class DefaultCompensatingTransactionOperationManagerTest extends
         }
         verify();
     }
+
+    public void testRollback_CompletionStrategy() {
+        MockControl completionStrategyControl = MockControl
+                .createControl(CompensatingTransactionCompletionStrategy.class);
+        CompensatingTransactionCompletionStrategy completionStrategyMock = (CompensatingTransactionCompletionStrategy) completionStrategyControl
+                .getMock();
+
+        DefaultCompensatingTransactionOperationManager tested = new DefaultCompensatingTransactionOperationManager(
+                operationFactoryMock);
+        tested.setCompletionStrategy(completionStrategyMock);
+        tested.getOperationExecutors().push(operationExecutorMock);
+
+        completionStrategyMock.rollback(Collections
+                .singletonList(operationExecutorMock));
+
+        replay();
+        completionStrategyControl.replay();
+        tested.rollback();
+        verify();
+        completionStrategyControl.verify();
+
+        assertTrue(tested.getOperationExecutors().isEmpty());
+    }
+
+    public void testCommit_CompletionStrategy() {
+        MockControl completionStrategyControl = MockControl
+                .createControl(CompensatingTransactionCompletionStrategy.class);
+        CompensatingTransactionCompletionStrategy completionStrategyMock = (CompensatingTransactionCompletionStrategy) completionStrategyControl
+                .getMock();
+
+        DefaultCompensatingTransactionOperationManager tested = new DefaultCompensatingTransactionOperationManager(
+                operationFactoryMock);
+        tested.setCompletionStrategy(completionStrategyMock);
+        tested.getOperationExecutors().push(operationExecutorMock);
+
+        completionStrategyMock.commit(Collections
+                .singletonList(operationExecutorMock));
+
+        replay();
+        completionStrategyControl.replay();
+        tested.commit();
+        verify();
+        completionStrategyControl.verify();
+    }
 }
@@ -79,6 +79,9 @@ import org.springframework.util.Assert;
  * which controls whether or not the attribute IDs of the object are case sensitive.  The {@link #caseInsensitive caseInsensitive}
  * setting of the {@link LdifParser LdifParser} is passed to the constructor of any {@link javax.naming.directory.Attributes Attributes} created. The
  * default value for this setting is true so that case insensitive objects are created.
+ * <p>
+ * For large resources, {@link SinglePassLdifParser SinglePassLdifParser} parses the same records considerably faster,
+ * at the cost of not supporting custom separator and attribute validation policies.
  * 
  * @author Keith Barlow
  *
@@ -280,8 +283,8 @@ public class LdifParser implements Parser, InitializingBean {
 					
 				case Continuation:
 					log.trace("...appending line to buffer.");
-					//Append line to buffer.
-					builder.append(line.replaceFirst(" ", ""));
+					//Append line to buffer, without the leading space.
+					builder.append(line, 1, line.length());
 					
 					break;					
 				
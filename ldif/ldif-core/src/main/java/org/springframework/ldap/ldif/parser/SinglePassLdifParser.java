@@ -0,0 +1,549 @@
+/*
+ * Copyright 2005-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.ldap.ldif.parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UnsupportedEncodingException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.naming.NamingException;
+import javax.naming.directory.Attribute;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.ldap.core.DistinguishedName;
+import org.springframework.ldap.core.LdapAttribute;
+import org.springframework.ldap.core.LdapAttributes;
+import org.springframework.ldap.ldif.InvalidAttributeFormatException;
+import org.springframework.ldap.ldif.InvalidRecordFormatException;
+import org.springframework.ldap.schema.DefaultSchemaSpecification;
+import org.springframework.ldap.schema.Specification;
+import org.springframework.util.Assert;
+
+/**
+ * A {@link Parser Parser} for large LDIF resources that reads the resource in a single pass, without the use
+ * of regular expressions.
+ * <p>
+ * Where {@link LdifParser LdifParser} reads the resource line by line, classifies each line with a 
+ * {@link org.springframework.ldap.ldif.support.SeparatorPolicy SeparatorPolicy} and validates each attribute
+ * against the RFC2849 grammar with an {@link org.springframework.ldap.ldif.support.AttributeValidationPolicy 
+ * AttributeValidationPolicy}, this parser scans the characters of the resource directly: folded lines are joined
+ * as they are read and each attribute is split into its type, options and value by a single scan of its characters.
+ * Plain, base64 encoded (<code>::</code>) and URL (<code>:&lt;</code>) values and attribute options are supported,
+ * and values are checked to be safe strings, valid base64 or valid URIs respectively.
+ * <p>
+ * Records are produced exactly as by {@link LdifParser LdifParser}: version identifiers, comments and anything 
+ * outside of a record are ignored, change records are skipped with a warning and a <code>null</code> return, and
+ * every record is validated by the {@link Specification Specification} set. The separator and attribute validation
+ * policies can not be replaced. If a record contains an invalid attribute, the rest of the record is skipped before
+ * the {@link InvalidAttributeFormatException InvalidAttributeFormatException} is thrown, so that parsing may continue
+ * with the next record.
+ * <p>
+ * Base64 encoded DNs are decoded as UTF-8, as prescribed by RFC2849.
+ * 
+ * @author agent
+ * @since 1.3.2
+ */
+public class SinglePassLdifParser implements Parser, InitializingBean {
+
+	private static final Log log = LogFactory.getLog(SinglePassLdifParser.class);
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+	
+	private static final String DN = "dn";
+	
+	private static final String NEW_RECORD = "dn:";
+
+	private static final String CONTROL = "control:";
+	
+	private static final String CHANGE_TYPE = "changetype:";
+	
+	/**
+	 * Value of each base64 character, -1 for characters that are not allowed.
+	 */
+	private static final byte[] BASE64_VALUES = new byte[128];
+	
+	static {
+		Arrays.fill(BASE64_VALUES, (byte) -1);
+		String characters = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+		for (int i = 0; i < characters.length(); i++) {
+			BASE64_VALUES[characters.charAt(i)] = (byte) i;
+		}
+	}
+	
+	/**
+	 * The resource to parse.
+	 */
+	private Resource resource;
+	
+	/**
+	 * The reader of the resource.
+	 */
+	private Reader reader;
+	
+	/**
+	 * Characters read from the resource, valid between position and limit.
+	 */
+	private final char[] buffer = new char[BUFFER_SIZE];
+	
+	private int position;
+	
+	private int limit;
+	
+	/**
+	 * The current line, with any folded lines joined.
+	 */
+	private final StringBuilder line = new StringBuilder(256);
+	
+	/**
+	 * The RecordSpecification for validating records produced.
+	 */
+	private Specification<LdapAttributes> specification = new DefaultSchemaSpecification();
+	
+	/**
+	 * This setting is used to control the case sensitivity of LdapAttribute objects returned by the parser.
+	 */
+	private boolean caseInsensitive = true;
+	
+	/**
+	 * Whether the values of attributes created should be ordered.
+	 */
+	private boolean ordered = false;
+	
+	/**
+	 * Default constructor.
+	 */
+	public SinglePassLdifParser() {
+		
+	}
+	
+	/**
+	 * Creates a SinglePassLdifParser with the indicated case sensitivity setting.
+	 * 
+	 * @param caseInsensitive Case sensitivity setting for LdapAttributes objects returned by the parser.
+	 */
+	public SinglePassLdifParser(boolean caseInsensitive) {
+		this.caseInsensitive = caseInsensitive;
+	}
+	
+	/**
+	 * Creates a SinglePassLdifParser for the specified resource with the provided case sensitivity setting.
+	 * 
+	 * @param resource The resource to parse.
+	 * @param caseInsensitive Case sensitivity setting for LdapAttributes objects returned by the parser.
+	 */
+	public SinglePassLdifParser(Resource resource, boolean caseInsensitive) {
+		this.resource = resource;
+		this.caseInsensitive = caseInsensitive;
+	}
+	
+	/**
+	 * Convenience constructor for resource specification.
+	 * 
+	 * @param resource The resource to parse.
+	 */
+	public SinglePassLdifParser(Resource resource) {
+		this.resource = resource;
+	}
+	
+	/**
+	 * Convenience constructor: accepts a File object.
+	 * 
+	 * @param file The file to parse.
+	 */
+	public SinglePassLdifParser(File file) {
+		this.resource = new FileSystemResource(file);
+	}
+	
+	/**
+	 * Policy object for enforcing rules to acceptable LDAP objects.
+	 * 
+	 * This policy may be used to enforce schema restrictions.
+	 * @param specification
+	 */
+	public void setRecordSpecification(Specification<LdapAttributes> specification) {
+		this.specification = specification;
+	}
+	
+	/**
+	 * Set whether the values of the attributes created should be ordered, as with 
+	 * {@link org.springframework.ldap.ldif.support.DefaultAttributeValidationPolicy#setOrdered(boolean)}.
+	 * 
+	 * @param ordered Ordering setting for LdapAttribute objects returned by the parser.
+	 */
+	public void setOrdered(boolean ordered) {
+		this.ordered = ordered;
+	}
+
+	public void setResource(Resource resource) {
+		this.resource = resource;
+	}
+
+	public void setCaseInsensitive(boolean caseInsensitive) {
+		this.caseInsensitive = caseInsensitive;
+	}
+	
+	public void open() throws IOException {
+		Assert.notNull(resource, "Resource must be set.");
+		reader = new InputStreamReader(resource.getInputStream());
+		position = 0;
+		limit = 0;
+	}
+	
+	public boolean isReady() throws IOException {
+		return position < limit || reader.ready();
+	}
+	
+	public void close() throws IOException {
+		if (reader != null) {
+			reader.close();
+		}
+	}
+	
+	/**
+	 * Resets the parser to the start of the resource by opening it again.
+	 */
+	public void reset() throws IOException {
+		Assert.notNull(reader, "A reader has not been obtained.");
+		close();
+		open();
+	}
+	
+	public boolean hasMoreRecords() throws IOException {
+		return isReady();
+	}
+	
+	public LdapAttributes getRecord() throws IOException {
+		Assert.notNull(reader, "A reader must be obtained: parser not open.");
+		
+		//Skip anything up to the start of the next record: version identifiers, comments and empty lines.
+		do {
+			if (!readLine()) {
+				log.debug("End of resource reached.");
+				return null;
+			}
+		} while (!startsWith(NEW_RECORD));
+		
+		LdapAttributes record = new LdapAttributes(caseInsensitive);
+		boolean changeRecord = false;
+		RuntimeException failure = null;
+		
+		//Read up to the end of the record even if it is to be discarded.
+		do {
+			if (changeRecord || failure != null || startsWith("#")) {
+				continue;
+			}
+			
+			if (startsWith(CONTROL) || startsWith(CHANGE_TYPE)) {
+				log.warn("LDIF change records have no implementation: record will be ignored.");
+				changeRecord = true;
+				continue;
+			}
+			
+			try {
+				addAttribute(record);
+			} catch (RuntimeException e) {
+				failure = e;
+			}
+		} while (readLine() && line.length() > 0);
+		
+		if (failure != null) {
+			throw failure;
+		}
+		
+		if (changeRecord) {
+			return null;
+		}
+		
+		try {
+			if (specification.isSatisfiedBy(record)) {
+				if (log.isDebugEnabled()) {
+					log.debug("record parsed:\n" + record);
+				}
+				return record;
+				
+			} else {
+				throw new InvalidRecordFormatException("Record [dn: " + record.getDN() + "] does not conform to specification.");
+			}
+		} catch (NamingException e) {
+			log.error(e);
+			return null;
+		}
+	}
+
+	/**
+	 * Read the next line into the line buffer, joining any folded lines. 
+	 * 
+	 * @return false if the end of the resource has been reached.
+	 */
+	private boolean readLine() throws IOException {
+		line.setLength(0);
+		if (!readPhysicalLine()) {
+			return false;
+		}
+		
+		//Lines starting with a space continue the previous one.
+		while (line.length() > 0 && peek() == ' ') {
+			position++;
+			readPhysicalLine();
+		}
+		return true;
+	}
+	
+	/**
+	 * Append the characters up to the next line separator to the line buffer.
+	 * 
+	 * @return false if the end of the resource has been reached.
+	 */
+	private boolean readPhysicalLine() throws IOException {
+		boolean read = false;
+		while (position < limit || fill()) {
+			read = true;
+			int start = position;
+			while (position < limit) {
+				char c = buffer[position];
+				if (c == '\n' || c == '\r') {
+					line.append(buffer, start, position - start);
+					position++;
+					if (c == '\r' && (position < limit || fill()) && buffer[position] == '\n') {
+						position++;
+					}
+					return true;
+				}
+				position++;
+			}
+			line.append(buffer, start, position - start);
+		}
+		return read;
+	}
+	
+	private int peek() throws IOException {
+		if (position < limit || fill()) {
+			return buffer[position];
+		}
+		return -1;
+	}
+	
+	private boolean fill() throws IOException {
+		position = 0;
+		limit = Math.max(reader.read(buffer, 0, buffer.length), 0);
+		return limit > 0;
+	}
+	
+	private boolean startsWith(String prefix) {
+		int length = prefix.length();
+		if (line.length() < length) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (line.charAt(i) != prefix.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Parse the attribute in the line buffer and add it to the record.
+	 */
+	private void addAttribute(LdapAttributes record) {
+		int length = line.length();
+		
+		//Attribute type.
+		int typeEnd = 0;
+		while (typeEnd < length && line.charAt(typeEnd) != ';' && line.charAt(typeEnd) != ':') {
+			typeEnd++;
+		}
+		if (typeEnd == length || !isAttributeType(typeEnd)) {
+			throw invalidAttribute();
+		}
+		String id = line.substring(0, typeEnd);
+		
+		//Options.
+		List<String> options = null;
+		int separator = typeEnd;
+		while (line.charAt(separator) == ';') {
+			int optionEnd = separator + 1;
+			while (optionEnd < length && isOptionChar(line.charAt(optionEnd))) {
+				optionEnd++;
+			}
+			if (optionEnd == separator + 1 || optionEnd == length) {
+				throw invalidAttribute();
+			}
+			if (options == null) {
+				options = new ArrayList<String>(2);
+			}
+			options.add(line.substring(separator + 1, optionEnd));
+			separator = optionEnd;
+		}
+		if (line.charAt(separator) != ':') {
+			throw invalidAttribute();
+		}
+		
+		//Value.
+		int valueStart = separator + 1;
+		Object value;
+		if (valueStart < length && line.charAt(valueStart) == ':') {
+			value = decodeBase64(skipFill(valueStart + 1));
+		} else if (valueStart < length && line.charAt(valueStart) == '<') {
+			value = parseUri(skipFill(valueStart + 1));
+		} else {
+			value = parseSafeString(skipFill(valueStart));
+		}
+		
+		if (id.equalsIgnoreCase(DN)) {
+			record.setDN(new DistinguishedName(toDnString(value)));
+			
+		} else {
+			Attribute attribute = record.get(id);
+			if (attribute != null) {
+				attribute.add(value);
+			} else if (options == null) {
+				record.put(new LdapAttribute(id, value, ordered));
+			} else {
+				record.put(new LdapAttribute(id, value, options, ordered));
+			}
+		}
+	}
+	
+	/**
+	 * An attribute type is either a name, starting with a letter or digit and consisting of letters, digits and 
+	 * hyphens, or a numeric OID.
+	 */
+	private boolean isAttributeType(int end) {
+		if (end == 0 || !isAlphanumeric(line.charAt(0))) {
+			return false;
+		}
+		boolean numeric = true;
+		boolean name = true;
+		for (int i = 0; i < end; i++) {
+			char c = line.charAt(i);
+			numeric &= (c >= '0' && c <= '9') || c == '.';
+			name &= isOptionChar(c);
+		}
+		return name || numeric;
+	}
+	
+	private static boolean isAlphanumeric(char c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
+	}
+	
+	private static boolean isOptionChar(char c) {
+		return isAlphanumeric(c) || c == '-';
+	}
+	
+	private int skipFill(int index) {
+		int length = line.length();
+		while (index < length && line.charAt(index) == ' ') {
+			index++;
+		}
+		return index;
+	}
+	
+	/**
+	 * A safe string consists of ASCII characters other than NUL, LF and CR, and may not start with a space, colon or
+	 * less-than sign. An empty value is returned as null.
+	 */
+	private String parseSafeString(int start) {
+		int length = line.length();
+		if (start == length) {
+			return null;
+		}
+		char first = line.charAt(start);
+		if (first == ':' || first == '<') {
+			throw invalidAttribute();
+		}
+		for (int i = start; i < length; i++) {
+			char c = line.charAt(i);
+			if (c == 0 || c > 127) {
+				throw invalidAttribute();
+			}
+		}
+		return line.substring(start);
+	}
+	
+	private byte[] decodeBase64(int start) {
+		int end = line.length();
+		int padding = 0;
+		while (end > start && padding < 2 && line.charAt(end - 1) == '=') {
+			end--;
+			padding++;
+		}
+		
+		byte[] result = new byte[(end - start) * 3 / 4];
+		int bits = 0;
+		int bitCount = 0;
+		int index = 0;
+		for (int i = start; i < end; i++) {
+			char c = line.charAt(i);
+			int value = c < 128 ? BASE64_VALUES[c] : -1;
+			if (value < 0) {
+				throw invalidAttribute();
+			}
+			bits = (bits << 6) | value;
+			bitCount += 6;
+			if (bitCount >= 8) {
+				bitCount -= 8;
+				result[index++] = (byte) (bits >> bitCount);
+			}
+		}
+		return result;
+	}
+	
+	private URI parseUri(int start) {
+		if (start == line.length()) {
+			throw invalidAttribute();
+		}
+		try {
+			return new URI(line.substring(start));
+		} catch (URISyntaxException e) {
+			throw new InvalidAttributeFormatException(e);
+		}
+	}
+	
+	private String toDnString(Object value) {
+		if (value instanceof byte[]) {
+			try {
+				return new String((byte[]) value, "UTF-8");
+			} catch (UnsupportedEncodingException e) {
+				throw new InvalidAttributeFormatException(e);
+			}
+		} else if (value instanceof String) {
+			return (String) value;
+		}
+		throw invalidAttribute();
+	}
+	
+	private InvalidAttributeFormatException invalidAttribute() {
+		return new InvalidAttributeFormatException("Not a valid attribute: [" + line + "]");
+	}
+
+	public void afterPropertiesSet() throws Exception {
+		Assert.notNull(resource, "A resource to parse is required.");
+		Assert.isTrue(resource.exists(), resource.getDescription() + ": resource does not exist!");
+		Assert.isTrue(resource.isReadable(), "Resource is not readable.");
+	}
+}
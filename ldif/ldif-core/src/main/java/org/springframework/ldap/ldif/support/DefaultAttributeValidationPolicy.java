@@ -295,7 +295,9 @@ public class DefaultAttributeValidationPolicy implements AttributeValidationPoli
 	 * or the attribute cannot be parsed.
 	 */
 	public Attribute parse(String buffer) {
-		log.trace("Parsing --> [" + buffer + "]");
+		if (log.isTraceEnabled()) {
+			log.trace("Parsing --> [" + buffer + "]");
+		}
 		
 		Matcher matcher = ATTRIBUTE_PATTERN.matcher(buffer);		
 		if (matcher.matches()) {
@@ -15,6 +15,8 @@
  */
 package org.springframework.ldap.ldif.support;
 
+import java.util.regex.Pattern;
+
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -50,6 +52,10 @@ public class SeparatorPolicy {
 	
 	private static final String NewRecord = "^dn:.*$";
 
+	private static final Pattern VERSION_IDENTIFIER_PATTERN = Pattern.compile(VERSION_IDENTIFIER);
+	
+	private static final Pattern NEW_RECORD_PATTERN = Pattern.compile(NewRecord);
+
 	private boolean record = false;
 	
 	private boolean skip = false;
@@ -67,7 +73,9 @@ public class SeparatorPolicy {
 	 * 
 	 */
 	public LineIdentifier assess(String line) {
-		log.trace("Assessing --> [" + line + "]");
+		if (log.isTraceEnabled()) {
+			log.trace("Assessing --> [" + line + "]");
+		}
 		
 		if (record) {
 			if (StringUtils.isEmpty(line)) {
@@ -99,11 +107,11 @@ public class SeparatorPolicy {
 				}
 			}
 		} else {
-			if (StringUtils.isNotEmpty(line) && line.matches(VERSION_IDENTIFIER) && !skip) {
+			if (StringUtils.isNotEmpty(line) && VERSION_IDENTIFIER_PATTERN.matcher(line).matches() && !skip) {
 				//Version Identifiers are ignored by parser.
 				return LineIdentifier.VersionIdentifier;		
 				
-			} else if (StringUtils.isNotEmpty(line) && line.matches(NewRecord)) {
+			} else if (StringUtils.isNotEmpty(line) && NEW_RECORD_PATTERN.matcher(line).matches()) {
 				record = true;
 				skip = false;
 				return LineIdentifier.NewRecord;
@@ -0,0 +1,141 @@
+package org.springframework.ldap.ldif;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.naming.NamingException;
+
+import org.junit.Test;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.ldap.core.DistinguishedName;
+import org.springframework.ldap.core.LdapAttribute;
+import org.springframework.ldap.core.LdapAttributes;
+import org.springframework.ldap.ldif.parser.SinglePassLdifParser;
+import org.springframework.ldap.schema.BasicSchemaSpecification;
+
+/**
+ * Unit test for SinglePassLdifParser.
+ * 
+ * Parses the same RFC2849 samples as {@link LdifParserTest} and verifies the values of the records produced, 
+ * followed by a number of cases not covered by the samples.
+ * 
+ * @author agent
+ */
+public class SinglePassLdifParserTest {
+
+	private static SinglePassLdifParser openParser(String ldif) throws IOException {
+		SinglePassLdifParser parser = new SinglePassLdifParser(new ByteArrayResource(ldif.getBytes("UTF-8")));
+		parser.open();
+		return parser;
+	}
+	
+	@Test
+	public void parseLdif() throws IOException, NamingException, URISyntaxException {
+		SinglePassLdifParser parser = new SinglePassLdifParser(new ClassPathResource("test.ldif"));
+		parser.setRecordSpecification(new BasicSchemaSpecification());
+		parser.open();
+		
+		List<LdapAttributes> records = new ArrayList<LdapAttributes>();
+		int failures = 0;
+		while (parser.hasMoreRecords()) {
+			try {
+				LdapAttributes record = parser.getRecord();
+				if (record != null) {
+					records.add(record);
+				}
+			} catch (InvalidAttributeFormatException e) {
+				failures++;
+			}
+		}
+		parser.close();
+		
+		//Example 5 contains an invalid attribute; the change records of examples 7 and 8 are skipped.
+		assertEquals(1, failures);
+		assertEquals(7, records.size());
+		
+		assertEquals(new DistinguishedName("cn=Barbara Jensen, ou=Product Development, dc=airius, dc=com"), 
+				records.get(0).getDN());
+		assertEquals(3, records.get(0).get("cn").size());
+		
+		assertEquals("Babs is a big sailing fan, and travels extensively in search of perfect sailing conditions.", 
+				records.get(2).get("description").get());
+		
+		String description = new String((byte[]) records.get(3).get("description").get(), "UTF-8");
+		assertTrue(description.startsWith("What a careful reader you are!"));
+		assertTrue(description.endsWith("you should really get out more."));
+		
+		assertEquals(new DistinguishedName("ou=\u55b6\u696d\u90e8,o=Airius"), records.get(4).getDN());
+		assertEquals(3, records.get(4).get("ou").size());
+		
+		assertEquals(new URI("file:///usr/local/directory/photos/hjensen.jpg"), 
+				records.get(6).get("jpegphoto").get());
+	}
+	
+	@Test
+	public void parseFoldedLineWithOptions() throws IOException, NamingException {
+		SinglePassLdifParser parser = openParser("version: 1\r\n" 
+				+ "dn: cn=John Doe,dc=example,dc=com\r\n" 
+				+ "objectclass: person\r\n" 
+				+ "cn;lang-en: John\r\n" 
+				+ "  Doe\r\n" 
+				+ "\r\n");
+		
+		LdapAttributes record = parser.getRecord();
+		assertEquals(new DistinguishedName("cn=John Doe,dc=example,dc=com"), record.getDN());
+		LdapAttribute cn = (LdapAttribute) record.get("cn");
+		assertEquals("John Doe", cn.get());
+		assertTrue(cn.getOptions().contains("lang-en"));
+		
+		assertNull(parser.getRecord());
+		parser.close();
+	}
+	
+	@Test
+	public void invalidAttributeSkipsRestOfRecord() throws IOException {
+		SinglePassLdifParser parser = openParser("dn: cn=a,dc=example,dc=com\n" 
+				+ "bad attribute: x\n" 
+				+ "objectclass: top\n" 
+				+ "\n" 
+				+ "dn: cn=b,dc=example,dc=com\n" 
+				+ "objectclass: top\n");
+		
+		try {
+			parser.getRecord();
+			fail("InvalidAttributeFormatException expected");
+		} catch (InvalidAttributeFormatException expected) {
+			assertTrue(true);
+		}
+		
+		assertEquals(new DistinguishedName("cn=b,dc=example,dc=com"), parser.getRecord().getDN());
+		assertNull(parser.getRecord());
+		parser.close();
+	}
+	
+	@Test
+	public void invalidValues() throws IOException {
+		String[] lines = new String[] { "cn:: not base64!", "cn: caf\u00e9", "cn:<", "cn;: x", "-cn: x" };
+		for (int i = 0; i < lines.length; i++) {
+			SinglePassLdifParser parser = openParser("dn: cn=a,dc=example,dc=com\n" + lines[i] + "\n");
+			try {
+				parser.getRecord();
+				fail("InvalidAttributeFormatException expected for " + lines[i]);
+			} catch (InvalidAttributeFormatException expected) {
+				assertTrue(true);
+			}
+			parser.close();
+		}
+	}
+	
+	@Test
+	public void emptyResource() throws IOException {
+		SinglePassLdifParser parser = openParser("version: 1\n# Nothing here\n\n");
+		assertNull(parser.getRecord());
+		parser.close();
+	}
+}
@@ -0,0 +1,107 @@
+package org.springframework.ldap.odm.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The outcome of a bulk operation on an {@link OdmManager}.
+ * <p>
+ * A failure to process one entry does not abort the rest of the batch; each
+ * failure is recorded here together with the entry it relates to.
+ *
+ * @author agent
+ * @since 1.3.2
+ *
+ * @see OdmManager#createAll(java.util.Collection)
+ * @see OdmManager#updateAll(java.util.Collection)
+ * @see OdmManager#deleteAll(java.util.Collection)
+ */
+public final class BatchResult {
+    /**
+     * The failure to process a single entry of a batch.
+     */
+    public static final class Failure {
+        private final Object entry;
+        private final RuntimeException exception;
+
+        public Failure(Object entry, RuntimeException exception) {
+            this.entry=entry;
+            this.exception=exception;
+        }
+
+        /**
+         * @return The entry that could not be processed.
+         */
+        public Object getEntry() {
+            return entry;
+        }
+
+        /**
+         * @return The reason the entry could not be processed.
+         */
+        public RuntimeException getException() {
+            return exception;
+        }
+
+        /* (non-Javadoc)
+         * @see java.lang.Object#toString()
+         */
+        @Override
+        public String toString() {
+            return String.format("Failure(entry=%1$s, exception=%2$s)", entry, exception);
+        }
+    }
+
+    private final List<Object> succeeded=new ArrayList<Object>();
+
+    private final List<Failure> failures=new ArrayList<Failure>();
+
+    /**
+     * Record that an entry was successfully processed. This may be called concurrently.
+     *
+     * @param entry The entry.
+     */
+    public synchronized void addSuccess(Object entry) {
+        succeeded.add(entry);
+    }
+
+    /**
+     * Record that an entry could not be processed. This may be called concurrently.
+     *
+     * @param entry The entry.
+     * @param exception The reason the entry could not be processed.
+     */
+    public synchronized void addFailure(Object entry, RuntimeException exception) {
+        failures.add(new Failure(entry, exception));
+    }
+
+    /**
+     * @return The entries that were successfully processed.
+     */
+    public synchronized List<Object> getSucceeded() {
+        return Collections.unmodifiableList(new ArrayList<Object>(succeeded));
+    }
+
+    /**
+     * @return The entries that could not be processed, with the reason why.
+     */
+    public synchronized List<Failure> getFailures() {
+        return Collections.unmodifiableList(new ArrayList<Failure>(failures));
+    }
+
+    /**
+     * @return <code>true</code> if every entry in the batch was successfully processed.
+     */
+    public synchronized boolean isSuccessful() {
+        return failures.isEmpty();
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public synchronized String toString() {
+        return String.format("BatchResult(succeeded=%1$s, failures=%2$s)", succeeded.size(), failures);
+    }
+}
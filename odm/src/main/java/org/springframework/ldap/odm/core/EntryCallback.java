@@ -0,0 +1,21 @@
+package org.springframework.ldap.odm.core;
+
+/**
+ * Receives the entries found by a streaming search of an {@link OdmManager}, one at
+ * a time as they are read from the directory.
+ *
+ * @param <T> The Java type of the entries.
+ *
+ * @author agent
+ * @since 1.3.2
+ *
+ * @see OdmManager#searchPaged(Class, javax.naming.Name, String, javax.naming.directory.SearchControls, int, EntryCallback)
+ */
+public interface EntryCallback<T> {
+    /**
+     * Handle one entry. Any exception thrown aborts the search.
+     *
+     * @param entry The entry as read from the directory.
+     */
+    void handleEntry(T entry);
+}
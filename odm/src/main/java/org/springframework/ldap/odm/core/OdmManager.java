@@ -1,10 +1,13 @@
 package org.springframework.ldap.odm.core;
 
+import java.util.Collection;
 import java.util.List;
 
 import javax.naming.Name;
 import javax.naming.directory.SearchControls;
 
+import org.springframework.ldap.core.simple.ParameterizedCloseableIterator;
+
 /**
  * The OdmManager interface provides generic CRUD (create/read/update/delete) 
  * and searching operations against an LDAP directory.
@@ -61,6 +64,52 @@ public interface OdmManager {
      */
     void delete(Object entry);
 
+    /**
+     * Create each of the given entries in the LDAP directory.
+     * <p>
+     * A failure to create one entry does not prevent the remaining entries from 
+     * being created; the outcome for each entry is reported in the returned result.
+     * Entries are created in the order of iteration of <code>entries</code> unless 
+     * the implementation is configured to work in parallel, in which case parent 
+     * entries are still created before their children.
+     * 
+     * @param entries The entries to create, none of which may already exist in the directory.
+     * @return The outcome of the operation for each entry.
+     * 
+     * @exception org.springframework.ldap.NamingException if the batch could not be attempted at all.
+     * @since 1.3.2
+     */
+    BatchResult createAll(Collection<?> entries);
+
+    /**
+     * Update each of the given entries in the LDAP directory.
+     * <p>
+     * A failure to update one entry does not prevent the remaining entries from 
+     * being updated; the outcome for each entry is reported in the returned result.
+     * 
+     * @param entries The entries to update, all of which must already exist in the directory.
+     * @return The outcome of the operation for each entry.
+     * 
+     * @exception org.springframework.ldap.NamingException if the batch could not be attempted at all.
+     * @since 1.3.2
+     */
+    BatchResult updateAll(Collection<?> entries);
+
+    /**
+     * Delete each of the given entries from the LDAP directory.
+     * <p>
+     * A failure to delete one entry does not prevent the remaining entries from 
+     * being deleted; the outcome for each entry is reported in the returned result.
+     * When working in parallel, child entries are deleted before their parents.
+     * 
+     * @param entries The entries to delete, all of which must already exist in the directory.
+     * @return The outcome of the operation for each entry.
+     * 
+     * @exception org.springframework.ldap.NamingException if the batch could not be attempted at all.
+     * @since 1.3.2
+     */
+    BatchResult deleteAll(Collection<?> entries);
+
     /**
      * Find all entries in the LDAP directory of a given type.
      * 
@@ -80,6 +129,9 @@ public interface OdmManager {
      * <p>
      * Only those entries that both match the given search filter and 
      * are represented by the given Java class are returned
+     * <p>
+     * Unless returning attributes are set in <code>searchControls</code>, only the 
+     * attributes mapped by the Java class are requested from the directory.
      * 
      * @param <T> The Java type to return
      * @param clazz The Java type to return
@@ -94,4 +146,97 @@ public interface OdmManager {
      * @see <a href="http://www.rfc-editor.org/rfc/rfc4515.txt">LDAP: String Representation of Search Filters RFC.</a>
      */
     <T> List<T> search(Class<T> clazz, Name base, String filter, SearchControls searchControls);
-}
+
+    /**
+     * Search for entries in the LDAP directory, populating only the given fields of 
+     * the returned entries.
+     * <p>
+     * Only the LDAP attributes corresponding to the given fields are requested from 
+     * the directory, which may considerably reduce the amount of data transferred. 
+     * All other fields are left as set by the zero argument constructor of the 
+     * Java class, or empty if multi-valued. Entries read in this way should 
+     * consequently not be passed to {@link #update(Object)}, as that would remove 
+     * the attributes that were not read.
+     * 
+     * @param <T> The Java type to return
+     * @param clazz The Java type to return
+     * @param base The root of the sub-tree at which to begin the search.
+     * @param filter An LDAP search filter.   
+     * @param searchControls The scope of the search.
+     * @param fieldNames The names of the Java fields to populate. The field annotated 
+     * <code>@Id</code> is always populated. If <code>null</code> all fields are populated.
+     * @return All matching entries.
+     * 
+     * @exception org.springframework.ldap.NamingException on error.
+     * @since 1.3.2
+     */
+    <T> List<T> search(Class<T> clazz, Name base, String filter, SearchControls searchControls, String[] fieldNames);
+
+    /**
+     * Search for entries in the LDAP directory, returning an iterator which reads and 
+     * converts each entry as it is asked for rather than all of them up front.
+     * <p>
+     * The iterator holds on to a connection to the directory until it has been 
+     * exhausted or is closed, so it must always be closed if not fully iterated. 
+     * Nothing is retained for the entries returned, so {@link #update(Object)} reads
+     * an entry from the directory again before updating it.
+     * 
+     * @param <T> The Java type to return
+     * @param clazz The Java type to return
+     * @param base The root of the sub-tree at which to begin the search.
+     * @param filter An LDAP search filter, may be <code>null</code> to find all entries.   
+     * @param searchControls The scope of the search.
+     * @return An iterator over all matching entries.
+     * 
+     * @exception org.springframework.ldap.NamingException on error.
+     * @since 1.3.2
+     * 
+     * @see #search(Class, Name, String, SearchControls)
+     */
+    <T> ParameterizedCloseableIterator<T> searchForIterator(Class<T> clazz, Name base, String filter, 
+            SearchControls searchControls);
+
+    /**
+     * Search for entries in the LDAP directory a page at a time using the paged results 
+     * control, passing each entry to a callback as it is read.
+     * <p>
+     * As no more than a page of entries is held at once, this can be used to process
+     * any number of entries, including more than the server size limit allows a single 
+     * search to return. The directory must support the paged results control. 
+     * Nothing is retained for the entries read, so {@link #update(Object)} reads an 
+     * entry from the directory again before updating it.
+     * 
+     * @param <T> The Java type to return
+     * @param clazz The Java type to return
+     * @param base The root of the sub-tree at which to begin the search.
+     * @param filter An LDAP search filter, may be <code>null</code> to find all entries.   
+     * @param searchControls The scope of the search.
+     * @param pageSize The number of entries to request from the directory at a time.
+     * @param callback Called for each matching entry.
+     * 
+     * @exception org.springframework.ldap.NamingException on error.
+     * @since 1.3.2
+     * 
+     * @see #search(Class, Name, String, SearchControls)
+     */
+    <T> void searchPaged(Class<T> clazz, Name base, String filter, SearchControls searchControls, int pageSize,
+            EntryCallback<T> callback);
+
+    /**
+     * Find all entries in the LDAP directory of a given type a page at a time, passing 
+     * each entry to a callback as it is read. See 
+     * {@link #searchPaged(Class, Name, String, SearchControls, int, EntryCallback)}.
+     * 
+     * @param <T> The Java type to return
+     * @param clazz The Java type to return
+     * @param base The root of the sub-tree at which to begin the search.
+     * @param searchControls The scope of the search.
+     * @param pageSize The number of entries to request from the directory at a time.
+     * @param callback Called for each entry.
+     * 
+     * @exception org.springframework.ldap.NamingException on error.
+     * @since 1.3.2
+     */
+    <T> void findAllPaged(Class<T> clazz, Name base, SearchControls searchControls, int pageSize, 
+            EntryCallback<T> callback);
+}
\ No newline at end of file
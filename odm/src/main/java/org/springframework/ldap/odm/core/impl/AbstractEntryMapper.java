@@ -0,0 +1,114 @@
+package org.springframework.ldap.odm.core.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.naming.NamingEnumeration;
+import javax.naming.NamingException;
+import javax.naming.directory.Attribute;
+import javax.naming.directory.Attributes;
+
+import org.springframework.ldap.odm.typeconversion.ConverterManager;
+
+/**
+ * Convenient base class for {@link EntryMapper} implementations, providing type 
+ * conversion and attribute lookup.
+ * 
+ * @param <T> The managed class.
+ * 
+ * @author agent
+ * @since 1.3.2
+ */
+public abstract class AbstractEntryMapper<T> implements EntryMapper<T> {
+    private final ConverterManager converterManager;
+
+    protected AbstractEntryMapper(ConverterManager converterManager) {
+        this.converterManager=converterManager;
+    }
+
+    protected final ConverterManager getConverterManager() {
+        return converterManager;
+    }
+
+    /**
+     * Convert a value using the {@link ConverterManager} of this mapper.
+     * 
+     * @param <V> The class to convert to.
+     * @param value The value to convert.
+     * @param syntax The LDAP syntax of the value.
+     * @param toClass The class to convert to.
+     * @return The converted value.
+     */
+    protected final <V> V convert(Object value, String syntax, Class<V> toClass) {
+        return converterManager.convert(value, syntax, toClass);
+    }
+
+    /**
+     * Get the first value of an attribute.
+     * 
+     * @param attributes The attributes of the entry.
+     * @param name The name of the attribute, matched case independently.
+     * @return The first value of the attribute or <code>null</code> if there is none.
+     */
+    protected final Object getValue(Attributes attributes, String name) {
+        Attribute attribute=getAttribute(attributes, name);
+        if (attribute==null) {
+            return null;
+        }
+        try {
+            return attribute.get();
+        } catch (NamingException e) {
+            throw new InvalidEntryException(String.format("Problem reading attribute %1$s", name), e);
+        }
+    }
+
+    /**
+     * Get all non-null values of an attribute.
+     * 
+     * @param attributes The attributes of the entry.
+     * @param name The name of the attribute, matched case independently.
+     * @return The values of the attribute, empty if there are none.
+     */
+    protected final List<Object> getValues(Attributes attributes, String name) {
+        Attribute attribute=getAttribute(attributes, name);
+        if (attribute==null) {
+            return Collections.emptyList();
+        }
+        List<Object> result=new ArrayList<Object>(attribute.size());
+        try {
+            for (int index=0; index<attribute.size(); index++) {
+                Object value=attribute.get(index);
+                if (value!=null) {
+                    result.add(value);
+                }
+            }
+        } catch (NamingException e) {
+            throw new InvalidEntryException(String.format("Problem reading attribute %1$s", name), e);
+        }
+        return result;
+    }
+
+    /**
+     * Look up an attribute case independently. This is a plain hash lookup for the 
+     * case ignoring <code>Attributes</code> returned by the JNDI LDAP provider.
+     * 
+     * @param attributes The attributes to search.
+     * @param name The name of the attribute.
+     * @return The attribute or <code>null</code> if it is not present.
+     */
+    protected static Attribute getAttribute(Attributes attributes, String name) {
+        if (attributes.isCaseIgnored()) {
+            return attributes.get(name);
+        }
+
+        NamingEnumeration<? extends Attribute> attributesEnumeration=attributes.getAll();
+        while (attributesEnumeration.hasMoreElements()) {
+            Attribute attribute=attributesEnumeration.nextElement();
+            if (attribute.getID().equalsIgnoreCase(name)) {
+                return attribute;
+            }
+        }
+        return null;
+    }
+}
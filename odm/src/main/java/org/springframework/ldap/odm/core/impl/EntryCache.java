@@ -0,0 +1,278 @@
+package org.springframework.ldap.odm.core.impl;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.naming.Name;
+import javax.naming.directory.Attributes;
+
+import org.springframework.ldap.core.DistinguishedName;
+
+/**
+ * A bounded cache of the LDAP attributes of entries of one managed class, keyed on
+ * normalized distinguished name, for use by {@link OdmManagerImpl}.
+ * <p>
+ * The cache holds attributes rather than Java objects, so every read still returns
+ * a new instance which the caller is free to modify. Entries expire after a fixed
+ * time to live and the least recently used entries are evicted when the cache is
+ * full. Entries are invalidated when they are created, updated or deleted through
+ * the owning <code>OdmManager</code>; changes made to the directory by any other
+ * means, including the undoing of writes by a rolled back transaction, are only seen
+ * once the cached entry has expired.
+ * <p>
+ * The cache is split into a number of independently locked segments, so concurrent
+ * readers of different entries rarely contend.
+ *
+ * @author agent
+ * @since 1.3.2
+ *
+ * @see OdmManagerImpl#setEntryCache(Class, EntryCache)
+ */
+public final class EntryCache {
+    private static final int DEFAULT_CONCURRENCY_LEVEL=16;
+
+    private static final class CachedEntry {
+        private final Attributes attributes;
+        private final long expiryTime;
+
+        private CachedEntry(Attributes attributes, long expiryTime) {
+            this.attributes=attributes;
+            this.expiryTime=expiryTime;
+        }
+    }
+
+    // One independently locked part of the cache, in least recently used order
+    private static final class Segment extends LinkedHashMap<String, CachedEntry> {
+        private static final long serialVersionUID=1L;
+
+        private final int maxEntries;
+
+        private final AtomicLong evictions;
+
+        // Incremented on every invalidation so that loads which overlap one are not cached
+        private long generation;
+
+        private Segment(int maxEntries, AtomicLong evictions) {
+            super(16, 0.75f, true);
+            this.maxEntries=maxEntries;
+            this.evictions=evictions;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedEntry> eldest) {
+            if (size()>maxEntries) {
+                evictions.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private final Segment[] segments;
+
+    private final int segmentMask;
+
+    private final long timeToLive;
+
+    private final AtomicLong hits=new AtomicLong();
+
+    private final AtomicLong misses=new AtomicLong();
+
+    private final AtomicLong evictions=new AtomicLong();
+
+    /**
+     * Create a new cache.
+     *
+     * @param maxEntries The maximum number of entries to hold.
+     * @param timeToLive The time in milliseconds an entry may be served from the cache
+     * after it was read from the directory.
+     */
+    public EntryCache(int maxEntries, long timeToLive) {
+        if (maxEntries<1) {
+            throw new IllegalArgumentException("maxEntries must be greater than zero");
+        }
+        if (timeToLive<1) {
+            throw new IllegalArgumentException("timeToLive must be greater than zero");
+        }
+        this.timeToLive=timeToLive;
+
+        // A power of two number of segments, but no more segments than entries
+        int segmentCount=1;
+        while (segmentCount<DEFAULT_CONCURRENCY_LEVEL && segmentCount*2<=maxEntries) {
+            segmentCount<<=1;
+        }
+        segmentMask=segmentCount-1;
+
+        segments=new Segment[segmentCount];
+        for (int index=0; index<segmentCount; index++) {
+            // Spread the entries as evenly as possible over the segments
+            int segmentSize=maxEntries/segmentCount+(index<maxEntries%segmentCount ? 1 : 0);
+            segments[index]=new Segment(segmentSize, evictions);
+        }
+    }
+
+    // DNs are compared ignoring case and formatting
+    /* package */ static String getKey(Name dn) {
+        return new DistinguishedName(dn).toCompactString().toLowerCase(Locale.ENGLISH);
+    }
+
+    private Segment getSegment(String key) {
+        int hash=key.hashCode();
+        // Spread the bits so that similar DNs end up in different segments
+        hash^=(hash>>>16);
+        return segments[hash & segmentMask];
+    }
+
+    /**
+     * Get the cached attributes of an entry.
+     *
+     * @param key The key of the entry, as returned by {@link #getKey(Name)}.
+     * @return The attributes, or <code>null</code> if the entry is not in the cache or has expired.
+     */
+    /* package */ Attributes get(String key) {
+        Segment segment=getSegment(key);
+        synchronized (segment) {
+            CachedEntry cachedEntry=segment.get(key);
+            if (cachedEntry!=null) {
+                if (cachedEntry.expiryTime-System.currentTimeMillis()>0) {
+                    hits.incrementAndGet();
+                    return cachedEntry.attributes;
+                }
+                segment.remove(key);
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Note that the attributes of an entry are about to be read from the directory. The
+     * returned ticket must be passed to {@link #put(String, Attributes, long)} once they
+     * have been read.
+     *
+     * @param key The key of the entry.
+     * @return A ticket identifying the load.
+     */
+    /* package */ long startLoad(String key) {
+        Segment segment=getSegment(key);
+        synchronized (segment) {
+            return segment.generation;
+        }
+    }
+
+    /**
+     * Cache the attributes of an entry, unless an entry in the same segment has been
+     * invalidated since the load started, as the attributes may then be out of date.
+     *
+     * @param key The key of the entry.
+     * @param attributes The attributes as read from the directory.
+     * @param ticket The value returned from {@link #startLoad(String)} before reading.
+     */
+    /* package */ void put(String key, Attributes attributes, long ticket) {
+        Segment segment=getSegment(key);
+        synchronized (segment) {
+            if (segment.generation==ticket) {
+                segment.put(key, new CachedEntry(attributes, System.currentTimeMillis()+timeToLive));
+            }
+        }
+    }
+
+    /**
+     * Remove an entry from the cache.
+     *
+     * @param key The key of the entry.
+     */
+    /* package */ void invalidate(String key) {
+        Segment segment=getSegment(key);
+        synchronized (segment) {
+            segment.generation++;
+            segment.remove(key);
+        }
+    }
+
+    /**
+     * Remove all entries from the cache.
+     */
+    public void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.generation++;
+                segment.clear();
+            }
+        }
+    }
+
+    /**
+     * @return The number of entries currently held, including any that have expired
+     * but not yet been removed.
+     */
+    public int size() {
+        int result=0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                result+=segment.size();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Remove all expired entries from the cache. Expired entries are otherwise removed
+     * when next looked up or when evicted to make room for others.
+     */
+    public void removeExpired() {
+        long now=System.currentTimeMillis();
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                Iterator<CachedEntry> iterator=segment.values().iterator();
+                while (iterator.hasNext()) {
+                    if (iterator.next().expiryTime-now<=0) {
+                        iterator.remove();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The number of reads served from the cache.
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * @return The number of reads that had to go to the directory.
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * @return The number of entries evicted to make room for others.
+     */
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * @return The proportion of reads served from the cache, between 0 and 1.
+     */
+    public double getHitRatio() {
+        long hitCount=hits.get();
+        long total=hitCount+misses.get();
+        return total==0 ? 0 : (double)hitCount/total;
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return String.format("EntryCache(size=%1$s, hits=%2$s, misses=%3$s, evictions=%4$s)",
+                size(), getHitCount(), getMissCount(), getEvictionCount());
+    }
+}
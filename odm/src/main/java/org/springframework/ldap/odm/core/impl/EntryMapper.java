@@ -0,0 +1,53 @@
+package org.springframework.ldap.odm.core.impl;
+
+import javax.naming.Name;
+
+import org.springframework.ldap.core.DirContextOperations;
+
+/**
+ * Maps between one {@link org.springframework.ldap.odm.annotations.Entry} annotated 
+ * class and its LDAP representation. 
+ * <p>
+ * {@link OdmManagerImpl} uses a reflective implementation of this interface unless a 
+ * specialized one is available for the managed class. Specialized implementations may 
+ * be written by hand, or generated along with the entry class itself by 
+ * {@link org.springframework.ldap.odm.tools.SchemaToJava}. A class named as the managed 
+ * class followed by <code>EntryMapper</code>, implementing this interface and having a 
+ * public constructor taking a 
+ * {@link org.springframework.ldap.odm.typeconversion.ConverterManager} will be picked 
+ * up automatically.
+ * <p>
+ * Implementations need not deal with the <code>objectclass</code> attribute when 
+ * writing; this is set by the <code>OdmManager</code> from the meta-data of the managed 
+ * class.
+ * 
+ * @param <T> The managed class.
+ * 
+ * @author agent
+ * @since 1.3.2
+ */
+public interface EntryMapper<T> {
+    /**
+     * Create a new instance of the managed class from its LDAP representation.
+     * 
+     * @param context The LDAP representation of the entry.
+     * @return A new instance populated from <code>context</code>.
+     */
+    T mapFromContext(DirContextOperations context);
+
+    /**
+     * Write the attributes of an instance of the managed class into its LDAP representation.
+     * 
+     * @param entry The entry to write.
+     * @param context The LDAP representation to write to.
+     */
+    void mapToContext(T entry, DirContextOperations context);
+
+    /**
+     * Get the distinguished name of an instance of the managed class.
+     * 
+     * @param entry The entry.
+     * @return The value of the <code>@Id</code> field of <code>entry</code>.
+     */
+    Name getId(T entry);
+}
@@ -0,0 +1,139 @@
+package org.springframework.ldap.odm.core.impl;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.naming.Name;
+import javax.naming.directory.Attributes;
+
+import org.springframework.ldap.core.DistinguishedName;
+
+/*
+ * Holds the attributes of entries as last read from or written to the directory, so 
+ * that an update need only send what has changed since.
+ * 
+ * Entries are held by identity, since their equals and hashCode typically change with 
+ * their contents, and weakly, so that a snapshot is discarded along with its entry. Each
+ * snapshot records the DN it was taken from and is only used for that DN, as the id of
+ * an entry may have been changed since.
+ * 
+ * The snapshots are split into a number of independently locked segments, so concurrent
+ * readers and writers of different entries rarely contend.
+ * 
+ * @author agent
+ * @since 1.3.2
+ */
+/* package */ final class EntrySnapshots {
+    // A weak reference comparing its referent by identity
+    private static final class EntryReference extends WeakReference<Object> {
+        private final int hashCode;
+
+        private EntryReference(Object entry, ReferenceQueue<Object> queue) {
+            super(entry, queue);
+            hashCode=System.identityHashCode(entry);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this==other) {
+                return true;
+            }
+            if (!(other instanceof EntryReference)) {
+                return false;
+            }
+            Object entry=get();
+            return entry!=null && entry==((EntryReference)other).get();
+        }
+    }
+
+    private static final class Snapshot {
+        private final DistinguishedName dn;
+        private final Attributes attributes;
+
+        private Snapshot(Name dn, Attributes attributes) {
+            this.dn=new DistinguishedName(dn);
+            this.attributes=attributes;
+        }
+    }
+
+    // One independently locked part of the snapshots
+    private static final class Segment {
+        private final Map<EntryReference, Snapshot> snapshots=new HashMap<EntryReference, Snapshot>();
+
+        private final ReferenceQueue<Object> queue=new ReferenceQueue<Object>();
+
+        // Drop the snapshots of entries that have been garbage collected
+        private void expungeStaleEntries() {
+            Reference<?> reference;
+            while ((reference=queue.poll())!=null) {
+                snapshots.remove(reference);
+            }
+        }
+    }
+
+    private static final int SEGMENT_COUNT=16;
+
+    private final Segment[] segments=new Segment[SEGMENT_COUNT];
+
+    public EntrySnapshots() {
+        for (int index=0; index<SEGMENT_COUNT; index++) {
+            segments[index]=new Segment();
+        }
+    }
+
+    private Segment getSegment(Object entry) {
+        int hash=System.identityHashCode(entry);
+        // Spread the bits, as identity hash codes need not vary in the low bits
+        hash^=(hash>>>16);
+        return segments[hash & (SEGMENT_COUNT-1)];
+    }
+
+    public void put(Object entry, Name dn, Attributes attributes) {
+        Segment segment=getSegment(entry);
+        synchronized (segment) {
+            segment.expungeStaleEntries();
+            segment.snapshots.put(new EntryReference(entry, segment.queue), new Snapshot(dn, attributes));
+        }
+    }
+
+    // The snapshot of the entry, or null if there is none or it was taken from another DN
+    public Attributes get(Object entry, Name dn) {
+        Segment segment=getSegment(entry);
+        Snapshot snapshot;
+        synchronized (segment) {
+            segment.expungeStaleEntries();
+            snapshot=segment.snapshots.get(new EntryReference(entry, null));
+        }
+        if (snapshot==null || !snapshot.dn.equals(new DistinguishedName(dn))) {
+            return null;
+        }
+        return snapshot.attributes;
+    }
+
+    public void remove(Object entry) {
+        Segment segment=getSegment(entry);
+        synchronized (segment) {
+            segment.expungeStaleEntries();
+            segment.snapshots.remove(new EntryReference(entry, null));
+        }
+    }
+
+    public int size() {
+        int result=0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.expungeStaleEntries();
+                result+=segment.snapshots.size();
+            }
+        }
+        return result;
+    }
+}
@@ -3,33 +3,50 @@ package org.springframework.ldap.odm.core.impl;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
 
 import javax.naming.Name;
+import javax.naming.NameClassPair;
 import javax.naming.NamingEnumeration;
 import javax.naming.NamingException;
 import javax.naming.directory.Attribute;
 import javax.naming.directory.Attributes;
+import javax.naming.directory.ModificationItem;
 import javax.naming.directory.SearchControls;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.ldap.core.AttributesMapper;
+import org.springframework.ldap.core.CloseableIterator;
+import org.springframework.ldap.core.ContextMapperCallbackHandler;
 import org.springframework.ldap.core.ContextSource;
 import org.springframework.ldap.core.DirContextAdapter;
 import org.springframework.ldap.core.DirContextOperations;
 import org.springframework.ldap.core.DistinguishedName;
 import org.springframework.ldap.core.LdapOperations;
 import org.springframework.ldap.core.LdapTemplate;
+import org.springframework.ldap.core.simple.ParameterizedCloseableIterator;
 import org.springframework.ldap.core.simple.ParameterizedContextMapper;
+import org.springframework.ldap.core.support.SingleContextSource;
 import org.springframework.ldap.filter.AndFilter;
 import org.springframework.ldap.filter.EqualsFilter;
+import org.springframework.ldap.odm.core.BatchResult;
+import org.springframework.ldap.odm.core.EntryCallback;
 import org.springframework.ldap.odm.core.OdmException;
 import org.springframework.ldap.odm.core.OdmManager;
 import org.springframework.ldap.odm.typeconversion.ConverterManager;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 /**
  * An implementation of {@link org.springframework.ldap.odm.core.OdmManager} which
@@ -45,30 +62,115 @@ public final class OdmManagerImpl implements OdmManager {
     // The link to the LDAP directory
     private final LdapOperations ldapTemplate;
 
+    // Where bulk operations get their connections from
+    private final ContextSource contextSource;
+
+    // Used to run bulk operations in parallel - if null they are run on the calling thread
+    private TaskExecutor taskExecutor;
+
+    // The maximum number of connections a parallel bulk operation may use at once
+    private int batchConcurrency=DEFAULT_BATCH_CONCURRENCY;
+
+    private static final int DEFAULT_BATCH_CONCURRENCY=4;
+
     // The converter manager to use to translate values between LDAP and Java
     private final ConverterManager converterManager;
     
     private static String OBJECT_CLASS_ATTRIBUTE="objectclass";
-    private static CaseIgnoreString OBJECT_CLASS_ATTRIBUTE_CI=new CaseIgnoreString(OBJECT_CLASS_ATTRIBUTE);
+    
+    // The suffix of the name of a specialized EntryMapper for a managed class
+    private static final String ENTRY_MAPPER_SUFFIX="EntryMapper";
     
     private static final class EntityData {
         private final ObjectMetaData metaData;
         private final String ocFilter;
+        private final String[] objectClasses;
+        private final EntryMapper<?> entryMapper;
+        // The attributes to request from the directory - all those mapped by the class
+        private final String[] returningAttributes;
+        // The attributes written by the entry mapper
+        private final String[] writtenAttributes;
+        // Java field names to LDAP attribute names, used for projections
+        private final Map<String, String> fieldToAttributeName=new HashMap<String, String>();
+        // Cache of entries read, if enabled for the class
+        private volatile EntryCache entryCache;
         
-        private EntityData(ObjectMetaData metaData, String ocFilter) {
+        private EntityData(ObjectMetaData metaData, String ocFilter, EntryMapper<?> entryMapper) {
             this.metaData=metaData;
             this.ocFilter=ocFilter;
+            this.entryMapper=entryMapper;
+
+            objectClasses=new String[metaData.getObjectClasses().size()];
+            int ocIndex=0;
+            for (CaseIgnoreString oc : metaData.getObjectClasses()) {
+                objectClasses[ocIndex++]=oc.toString();
+            }
+
+            Set<CaseIgnoreString> attributeNames=new LinkedHashSet<CaseIgnoreString>();
+            Set<CaseIgnoreString> writtenAttributeNames=new LinkedHashSet<CaseIgnoreString>();
+            attributeNames.add(new CaseIgnoreString(OBJECT_CLASS_ATTRIBUTE));
+            for (Field field : metaData) {
+                AttributeMetaData attributeInfo=metaData.getAttribute(field);
+                if (!attributeInfo.isId()) {
+                    attributeNames.add(attributeInfo.getName());
+                    fieldToAttributeName.put(field.getName(), attributeInfo.getName().toString());
+                    if (!attributeInfo.isObjectClass()) {
+                        writtenAttributeNames.add(attributeInfo.getName());
+                    }
+                }
+            }
+            returningAttributes=toStrings(attributeNames);
+            writtenAttributes=toStrings(writtenAttributeNames);
+        }
+
+        // The attributes needed to populate the named fields only
+        private String[] getReturningAttributes(Class<?> managedClass, String[] fieldNames) {
+            Set<CaseIgnoreString> attributeNames=new LinkedHashSet<CaseIgnoreString>();
+            attributeNames.add(new CaseIgnoreString(OBJECT_CLASS_ATTRIBUTE));
+            for (String fieldName : fieldNames) {
+                String attributeName=fieldToAttributeName.get(fieldName);
+                if (attributeName!=null) {
+                    attributeNames.add(new CaseIgnoreString(attributeName));
+                } else if (!fieldName.equals(metaData.getIdAttribute().getField().getName())) {
+                    throw new MetaDataException(String.format("There is no mapped field %1$s in Entry class %2$s", 
+                            fieldName, managedClass));
+                }
+                // The id is always available
+            }
+            return toStrings(attributeNames);
+        }
+
+        private static String[] toStrings(Set<CaseIgnoreString> strings) {
+            String[] result=new String[strings.size()];
+            int index=0;
+            for (CaseIgnoreString string : strings) {
+                result[index++]=string.toString();
+            }
+            return result;
+        }
+
+        // The mapper is created for the class this data is keyed on
+        @SuppressWarnings("unchecked")
+        private <T> EntryMapper<T> getEntryMapper() {
+            return (EntryMapper<T>)entryMapper;
         }
     }
     
     // A map of managed classes to to meta data about those classes
     private final Map<Class<?>, EntityData> metaDataMap=new HashMap<Class<?>, EntityData>();
+
+    // The attributes of entries as last read from or written to the directory
+    private final EntrySnapshots snapshots=new EntrySnapshots();
+
+    // Whether any managed class has an EntryCache, so writes need to invalidate
+    private volatile boolean cachesConfigured=false;
     
     public OdmManagerImpl(ConverterManager converterManager, 
                           ContextSource contextSource,
                           Set<Class<?>> managedClasses) {
         
         this.converterManager=converterManager;
+        this.contextSource=contextSource;
         this.ldapTemplate=new LdapTemplate(contextSource);
         
         if (managedClasses!=null) {
@@ -83,6 +185,65 @@ public final class OdmManagerImpl implements OdmManager {
         this(converterManager, contextSource, null);
     }
 
+    /**
+     * Set the executor used to run bulk operations in parallel. By default bulk 
+     * operations are run on the calling thread, using a single connection. 
+     * <p>
+     * Bulk operations are always run on the calling thread while a transaction is 
+     * active, so that they take part in the transaction.
+     * 
+     * @param taskExecutor The executor to use, or <code>null</code> to run bulk 
+     * operations on the calling thread.
+     * @since 1.3.2
+     */
+    public void setTaskExecutor(TaskExecutor taskExecutor) {
+        this.taskExecutor=taskExecutor;
+    }
+
+    /**
+     * Set the maximum number of connections that a bulk operation may use in parallel. 
+     * Only relevant if a {@link #setTaskExecutor(TaskExecutor) TaskExecutor} has been set. 
+     * Default is 4.
+     * 
+     * @param batchConcurrency The maximum number of connections to use at once.
+     * @since 1.3.2
+     */
+    public void setBatchConcurrency(int batchConcurrency) {
+        if (batchConcurrency<1) {
+            throw new IllegalArgumentException("batchConcurrency must be greater than zero");
+        }
+        this.batchConcurrency=batchConcurrency;
+    }
+
+    /**
+     * Cache entries of the given managed class read using {@link #read(Class, Name)}, 
+     * so that reading the same entry again does not need to go to the directory. 
+     * The cache is invalidated by the write operations of this OdmManager.
+     * 
+     * @param managedClass The managed class to cache entries of.
+     * @param entryCache The cache to use, or <code>null</code> to stop caching entries 
+     * of <code>managedClass</code>.
+     * @since 1.3.2
+     */
+    public void setEntryCache(Class<?> managedClass, EntryCache entryCache) {
+        getEntityData(managedClass).entryCache=entryCache;
+        if (entryCache!=null) {
+            cachesConfigured=true;
+        }
+    }
+
+    /**
+     * Get the cache of entries of the given managed class, for example to monitor it.
+     * 
+     * @param managedClass A managed class.
+     * @return The cache of entries of <code>managedClass</code>, or <code>null</code> 
+     * if they are not cached.
+     * @since 1.3.2
+     */
+    public EntryCache getEntryCache(Class<?> managedClass) {
+        return getEntityData(managedClass).entryCache;
+    }
+
     private EntityData getEntityData(Class<?> managedClass) {
         EntityData result=metaDataMap.get(managedClass);
         if (result==null) {
@@ -98,6 +259,21 @@ public final class OdmManagerImpl implements OdmManager {
      * @param managedClass The class to add to the managed set.
      */
     public void addManagedClass(Class<?> managedClass) {
+        addManagedClass(managedClass, null);
+    }
+
+    /**
+     * Adds an {@link org.springframework.ldap.odm.annotations} annotated class to the set
+     * managed by this OdmManager, using the supplied {@link EntryMapper} to map instances 
+     * of it.
+     * 
+     * @param managedClass The class to add to the managed set.
+     * @param entryMapper The mapper to use for <code>managedClass</code>. If this is 
+     * <code>null</code> a specialized mapper is looked up as described in {@link EntryMapper}, 
+     * falling back to a reflective one if none is found.
+     * @since 1.3.2
+     */
+    public <T> void addManagedClass(Class<T> managedClass, EntryMapper<T> entryMapper) {
         if (LOG.isDebugEnabled()) {
             LOG.debug(String.format("Adding class %1$s to managed set", managedClass));
         }
@@ -138,7 +314,37 @@ public final class OdmManagerImpl implements OdmManager {
             ocFilter.and(new EqualsFilter(OBJECT_CLASS_ATTRIBUTE, oc.toString()));
         }
 
-        metaDataMap.put(managedClass, new EntityData(metaData, ocFilter.encode())); 
+        EntryMapper<T> mapperToUse=entryMapper;
+        if (mapperToUse==null) {
+            mapperToUse=createEntryMapper(managedClass, metaData);
+        }
+
+        metaDataMap.put(managedClass, new EntityData(metaData, ocFilter.encode(), mapperToUse)); 
+    }
+
+    // Use a specialized mapper for the class if there is one, otherwise a reflective one
+    @SuppressWarnings("unchecked")
+    private <T> EntryMapper<T> createEntryMapper(Class<T> managedClass, ObjectMetaData metaData) {
+        String mapperClassName=managedClass.getName()+ENTRY_MAPPER_SUFFIX;
+        Class<?> mapperClass=null;
+        try {
+            mapperClass=Class.forName(mapperClassName, true, managedClass.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            // No specialized mapper
+        }
+
+        if (mapperClass!=null && EntryMapper.class.isAssignableFrom(mapperClass)) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(String.format("Using %1$s to map class %2$s", mapperClass, managedClass));
+            }
+            try {
+                return (EntryMapper<T>)mapperClass.getConstructor(ConverterManager.class).newInstance(converterManager);
+            } catch (Exception e) {
+                throw new InvalidEntryException(String.format("Could not create an instance of %1$s", mapperClass), e);
+            }
+        }
+
+        return new ReflectiveEntryMapper<T>(managedClass, metaData, converterManager);
     }
 
     /*
@@ -151,9 +357,16 @@ public final class OdmManagerImpl implements OdmManager {
             LOG.debug(String.format("Reading Entry at - %s$1", dn));
         }
         
-        getEntityData(clazz);
+        EntityData entityData=getEntityData(clazz);
         
-        T result = clazz.cast(ldapTemplate.lookup(dn, new GenericContextMapper<T>(clazz)));
+        T result;
+        EntryCache entryCache=entityData.entryCache;
+        if (entryCache==null) {
+            // Only read the attributes we can map
+            result = clazz.cast(ldapTemplate.lookup(dn, entityData.returningAttributes, new GenericContextMapper<T>(clazz, true)));
+        } else {
+            result = readThroughCache(clazz, dn, entityData, entryCache);
+        }
         if (result==null) {
             throw new OdmException(String.format("Entry %1$s has excess object classes", dn));
         }
@@ -164,19 +377,65 @@ public final class OdmManagerImpl implements OdmManager {
         return result;
     }
 
+    // Map the entry from the attributes in the cache, reading them if they are not there
+    private <T> T readThroughCache(Class<T> clazz, Name dn, EntityData entityData, EntryCache entryCache) {
+        String key=EntryCache.getKey(dn);
+        Attributes attributes=entryCache.get(key);
+        if (attributes==null) {
+            long ticket=entryCache.startLoad(key);
+            attributes=(Attributes)ldapTemplate.lookup(dn, entityData.returningAttributes, new AttributesMapper() {
+                public Object mapFromAttributes(Attributes attributes) {
+                    return attributes;
+                }
+            });
+            entryCache.put(key, attributes, ticket);
+        } else if (LOG.isDebugEnabled()) {
+            LOG.debug(String.format("Found %1$s in cache", dn));
+        }
+
+        // Never let the mapper near the cached attributes
+        DirContextAdapter context=new DirContextAdapter((Attributes)attributes.clone(), dn);
+        return new GenericContextMapper<T>(clazz, true).mapFromContext(context);
+    }
+
+    // Make sure no cache holds an entry that has just been written
+    private void invalidateCaches(Name dn) {
+        if (!cachesConfigured) {
+            return;
+        }
+        String key=EntryCache.getKey(dn);
+        for (EntityData entityData : metaDataMap.values()) {
+            EntryCache entryCache=entityData.entryCache;
+            if (entryCache!=null) {
+                entryCache.invalidate(key);
+            }
+        }
+    }
+
     /*
      * (non-Javadoc)
      * 
      * @see org.springframework.ldap.odm.core.OdmManager#create(java.lang.Object)
      */
     public void create(Object entry) {
+        create(ldapTemplate, entry);
+    }
+
+    private void create(LdapOperations operations, Object entry) {
         if (LOG.isDebugEnabled()) {
             LOG.debug(String.format("Creating entry - %s$1", entry));
         }
         
-        DirContextAdapter context = new DirContextAdapter(getId(entry));
+        Name dn=getId(entry);
+        DirContextAdapter context = new DirContextAdapter(dn);
         mapToContext(entry, context);
-        ldapTemplate.bind(context);
+        try {
+            operations.bind(context);
+        } finally {
+            invalidateCaches(dn);
+        }
+
+        putSnapshot(entry, dn, context.getAttributes());
     }
 
     /*
@@ -185,13 +444,117 @@ public final class OdmManagerImpl implements OdmManager {
      * @see org.springframework.ldap.odm.core.OdmManager#update(java.lang.Object, boolean)
      */
     public void update(Object entry) {
+        update(ldapTemplate, entry);
+    }
+
+    private void update(LdapOperations operations, Object entry) {
         if (LOG.isDebugEnabled()) {
             LOG.debug(String.format("Updating entry - %s$1", entry));
         }
         
-        DirContextAdapter context = new DirContextAdapter(getId(entry));
-        mapToContext(entry, context);
-        ldapTemplate.rebind(context);
+        EntityData entityData=getEntityData(entry.getClass());
+        Name dn=getId(entry);
+
+        // Compare against the entry as we last saw it at this DN, or as it is now if it was not read by us
+        Attributes originalAttributes=snapshots.get(entry, dn);
+        if (originalAttributes==null) {
+            originalAttributes=(Attributes)operations.lookup(dn, entityData.returningAttributes, new AttributesMapper() {
+                public Object mapFromAttributes(Attributes attributes) {
+                    return attributes;
+                }
+            });
+        }
+
+        // The new state of the entry - object classes can't change so are not included
+        DirContextAdapter newContext=new DirContextAdapter(dn);
+        entityData.<Object>getEntryMapper().mapToContext(entry, newContext);
+        Attributes newAttributes=newContext.getAttributes();
+
+        // Let DirContextAdapter work out the minimal modifications
+        DirContextAdapter context=new DirContextAdapter((Attributes)originalAttributes.clone(), dn);
+        context.setUpdateMode(true);
+        for (String attributeName : entityData.writtenAttributes) {
+            Attribute originalAttribute=originalAttributes.get(attributeName);
+            Attribute newAttribute=newAttributes.get(attributeName);
+            if (newAttribute==null) {
+                // Removed, if it was there to begin with
+                context.setAttributeValue(attributeName, null);
+            } else if (originalAttribute!=null && !originalAttribute.getID().equals(newAttribute.getID())) {
+                // Attribute ids are compared case sensitively when comparing attributes
+                context.setAttributeValues(originalAttribute.getID(), toArray(newAttribute));
+            } else {
+                context.setAttribute(newAttribute);
+            }
+        }
+
+        ModificationItem[] modificationItems=context.getModificationItems();
+        if (LOG.isDebugEnabled()) {
+            LOG.debug(String.format("Updating %1$s with %2$s modifications", dn, modificationItems.length));
+        }
+        if (modificationItems.length>0) {
+            try {
+                operations.modifyAttributes(dn, modificationItems);
+            } finally {
+                invalidateCaches(dn);
+            }
+        }
+
+        context.update();
+        putSnapshot(entry, dn, context.getAttributes());
+    }
+
+    /*
+     * Record the attributes of an entry as written or read. Inside a transaction the directory may still
+     * be rolled back, so the snapshots taken are forgotten again unless the transaction commits.
+     */
+    private void putSnapshot(Object entry, Name dn, Attributes attributes) {
+        snapshots.put(entry, dn, attributes);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSnapshots transactionSnapshots=(TransactionSnapshots)TransactionSynchronizationManager.getResource(snapshots);
+            if (transactionSnapshots==null) {
+                transactionSnapshots=new TransactionSnapshots();
+                TransactionSynchronizationManager.bindResource(snapshots, transactionSnapshots);
+                TransactionSynchronizationManager.registerSynchronization(transactionSnapshots);
+            }
+            transactionSnapshots.entries.add(entry);
+        }
+    }
+
+    // The entries snapshotted during one transaction, bound to it with the snapshots as key
+    private final class TransactionSnapshots extends TransactionSynchronizationAdapter {
+        private final List<Object> entries=new ArrayList<Object>();
+
+        @Override
+        public void suspend() {
+            TransactionSynchronizationManager.unbindResource(snapshots);
+        }
+
+        @Override
+        public void resume() {
+            TransactionSynchronizationManager.bindResource(snapshots, this);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(snapshots);
+            if (status!=STATUS_COMMITTED) {
+                for (Object entry : entries) {
+                    snapshots.remove(entry);
+                }
+            }
+        }
+    }
+
+    private static Object[] toArray(Attribute attribute) {
+        try {
+            Object[] result=new Object[attribute.size()];
+            for (int index=0; index<result.length; index++) {
+                result[index]=attribute.get(index);
+            }
+            return result;
+        } catch (NamingException e) {
+            throw new InvalidEntryException(String.format("Problem reading attribute %1$s", attribute.getID()), e);
+        }
     }
 
     /*
@@ -200,29 +563,282 @@ public final class OdmManagerImpl implements OdmManager {
      * @see org.springframework.ldap.odm.core.OdmManager#delete(javax.naming.Name)
      */
     public void delete(Object entry) {
+        delete(ldapTemplate, entry);
+    }
+
+    private void delete(LdapOperations operations, Object entry) {
         if (LOG.isDebugEnabled()) {
             LOG.debug(String.format("Deleting %s$1", entry));
         }
         
         // Just to check that this is a managed class
         getEntityData(entry.getClass());
-        ldapTemplate.unbind(getId(entry));
+        Name dn=getId(entry);
+        try {
+            operations.unbind(dn);
+        } finally {
+            invalidateCaches(dn);
+        }
+
+        snapshots.remove(entry);
     }
 
-    private Name getId(Object entry) {
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.springframework.ldap.odm.core.OdmManager#createAll(java.util.Collection)
+     */
+    public BatchResult createAll(Collection<?> entries) {
+        return executeBatch(entries, BatchOperation.CREATE);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.springframework.ldap.odm.core.OdmManager#updateAll(java.util.Collection)
+     */
+    public BatchResult updateAll(Collection<?> entries) {
+        return executeBatch(entries, BatchOperation.UPDATE);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.springframework.ldap.odm.core.OdmManager#deleteAll(java.util.Collection)
+     */
+    public BatchResult deleteAll(Collection<?> entries) {
+        return executeBatch(entries, BatchOperation.DELETE);
+    }
+
+    private enum BatchOperation {
+        CREATE, UPDATE, DELETE
+    }
+
+    private void execute(BatchOperation operation, LdapOperations operations, Object entry) {
+        switch (operation) {
+        case CREATE:
+            create(operations, entry);
+            break;
+        case UPDATE:
+            update(operations, entry);
+            break;
+        case DELETE:
+            delete(operations, entry);
+            break;
+        }
+    }
+
+    private BatchResult executeBatch(Collection<?> entries, BatchOperation operation) {
+        if (LOG.isDebugEnabled()) {
+            LOG.debug(String.format("Bulk %1$s of %2$s entries", operation, entries.size()));
+        }
+
+        BatchResult result=new BatchResult();
+
+        // Worker threads would not see the transaction, so stay on this thread while one is active
+        if (taskExecutor==null || batchConcurrency==1 || entries.size()<2 
+                || TransactionSynchronizationManager.isSynchronizationActive()) {
+            executeOnSingleConnection(entries, operation, result);
+        } else {
+            for (List<Object> level : orderByDepth(entries, operation, result)) {
+                executeInParallel(level, operation, result);
+            }
+        }
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug(String.format("Bulk %1$s finished - %2$s", operation, result));
+        }
+
+        return result;
+    }
+
+    // Perform the operation on each entry in turn, all on the same connection
+    private void executeOnSingleConnection(Collection<?> entries, BatchOperation operation, BatchResult result) {
+        SingleContextSource singleContextSource;
+        try {
+            singleContextSource=new SingleContextSource(contextSource.getReadWriteContext());
+        } catch (RuntimeException e) {
+            // Without a connection nothing in this part of the batch can be done
+            for (Object entry : entries) {
+                result.addFailure(entry, e);
+            }
+            return;
+        }
+
+        try {
+            LdapOperations operations=new LdapTemplate(singleContextSource);
+            for (Object entry : entries) {
+                try {
+                    execute(operation, operations, entry);
+                    result.addSuccess(entry);
+                } catch (RuntimeException e) {
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug(String.format("Bulk %1$s failed for entry - %2$s", operation, entry), e);
+                    }
+                    result.addFailure(entry, e);
+                }
+            }
+        } finally {
+            singleContextSource.destroy();
+        }
+    }
+
+    /*
+     * Group the entries so that no entry is processed at the same time as one of its 
+     * ancestors: parents must exist before their children are created and children must 
+     * be gone before their parents are deleted. Entries without a valid id are reported 
+     * as failures straight away.
+     */
+    private List<List<Object>> orderByDepth(Collection<?> entries, BatchOperation operation, BatchResult result) {
+        if (operation==BatchOperation.UPDATE) {
+            return Collections.singletonList((List<Object>)new ArrayList<Object>(entries));
+        }
+
+        Map<Integer, List<Object>> levels=new TreeMap<Integer, List<Object>>();
+        for (Object entry : entries) {
+            int depth;
+            try {
+                depth=getId(entry).size();
+            } catch (RuntimeException e) {
+                result.addFailure(entry, e);
+                continue;
+            }
+            List<Object> level=levels.get(depth);
+            if (level==null) {
+                level=new ArrayList<Object>();
+                levels.put(depth, level);
+            }
+            level.add(entry);
+        }
+
+        List<List<Object>> orderedLevels=new ArrayList<List<Object>>(levels.values());
+        if (operation==BatchOperation.DELETE) {
+            Collections.reverse(orderedLevels);
+        }
+        return orderedLevels;
+    }
+
+    // Split the entries between up to batchConcurrency connections and wait for them all to finish
+    private void executeInParallel(List<Object> entries, final BatchOperation operation, final BatchResult result) {
+        int partitionCount=Math.min(batchConcurrency, entries.size());
+        final CountDownLatch finished=new CountDownLatch(partitionCount);
+        for (int partition=0; partition<partitionCount; partition++) {
+            final List<Object> partitionEntries=entries.subList(
+                    entries.size()*partition/partitionCount, entries.size()*(partition+1)/partitionCount);
+            Runnable task=new Runnable() {
+                public void run() {
+                    try {
+                        executeOnSingleConnection(partitionEntries, operation, result);
+                    } finally {
+                        finished.countDown();
+                    }
+                }
+            };
+            try {
+                taskExecutor.execute(task);
+            } catch (RuntimeException e) {
+                // The executor would not take it, so do it ourselves
+                LOG.debug("Could not hand bulk operation partition to executor, executing on calling thread", e);
+                task.run();
+            }
+        }
+
         try {
-            return (Name)getEntityData(entry.getClass()).metaData.getIdAttribute().getField().get(entry);
-        } catch (Exception e) {
-            throw new InvalidEntryException(String.format("Can't get Id field from Entry %1$s", entry), 
-                    e);
+            finished.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OdmException(String.format("Interrupted while waiting for bulk %1$s to finish", operation), e);
         }
     }
+
+    private Name getId(Object entry) {
+        return getEntityData(entry.getClass()).<Object>getEntryMapper().getId(entry);
+    }
    
     /* (non-Javadoc)
      * @see org.springframework.ldap.odm.core.OdmManager#search(java.lang.Class, javax.naming.Name, java.lang.String, javax.naming.directory.SearchControls)
      */
     public <T> List<T> search(Class<T> managedClass, Name base, String filter, SearchControls scope) {
         EntityData entityData=getEntityData(managedClass);
+        return doSearch(managedClass, base, filter, scope, entityData.returningAttributes);
+    }
+
+    /* (non-Javadoc)
+     * @see org.springframework.ldap.odm.core.OdmManager#search(java.lang.Class, javax.naming.Name, java.lang.String, javax.naming.directory.SearchControls, java.lang.String[])
+     */
+    public <T> List<T> search(Class<T> managedClass, Name base, String filter, SearchControls scope, String[] fieldNames) {
+        if (fieldNames==null) {
+            return search(managedClass, base, filter, scope);
+        }
+        return doSearch(managedClass, base, filter, scope, 
+                getEntityData(managedClass).getReturningAttributes(managedClass, fieldNames));
+    }
+
+    // Everything needed to perform a search for entries of a managed class
+    private static final class PreparedSearch {
+        private final Name base;
+        private final String filter;
+        private final SearchControls controls;
+        // Whether the entries found are read in full, so can be snapshotted
+        private final boolean snapshot;
+
+        private PreparedSearch(Name base, String filter, SearchControls controls, boolean snapshot) {
+            this.base=base;
+            this.filter=filter;
+            this.controls=controls;
+            this.snapshot=snapshot;
+        }
+    }
+
+    // Search returning the given attributes, unless the caller has chosen the attributes to return
+    private <T> List<T> doSearch(Class<T> managedClass, Name base, String filter, SearchControls scope, 
+            String[] returningAttributes) {
+        
+        PreparedSearch search=prepareSearch(managedClass, base, filter, scope, returningAttributes);
+        
+        final List<T> result=new ArrayList<T>();
+        ldapTemplate.search(search.base, search.filter, search.controls, 
+                new EntryCallbackHandler<T>(new GenericContextMapper<T>(managedClass, search.snapshot), new EntryCallback<T>() {
+                    public void handleEntry(T entry) {
+                        result.add(entry);
+                    }
+                }));
+        
+        if (LOG.isDebugEnabled()) {
+            LOG.debug(String.format("Found %1$s Entries", result.size()));
+        }
+        
+        return result;
+    }
+
+    private <T> PreparedSearch prepareSearch(Class<T> managedClass, Name base, String filter, SearchControls scope, 
+            String[] returningAttributes) {
+        
+        EntityData entityData=getEntityData(managedClass);
+        
+        // Request only the attributes we need, without modifying the caller's controls
+        SearchControls localScope=new SearchControls();
+        if (scope!=null) {
+            localScope.setSearchScope(scope.getSearchScope());
+            localScope.setCountLimit(scope.getCountLimit());
+            localScope.setTimeLimit(scope.getTimeLimit());
+            localScope.setDerefLinkFlag(scope.getDerefLinkFlag());
+            if (scope.getReturningAttributes()!=null) {
+                // We always need the object classes
+                Set<CaseIgnoreString> attributeNames=new LinkedHashSet<CaseIgnoreString>();
+                for (String attributeName : scope.getReturningAttributes()) {
+                    attributeNames.add(new CaseIgnoreString(attributeName));
+                }
+                attributeNames.add(new CaseIgnoreString(OBJECT_CLASS_ATTRIBUTE));
+                returningAttributes=EntityData.toStrings(attributeNames);
+            }
+        }
+        localScope.setReturningAttributes(returningAttributes);
+        // Needed to get hold of the entries as DirContextOperations
+        localScope.setReturningObjFlag(true);
+
+        // Only snapshot entries which are read in full
+        boolean snapshot=(returningAttributes==entityData.returningAttributes);
         
         // Add a filter so we only read the object class we can deal with
         String finalFilter = entityData.ocFilter;
@@ -242,18 +858,101 @@ public final class OdmManagerImpl implements OdmManager {
             LOG.debug(String.format("Searching - base=%1$s, finalFilter=%2$s, scope=%3$s", base, finalFilter, scope));
         }
 
-        @SuppressWarnings("unchecked")
-        List<T> result = ldapTemplate.search(localBase, finalFilter, scope, new GenericContextMapper<T>(managedClass));
-        result.remove(null);
+        return new PreparedSearch(localBase, finalFilter, localScope, snapshot);
+    }
+
+    /* (non-Javadoc)
+     * @see org.springframework.ldap.odm.core.OdmManager#searchForIterator(java.lang.Class, javax.naming.Name, java.lang.String, javax.naming.directory.SearchControls)
+     */
+    public <T> ParameterizedCloseableIterator<T> searchForIterator(Class<T> managedClass, Name base, String filter, 
+            SearchControls scope) {
         
-        if (LOG.isDebugEnabled()) {
-            LOG.debug(String.format("Found %1$s Entries - %2$s", result.size(), result));
-        }
+        PreparedSearch search=prepareSearch(managedClass, base, filter, scope, 
+                getEntityData(managedClass).returningAttributes);
+        // Streamed entries are not snapshotted, so memory use does not grow with the number of entries read;
+        // an update of one of them looks the entry up first
+        return new EntryIterator<T>(ldapTemplate.searchForIterator(search.base, search.filter, search.controls, 
+                new GenericContextMapper<T>(managedClass, false)));
+    }
+
+    /* (non-Javadoc)
+     * @see org.springframework.ldap.odm.core.OdmManager#searchPaged(java.lang.Class, javax.naming.Name, java.lang.String, javax.naming.directory.SearchControls, int, org.springframework.ldap.odm.core.EntryCallback)
+     */
+    public <T> void searchPaged(Class<T> managedClass, Name base, String filter, SearchControls scope, int pageSize,
+            EntryCallback<T> callback) {
         
-        return result;
+        PreparedSearch search=prepareSearch(managedClass, base, filter, scope, 
+                getEntityData(managedClass).returningAttributes);
+        ldapTemplate.searchPaged(search.base, search.filter, search.controls, pageSize, 
+                new EntryCallbackHandler<T>(new GenericContextMapper<T>(managedClass, false), callback), null);
+    }
+
+    /* (non-Javadoc)
+     * @see org.springframework.ldap.odm.core.OdmManager#findAllPaged(java.lang.Class, javax.naming.Name, javax.naming.directory.SearchControls, int, org.springframework.ldap.odm.core.EntryCallback)
+     */
+    public <T> void findAllPaged(Class<T> managedClass, Name base, SearchControls scope, int pageSize, 
+            EntryCallback<T> callback) {
+        searchPaged(managedClass, base, null, scope, pageSize, callback);
+    }
+
+    // Passes the entries found on to an EntryCallback, leaving out those of other classes
+    private static final class EntryCallbackHandler<T> extends ContextMapperCallbackHandler {
+        private final EntryCallback<T> callback;
+
+        private EntryCallbackHandler(GenericContextMapper<T> mapper, EntryCallback<T> callback) {
+            super(mapper);
+            this.callback=callback;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public void handleNameClassPair(NameClassPair nameClassPair) {
+            T entry=(T)getObjectFromNameClassPair(nameClassPair);
+            // Entries with excess object classes map to null
+            if (entry!=null) {
+                callback.handleEntry(entry);
+            }
+        }
+    }
+
+    // Iterates over the entries found, leaving out those of other classes
+    private static final class EntryIterator<T> implements ParameterizedCloseableIterator<T> {
+        private final CloseableIterator target;
+
+        private T next;
+
+        private EntryIterator(CloseableIterator target) {
+            this.target=target;
+        }
+
+        @SuppressWarnings("unchecked")
+        public boolean hasNext() {
+            // Entries with excess object classes map to null
+            while (next==null && target.hasNext()) {
+                next=(T)target.next();
+            }
+            return next!=null;
+        }
+
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            T result=next;
+            next=null;
+            return result;
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        public void close() {
+            next=null;
+            target.close();
+        }
     }
 
-   
     /* 
      * (non-Javadoc)
      * @see org.springframework.ldap.odm.core.OdmManager#findAll(javax.naming.Name, javax.naming.directory.SearchControls)
@@ -273,63 +972,14 @@ public final class OdmManagerImpl implements OdmManager {
      * 
      * @param entry - The entry to convert.
      * @param context - The LDAP context to store the converted entry
-     * @throws javax.naming.NamingEnumeration on error.
      */
     private void mapToContext(Object entry, DirContextOperations context) {
-        ObjectMetaData metaData=getEntityData(entry.getClass()).metaData;
+        EntityData entityData=getEntityData(entry.getClass());
         
         // Object classes are set from the metadata obtained from the @Entity annotation
-        int numOcs=metaData.getObjectClasses().size();
-        CaseIgnoreString[] metaDataObjectClasses=metaData.getObjectClasses().toArray(new CaseIgnoreString[numOcs]);
-        
-        String[] stringOcs=new String[numOcs];
-        for (int ocIndex=0; ocIndex<numOcs; ocIndex++) {
-            stringOcs[ocIndex]=metaDataObjectClasses[ocIndex].toString();
-        }
-        context.setAttributeValues(OBJECT_CLASS_ATTRIBUTE, stringOcs);
+        context.setAttributeValues(OBJECT_CLASS_ATTRIBUTE, entityData.objectClasses);
 
-        // Loop through each of the fields in the object to write to LDAP
-        for (Field field : metaData) {
-            // Grab the meta data for the current field
-            AttributeMetaData attributeInfo = metaData.getAttribute(field);
-            // We dealt with the object class field about, and the DN is set by the call to write the object to LDAP
-            if (!attributeInfo.isId() && !(attributeInfo.isObjectClass())) {
-                try {
-                    // If this is a "binary" object the JNDI expects a byte[] otherwise a String
-                    Class<?> targetClass = (attributeInfo.isBinary()) ? byte[].class : String.class;
-                    // Multi valued?
-                    if (!attributeInfo.isList()) {
-                        // Single valued - get the value of the field
-                        Object fieldValue = field.get(entry);
-                        // Ignore null field values
-                        if (fieldValue != null) {
-                            // Convert the field value to the required type and write it into the JNDI context
-                            context.setAttributeValue(attributeInfo.getName().toString(), converterManager.convert(fieldValue,
-                                    attributeInfo.getSyntax(), targetClass));
-                        }
-                    } else { // Multi-valued
-                        // We need to build up a list of of the values
-                        List<String> attributeValues = new ArrayList<String>();
-                        // Get the list of values
-                        Collection<?> fieldValues = (Collection<?>)field.get(entry);
-                        // Ignore null lists
-                        if (fieldValues != null) {
-                            for (final Object o : fieldValues) {
-                                // Ignore null values
-                                if (o != null) {
-                                    attributeValues.add((String)converterManager.convert(o, attributeInfo.getSyntax(),
-                                            targetClass));
-                                }
-                            }
-                            context.setAttributeValues(attributeInfo.getName().toString(), attributeValues.toArray());
-                        }
-                    }
-                } catch (IllegalAccessException e) {
-                    throw new InvalidEntryException(String.format("Can't set attribute %1$s", attributeInfo.getName()),
-                            e);
-                }
-            }
-        }
+        entityData.<Object>getEntryMapper().mapToContext(entry, context);
     }
 
     /**
@@ -337,9 +987,13 @@ public final class OdmManagerImpl implements OdmManager {
      */
     private class GenericContextMapper<T> implements ParameterizedContextMapper<T> {
         private final Class<T> managedClass;
+
+        // Whether to keep the attributes read so that a later update can send only the changes
+        private final boolean snapshot;
         
-        private GenericContextMapper(Class<T> managedClass) {
+        private GenericContextMapper(Class<T> managedClass, boolean snapshot) {
             this.managedClass=managedClass;
+            this.snapshot=snapshot;
         }
         
         // Called by Spring LDAP to do the conversion
@@ -353,114 +1007,38 @@ public final class OdmManagerImpl implements OdmManager {
                 LOG.debug(String.format("Converting to Java Entry class %1$s from %2$s", managedClass, object));
             }
             
-            // The Java representation of the LDAP entry
-            T result = null;
-
             // This is guaranteed by Spring LDAP to be a DirContextOperations
             DirContextOperations context = (DirContextOperations)object;
 
-            ObjectMetaData metaData=getEntityData(managedClass).metaData;
+            EntityData entityData=getEntityData(managedClass);
             
+            // Check that the object classes correspond to the metadata we have for the Java representation
+            // before doing any conversion
+            Attribute ocAttribute = AbstractEntryMapper.getAttribute(context.getAttributes(), OBJECT_CLASS_ATTRIBUTE);
+            if (ocAttribute == null) {
+                throw new InvalidEntryException(String.format("No object classes were returned for class %1$s",
+                        managedClass.getName()));
+            }
             try {
-                // The result class must have a zero argument constructor
-                result = managedClass.newInstance();
-
-                // Build a map of JNDI attribute names to values
-                Map<CaseIgnoreString, Attribute> attributeValueMap = new HashMap<CaseIgnoreString, Attribute>();
-                // Get a NamingEnumeration to loop through the JNDI attributes in the entry
-                Attributes attributes = context.getAttributes();
-                NamingEnumeration<? extends Attribute> attributesEnumeration = attributes.getAll();
-                // Loop through all of the JNDI attributes
-                while (attributesEnumeration.hasMoreElements()) {
-                    Attribute currentAttribute = (Attribute)attributesEnumeration.nextElement();
-                    // Add the current attribute to the map keyed on the lowercased (case indep) id of the attribute
-                    attributeValueMap.put(new CaseIgnoreString(currentAttribute.getID()), currentAttribute);
-                }
-
-                // Now loop through all the fields in the Java representation populating it with values from the
-                // attributeValueMap
-                for (Field field : metaData) {
-                    // Get the current field
-                    AttributeMetaData attributeInfo = metaData.getAttribute(field);
-                    // We deal with the Id field specially
-                    if (!attributeInfo.isId()) {
-                        // Not the ID - but is is multi valued?
-                        if (!attributeInfo.isList()) {
-                            // No - its single valued, grab the JNDI attribute that corresponds to the metadata on the
-                            // current field
-                            Attribute attribute = attributeValueMap.get(attributeInfo.getName());
-                            // There is no guarantee that this attribute is present in the directory - so ignore nulls
-                            if (attribute != null) {
-                                // Grab the JNDI value
-                                Object value = attribute.get();
-                                // Check the value is not null
-                                if (value != null) {
-                                    // Convert the JNDI value to its Java representation - this will throw if the
-                                    // conversion fails
-                                    Object convertedValue = converterManager.convert(value, attributeInfo.getSyntax(),
-                                            attributeInfo.getValueClass());
-                                    // Set it in the Java version
-                                    field.set(result, convertedValue);
-                                }
-                            }
-                        } else { // We are dealing with a multi valued attribute
-                            // We need to build up a list of values
-                            List<Object> fieldValues = new ArrayList<Object>();
-                            // Grab the attribute from the JNDI representation
-                            Attribute currentAttribute = attributeValueMap.get(attributeInfo.getName());
-                            // There is no guarantee that this attribute is present in the directory - so ignore nulls
-                            if (currentAttribute != null) {
-                                // Loop through the values of the JNDI attribute
-                                NamingEnumeration<?> valuesEmumeration = currentAttribute.getAll();
-                                while (valuesEmumeration.hasMore()) {
-                                    // Get the current value
-                                    Object value = valuesEmumeration.nextElement();
-                                    // Check the value is not null
-                                    if (value != null) {
-                                        // Convert the value to its Java representation and add it to our working list
-                                        fieldValues.add(converterManager.convert(value, attributeInfo.getSyntax(),
-                                                attributeInfo.getValueClass()));
-                                    }
-                                }
-                            }
-                            // Now we need to set the List in to a Java object
-                            field.set(result, fieldValues);
-                        }
-                    } else { // The id field
-                        field.set(result, converterManager.convert(context.getDn(), attributeInfo.getSyntax(),
-                                attributeInfo.getValueClass()));
-                    }
+                // Get all object class values from the JNDI attribute
+                Set<CaseIgnoreString> objectClassesFromJndi = new HashSet<CaseIgnoreString>();
+                NamingEnumeration<?> objectClassesFromJndiEnum = ocAttribute.getAll();
+                while (objectClassesFromJndiEnum.hasMoreElements()) {
+                    objectClassesFromJndi.add(new CaseIgnoreString((String)objectClassesFromJndiEnum.nextElement()));
                 }
-
-                // If this is the objectclass attribute then check that values correspond to the metadata we have
-                // for the Java representation
-                Attribute ocAttribute = attributeValueMap.get(OBJECT_CLASS_ATTRIBUTE_CI);
-                if (ocAttribute != null) {
-                    // Get all object class values from the JNDI attribute
-                    Set<CaseIgnoreString> objectClassesFromJndi = new HashSet<CaseIgnoreString>();
-                    NamingEnumeration<?> objectClassesFromJndiEnum = ocAttribute.getAll();
-                    while (objectClassesFromJndiEnum.hasMoreElements()) {
-                        objectClassesFromJndi.add(new CaseIgnoreString((String)objectClassesFromJndiEnum.nextElement()));
-                    }
-                    // OK - checks its the same as the meta-data we have
-                    if (!objectClassesFromJndi.equals(metaData.getObjectClasses())) {
-                        // The items found has classes in addition to those searched for - so ditch it
-                        return null;
-                    }
-
-                } else {
-                    throw new InvalidEntryException(String.format("No object classes were returned for class %1$s",
-                            managedClass.getName()));
+                // OK - checks its the same as the meta-data we have
+                if (!objectClassesFromJndi.equals(entityData.metaData.getObjectClasses())) {
+                    // The items found has classes in addition to those searched for - so ditch it
+                    return null;
                 }
-
             } catch (NamingException ne) {
                 throw new InvalidEntryException(String.format("Problem creating %1$s from LDAP Entry %2$s",
                         managedClass, object), ne);
-            } catch (IllegalAccessException iae) {
-                throw new InvalidEntryException(String.format(
-                        "Could not create an instance of %1$s could not access field", managedClass.getName()), iae);
-            } catch (InstantiationException ie) {
-                throw new InvalidEntryException(String.format("Could not instantiate %1$s", managedClass), ie);
+            }
+
+            T result = entityData.<T>getEntryMapper().mapFromContext(context);
+            if (snapshot) {
+                putSnapshot(result, context.getDn(), context.getAttributes());
             }
 
             if (LOG.isDebugEnabled()) {
@@ -0,0 +1,226 @@
+package org.springframework.ldap.odm.core.impl;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import javax.naming.Name;
+import javax.naming.NamingException;
+import javax.naming.directory.Attribute;
+import javax.naming.directory.Attributes;
+
+import org.springframework.ldap.core.DirContextOperations;
+import org.springframework.ldap.odm.typeconversion.ConverterManager;
+import org.springframework.ldap.odm.typeconversion.impl.ConverterManagerImpl;
+import org.springframework.ldap.odm.typeconversion.impl.ResolvedConversion;
+
+/*
+ * The default EntryMapper, used for managed classes which have no specialized mapper. 
+ * 
+ * All meta-data lookups are done once when the mapper is created, leaving only the 
+ * reflective field access and the type conversion to be done for each entry. With a 
+ * ConverterManagerImpl the converters for each field are looked up up front too.
+ * 
+ * @author agent
+ * @since 1.3.2
+ */
+/* package */ final class ReflectiveEntryMapper<T> extends AbstractEntryMapper<T> {
+    // The conversion of the values of one field in one direction
+    private static final class FieldConversion {
+        private final ConverterManager converterManager;
+        // Set if the converter manager can resolve conversions up front
+        private final ConverterManagerImpl resolvingConverterManager;
+        private final String syntax;
+        private final Class<?> toClass;
+        // Resolved for the class of the values seen so far, if the converter manager allows
+        private volatile ResolvedConversion resolved;
+
+        private FieldConversion(ConverterManager converterManager, Class<?> fromClass, String syntax, Class<?> toClass) {
+            this.converterManager=converterManager;
+            resolvingConverterManager=(converterManager instanceof ConverterManagerImpl) 
+                ? (ConverterManagerImpl)converterManager : null;
+            this.syntax=syntax;
+            this.toClass=toClass;
+            if (resolvingConverterManager!=null && !fromClass.isPrimitive()) {
+                resolved=resolvingConverterManager.getConversion(fromClass, syntax, toClass);
+            }
+        }
+
+        private Object convert(Object value) {
+            if (resolvingConverterManager==null) {
+                return converterManager.convert(value, syntax, toClass);
+            }
+            ResolvedConversion conversion=resolved;
+            if (conversion==null || conversion.getFromClass()!=value.getClass() || !conversion.isCurrent()) {
+                conversion=resolvingConverterManager.getConversion(value.getClass(), syntax, toClass);
+                resolved=conversion;
+            }
+            return conversion.convert(value);
+        }
+    }
+
+    // Everything needed to map one field, pulled out of the AttributeMetaData
+    private static final class FieldMapping {
+        private final Field field;
+        private final String name;
+        private final String syntax;
+        private final Class<?> valueClass;
+        // byte[] for binary attributes, String otherwise
+        private final Class<?> jndiClass;
+        private final boolean isList;
+        private final FieldConversion fromJndi;
+        private final FieldConversion toJndi;
+
+        private FieldMapping(AttributeMetaData attributeInfo, ConverterManager converterManager) {
+            field=attributeInfo.getField();
+            name=attributeInfo.getName().toString();
+            syntax=attributeInfo.getSyntax();
+            valueClass=attributeInfo.getValueClass();
+            jndiClass=(attributeInfo.isBinary()) ? byte[].class : String.class;
+            isList=attributeInfo.isList();
+            fromJndi=new FieldConversion(converterManager, jndiClass, syntax, valueClass);
+            toJndi=new FieldConversion(converterManager, valueClass, syntax, jndiClass);
+        }
+    }
+
+    private final Class<T> managedClass;
+
+    private final Constructor<T> constructor;
+
+    private final FieldMapping idMapping;
+
+    // All fields read from LDAP, including the object classes
+    private final FieldMapping[] readMappings;
+
+    // All fields written to LDAP - the object classes are set by the OdmManager
+    private final FieldMapping[] writeMappings;
+
+    /* package */ ReflectiveEntryMapper(Class<T> managedClass, ObjectMetaData metaData, ConverterManager converterManager) {
+        super(converterManager);
+
+        this.managedClass=managedClass;
+        try {
+            constructor=managedClass.getConstructor();
+        } catch (NoSuchMethodException e) {
+            throw new InvalidEntryException(String.format(
+                    "The class %1$s must have a zero argument constructor to be an Entry", managedClass), e);
+        }
+
+        List<FieldMapping> reads=new ArrayList<FieldMapping>();
+        List<FieldMapping> writes=new ArrayList<FieldMapping>();
+        for (Field field : metaData) {
+            AttributeMetaData attributeInfo=metaData.getAttribute(field);
+            if (!attributeInfo.isId()) {
+                FieldMapping mapping=new FieldMapping(attributeInfo, converterManager);
+                reads.add(mapping);
+                if (!attributeInfo.isObjectClass()) {
+                    writes.add(mapping);
+                }
+            }
+        }
+        idMapping=new FieldMapping(metaData.getIdAttribute(), converterManager);
+        readMappings=reads.toArray(new FieldMapping[reads.size()]);
+        writeMappings=writes.toArray(new FieldMapping[writes.size()]);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.springframework.ldap.odm.core.impl.EntryMapper#mapFromContext(org.springframework.ldap.core.DirContextOperations)
+     */
+    public T mapFromContext(DirContextOperations context) {
+        try {
+            T result=constructor.newInstance();
+
+            Attributes attributes=context.getAttributes();
+            for (FieldMapping mapping : readMappings) {
+                Attribute attribute=getAttribute(attributes, mapping.name);
+                if (!mapping.isList) {
+                    // There is no guarantee that this attribute is present in the directory - so ignore nulls
+                    if (attribute!=null) {
+                        Object value=attribute.get();
+                        if (value!=null) {
+                            mapping.field.set(result, mapping.fromJndi.convert(value));
+                        }
+                    }
+                } else {
+                    // Multi valued attributes are always set, albeit possibly to an empty list
+                    List<Object> fieldValues=new ArrayList<Object>(attribute!=null ? attribute.size() : 0);
+                    if (attribute!=null) {
+                        for (int index=0; index<attribute.size(); index++) {
+                            Object value=attribute.get(index);
+                            if (value!=null) {
+                                fieldValues.add(mapping.fromJndi.convert(value));
+                            }
+                        }
+                    }
+                    mapping.field.set(result, fieldValues);
+                }
+            }
+
+            idMapping.field.set(result, idMapping.fromJndi.convert(context.getDn()));
+
+            return result;
+        } catch (NamingException ne) {
+            throw new InvalidEntryException(String.format("Problem creating %1$s from LDAP Entry %2$s",
+                    managedClass, context), ne);
+        } catch (IllegalAccessException iae) {
+            throw new InvalidEntryException(String.format(
+                    "Could not create an instance of %1$s could not access field", managedClass.getName()), iae);
+        } catch (InstantiationException ie) {
+            throw new InvalidEntryException(String.format("Could not instantiate %1$s", managedClass), ie);
+        } catch (InvocationTargetException ite) {
+            throw new InvalidEntryException(String.format("Could not instantiate %1$s", managedClass), ite);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.springframework.ldap.odm.core.impl.EntryMapper#mapToContext(java.lang.Object, org.springframework.ldap.core.DirContextOperations)
+     */
+    public void mapToContext(T entry, DirContextOperations context) {
+        for (FieldMapping mapping : writeMappings) {
+            try {
+                if (!mapping.isList) {
+                    Object fieldValue=mapping.field.get(entry);
+                    // Ignore null field values
+                    if (fieldValue!=null) {
+                        context.setAttributeValue(mapping.name, mapping.toJndi.convert(fieldValue));
+                    }
+                } else {
+                    Collection<?> fieldValues=(Collection<?>)mapping.field.get(entry);
+                    // Ignore null lists
+                    if (fieldValues!=null) {
+                        List<Object> attributeValues=new ArrayList<Object>(fieldValues.size());
+                        for (Object o : fieldValues) {
+                            // Ignore null values
+                            if (o!=null) {
+                                attributeValues.add(mapping.toJndi.convert(o));
+                            }
+                        }
+                        context.setAttributeValues(mapping.name, attributeValues.toArray());
+                    }
+                }
+            } catch (IllegalAccessException e) {
+                throw new InvalidEntryException(String.format("Can't set attribute %1$s", mapping.name), e);
+            }
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.springframework.ldap.odm.core.impl.EntryMapper#getId(java.lang.Object)
+     */
+    public Name getId(T entry) {
+        try {
+            return (Name)idMapping.field.get(entry);
+        } catch (IllegalAccessException e) {
+            throw new InvalidEntryException(String.format("Can't get Id field from Entry %1$s", entry), e);
+        }
+    }
+}
@@ -72,7 +72,14 @@ import freemarker.template.TemplateException;
  * <li><code>-u,--username &lt;dn></code>                           DN to bind with.  Defaults to "". Optional.</li>
  * <li><code>-p,--password &lt;password></code>                     Password to bind with. Defaults to "". Optional.</li>
  * <li><code>-t,--outputdir &lt;output directory></code>            Base output directory, defaults to ".". Optional.</li>
+ * <li><code>-m,--mapper</code>                                     Also create an 
+ * {@link org.springframework.ldap.odm.core.impl.EntryMapper} for the Java class. Optional.</li>
  * </ul>
+ * <p>
+ * The <code>EntryMapper</code> created by the <code>-m</code> flag is named as the Java class followed by 
+ * <code>EntryMapper</code>, and is picked up automatically by 
+ * {@link org.springframework.ldap.odm.core.impl.OdmManagerImpl} to map the Java class without the use 
+ * of reflection.
  * 
  * @author Paul Harvey &lt;paul.at.pauls-place.me.uk>
  * 
@@ -83,6 +90,12 @@ public final class SchemaToJava {
     // Name of the FreeMarker template used to generate the Java code.
     private static String TEMPLATE_FILE = "oc-to-java.ftl";
     
+    // Name of the FreeMarker template used to generate the EntryMapper code.
+    private static String MAPPER_TEMPLATE_FILE = "oc-to-mapper.ftl";
+    
+    // Suffix of the name of the generated EntryMapper class
+    private static String MAPPER_CLASS_SUFFIX = "EntryMapper";
+    
     // Name of file containing the list of attributes syntaxes to 
     // returned as byte[] by the JNDI LDAP provider.
     private static String BINARY_FILE = "binary-attributes.txt";
@@ -103,6 +116,7 @@ public final class SchemaToJava {
         PACKAGE("k", "package"),
         SYNTAX_MAP("s", "syntaxmap"),
         OUTPUT_DIR("t", "outputdir"),
+        MAPPER("m", "mapper"),
         HELP("h", "help");
 
         private String shortName;
@@ -138,6 +152,7 @@ public final class SchemaToJava {
         options.addOption(Flag.PACKAGE.getShort(), Flag.PACKAGE.getLong(), true, "Package to create the Java class in");
         options.addOption(Flag.SYNTAX_MAP.getShort(), Flag.SYNTAX_MAP.getLong(), true, "Syntax map file (optional)");
         options.addOption(Flag.OUTPUT_DIR.getShort(), Flag.OUTPUT_DIR.getLong(), true, "Base output directory (defaults to .)");
+        options.addOption(Flag.MAPPER.getShort(), Flag.MAPPER.getLong(), false, "Also create an EntryMapper for the Java class");
         options.addOption(Flag.HELP.getShort(), Flag.HELP.getLong(), false, "Print this help message");
     }
 
@@ -238,7 +253,7 @@ public final class SchemaToJava {
     }
     
     // Create the Java
-    private static void createCode(String packageName, 
+    private static void createCode(String templateFile, String packageName, 
             String className, ObjectSchema schema, Set<SyntaxToJavaClass.ClassInfo> imports, File outputFile) 
         throws IOException, TemplateException {
         
@@ -255,7 +270,7 @@ public final class SchemaToJava {
         model.put("imports", imports); 
  
         // Have FreeMarker process the model with the template
-        Template template = freeMarkerConfiguration.getTemplate(TEMPLATE_FILE);
+        Template template = freeMarkerConfiguration.getTemplate(templateFile);
         
         if (LOG.isDebugEnabled()) {
             Writer out = new OutputStreamWriter(System.out);
@@ -432,7 +447,11 @@ public final class SchemaToJava {
 
         // Create the Java code
         try {
-            createCode(packageName, className, schema, imports, outputFile);
+            createCode(TEMPLATE_FILE, packageName, className, schema, imports, outputFile);
+            if (cmd.hasOption(Flag.MAPPER.getShort())) {
+                File mapperOutputFile = makeOutputFile(outputDir, packageName, className+MAPPER_CLASS_SUFFIX);
+                createCode(MAPPER_TEMPLATE_FILE, packageName, className, schema, imports, mapperOutputFile);
+            }
         } catch (TemplateException te) {
             error(String.format("Error generating code - %1$s", te.toString()));
         } catch (IOException ioe) {
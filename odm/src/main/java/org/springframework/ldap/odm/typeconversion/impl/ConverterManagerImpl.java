@@ -2,6 +2,7 @@ package org.springframework.ldap.odm.typeconversion.impl;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.springframework.ldap.odm.typeconversion.ConverterException;
 import org.springframework.ldap.odm.typeconversion.ConverterManager;
@@ -19,36 +20,67 @@ import org.springframework.ldap.odm.typeconversion.ConverterManager;
  * the <code>toClass</code> ignoring the <code>syntax</code>.</li>
  * <li>If this fails then throw a {@link org.springframework.ldap.odm.typeconversion.ConverterException}.</li>
  * </ol>
+ * <p>
+ * The outcome of the lookups is remembered for each combination of classes and syntax, 
+ * so they are only done the first time a conversion is asked for. 
  * 
  * @author Paul Harvey &lt;paul.at.pauls-place.me.uk>
  */
 public final class ConverterManagerImpl implements ConverterManager {
     /**
-     * Separator used to form keys into the converters Map.
+     * Key into the converters Map - formed from the <code>fromClass</code>, syntax and <code>toClass</code>.
+     * Classes are compared by identity.
      */
-    private static final String KEY_SEP = ":";
+    private static final class ConverterKey {
+        private final Class<?> fromClass;
+        private final String syntax;
+        private final Class<?> toClass;
+        private final int hashCode;
+
+        private ConverterKey(Class<?> fromClass, String syntax, Class<?> toClass) {
+            this.fromClass=fromClass;
+            this.syntax=(syntax==null) ? "" : syntax;
+            this.toClass=toClass;
+            hashCode=(31*(31*System.identityHashCode(fromClass)+this.syntax.hashCode()))+System.identityHashCode(toClass);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this==obj) {
+                return true;
+            }
+            if (!(obj instanceof ConverterKey)) {
+                return false;
+            }
+            ConverterKey other=(ConverterKey)obj;
+            return fromClass==other.fromClass && toClass==other.toClass && syntax.equals(other.syntax);
+        }
+    }
 
     /**
-     * Map of keys created via makeConverterKey to Converter instances.
+     * Map of keys to Converter instances.
      */
-    private final Map<String, Converter> converters = new HashMap<String, Converter>();
+    private final Map<ConverterKey, Converter> converters = new HashMap<ConverterKey, Converter>();
 
     /**
-     * Make a key into the converters map - the keys is formed from the <code>fromClass</code>, syntax and <code>toClass</code>
-     * 
-     * @param fromClass The class to convert from.
-     * @param syntax The LDAP syntax.
-     * @param toClass The class to convert to.
-     * @return key
+     * The conversions resolved so far, keyed on the source class, the syntax as given and the requested class.
+     * Syntaxes are told apart from no syntax by the separate map.
      */
-    private String makeConverterKey(Class<?> fromClass, String syntax, Class<?> toClass) {
-        StringBuilder key = new StringBuilder();
-        if (syntax==null) {
-            syntax="";
-        }
-        key.append(fromClass.getName()).append(KEY_SEP).append(syntax).append(KEY_SEP).append(toClass.getName());
-        return key.toString();
-    }
+    private final Map<ConverterKey, ResolvedConversion> conversions = 
+        new ConcurrentHashMap<ConverterKey, ResolvedConversion>();
+
+    private final Map<ConverterKey, ResolvedConversion> nullSyntaxConversions = 
+        new ConcurrentHashMap<ConverterKey, ResolvedConversion>();
+
+    /**
+     * Incremented whenever a converter is added, making all conversions resolved before out of date.
+     */
+    private volatile int generation;
 
     /**
      * Create an empty ConverterManagerImpl
@@ -87,64 +119,66 @@ public final class ConverterManagerImpl implements ConverterManager {
             fixedFromClass = primitiveTypeMap.get(fromClass);
         }
         return fixedToClass.isAssignableFrom(fixedFromClass) ||
-                (converters.get(makeConverterKey(fixedFromClass, syntax, fixedToClass)) != null) ||
-                (converters.get(makeConverterKey(fixedFromClass, null, fixedToClass)) != null);
+                (converters.get(new ConverterKey(fixedFromClass, syntax, fixedToClass)) != null) ||
+                (converters.get(new ConverterKey(fixedFromClass, null, fixedToClass)) != null);
     }
 
-
-    /* 
-     * (non-Javadoc)
-     * @see org.springframework.ldap.odm.typeconversion.ConverterManager#convert(java.lang.Object, java.lang.String, java.lang.Class)
+    /**
+     * Get the conversion of instances of <code>fromClass</code> to <code>toClass</code> 
+     * via the given syntax, with the converters to use looked up. 
+     * 
+     * @param fromClass The class to convert from - this should be the actual class of the 
+     * objects that will be converted rather than one of its super classes.
+     * @param syntax The LDAP syntax to use (may be null).
+     * @param toClass The class to convert to.
+     * @return The conversion, which may not be possible - see {@link ResolvedConversion#isPossible()}.
+     * @since 1.3.2
      */
-    @SuppressWarnings("unchecked")
-    public <T> T convert(Object source, String syntax, Class<T> toClass) {
-        Object result = null;
+    public ResolvedConversion getConversion(Class<?> fromClass, String syntax, Class<?> toClass) {
+        ConverterKey key = new ConverterKey(fromClass, syntax, toClass);
+        Map<ConverterKey, ResolvedConversion> resolved = (syntax == null) ? nullSyntaxConversions : conversions;
+        ResolvedConversion result = resolved.get(key);
+        if (result == null) {
+            result = resolveConversion(fromClass, syntax, toClass);
+            resolved.put(key, result);
+        }
+        return result;
+    }
 
-        // What are we converting form
-        Class<?> fromClass = source.getClass();
+    /* package */ int getGeneration() {
+        return generation;
+    }
 
+    private ResolvedConversion resolveConversion(Class<?> fromClass, String syntax, Class<?> toClass) {
         // Deal with primitives
         Class<?> targetClass = toClass;
         if (toClass.isPrimitive()) {
             targetClass = primitiveTypeMap.get(toClass);
         }
 
-        // Try to convert with any syntax we have been given
-        Converter syntaxConverter = converters.get(makeConverterKey(fromClass, syntax, targetClass));
-        if (syntaxConverter != null) {
-            try {
-                result = syntaxConverter.convert(source, targetClass);
-            } catch (Exception e) {
-                // Ignore as we may still be able to convert successfully
+        Converter syntaxConverter = converters.get(new ConverterKey(fromClass, syntax, targetClass));
+        Converter nullSyntaxConverter = null;
+        if (syntax != null) {
+            nullSyntaxConverter = converters.get(new ConverterKey(fromClass, null, targetClass));
+            if (nullSyntaxConverter == syntaxConverter) {
+                // There is no point in trying the same converter twice
+                nullSyntaxConverter = null;
             }
         }
 
-        // Do we actually need to do any conversion?
-        if (result == null && targetClass.isAssignableFrom(fromClass)) {
-            result = source;
-        }
-
-        // If we were given a syntax and we failed to convert drop back to any mapping
-        // that will work from class -> to class
-        if (result == null && syntax != null) {
-            Converter nullSyntaxConverter = converters.get(makeConverterKey(fromClass, null, targetClass));
-            if (nullSyntaxConverter != null) {
-                try {
-                    result = nullSyntaxConverter.convert(source, targetClass);
-                } catch (Exception e) {
-                    // Handled at the end of the method
-                }
-            }
-        }
+        return new ResolvedConversion(this, generation, fromClass, syntax, toClass, targetClass, syntaxConverter, 
+                targetClass.isAssignableFrom(fromClass), nullSyntaxConverter);
+    }
 
-        if (result == null) {
-            throw new ConverterException(String.format(
-                    "Cannot convert %1$s of class %2$s via syntax %3$s to class %4$s", source, source.getClass(),
-                    syntax, toClass));
-        }
 
+    /* 
+     * (non-Javadoc)
+     * @see org.springframework.ldap.odm.typeconversion.ConverterManager#convert(java.lang.Object, java.lang.String, java.lang.Class)
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T convert(Object source, String syntax, Class<T> toClass) {
         // We cannot do the safe thing of doing a .cast as we need to rely on auto-unboxing to deal with primitives!
-        return (T)result;
+        return (T)getConversion(source.getClass(), syntax, toClass).convert(source);
     }
 
     /**
@@ -156,6 +190,11 @@ public final class ConverterManagerImpl implements ConverterManager {
      * @param converter The <code>Converter</code> to add.
      */
     public void addConverter(Class<?> fromClass, String syntax, Class<?> toClass, Converter converter) {
-        converters.put(makeConverterKey(fromClass, syntax, toClass), converter);
+        converters.put(new ConverterKey(fromClass, syntax, toClass), converter);
+
+        // The conversions resolved so far might have used this converter
+        generation++;
+        conversions.clear();
+        nullSyntaxConversions.clear();
     }
 }
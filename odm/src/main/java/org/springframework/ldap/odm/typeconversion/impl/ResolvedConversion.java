@@ -0,0 +1,129 @@
+package org.springframework.ldap.odm.typeconversion.impl;
+
+import org.springframework.ldap.odm.typeconversion.ConverterException;
+
+/**
+ * A conversion from one class to another via an LDAP syntax, with the {@link Converter}
+ * instances to use already looked up by a {@link ConverterManagerImpl}.
+ * <p>
+ * Callers which repeatedly perform the same conversion, such as the mapping of a field
+ * of an ODM managed class, may obtain an instance once from
+ * {@link ConverterManagerImpl#getConversion(Class, String, Class)} and so avoid looking
+ * up the converters on every call. The result of {@link #convert(Object)} is exactly
+ * the same as that of {@link ConverterManagerImpl#convert(Object, String, Class)} for
+ * a source of class {@link #getFromClass()}.
+ *
+ * @author agent
+ * @since 1.3.2
+ */
+public final class ResolvedConversion {
+    private final ConverterManagerImpl converterManager;
+
+    // The converters of the manager when this was resolved
+    private final int generation;
+
+    private final Class<?> fromClass;
+
+    private final String syntax;
+
+    // The class asked for, which may be primitive
+    private final Class<?> toClass;
+
+    // The class passed to the converters, which is never primitive
+    private final Class<?> targetClass;
+
+    private final Converter syntaxConverter;
+
+    private final boolean assignable;
+
+    private final Converter nullSyntaxConverter;
+
+    /* package */ ResolvedConversion(ConverterManagerImpl converterManager, int generation, 
+            Class<?> fromClass, String syntax, Class<?> toClass, Class<?> targetClass,
+            Converter syntaxConverter, boolean assignable, Converter nullSyntaxConverter) {
+        this.converterManager=converterManager;
+        this.generation=generation;
+        this.fromClass=fromClass;
+        this.syntax=syntax;
+        this.toClass=toClass;
+        this.targetClass=targetClass;
+        this.syntaxConverter=syntaxConverter;
+        this.assignable=assignable;
+        this.nullSyntaxConverter=nullSyntaxConverter;
+    }
+
+    /**
+     * @return The class this conversion converts from. Sources of any other class must be
+     * converted using {@link ConverterManagerImpl#convert(Object, String, Class)}.
+     */
+    public Class<?> getFromClass() {
+        return fromClass;
+    }
+
+    /**
+     * @return <code>false</code> if converters have been added to the <code>ConverterManagerImpl</code> 
+     * since this was resolved, in which case it should be resolved again.
+     */
+    public boolean isCurrent() {
+        return converterManager.getGeneration()==generation;
+    }
+
+    /**
+     * @return <code>true</code> if there is any chance of this conversion succeeding.
+     */
+    public boolean isPossible() {
+        return syntaxConverter!=null || assignable || nullSyntaxConverter!=null;
+    }
+
+    /**
+     * Convert a source object of class {@link #getFromClass()}.
+     *
+     * @param source The object to convert.
+     * @return The converted object.
+     *
+     * @throws ConverterException If the conversion can not be successfully completed.
+     */
+    public Object convert(Object source) {
+        Object result=null;
+
+        // Try to convert with any syntax we have been given
+        if (syntaxConverter!=null) {
+            try {
+                result=syntaxConverter.convert(source, targetClass);
+            } catch (Exception e) {
+                // Ignore as we may still be able to convert successfully
+            }
+        }
+
+        // Do we actually need to do any conversion?
+        if (result==null && assignable) {
+            result=source;
+        }
+
+        // If we were given a syntax and we failed to convert drop back to any mapping
+        // that will work from class -> to class
+        if (result==null && nullSyntaxConverter!=null) {
+            try {
+                result=nullSyntaxConverter.convert(source, targetClass);
+            } catch (Exception e) {
+                // Handled below
+            }
+        }
+
+        if (result==null) {
+            throw new ConverterException(String.format(
+                    "Cannot convert %1$s of class %2$s via syntax %3$s to class %4$s", source, source.getClass(),
+                    syntax, toClass));
+        }
+
+        return result;
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return String.format("ResolvedConversion(from=%1$s, syntax=%2$s, to=%3$s)", fromClass, syntax, toClass);
+    }
+}
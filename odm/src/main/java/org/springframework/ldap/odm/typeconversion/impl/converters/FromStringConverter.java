@@ -1,6 +1,8 @@
 package org.springframework.ldap.odm.typeconversion.impl.converters;
 
 import java.lang.reflect.Constructor;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.springframework.ldap.odm.typeconversion.impl.Converter;
 
@@ -9,16 +11,54 @@ import org.springframework.ldap.odm.typeconversion.impl.Converter;
  * public constructor taking a {@link java.lang.String}.
  * <p>
  * This should only be used as a fall-back converter, as a last attempt.
+ * <p>
+ * The wrapper classes of the primitive types are converted without reflection, and the 
+ * constructors of other classes are only looked up once.
  * 
  * @author Paul Harvey &lt;paul.at.pauls-place.me.uk>
  */
 public final class FromStringConverter implements Converter {
 
+    private final Map<Class<?>, Constructor<?>> constructors = new ConcurrentHashMap<Class<?>, Constructor<?>>();
+
     /* (non-Javadoc)
      * @see org.springframework.ldap.odm.typeconversion.impl.Converter#convert(java.lang.Object, java.lang.Class)
      */
     public <T> T convert(Object source, Class<T> toClass) throws Exception {
-        Constructor<T> constructor = toClass.getConstructor(java.lang.String.class);
-        return constructor.newInstance(source);
+        // These give the same results as the String constructors of the same classes
+        String value = (String)source;
+        if (toClass == Integer.class) {
+            return toClass.cast(Integer.valueOf(value));
+        }
+        if (toClass == Long.class) {
+            return toClass.cast(Long.valueOf(value));
+        }
+        if (toClass == Boolean.class) {
+            return toClass.cast(Boolean.valueOf(value));
+        }
+        if (toClass == Short.class) {
+            return toClass.cast(Short.valueOf(value));
+        }
+        if (toClass == Byte.class) {
+            return toClass.cast(Byte.valueOf(value));
+        }
+        if (toClass == Double.class) {
+            return toClass.cast(Double.valueOf(value));
+        }
+        if (toClass == Float.class) {
+            return toClass.cast(Float.valueOf(value));
+        }
+
+        return getConstructor(toClass).newInstance(value);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> Constructor<T> getConstructor(Class<T> toClass) throws NoSuchMethodException {
+        Constructor<T> constructor = (Constructor<T>)constructors.get(toClass);
+        if (constructor == null) {
+            constructor = toClass.getConstructor(java.lang.String.class);
+            constructors.put(toClass, constructor);
+        }
+        return constructor;
     }
 }
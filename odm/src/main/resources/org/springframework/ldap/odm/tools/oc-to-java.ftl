@@ -55,6 +55,10 @@
             <#lt/>      return Collections.unmodifiableList(${attribute.name}).iterator();
             <#lt/>   }
 
+            <#lt/>   void add${attribute.name?cap_first}(String ${attribute.name}) {
+            <#lt/>      this.${attribute.name}.add(${attribute.name});
+            <#lt/>   }
+
         </#if>
     </#list>
 </#macro>
@@ -0,0 +1,88 @@
+<#ftl strip_whitespace="true">
+
+<#macro readAttribute attributes>
+    <#list attributes as attribute>
+        <#if attribute.isMultiValued>
+            <#lt/>      for (Object current : getValues(attributes, "${attribute.name}")) {
+            <#lt/>         entry.add${attribute.name?cap_first}(convert(current, "${attribute.syntax}", ${attribute.scalarType}.class));
+            <#lt/>      }
+        <#else>
+            <#lt/>      value = getValue(attributes, "${attribute.name}");
+            <#lt/>      if (value != null) {
+            <#lt/>         entry.set${attribute.name?cap_first}(convert(value, "${attribute.syntax}", ${attribute.scalarType}.class));
+            <#lt/>      }
+        </#if>
+    </#list>
+</#macro>
+
+<#macro writeAttribute attributes>
+    <#list attributes as attribute>
+        <#local jndiClass=attribute.isBinary?string("byte[]", "String")>
+        <#if attribute.name!="objectClass">
+            <#if attribute.isMultiValued>
+                <#lt/>      values = new ArrayList<Object>();
+                <#lt/>      for (Iterator<${attribute.scalarType}> i = entry.get${attribute.name?cap_first}Iterator(); i.hasNext();) {
+                <#lt/>         ${attribute.scalarType} current = i.next();
+                <#lt/>         if (current != null) {
+                <#lt/>            values.add(convert(current, "${attribute.syntax}", ${jndiClass}.class));
+                <#lt/>         }
+                <#lt/>      }
+                <#lt/>      context.setAttributeValues("${attribute.name}", values.toArray());
+            <#elseif attribute.isPrimitive>
+                <#lt/>      context.setAttributeValue("${attribute.name}", convert(entry.get${attribute.name?cap_first}(), "${attribute.syntax}", ${jndiClass}.class));
+            <#else>
+                <#lt/>      if (entry.get${attribute.name?cap_first}() != null) {
+                <#lt/>         context.setAttributeValue("${attribute.name}", convert(entry.get${attribute.name?cap_first}(), "${attribute.syntax}", ${jndiClass}.class));
+                <#lt/>      }
+            </#if>
+        </#if>
+    </#list>
+</#macro>
+
+package ${package};
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.naming.Name;
+import javax.naming.directory.Attributes;
+<#list imports as import>
+import ${import.packageName}.${import.className};
+</#list>
+
+import org.springframework.ldap.core.DirContextOperations;
+import org.springframework.ldap.odm.core.impl.AbstractEntryMapper;
+import org.springframework.ldap.odm.typeconversion.ConverterManager;
+
+/**
+* Generated by Spring LDAP ODM to map ${class} without the use of reflection.
+*/
+public final class ${class}EntryMapper extends AbstractEntryMapper<${class}> {
+
+   public ${class}EntryMapper(ConverterManager converterManager) {
+      super(converterManager);
+   }
+
+   public ${class} mapFromContext(DirContextOperations context) {
+      ${class} entry = new ${class}();
+      entry.setDn(context.getDn());
+
+      Attributes attributes = context.getAttributes();
+      Object value = null;
+<@readAttribute schema.must/>
+<@readAttribute schema.may/>
+
+      return entry;
+   }
+
+   public void mapToContext(${class} entry, DirContextOperations context) {
+      List<Object> values = null;
+<@writeAttribute schema.must/>
+<@writeAttribute schema.may/>
+   }
+
+   public Name getId(${class} entry) {
+      return entry.getDn();
+   }
+}
@@ -0,0 +1,50 @@
+package org.springframework.ldap.odm.test;
+
+import javax.naming.Name;
+import javax.naming.directory.Attributes;
+
+import org.springframework.ldap.core.DirContextOperations;
+import org.springframework.ldap.odm.core.impl.AbstractEntryMapper;
+import org.springframework.ldap.odm.typeconversion.ConverterManager;
+
+// A hand written EntryMapper for OrganizationalUnit, passed explicitly to OdmManagerImpl. Not named 
+// <Class>EntryMapper so that other tests still map OrganizationalUnit reflectively.
+public final class OrganizationalUnitMapper extends AbstractEntryMapper<OrganizationalUnit> {
+    public OrganizationalUnitMapper(ConverterManager converterManager) {
+        super(converterManager);
+    }
+
+    public OrganizationalUnit mapFromContext(DirContextOperations context) {
+        Attributes attributes = context.getAttributes();
+
+        String street = null;
+        Object value = getValue(attributes, "street");
+        if (value != null) {
+            street = convert(value, "1.3.6.1.4.1.1466.115.121.1.15", String.class);
+        }
+
+        String description = null;
+        value = getValue(attributes, "description");
+        if (value != null) {
+            description = convert(value, "1.3.6.1.4.1.1466.115.121.1.15", String.class);
+        }
+
+        return new OrganizationalUnit(context.getDn(), street, description);
+    }
+
+    public void mapToContext(OrganizationalUnit entry, DirContextOperations context) {
+        if (entry.getOu() != null) {
+            context.setAttributeValue("ou", entry.getOu());
+        }
+        if (entry.getStreet() != null) {
+            context.setAttributeValue("street", entry.getStreet());
+        }
+        if (entry.getDescription() != null) {
+            context.setAttributeValue("description", entry.getDescription());
+        }
+    }
+
+    public Name getId(OrganizationalUnit entry) {
+        return entry.getDn();
+    }
+}
@@ -0,0 +1,67 @@
+package org.springframework.ldap.odm.test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.naming.Name;
+import javax.naming.directory.Attributes;
+
+import org.springframework.ldap.core.DirContextOperations;
+import org.springframework.ldap.odm.core.impl.AbstractEntryMapper;
+import org.springframework.ldap.odm.typeconversion.ConverterManager;
+
+// A hand written EntryMapper for Person along the lines of those generated by SchemaToJava
+public final class PersonMapper extends AbstractEntryMapper<Person> {
+    public PersonMapper(ConverterManager converterManager) {
+        super(converterManager);
+    }
+
+    public Person mapFromContext(DirContextOperations context) {
+        Attributes attributes = context.getAttributes();
+
+        String surname = null;
+        Object value = getValue(attributes, "sn");
+        if (value != null) {
+            surname = convert(value, "", String.class);
+        }
+
+        List<String> desc = new ArrayList<String>();
+        for (Object current : getValues(attributes, "description")) {
+            desc.add(convert(current, "", String.class));
+        }
+
+        int telephoneNumber = 0;
+        value = getValue(attributes, "telephoneNumber");
+        if (value != null) {
+            telephoneNumber = convert(value, "", int.class);
+        }
+
+        byte[] jpegPhoto = null;
+        value = getValue(attributes, "jpegPhoto");
+        if (value != null) {
+            jpegPhoto = convert(value, "", byte[].class);
+        }
+
+        return new Person(context.getDn(), surname, desc, telephoneNumber, jpegPhoto);
+    }
+
+    public void mapToContext(Person entry, DirContextOperations context) {
+        if (entry.getCn() != null) {
+            context.setAttributeValue("cn", entry.getCn());
+        }
+        if (entry.getSurname() != null) {
+            context.setAttributeValue("sn", entry.getSurname());
+        }
+        if (entry.getDesc() != null) {
+            context.setAttributeValues("description", entry.getDesc().toArray());
+        }
+        context.setAttributeValue("telephoneNumber", convert(entry.getTelephoneNumber(), "", String.class));
+        if (entry.getJpegPhoto() != null) {
+            context.setAttributeValue("jpegPhoto", entry.getJpegPhoto());
+        }
+    }
+
+    public Name getId(Person entry) {
+        return entry.getDn();
+    }
+}
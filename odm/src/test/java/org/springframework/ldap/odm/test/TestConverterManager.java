@@ -1,6 +1,11 @@
 package org.springframework.ldap.odm.test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigInteger;
 
 import java.net.URI;
 import java.util.BitSet;
@@ -13,6 +18,7 @@ import org.springframework.ldap.odm.test.utils.RunnableTest;
 import org.springframework.ldap.odm.typeconversion.ConverterException;
 import org.springframework.ldap.odm.typeconversion.impl.Converter;
 import org.springframework.ldap.odm.typeconversion.impl.ConverterManagerImpl;
+import org.springframework.ldap.odm.typeconversion.impl.ResolvedConversion;
 import org.springframework.ldap.odm.typeconversion.impl.converters.FromStringConverter;
 import org.springframework.ldap.odm.typeconversion.impl.converters.ToStringConverter;
 
@@ -193,6 +199,40 @@ public final class TestConverterManager {
 
     }
 
+    // Conversions are resolved once and give the same results as convert
+    @Test
+    public void resolvedConversion() throws Exception {
+        ResolvedConversion conversion = converterManager.getConversion(String.class, "", int.class);
+        assertSame(conversion, converterManager.getConversion(String.class, "", int.class));
+        assertTrue(conversion.isPossible());
+        assertEquals(String.class, conversion.getFromClass());
+        assertEquals(Integer.valueOf(42), conversion.convert("42"));
+        assertEquals(Integer.valueOf(42), converterManager.convert("42", "", int.class));
+
+        assertFalse(converterManager.getConversion(BitSet.class, "", Integer.class).isPossible());
+    }
+
+    // Converters added after a conversion has been resolved are used from then on
+    @Test
+    public void converterAddedAfterResolving() throws Exception {
+        ResolvedConversion conversion = converterManager.getConversion(String.class, "1", Integer.class);
+        assertEquals(Integer.valueOf(3), conversion.convert("3"));
+        assertTrue(conversion.isCurrent());
+
+        converterManager.addConverter(String.class, "1", Integer.class, new SquaredConverter());
+        assertFalse(conversion.isCurrent());
+        assertEquals(Integer.valueOf(9), converterManager.convert("3", "1", Integer.class));
+    }
+
+    // Classes other than the primitive wrappers are created via their String constructor
+    @Test
+    public void fromStringConstructor() throws Exception {
+        converterManager.addConverter(String.class, "", BigInteger.class, new FromStringConverter());
+        assertEquals(new BigInteger("12345678901234567890"), 
+                converterManager.convert("12345678901234567890", "", BigInteger.class));
+        assertEquals(BigInteger.ONE, converterManager.convert("1", "", BigInteger.class));
+    }
+
     // No converter for classes
     @Test(expected = ConverterException.class)
     public void noClassConverter() throws Exception {
@@ -1,17 +1,32 @@
 package org.springframework.ldap.odm.test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 
 import javax.naming.Name;
+import javax.naming.NamingEnumeration;
+import javax.naming.NamingException;
+import javax.naming.directory.DirContext;
 import javax.naming.directory.SearchControls;
+import javax.naming.directory.SearchResult;
+import javax.naming.ldap.Control;
+import javax.naming.ldap.LdapContext;
+import javax.naming.ldap.PagedResultsControl;
+import javax.naming.ldap.PagedResultsResponseControl;
 
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
@@ -28,15 +43,25 @@ import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.ldap.NameNotFoundException;
 import org.springframework.ldap.core.ContextSource;
+import org.springframework.ldap.core.DirContextOperations;
 import org.springframework.ldap.core.DistinguishedName;
+import org.springframework.ldap.core.simple.ParameterizedCloseableIterator;
+import org.springframework.ldap.core.support.ForwardingDirContext;
+import org.springframework.ldap.core.support.ForwardingLdapContext;
 import org.springframework.ldap.core.support.LdapContextSource;
 import org.springframework.ldap.odm.annotations.Attribute;
 import org.springframework.ldap.odm.annotations.Entry;
 import org.springframework.ldap.odm.annotations.Id;
+import org.springframework.ldap.odm.annotations.Transient;
+import org.springframework.ldap.odm.core.BatchResult;
+import org.springframework.ldap.odm.core.EntryCallback;
 import org.springframework.ldap.odm.core.OdmException;
 import org.springframework.ldap.odm.core.OdmManager;
+import org.springframework.ldap.odm.core.impl.AbstractEntryMapper;
+import org.springframework.ldap.odm.core.impl.EntryCache;
 import org.springframework.ldap.odm.core.impl.InvalidEntryException;
 import org.springframework.ldap.odm.core.impl.MetaDataException;
 import org.springframework.ldap.odm.core.impl.OdmManagerImpl;
@@ -44,12 +69,22 @@ import org.springframework.ldap.odm.core.impl.UnmanagedClassException;
 import org.springframework.ldap.odm.test.utils.ExecuteRunnable;
 import org.springframework.ldap.odm.test.utils.GetFreePort;
 import org.springframework.ldap.odm.test.utils.RunnableTest;
+import org.springframework.ldap.odm.typeconversion.ConverterManager;
 import org.springframework.ldap.odm.typeconversion.impl.Converter;
 import org.springframework.ldap.odm.typeconversion.impl.ConverterManagerImpl;
 import org.springframework.ldap.odm.typeconversion.impl.converters.FromStringConverter;
 import org.springframework.ldap.odm.typeconversion.impl.converters.ToStringConverter;
 import org.springframework.ldap.test.LdapTestUtils;
 
+import com.sun.jndi.ldap.Ber;
+import com.sun.jndi.ldap.BerDecoder;
+import com.sun.jndi.ldap.BerEncoder;
+import org.springframework.ldap.transaction.compensating.manager.ContextSourceTransactionManager;
+import org.springframework.ldap.transaction.compensating.manager.TransactionAwareContextSourceProxy;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionTemplate;
+
 // Tests all OdmManager functions
 public final class TestLdap {
     private static final Log LOG = LogFactory.getLog(TestLdap.class);
@@ -324,6 +359,213 @@ public final class TestLdap {
         assertEquals(new HashSet<Person>(Arrays.asList(personTestData)), new HashSet<Person>(allPeople));
     }
 
+    // Iterate over all entries, which should skip those with additional object classes
+    @Test
+    public void searchForIterator() throws Exception {
+        Set<Person> allPeople = new HashSet<Person>();
+        ParameterizedCloseableIterator<Person> people = odmManager.searchForIterator(Person.class, baseName, null, searchControls);
+        try {
+            while (people.hasNext()) {
+                allPeople.add(people.next());
+            }
+        } finally {
+            people.close();
+        }
+        assertEquals(new HashSet<Person>(Arrays.asList(personTestData)), allPeople);
+    }
+
+    // Page through all entries, which should skip those with additional object classes
+    @Test
+    public void findAllPaged() throws Exception {
+        PagingContextSource pagingContextSource=new PagingContextSource(contextSource);
+        OdmManagerImpl pagingOdmManager=new OdmManagerImpl(converterManager, pagingContextSource);
+        pagingOdmManager.addManagedClass(Person.class);
+
+        final List<Person> allPeople=new ArrayList<Person>();
+        pagingOdmManager.findAllPaged(Person.class, baseName, searchControls, 3, new EntryCallback<Person>() {
+            public void handleEntry(Person entry) {
+                allPeople.add(entry);
+            }
+        });
+        assertEquals(personTestData.length, allPeople.size());
+        assertEquals(new HashSet<Person>(Arrays.asList(personTestData)), new HashSet<Person>(allPeople));
+
+        // The cookie of each page is passed on to get the next, all on the same connection
+        assertEquals(pagingContextSource.cookies.size(), pagingContextSource.searches);
+        assertTrue(pagingContextSource.searches>2);
+        assertEquals(0, pagingContextSource.cookies.get(0).length);
+        for (int page=1; page<pagingContextSource.searches; page++) {
+            assertEquals(page*3, pagingContextSource.cookies.get(page)[0]);
+        }
+        assertEquals(1, pagingContextSource.contexts);
+    }
+
+    // Page through a search, of which no entry is snapshotted
+    @Test
+    public void searchPaged() throws Exception {
+        PagingContextSource pagingContextSource=new PagingContextSource(contextSource);
+        OdmManagerImpl pagingOdmManager=new OdmManagerImpl(converterManager, pagingContextSource);
+        pagingOdmManager.addManagedClass(Person.class);
+
+        final List<Person> doctors=new ArrayList<Person>();
+        pagingOdmManager.searchPaged(Person.class, baseName, "(description=*Doctor)", searchControls, 2, new EntryCallback<Person>() {
+            public void handleEntry(Person entry) {
+                doctors.add(entry);
+            }
+        });
+        // Paul Harvey is found too, in the last of three pages, but left out for his additional object class
+        assertEquals(5, doctors.size());
+        assertEquals(3, pagingContextSource.searches);
+
+        // Change an entry behind the back of the OdmManager; as nothing was snapshotted, updating the entry
+        // found compares against the directory and so puts back the surname found
+        Person william=doctors.get(doctors.indexOf(personTestData[PersonName.WILLIAM.getIndex()]));
+        Person changedWilliam=odmManager.read(Person.class, william.getDn());
+        changedWilliam.setSurname("Hurndall");
+        odmManager.update(changedWilliam);
+
+        pagingOdmManager.update(william);
+        assertEquals("Hartnell", odmManager.read(Person.class, william.getDn()).getSurname());
+    }
+
+    /*
+     * The test server does not support paged results, so the read-only contexts handed out by this
+     * page the results of each search themselves, with the offset of the next entry as cookie.
+     */
+    private static final class PagingContextSource implements ContextSource {
+        private final ContextSource target;
+
+        private int contexts;
+
+        private int searches;
+
+        // The cookie sent with each search
+        private final List<byte[]> cookies=new ArrayList<byte[]>();
+
+        private PagingContextSource(ContextSource target) {
+            this.target=target;
+        }
+
+        public DirContext getReadOnlyContext() {
+            contexts++;
+            return new PagingLdapContext((LdapContext)target.getReadOnlyContext());
+        }
+
+        public DirContext getReadWriteContext() {
+            return target.getReadWriteContext();
+        }
+
+        public DirContext getContext(String principal, String credentials) {
+            return target.getContext(principal, credentials);
+        }
+
+        private final class PagingLdapContext extends ForwardingLdapContext {
+            private Control[] requestControls;
+
+            private PagedResultsControl pagedResultsControl;
+
+            private Control[] responseControls;
+
+            private PagingLdapContext(LdapContext target) {
+                super(target, new ForwardingDirContext.Interceptor() {
+                    public void close(DirContext context) throws NamingException {
+                        context.close();
+                    }
+
+                    public boolean performWriteOperation(DirContext context, String operation, Object[] args) {
+                        return false;
+                    }
+                });
+            }
+
+            @Override
+            public Control[] getRequestControls() {
+                return requestControls;
+            }
+
+            @Override
+            public void setRequestControls(Control[] requestControls) {
+                this.requestControls=requestControls;
+                pagedResultsControl=null;
+                for (Control control : requestControls) {
+                    if (control instanceof PagedResultsControl) {
+                        pagedResultsControl=(PagedResultsControl)control;
+                    }
+                }
+            }
+
+            @Override
+            public Control[] getResponseControls() {
+                return responseControls;
+            }
+
+            @Override
+            public NamingEnumeration<SearchResult> search(Name name, String filter, SearchControls cons) throws NamingException {
+                List<SearchResult> results=new ArrayList<SearchResult>();
+                NamingEnumeration<SearchResult> all=super.search(name, filter, cons);
+                while (all.hasMore()) {
+                    results.add(all.next());
+                }
+                if (pagedResultsControl==null) {
+                    responseControls=null;
+                    return new ListEnumeration(results);
+                }
+
+                searches++;
+                try {
+                    BerDecoder request=new BerDecoder(pagedResultsControl.getEncodedValue(), 0, pagedResultsControl.getEncodedValue().length);
+                    request.parseSeq(null);
+                    int pageSize=request.parseInt();
+                    byte[] cookie=request.parseOctetString(Ber.ASN_OCTET_STR, null);
+                    cookies.add(cookie);
+
+                    int from=cookie.length>0 ? cookie[0] : 0;
+                    int to=Math.min(from+pageSize, results.size());
+                    byte[] nextCookie=to<results.size() ? new byte[] { (byte)to } : new byte[0];
+
+                    BerEncoder response=new BerEncoder(10+nextCookie.length);
+                    response.beginSeq(Ber.ASN_SEQUENCE | Ber.ASN_CONSTRUCTOR);
+                    response.encodeInt(results.size());
+                    response.encodeOctetString(nextCookie, Ber.ASN_OCTET_STR);
+                    response.endSeq();
+                    responseControls=new Control[] { 
+                            new PagedResultsResponseControl(PagedResultsControl.OID, false, response.getTrimmedBuf()) };
+
+                    return new ListEnumeration(results.subList(from, to));
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }
+    }
+
+    private static final class ListEnumeration implements NamingEnumeration<SearchResult> {
+        private final Iterator<SearchResult> iterator;
+
+        private ListEnumeration(List<SearchResult> results) {
+            iterator=results.iterator();
+        }
+
+        public boolean hasMore() {
+            return iterator.hasNext();
+        }
+
+        public SearchResult next() {
+            return iterator.next();
+        }
+
+        public boolean hasMoreElements() {
+            return iterator.hasNext();
+        }
+
+        public SearchResult nextElement() {
+            return iterator.next();
+        }
+
+        public void close() {
+        }
+    }
+
     private Person[] createTestData = {
             new Person(new DistinguishedName("cn=Colin Baker,ou=Doctors,o=Whoniverse"), "Baker", Arrays
                     .asList(new String[] { "Sixth Doctor" }), 6, null),
@@ -351,6 +593,116 @@ public final class TestLdap {
         }, createTestData);
     }
 
+    // Search populating only some of the fields of the returned entries
+    @Test
+    public void searchWithProjection() throws Exception {
+        List<Person> people = odmManager.search(Person.class, baseName, "(sn=Unknown)", searchControls,
+                new String[] { "surname", "dn" });
+        assertEquals(2, people.size());
+        for (Person person : people) {
+            assertEquals("Unknown", person.getSurname());
+            assertNull(person.getCn());
+            assertTrue(person.getDesc().isEmpty());
+            assertNull(person.getJpegPhoto());
+            assertEquals(0, person.getTelephoneNumber());
+        }
+    }
+
+    // Projecting on a field that is not mapped should be flagged as an error
+    @Test(expected = MetaDataException.class)
+    public void searchWithProjectionOnUnknownField() throws Exception {
+        odmManager.search(Person.class, baseName, "(sn=Unknown)", searchControls, new String[] { "someRandomField" });
+    }
+
+    // Read entries using a specialized EntryMapper rather than the reflective one
+    @Test
+    public void readWithEntryMapper() throws Exception {
+        final OdmManagerImpl mappedOdmManager = new OdmManagerImpl(converterManager, contextSource);
+        mappedOdmManager.addManagedClass(Person.class, new PersonMapper(converterManager));
+        new ExecuteRunnable<Person>().runTests(new RunnableTest<Person>() {
+            public void runTest(Person testData) {
+                Person personEntry = mappedOdmManager.read(Person.class, testData.getDn());
+                assertEquals(testData, personEntry);
+            }
+        }, personTestData);
+    }
+
+    // Create entries using a specialized EntryMapper and check they read back the same using the reflective one
+    @Test
+    public void createWithEntryMapper() throws Exception {
+        OdmManagerImpl mappedOdmManager = new OdmManagerImpl(converterManager, contextSource);
+        mappedOdmManager.addManagedClass(Person.class, new PersonMapper(converterManager));
+        for (Person person : createTestData) {
+            mappedOdmManager.create(person);
+        }
+        new ExecuteRunnable<Person>().runTests(new RunnableTest<Person>() {
+            public void runTest(Person testData) {
+                Person personEntry = odmManager.read(Person.class, testData.getDn());
+                assertEquals(testData, personEntry);
+            }
+        }, createTestData);
+    }
+
+    // Read and write a second class through a specialized EntryMapper
+    @Test
+    public void organizationalUnitWithEntryMapper() throws Exception {
+        OdmManagerImpl mappedOdmManager = new OdmManagerImpl(converterManager, contextSource);
+        mappedOdmManager.addManagedClass(OrganizationalUnit.class, new OrganizationalUnitMapper(converterManager));
+        List<OrganizationalUnit> allOus = mappedOdmManager.findAll(OrganizationalUnit.class, baseName, searchControls);
+        assertEquals(new HashSet<OrganizationalUnit>(Arrays.asList(ouTestData)), new HashSet<OrganizationalUnit>(allOus));
+
+        OrganizationalUnit companions = new OrganizationalUnit(new DistinguishedName("ou=Companions,o=Whoniverse"), 
+                "Earth", "Travelling with the Doctor");
+        mappedOdmManager.create(companions);
+        assertEquals(companions, odmManager.read(OrganizationalUnit.class, companions.getDn()));
+    }
+
+    // A class with a mapper named <Class>EntryMapper next to it is mapped by that rather than reflectively
+    @Test
+    public void entryMapperFoundByConvention() throws Exception {
+        OdmManagerImpl conventionOdmManager = new OdmManagerImpl(converterManager, contextSource);
+        conventionOdmManager.addManagedClass(Unit.class);
+        OrganizationalUnit assistants = ouTestData[OrganizationalName.ASSISTANTS.getIndex()];
+        Unit unit = conventionOdmManager.read(Unit.class, assistants.getDn());
+        assertTrue(unit.mappedByConvention);
+        assertEquals(assistants.getDescription(), unit.description);
+    }
+
+    @Entry(objectClasses={ "organizationalunit", "top" })
+    public final static class Unit {
+        @Id
+        private Name dn;
+
+        @Attribute(name="description")
+        private String description;
+
+        @Transient
+        private boolean mappedByConvention;
+    }
+
+    // Found by OdmManagerImpl as the binary name is that of Unit followed by EntryMapper
+    public final static class UnitEntryMapper extends AbstractEntryMapper<Unit> {
+        public UnitEntryMapper(ConverterManager converterManager) {
+            super(converterManager);
+        }
+
+        public Unit mapFromContext(DirContextOperations context) {
+            Unit unit = new Unit();
+            unit.dn = context.getDn();
+            unit.description = context.getStringAttribute("description");
+            unit.mappedByConvention = true;
+            return unit;
+        }
+
+        public void mapToContext(Unit entry, DirContextOperations context) {
+            context.setAttributeValue("description", entry.description);
+        }
+
+        public Name getId(Unit entry) {
+            return entry.dn;
+        }
+    }
+
     // Update an entry from the test data set, read it back and check it is what we'd expect.
     @Test
     public void update() throws Exception {
@@ -362,6 +714,92 @@ public final class TestLdap {
         assertEquals(william, readWilliam);
     }
 
+    // Update entries previously read, which only sends the attributes that have changed
+    @Test
+    public void updateAfterRead() throws Exception {
+        Person master = odmManager.read(Person.class, personTestData[PersonName.MASTER.getIndex()].getDn());
+        master.setJpegPhoto(null);
+        master.setTelephoneNumber(42);
+        master.setDesc(Arrays.asList(new String[] { "An evil Time Lord", "Bearded" }));
+        odmManager.update(master);
+
+        // Read back through a fresh OdmManager to make sure we see the directory content
+        OdmManagerImpl otherOdmManager = new OdmManagerImpl(converterManager, contextSource);
+        otherOdmManager.addManagedClass(Person.class);
+        Person readMaster = otherOdmManager.read(Person.class, master.getDn());
+        assertEquals(master, readMaster);
+
+        // And again, against the state of the previous update
+        master.setSurname("Delgado");
+        master.setDesc(Arrays.asList(new String[] { "Bearded" }));
+        odmManager.update(master);
+        readMaster = otherOdmManager.read(Person.class, master.getDn());
+        assertEquals(master, readMaster);
+    }
+
+    // Update an entry read from one DN after changing its id to that of another entry, which must not be
+    // compared against what was read from the original DN
+    @Test
+    public void updateAfterIdChange() throws Exception {
+        Person william = personTestData[PersonName.WILLIAM.getIndex()];
+        Person master = odmManager.read(Person.class, personTestData[PersonName.MASTER.getIndex()].getDn());
+        master.setDn(william.getDn());
+        master.setCn(william.getCn());
+        odmManager.update(master);
+
+        OdmManagerImpl otherOdmManager = new OdmManagerImpl(converterManager, contextSource);
+        otherOdmManager.addManagedClass(Person.class);
+        assertEquals(master, otherOdmManager.read(Person.class, william.getDn()));
+    }
+
+    // Update an entry in a transaction that is rolled back, then retry the update outside of the transaction
+    @Test
+    public void updateAfterRollback() throws Exception {
+        TransactionAwareContextSourceProxy transactionalContextSource=new TransactionAwareContextSourceProxy(contextSource);
+        ContextSourceTransactionManager transactionManager=new ContextSourceTransactionManager();
+        transactionManager.setContextSource(transactionalContextSource);
+        final OdmManagerImpl transactionalOdmManager=new OdmManagerImpl(converterManager, transactionalContextSource);
+        transactionalOdmManager.addManagedClass(Person.class);
+
+        Name dn=personTestData[PersonName.WILLIAM.getIndex()].getDn();
+        final Person william=transactionalOdmManager.read(Person.class, dn);
+        final Person patrick=transactionalOdmManager.read(Person.class, personTestData[PersonName.PATRICK.getIndex()].getDn());
+        william.setTelephoneNumber(666);
+        patrick.setSurname("Harvey");
+        try {
+            new TransactionTemplate(transactionManager).execute(new TransactionCallbackWithoutResult() {
+                protected void doInTransactionWithoutResult(TransactionStatus status) {
+                    transactionalOdmManager.update(william);
+                    transactionalOdmManager.updateAll(Collections.singletonList(patrick));
+                    throw new IllegalStateException("Roll back");
+                }
+            });
+            fail("IllegalStateException expected");
+        } catch (IllegalStateException expected) {
+            assertTrue(true);
+        }
+
+        OdmManagerImpl otherOdmManager=new OdmManagerImpl(converterManager, contextSource);
+        otherOdmManager.addManagedClass(Person.class);
+        assertEquals(1, otherOdmManager.read(Person.class, dn).getTelephoneNumber());
+
+        // The values written in the transaction are gone, so the retry must send them again
+        transactionalOdmManager.update(william);
+        assertEquals(william, otherOdmManager.read(Person.class, dn));
+        assertTrue(transactionalOdmManager.updateAll(Collections.singletonList(patrick)).isSuccessful());
+        assertEquals(patrick, otherOdmManager.read(Person.class, patrick.getDn()));
+    }
+
+    // Update an entry found in a search, without changing anything
+    @Test
+    public void updateUnchanged() throws Exception {
+        List<Person> people = odmManager.search(Person.class, baseName, "(sn=Unknown)", searchControls);
+        for (Person person : people) {
+            odmManager.update(person);
+            assertEquals(person, odmManager.read(Person.class, person.getDn()));
+        }
+    }
+
     private Person[] deleteData = {
             personTestData[PersonName.JON.getIndex()],
             personTestData[PersonName.TOM.getIndex()], personTestData[PersonName.DAVROS.getIndex()], };
@@ -383,6 +821,130 @@ public final class TestLdap {
         assertEquals(new HashSet<Person>(Arrays.asList(whatsLeft)), new HashSet<Person>(allPeople));
     }
 
+    // Read entries through a cache, which is invalidated by writes
+    @Test
+    public void readWithCache() throws Exception {
+        OdmManagerImpl cachingOdmManager = new OdmManagerImpl(converterManager, contextSource);
+        cachingOdmManager.addManagedClass(Person.class);
+        EntryCache entryCache = new EntryCache(100, 60000);
+        cachingOdmManager.setEntryCache(Person.class, entryCache);
+
+        Person william = personTestData[PersonName.WILLIAM.getIndex()];
+        Person firstRead = cachingOdmManager.read(Person.class, william.getDn());
+        assertEquals(william, firstRead);
+        assertEquals(0, entryCache.getHitCount());
+
+        // Each read gets its own instance, so changing one does not affect the cache
+        firstRead.setSurname("Changed");
+        Person secondRead = cachingOdmManager.read(Person.class, 
+                new DistinguishedName("CN=William Hartnell, OU=Doctors, O=Whoniverse"));
+        assertEquals(william, secondRead);
+        assertEquals(1, entryCache.getHitCount());
+        assertEquals(0.5, entryCache.getHitRatio(), 0.0001);
+
+        // Writes are seen by the next read
+        secondRead.setTelephoneNumber(999);
+        cachingOdmManager.update(secondRead);
+        assertEquals(secondRead, cachingOdmManager.read(Person.class, william.getDn()));
+        assertEquals(1, entryCache.getHitCount());
+
+        cachingOdmManager.delete(secondRead);
+        try {
+            cachingOdmManager.read(Person.class, william.getDn());
+            fail("NameNotFoundException expected");
+        } catch (NameNotFoundException expected) {
+            // Expected
+        }
+    }
+
+    // A full cache evicts the least recently used entries
+    @Test
+    public void readWithFullCache() throws Exception {
+        OdmManagerImpl cachingOdmManager = new OdmManagerImpl(converterManager, contextSource);
+        cachingOdmManager.addManagedClass(Person.class);
+        EntryCache entryCache = new EntryCache(2, 60000);
+        cachingOdmManager.setEntryCache(Person.class, entryCache);
+
+        for (Person person : personTestData) {
+            assertEquals(person, cachingOdmManager.read(Person.class, person.getDn()));
+        }
+        // Entries are spread over segments, so the cache may hold fewer than the maximum
+        assertTrue(entryCache.size() <= 2);
+        assertEquals(personTestData.length - entryCache.size(), entryCache.getEvictionCount());
+
+        Person master = personTestData[PersonName.MASTER.getIndex()];
+        assertEquals(master, cachingOdmManager.read(Person.class, master.getDn()));
+        assertEquals(1, entryCache.getHitCount());
+    }
+
+    // Create entries in bulk - an entry that already exists should not stop the others being created
+    @Test
+    public void createAll() throws Exception {
+        List<Person> toCreate = new ArrayList<Person>(Arrays.asList(createTestData));
+        Person william = personTestData[PersonName.WILLIAM.getIndex()];
+        toCreate.add(1, william);
+
+        BatchResult result = odmManager.createAll(toCreate);
+        assertFalse(result.isSuccessful());
+        assertEquals(1, result.getFailures().size());
+        assertEquals(william, result.getFailures().get(0).getEntry());
+        assertEquals(Arrays.asList((Object[])createTestData), result.getSucceeded());
+
+        new ExecuteRunnable<Person>().runTests(new RunnableTest<Person>() {
+            public void runTest(Person testData) {
+                assertEquals(testData, odmManager.read(Person.class, testData.getDn()));
+            }
+        }, createTestData);
+    }
+
+    // Update entries in bulk - an entry that does not exist should not stop the others being updated
+    @Test
+    public void updateAll() throws Exception {
+        Person william = personTestData[PersonName.WILLIAM.getIndex()];
+        william.setTelephoneNumber(666);
+        Person master = odmManager.read(Person.class, personTestData[PersonName.MASTER.getIndex()].getDn());
+        master.setDesc(Arrays.asList(new String[] { "Bearded" }));
+        Person colin = createTestData[0];
+
+        BatchResult result = odmManager.updateAll(Arrays.asList(new Person[] { william, colin, master }));
+        assertEquals(1, result.getFailures().size());
+        assertEquals(colin, result.getFailures().get(0).getEntry());
+        assertTrue(result.getFailures().get(0).getException() instanceof NameNotFoundException);
+
+        assertEquals(william, odmManager.read(Person.class, william.getDn()));
+        assertEquals(master, odmManager.read(Person.class, master.getDn()));
+    }
+
+    // Create and delete a sub-tree in bulk on several connections at once, parents listed after their children
+    @Test
+    public void createAndDeleteAllInParallel() throws Exception {
+        OdmManagerImpl parallelOdmManager = new OdmManagerImpl(converterManager, contextSource);
+        parallelOdmManager.addManagedClass(Person.class);
+        parallelOdmManager.addManagedClass(OrganizationalUnit.class);
+        parallelOdmManager.setTaskExecutor(new SimpleAsyncTaskExecutor());
+        parallelOdmManager.setBatchConcurrency(3);
+
+        List<Object> entries = new ArrayList<Object>();
+        for (int index = 0; index < 10; index++) {
+            entries.add(new Person(new DistinguishedName(String.format("cn=Companion %1$s,ou=Companions,o=Whoniverse", index)), 
+                    "Companion", Arrays.asList(new String[] { "Companion number " + index }), index, null));
+        }
+        OrganizationalUnit companions = new OrganizationalUnit(new DistinguishedName("ou=Companions,o=Whoniverse"), 
+                "TARDIS", "Companions of the Doctor");
+        entries.add(companions);
+
+        BatchResult result = parallelOdmManager.createAll(entries);
+        assertTrue(result.getFailures().toString(), result.isSuccessful());
+        assertEquals(entries.size(), result.getSucceeded().size());
+        assertEquals(10, odmManager.findAll(Person.class, companions.getDn(), searchControls).size());
+
+        Collections.reverse(entries);
+        result = parallelOdmManager.deleteAll(entries);
+        assertTrue(result.getFailures().toString(), result.isSuccessful());
+        assertEquals(new HashSet<Person>(Arrays.asList(personTestData)), 
+                new HashSet<Person>(odmManager.findAll(Person.class, baseName, searchControls)));
+    }
+
     // Trying to read a non-existant entry should be flagged as an error
     @Test(expected = NameNotFoundException.class)
     public void readNonExistant() throws Exception {
@@ -1,6 +1,8 @@
 package org.springframework.ldap.odm.test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.lang.reflect.Method;
@@ -10,6 +12,8 @@ import java.util.Iterator;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import javax.naming.Name;
+
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.junit.After;
@@ -21,6 +25,7 @@ import org.junit.Test;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.ldap.core.DistinguishedName;
 import org.springframework.ldap.core.support.LdapContextSource;
+import org.springframework.ldap.odm.core.impl.EntryMapper;
 import org.springframework.ldap.odm.core.impl.OdmManagerImpl;
 import org.springframework.ldap.odm.test.utils.CompilerInterface;
 import org.springframework.ldap.odm.test.utils.GetFreePort;
@@ -99,8 +104,7 @@ public final class TestSchemaToJava {
 
     @After
     public void tearDown() throws Exception {
-        LdapTestUtils.destroyApacheDirectoryServer("", "");
-
+        // The server is shared by all tests and stopped in tearDownClass
         contextSource=null;
         converterManager=null;
     }
@@ -201,4 +205,59 @@ public final class TestSchemaToJava {
         assertEquals(fromDirectory, fromDirectory2);
         assertEquals(fromDirectory.hashCode(), fromDirectory2.hashCode());
     }
+
+    // Generate an entry class together with its EntryMapper, compile both and check that the
+    // mapper is found by OdmManagerImpl and maps entries read from the directory
+    @Test
+    public void generateWithMapper() throws Exception {
+        final String className="Person";
+        final String packageName="org.springframework.ldap.odm.testclasses.mapped";
+
+        // Add classes dir to class path - needed for compilation
+        System.setProperty("java.class.path",
+                System.getProperty("java.class.path")+File.pathSeparator+"target/classes");
+
+        String[] flags=new String[] {
+            "--url", "ldap://127.0.0.1:"+port,
+            "--objectclasses", "inetorgperson",
+            "--syntaxmap", "target/test-classes/syntax-to-class-map.txt",
+            "--class", className,
+            "--package", packageName,
+            "--outputdir", tempDir,
+            "--mapper" };
+
+        SchemaToJava.main(flags);
+
+        // The mapper refers to the entry class so both are compiled together
+        String javaDir = calculateOutputDirectory(tempDir, packageName);
+        CompilerInterface.compile(javaDir, className+".java", className+"EntryMapper.java");
+
+        URL[] urls = new URL[] { new File(tempDir).toURI().toURL() };
+        URLClassLoader ucl = new URLClassLoader(urls, getClass().getClassLoader());
+        Class<?> clazz = ucl.loadClass(packageName+"."+className);
+        Class<?> mapperClass = ucl.loadClass(packageName+"."+className+"EntryMapper");
+        assertTrue(EntryMapper.class.isAssignableFrom(mapperClass));
+
+        OdmManagerImpl odmManager = new OdmManagerImpl(converterManager, contextSource);
+        odmManager.addManagedClass(clazz);
+
+        DistinguishedName testDn=new DistinguishedName(baseName);
+        testDn.addAll(new DistinguishedName("cn=William Hartnell,ou=Doctors"));
+        Object fromDirectory=odmManager.read(clazz, testDn);
+        assertEquals(testDn, clazz.getMethod("getDn").invoke(fromDirectory));
+
+        @SuppressWarnings("unchecked")
+        Iterator<String> snIterator=(Iterator<String>)clazz.getMethod("getSnIterator").invoke(fromDirectory);
+        assertEquals("Hartnell", snIterator.next());
+        assertFalse(snIterator.hasNext());
+
+        // Write it back through the mapper under a new name and read it again
+        DistinguishedName newDn=new DistinguishedName(baseName);
+        newDn.addAll(new DistinguishedName("cn=William Russell,ou=Doctors"));
+        clazz.getMethod("setDn", Name.class).invoke(fromDirectory, newDn);
+        clazz.getMethod("removeCn", String.class).invoke(fromDirectory, "William Hartnell");
+        clazz.getMethod("addCn", String.class).invoke(fromDirectory, "William Russell");
+        odmManager.create(fromDirectory);
+        assertEquals(fromDirectory, odmManager.read(clazz, newDn));
+    }
 }
@@ -3,16 +3,22 @@ package org.springframework.ldap.odm.test.utils;
 import java.io.File;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
 
 public class CompilerInterface {
-    // Compile the given file - when we can drop Java 5 we'll use the Java 6 compiler API
-    public static void compile(String directory, String file) throws Exception {
+    // Compile the given files together - when we can drop Java 5 we'll use the Java 6 compiler API
+    public static void compile(String directory, String... files) throws Exception {
+        List<String> command = new ArrayList<String>();
+        command.add("javac");
+        command.add("-cp");
+        command.add("."+File.pathSeparatorChar+"target"+File.separatorChar+"classes"+
+                File.pathSeparatorChar+System.getProperty("java.class.path"));
+        for (String file : files) {
+            command.add(directory+File.separatorChar+file);
+        }
 
-        ProcessBuilder pb = new ProcessBuilder(
-                new String[] { "javac", 
-                               "-cp", "."+File.pathSeparatorChar+"target"+File.separatorChar+"classes"+
-                                  File.pathSeparatorChar+System.getProperty("java.class.path"),
-                                  directory+File.separatorChar+file });
+        ProcessBuilder pb = new ProcessBuilder(command);
 
         pb.redirectErrorStream(true);
         Process proc = pb.start();